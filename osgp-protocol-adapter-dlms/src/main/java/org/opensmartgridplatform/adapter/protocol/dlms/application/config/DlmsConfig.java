@@ -8,6 +8,9 @@
 package org.opensmartgridplatform.adapter.protocol.dlms.application.config;
 
 import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 
@@ -24,15 +27,36 @@ import org.jboss.netty.handler.logging.LoggingHandler;
 import org.jboss.netty.logging.InternalLogLevel;
 import org.jboss.netty.logging.InternalLoggerFactory;
 import org.jboss.netty.logging.Slf4JLoggerFactory;
+import org.opensmartgridplatform.adapter.protocol.dlms.application.services.DecryptedKeyCache;
+import org.opensmartgridplatform.adapter.protocol.dlms.application.services.DlmsDeviceCache;
 import org.opensmartgridplatform.adapter.protocol.dlms.application.services.DomainHelperService;
+import org.opensmartgridplatform.adapter.protocol.dlms.application.services.InvocationCounterBuffer;
+import org.opensmartgridplatform.adapter.protocol.dlms.application.services.SecurityKeyArchiver;
+import org.opensmartgridplatform.adapter.protocol.dlms.application.services.SessionIpAddressCache;
+import org.opensmartgridplatform.adapter.protocol.dlms.application.services.UnknownMbusDeviceCache;
+import org.opensmartgridplatform.adapter.protocol.dlms.application.threads.DeviceCommunicationExecutor;
+import org.opensmartgridplatform.adapter.protocol.dlms.application.threads.FairRequestScheduler;
 import org.opensmartgridplatform.adapter.protocol.dlms.application.threads.RecoverKeyProcess;
 import org.opensmartgridplatform.adapter.protocol.dlms.application.threads.RecoverKeyProcessInitiator;
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.factories.AdaptiveConcurrencyLimiter;
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.factories.ConnectionCircuitBreaker;
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.factories.DeviceLockTable;
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.factories.DlmsConnectionPool;
 import org.opensmartgridplatform.adapter.protocol.dlms.domain.factories.DlmsConnector;
 import org.opensmartgridplatform.adapter.protocol.dlms.domain.factories.Hls5Connector;
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.factories.HungSessionWatchdog;
 import org.opensmartgridplatform.adapter.protocol.dlms.domain.factories.Lls0Connector;
 import org.opensmartgridplatform.adapter.protocol.dlms.domain.factories.Lls1Connector;
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.factories.ReconnectPolicy;
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.factories.ResponseTimeoutEstimator;
 import org.opensmartgridplatform.adapter.protocol.dlms.domain.repositories.DlmsDeviceRepository;
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.repositories.DlmsSecurityKeyRepository;
 import org.opensmartgridplatform.adapter.protocol.dlms.exceptions.ProtocolAdapterException;
+import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.DeviceRequestCoalescer;
+import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.DlmsConnectionMetrics;
+import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.ExpiredRequestMetrics;
+import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.FlightRecordings;
+import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.InFlightRequests;
 import org.opensmartgridplatform.adapter.protocol.dlms.infra.networking.DlmsChannelHandlerServer;
 import org.opensmartgridplatform.adapter.protocol.dlms.infra.networking.DlmsPushNotificationDecoder;
 import org.slf4j.Logger;
@@ -41,8 +65,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.EnableMBeanExport;
 import org.springframework.context.annotation.PropertySource;
 import org.springframework.context.annotation.Scope;
+import org.springframework.jmx.support.RegistrationPolicy;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
 
 import org.opensmartgridplatform.shared.application.config.AbstractConfig;
@@ -53,6 +79,7 @@ import org.opensmartgridplatform.shared.application.config.AbstractConfig;
  */
 @Configuration
 @EnableTransactionManagement()
+@EnableMBeanExport(registration = RegistrationPolicy.REPLACE_EXISTING)
 @PropertySource("classpath:osgp-adapter-protocol-dlms.properties")
 @PropertySource(value = "file:${osgp/Global/config}", ignoreResourceNotFound = true)
 @PropertySource(value = "file:${osgp/AdapterProtocolDlms/config}", ignoreResourceNotFound = true)
@@ -158,20 +185,236 @@ public class DlmsConfig extends AbstractConfig {
     @Scope("prototype")
     @Autowired
     public RecoverKeyProcess recoverKeyProcess(final DomainHelperService domainHelperService,
-            final DlmsDeviceRepository dlmsDeviceRepository,
+            final DlmsDeviceRepository dlmsDeviceRepository, final DlmsConnectionPool dlmsConnectionPool,
+            final DecryptedKeyCache decryptedKeyCache, final DlmsDeviceCache dlmsDeviceCache,
             @Value("${jdlms.response_timeout}") final int responseTimeout,
             @Value("${jdlms.logical_device_address}") final int logicalDeviceAddress,
             @Value("${jdlms.client_access_point}") final int clientAccessPoint) {
-        return new RecoverKeyProcess(domainHelperService, dlmsDeviceRepository, responseTimeout, logicalDeviceAddress,
-                clientAccessPoint);
+        return new RecoverKeyProcess(domainHelperService, dlmsDeviceRepository, dlmsConnectionPool,
+                decryptedKeyCache, dlmsDeviceCache, responseTimeout, logicalDeviceAddress, clientAccessPoint);
     }
 
     @Bean
     @Autowired
     public RecoverKeyProcessInitiator recoverKeyProcesInitiator(final ScheduledExecutorService executorService,
+            final DeviceCommunicationExecutor deviceCommunicationExecutor,
             final Provider<RecoverKeyProcess> recoverKeyProcessProvider,
             @Value("${key.recovery.delay}") final int recoverKeyDelay) {
-        return new RecoverKeyProcessInitiator(executorService, recoverKeyProcessProvider, recoverKeyDelay);
+        return new RecoverKeyProcessInitiator(executorService, deviceCommunicationExecutor.getBackgroundExecutor(),
+                recoverKeyProcessProvider, recoverKeyDelay);
+    }
+
+    @Bean(destroyMethod = "closeAll")
+    public DlmsConnectionPool dlmsConnectionPool(final ScheduledExecutorService scheduledExecutorService,
+            @Value("${jdlms.connection.pool.enabled}") final boolean enabled,
+            @Value("${jdlms.connection.pool.max.open}") final int maxOpen,
+            @Value("${jdlms.connection.pool.idle.timeout}") final long idleTimeout,
+            @Value("${jdlms.connection.pool.health.check}") final boolean healthCheck) {
+        LOGGER.info("Connection pool enabled: {}, maxOpen: {}, idleTimeout: {}, healthCheck: {}", enabled, maxOpen,
+                idleTimeout, healthCheck);
+        final DlmsConnectionPool dlmsConnectionPool = new DlmsConnectionPool(enabled, maxOpen, idleTimeout,
+                healthCheck);
+        dlmsConnectionPool.scheduleEviction(scheduledExecutorService);
+        return dlmsConnectionPool;
+    }
+
+    @Bean
+    public DeviceRequestCoalescer deviceRequestCoalescer(final DlmsConnectionPool dlmsConnectionPool,
+            @Value("${jdlms.connection.coalesce.enabled}") final boolean enabled,
+            @Value("${jdlms.connection.coalesce.max.requests.per.device}") final int maxRequestsPerDevice) {
+        LOGGER.info("Coalescing requests per device enabled: {}, maxRequestsPerDevice: {}", enabled,
+                maxRequestsPerDevice);
+        return new DeviceRequestCoalescer(enabled, maxRequestsPerDevice, dlmsConnectionPool);
+    }
+
+    @Bean
+    public AdaptiveConcurrencyLimiter adaptiveConcurrencyLimiter(
+            @Value("${jdlms.concurrency.limit.enabled}") final boolean enabled,
+            @Value("${jdlms.concurrency.limit.initial}") final int initialLimit,
+            @Value("${jdlms.concurrency.limit.min}") final int minLimit,
+            @Value("${jdlms.concurrency.limit.max}") final int maxLimit,
+            @Value("${jdlms.concurrency.limit.backoff.ratio}") final double backoffRatio,
+            @Value("${jdlms.concurrency.limit.latency.threshold}") final long latencyThreshold,
+            @Value("${jdlms.concurrency.limit.acquire.timeout}") final long acquireTimeout) {
+        LOGGER.info("Adaptive concurrency limit enabled: {}, initial: {}, min: {}, max: {}", enabled, initialLimit,
+                minLimit, maxLimit);
+        return new AdaptiveConcurrencyLimiter(enabled, initialLimit, minLimit, maxLimit, backoffRatio,
+                latencyThreshold, acquireTimeout);
+    }
+
+    @Bean
+    public HungSessionWatchdog hungSessionWatchdog(final ScheduledExecutorService scheduledExecutorService,
+            @Value("${jdlms.watchdog.enabled}") final boolean enabled,
+            @Value("${jdlms.watchdog.budgets}") final String[] budgets,
+            @Value("${jdlms.watchdog.default.budget}") final long defaultBudget,
+            @Value("${jdlms.watchdog.check.interval}") final long checkInterval) {
+        final Map<String, Long> budgetPerMessageType = new HashMap<>();
+        for (final String budget : budgets) {
+            final String[] parts = budget.split(":");
+            if (parts.length == 2) {
+                budgetPerMessageType.put(parts[0].trim(), Long.valueOf(parts[1].trim()));
+            }
+        }
+        LOGGER.info("Hung session watchdog enabled: {}, default budget: {}, budgets: {}", enabled, defaultBudget,
+                budgetPerMessageType);
+        final HungSessionWatchdog hungSessionWatchdog = new HungSessionWatchdog(enabled, budgetPerMessageType,
+                defaultBudget, checkInterval);
+        hungSessionWatchdog.scheduleChecks(scheduledExecutorService);
+        return hungSessionWatchdog;
+    }
+
+    @Bean
+    public DeviceLockTable deviceLockTable(@Value("${jdlms.device.lock.timeout}") final long timeout,
+            @Value("${jdlms.device.lock.statistics.max.devices}") final int maxTrackedDevices) {
+        return new DeviceLockTable(timeout, maxTrackedDevices);
+    }
+
+    @Bean
+    public DecryptedKeyCache decryptedKeyCache(final ScheduledExecutorService scheduledExecutorService,
+            @Value("${key.cache.ttl}") final long timeToLive, @Value("${key.cache.max.size}") final int maxSize) {
+        final DecryptedKeyCache decryptedKeyCache = new DecryptedKeyCache(timeToLive, maxSize);
+        decryptedKeyCache.scheduleEviction(scheduledExecutorService);
+        return decryptedKeyCache;
+    }
+
+    @Bean
+    public DlmsDeviceCache dlmsDeviceCache(final ScheduledExecutorService scheduledExecutorService,
+            @Value("${device.cache.ttl}") final long timeToLive,
+            @Value("${device.cache.max.size}") final int maxSize) {
+        final DlmsDeviceCache dlmsDeviceCache = new DlmsDeviceCache(timeToLive, maxSize);
+        dlmsDeviceCache.scheduleEviction(scheduledExecutorService);
+        return dlmsDeviceCache;
+    }
+
+    @Bean
+    public SessionIpAddressCache sessionIpAddressCache(final ScheduledExecutorService scheduledExecutorService,
+            @Value("${session.ip.cache.ttl}") final long timeToLive,
+            @Value("${session.ip.cache.max.size}") final int maxSize) {
+        final SessionIpAddressCache sessionIpAddressCache = new SessionIpAddressCache(timeToLive, maxSize);
+        sessionIpAddressCache.scheduleEviction(scheduledExecutorService);
+        return sessionIpAddressCache;
+    }
+
+    @Bean
+    public UnknownMbusDeviceCache unknownMbusDeviceCache(
+            @Value("${mbus.device.unknown.cache.ttl}") final long timeToLive,
+            @Value("${mbus.device.unknown.cache.max.size}") final int maxSize) {
+        return new UnknownMbusDeviceCache(timeToLive, maxSize);
+    }
+
+    @Bean(destroyMethod = "flush")
+    public InvocationCounterBuffer invocationCounterBuffer(final DlmsSecurityKeyRepository dlmsSecurityKeyRepository,
+            final ScheduledExecutorService scheduledExecutorService,
+            @Value("${invocation.counter.flush.interval}") final long flushInterval,
+            @Value("${invocation.counter.safety.margin}") final int safetyMargin) {
+        final InvocationCounterBuffer invocationCounterBuffer = new InvocationCounterBuffer(dlmsSecurityKeyRepository,
+                flushInterval, safetyMargin);
+        invocationCounterBuffer.scheduleFlush(scheduledExecutorService);
+        return invocationCounterBuffer;
+    }
+
+    @Bean
+    public SecurityKeyArchiver securityKeyArchiver(final DlmsSecurityKeyRepository dlmsSecurityKeyRepository,
+            final ScheduledExecutorService scheduledExecutorService,
+            @Value("${key.archive.interval}") final long interval,
+            @Value("${key.archive.retention}") final long retention,
+            @Value("${key.archive.batch.size}") final int batchSize) {
+        final SecurityKeyArchiver securityKeyArchiver = new SecurityKeyArchiver(dlmsSecurityKeyRepository, interval,
+                retention, batchSize);
+        securityKeyArchiver.scheduleArchiving(scheduledExecutorService);
+        return securityKeyArchiver;
+    }
+
+    @Bean
+    public DlmsConnectionMetrics dlmsConnectionMetrics(@Value("${jdlms.metrics.enabled}") final boolean enabled) {
+        return new DlmsConnectionMetrics(enabled);
+    }
+
+    @Bean
+    public FlightRecordings flightRecordings(@Value("${jdlms.flight.recorder.messages}") final int capacity) {
+        return new FlightRecordings(capacity);
+    }
+
+    @Bean
+    public ExpiredRequestMetrics expiredRequestMetrics() {
+        return new ExpiredRequestMetrics();
+    }
+
+    @Bean
+    public InFlightRequests inFlightRequests(
+            @Value("${jdlms.deduplicate.message.types}") final String[] messageTypes) {
+        LOGGER.info("Deduplicating identical requests of message types: {}", Arrays.toString(messageTypes));
+        return new InFlightRequests(Arrays.asList(messageTypes));
+    }
+
+    @Bean
+    public ResponseTimeoutEstimator responseTimeoutEstimator(
+            @Value("${jdlms.response.timeout.adaptive}") final boolean enabled,
+            @Value("${jdlms.response.timeout.min}") final int minimumTimeout,
+            @Value("${jdlms.response.timeout.max.devices}") final int maxTrackedDevices,
+            @Value("${jdlms.response.timeout.adaptive.excluded.message.types}") final String[] excludedMessageTypes) {
+        return new ResponseTimeoutEstimator(enabled, minimumTimeout, maxTrackedDevices,
+                Arrays.asList(excludedMessageTypes));
+    }
+
+    @Bean
+    public ConnectionCircuitBreaker connectionCircuitBreaker(final ScheduledExecutorService scheduledExecutorService,
+            @Value("${jdlms.circuit.breaker.enabled}") final boolean enabled,
+            @Value("${jdlms.circuit.breaker.device.failure.threshold}") final int deviceFailureThreshold,
+            @Value("${jdlms.circuit.breaker.cell.failure.threshold}") final int cellFailureThreshold,
+            @Value("${jdlms.circuit.breaker.open.duration}") final long openDuration,
+            @Value("${jdlms.circuit.breaker.cell.prefix.length}") final int cellPrefixLength,
+            @Value("${jdlms.circuit.breaker.max.circuits}") final int maxCircuits,
+            @Value("${jdlms.circuit.breaker.expiry}") final long expiry) {
+        final ConnectionCircuitBreaker connectionCircuitBreaker = new ConnectionCircuitBreaker(enabled,
+                deviceFailureThreshold, cellFailureThreshold, openDuration, cellPrefixLength, maxCircuits, expiry);
+        connectionCircuitBreaker.scheduleEviction(scheduledExecutorService);
+        return connectionCircuitBreaker;
+    }
+
+    @Bean
+    public ReconnectPolicy reconnectPolicy(@Value("${jdlms.reconnect.max.attempts}") final int maxAttempts,
+            @Value("${jdlms.reconnect.budget.ratio}") final double budgetRatio,
+            @Value("${jdlms.reconnect.budget.max}") final int maxBudget) {
+        return new ReconnectPolicy(maxAttempts, budgetRatio, maxBudget);
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public DeviceCommunicationExecutor deviceCommunicationExecutor(
+            @Value("${executor.device.io.enabled}") final boolean enabled,
+            @Value("${executor.device.io.max.concurrent.requests}") final int maxConcurrentRequests,
+            @Value("${executor.device.io.max.connects.per.cell}") final int maxConnectsPerCell,
+            @Value("${executor.device.io.cell.prefix.length}") final int cellPrefixLength,
+            @Value("${executor.device.io.cell.permit.timeout}") final long cellPermitTimeout,
+            @Value("${executor.background.poolsize}") final int backgroundPoolSize) {
+        LOGGER.info("Device I/O executor enabled: {}, maxConcurrentRequests: {}, maxConnectsPerCell: {}", enabled,
+                maxConcurrentRequests, maxConnectsPerCell);
+        return new DeviceCommunicationExecutor(enabled, maxConcurrentRequests, maxConnectsPerCell, cellPrefixLength,
+                cellPermitTimeout, backgroundPoolSize);
+    }
+
+    @Bean
+    public FairRequestScheduler fairRequestScheduler(final DeviceCommunicationExecutor deviceCommunicationExecutor,
+            @Value("${executor.device.io.fair.enabled}") final boolean enabled,
+            @Value("${executor.device.io.fair.weights}") final String[] weights,
+            @Value("${executor.device.io.fair.default.weight}") final int defaultWeight,
+            @Value("${executor.device.io.fair.max.in.progress.per.organisation}") final int maxInProgress,
+            @Value("${executor.device.io.fair.max.buffered}") final int maxBuffered) {
+        if (enabled && !deviceCommunicationExecutor.isEnabled()) {
+            LOGGER.warn("Fair scheduling of requests is only used when the device I/O executor is enabled");
+        }
+        final Map<String, Integer> weightPerOrganisation = new HashMap<>();
+        for (final String weight : weights) {
+            final String[] parts = weight.split(":");
+            if (parts.length == 2) {
+                weightPerOrganisation.put(parts[0].trim(), Integer.valueOf(parts[1].trim()));
+            }
+        }
+        LOGGER.info("Fair scheduling of requests enabled: {}, weights: {}, maxInProgress: {}", enabled,
+                weightPerOrganisation, maxInProgress);
+        return new FairRequestScheduler(enabled && deviceCommunicationExecutor.isEnabled(), weightPerOrganisation,
+                defaultWeight, maxInProgress, maxBuffered, deviceCommunicationExecutor.getMaxConcurrentRequests(),
+                deviceCommunicationExecutor.getRequestExecutor());
     }
 
     @Bean
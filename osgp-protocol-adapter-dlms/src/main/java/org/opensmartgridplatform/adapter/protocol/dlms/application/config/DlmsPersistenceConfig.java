@@ -14,6 +14,7 @@ import org.flywaydb.core.Flyway;
 import org.jboss.netty.logging.InternalLoggerFactory;
 import org.jboss.netty.logging.Slf4JLoggerFactory;
 import org.opensmartgridplatform.adapter.protocol.dlms.domain.repositories.DlmsDeviceRepository;
+import org.opensmartgridplatform.adapter.protocol.dlms.infra.db.MeteredDataSource;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -57,6 +58,8 @@ public class DlmsPersistenceConfig extends AbstractPersistenceConfig {
 
     private HikariDataSource dataSourceDlms;
 
+    private MeteredDataSource meteredDataSourceDlms;
+
     public DlmsPersistenceConfig() {
         InternalLoggerFactory.setDefaultFactory(new Slf4JLoggerFactory());
     }
@@ -68,8 +71,18 @@ public class DlmsPersistenceConfig extends AbstractPersistenceConfig {
                     .withDatabaseName(this.databaseName);
             final DefaultConnectionPoolFactory factory = builder.build();
             this.dataSourceDlms = factory.getDefaultConnectionPool();
+            this.meteredDataSourceDlms = new MeteredDataSource(this.dataSourceDlms);
         }
-        return this.dataSourceDlms;
+        return this.meteredDataSourceDlms;
+    }
+
+    /**
+     * Exposes the use of the connection pool over JMX.
+     */
+    @Bean
+    public MeteredDataSource dlmsDataSourceMetrics() {
+        this.getDataSourceDlms();
+        return this.meteredDataSourceDlms;
     }
 
     @Override
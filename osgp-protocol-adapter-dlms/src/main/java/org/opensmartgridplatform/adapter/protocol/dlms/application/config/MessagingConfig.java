@@ -7,12 +7,22 @@
  */
 package org.opensmartgridplatform.adapter.protocol.dlms.application.config;
 
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+
 import javax.jms.MessageListener;
 
+import org.apache.activemq.ActiveMQSession;
+import org.apache.activemq.command.ActiveMQQueue;
 import org.jboss.netty.logging.InternalLoggerFactory;
 import org.jboss.netty.logging.Slf4JLoggerFactory;
+import org.opensmartgridplatform.adapter.protocol.dlms.application.threads.DeviceCommunicationExecutor;
+import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.CompactPayloadCodec;
 import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.DeviceResponseMessageSender;
 import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.DlmsLogItemRequestMessageSender;
+import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.RequestLanes;
+import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.RequestLanes.Lane;
 import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.requests.to.core.OsgpRequestMessageSender;
 import org.opensmartgridplatform.shared.application.config.AbstractMessagingConfig;
 import org.opensmartgridplatform.shared.application.config.jms.JmsConfiguration;
@@ -21,6 +31,7 @@ import org.opensmartgridplatform.shared.infra.jms.BaseMessageProcessorMap;
 import org.opensmartgridplatform.shared.infra.jms.MessageProcessorMap;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.PropertySource;
@@ -61,8 +72,79 @@ public class MessagingConfig extends AbstractMessagingConfig {
 
     @Bean
     public DefaultMessageListenerContainer dlmsRequestsMessageListenerContainer(
-            final JmsConfiguration dlmsRequestJmsConfiguration) {
-        return dlmsRequestJmsConfiguration.getMessageListenerContainer();
+            final JmsConfiguration dlmsRequestJmsConfiguration,
+            final DeviceCommunicationExecutor deviceCommunicationExecutor, final RequestLanes requestLanes) {
+        return this.configureRequestsContainer(dlmsRequestJmsConfiguration.getMessageListenerContainer(),
+                deviceCommunicationExecutor, requestLanes, Lane.DEFAULT);
+    }
+
+    @Bean
+    public RequestLanes requestLanes(@Value("${jms.dlms.requests.lanes.enabled}") final boolean enabled,
+            @Value("${jms.dlms.requests.lane.long.running.message.types}") final String[] longRunningMessageTypes,
+            @Value("${jms.dlms.requests.lane.default.queue}") final String defaultQueue,
+            @Value("${jms.dlms.requests.lane.long.running.queue}") final String longRunningQueue,
+            @Value("${jms.dlms.requests.lane.scheduled.queue}") final String scheduledQueue) {
+        final Map<Lane, String> queues = new EnumMap<>(Lane.class);
+        queues.put(Lane.DEFAULT, defaultQueue);
+        queues.put(Lane.LONG_RUNNING, longRunningQueue);
+        queues.put(Lane.SCHEDULED, scheduledQueue);
+        return new RequestLanes(enabled, Arrays.asList(longRunningMessageTypes), queues);
+    }
+
+    // Configuration beans for the lanes of incoming dlms requests
+    @Bean
+    public JmsConfiguration dlmsLongRunningRequestJmsConfiguration(
+            final JmsConfigurationFactory jmsConfigurationFactory) {
+        return jmsConfigurationFactory.initializeReceiveConfiguration("jms.dlms.requests.lane.long.running",
+                this.dlmsRequestsMessageListener);
+    }
+
+    @Bean
+    public DefaultMessageListenerContainer dlmsLongRunningRequestsMessageListenerContainer(
+            final JmsConfiguration dlmsLongRunningRequestJmsConfiguration,
+            final DeviceCommunicationExecutor deviceCommunicationExecutor, final RequestLanes requestLanes) {
+        return this.configureRequestsContainer(dlmsLongRunningRequestJmsConfiguration.getMessageListenerContainer(),
+                deviceCommunicationExecutor, requestLanes, Lane.LONG_RUNNING);
+    }
+
+    @Bean
+    public JmsConfiguration dlmsScheduledRequestJmsConfiguration(
+            final JmsConfigurationFactory jmsConfigurationFactory) {
+        return jmsConfigurationFactory.initializeReceiveConfiguration("jms.dlms.requests.lane.scheduled",
+                this.dlmsRequestsMessageListener);
+    }
+
+    @Bean
+    public DefaultMessageListenerContainer dlmsScheduledRequestsMessageListenerContainer(
+            final JmsConfiguration dlmsScheduledRequestJmsConfiguration,
+            final DeviceCommunicationExecutor deviceCommunicationExecutor, final RequestLanes requestLanes) {
+        return this.configureRequestsContainer(dlmsScheduledRequestJmsConfiguration.getMessageListenerContainer(),
+                deviceCommunicationExecutor, requestLanes, Lane.SCHEDULED);
+    }
+
+    private DefaultMessageListenerContainer configureRequestsContainer(
+            final DefaultMessageListenerContainer container,
+            final DeviceCommunicationExecutor deviceCommunicationExecutor, final RequestLanes requestLanes,
+            final Lane lane) {
+        if (deviceCommunicationExecutor.isEnabled()) {
+            /*
+             * Requests are processed on device I/O threads after the listener
+             * returns, and are acknowledged one by one when processed.
+             */
+            container.setSessionTransacted(false);
+            container.setSessionAcknowledgeMode(ActiveMQSession.INDIVIDUAL_ACKNOWLEDGE);
+        }
+        if (lane != Lane.DEFAULT && !requestLanes.isEnabled()) {
+            container.setAutoStartup(false);
+        }
+        if (lane == Lane.DEFAULT && requestLanes.isEnabled()) {
+            /*
+             * The broker forwards all messages on the request queue to the
+             * queues of the lanes, so the default lane has a queue of its own.
+             */
+            container.setDestination(new ActiveMQQueue(requestLanes.getQueue(lane)));
+        }
+        return container;
     }
 
     @Bean
@@ -82,11 +164,29 @@ public class MessagingConfig extends AbstractMessagingConfig {
         return dlmsResponseJmsConfiguration.getJmsTemplate();
     }
 
+    // Configuration beans for outgoing dlms partial responses
+    @Bean
+    public JmsConfiguration dlmsPartialResponseJmsConfiguration(
+            final JmsConfigurationFactory jmsConfigurationFactory) {
+        return jmsConfigurationFactory.initializeConfiguration("jms.dlms.partial.responses");
+    }
+
+    @Bean
+    public JmsTemplate dlmsPartialResponsesJmsTemplate(final JmsConfiguration dlmsPartialResponseJmsConfiguration) {
+        return dlmsPartialResponseJmsConfiguration.getJmsTemplate();
+    }
+
     @Bean
     public DeviceResponseMessageSender dlmsResponseMessageSender() {
         return new DeviceResponseMessageSender();
     }
 
+    @Bean
+    public CompactPayloadCodec compactPayloadCodec(
+            @Value("${jms.dlms.responses.compact.threshold}") final int threshold) {
+        return new CompactPayloadCodec(threshold);
+    }
+
     // Configuration beans for outgoing dlms log items requests
     @Bean
     public JmsConfiguration dlmsLogItemRequestJmsConfiguration(final JmsConfigurationFactory jmsConfigurationFactory) {
@@ -99,8 +199,11 @@ public class MessagingConfig extends AbstractMessagingConfig {
     }
 
     @Bean
-    public DlmsLogItemRequestMessageSender dlmsLogItemRequestMessageSender() {
-        return new DlmsLogItemRequestMessageSender();
+    public DlmsLogItemRequestMessageSender dlmsLogItemRequestMessageSender(
+            @Value("${jms.dlms.log.item.requests.queue.capacity}") final int capacity,
+            @Value("${jms.dlms.log.item.requests.batch.size}") final int batchSize,
+            @Value("${jms.dlms.log.item.requests.idle.interval}") final long idleInterval) {
+        return new DlmsLogItemRequestMessageSender(capacity, batchSize, idleInterval);
     }
 
     // Configuration beans for incoming osgp responses
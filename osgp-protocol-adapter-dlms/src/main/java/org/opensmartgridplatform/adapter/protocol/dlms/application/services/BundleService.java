@@ -13,9 +13,15 @@ import java.util.List;
 import org.opensmartgridplatform.adapter.protocol.dlms.domain.commands.CommandExecutor;
 import org.opensmartgridplatform.adapter.protocol.dlms.domain.commands.CommandExecutorMap;
 import org.opensmartgridplatform.adapter.protocol.dlms.domain.entities.DlmsDevice;
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.entities.SecurityKeyType;
 import org.opensmartgridplatform.adapter.protocol.dlms.domain.factories.DlmsConnectionHolder;
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.factories.ReconnectPolicy;
 import org.opensmartgridplatform.adapter.protocol.dlms.exceptions.ConnectionException;
+import org.opensmartgridplatform.adapter.protocol.dlms.exceptions.DeadlineExceededException;
+import org.opensmartgridplatform.adapter.protocol.dlms.exceptions.HungSessionException;
 import org.opensmartgridplatform.adapter.protocol.dlms.exceptions.ProtocolAdapterException;
+import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.DlmsMessageListener;
+import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.InvocationCountingDlmsMessageListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -40,9 +46,127 @@ public class BundleService {
     @Autowired
     private CommandExecutorMap bundleCommandExecutorMap;
 
+    @Autowired
+    private ReconnectPolicy reconnectPolicy;
+
+    @Autowired
+    private SecurityKeyService securityKeyService;
+
+    /**
+     * Executes the actions of the bundle that do not have a response yet.
+     * <p>
+     * When the connection with the device breaks, the actions are resumed
+     * after reconnecting right away, as far as the {@link ReconnectPolicy}
+     * allows. Otherwise the {@link ConnectionException} is thrown, leaving the
+     * actions without response to be executed when the request is retried
+     * after the retry delay. The request does not wait before reconnecting, as
+     * it holds the lock for the device and a connection permit.
+     *
+     * <p>
+     * When the deadline of the request passes before all actions are executed,
+     * the actions that were not executed get a fault response, so the
+     * responses of the executed actions are not lost.
+     *
+     * @throws DeadlineExceededException
+     *             if the deadline of the request passes before any action of
+     *             the bundle is executed.
+     */
     public BundleMessagesRequestDto callExecutors(final DlmsConnectionHolder conn, final DlmsDevice device,
             final BundleMessagesRequestDto bundleMessagesRequest) {
 
+        if (conn == null) {
+            this.executeActions(conn, device, bundleMessagesRequest);
+            return bundleMessagesRequest;
+        }
+
+        try {
+            return this.executeActionsWithReconnects(conn, device, bundleMessagesRequest);
+        } catch (final DeadlineExceededException deadlineExceededException) {
+            return this.addDeadlineExceededResponses(device, bundleMessagesRequest, deadlineExceededException);
+        }
+    }
+
+    private BundleMessagesRequestDto executeActionsWithReconnects(final DlmsConnectionHolder conn,
+            final DlmsDevice device, final BundleMessagesRequestDto bundleMessagesRequest) {
+
+        this.reconnectPolicy.recordRequest();
+        int attempt = 0;
+        while (true) {
+            try {
+                this.executeActions(conn, device, bundleMessagesRequest);
+                return bundleMessagesRequest;
+            } catch (final ConnectionException connectionException) {
+                boolean reconnected = false;
+                while (!reconnected && this.reconnectPolicy.tryReconnect(++attempt)) {
+                    reconnected = this.reconnect(conn, device, attempt);
+                }
+                if (!reconnected) {
+                    throw connectionException;
+                }
+            }
+        }
+    }
+
+    private BundleMessagesRequestDto addDeadlineExceededResponses(final DlmsDevice device,
+            final BundleMessagesRequestDto bundleMessagesRequest,
+            final DeadlineExceededException deadlineExceededException) {
+
+        final List<ActionDto> actionList = bundleMessagesRequest.getActionList();
+        final List<ActionDto> notExecutedActions = new ArrayList<>();
+        for (final ActionDto actionDto : actionList) {
+            if (actionDto.getResponse() == null) {
+                notExecutedActions.add(actionDto);
+            }
+        }
+        if (notExecutedActions.size() == actionList.size()) {
+            // Nothing to report, so the request is dropped.
+            throw deadlineExceededException;
+        }
+
+        LOGGER.warn("Deadline of bundle for {} passed, {} of {} actions not executed",
+                device.getDeviceIdentification(), notExecutedActions.size(), actionList.size());
+        for (final ActionDto actionDto : notExecutedActions) {
+            this.addFaultResponse(actionDto, deadlineExceededException, "Deadline exceeded, action not executed",
+                    device);
+        }
+        return bundleMessagesRequest;
+    }
+
+    private boolean reconnect(final DlmsConnectionHolder conn, final DlmsDevice device, final int attempt) {
+        LOGGER.info("Reconnecting to {} to resume bundle, attempt {}", device.getDeviceIdentification(), attempt);
+
+        conn.closeForReconnect();
+        this.updateInvocationCounter(conn, device);
+        try {
+            conn.reconnect();
+        } catch (final DeadlineExceededException | HungSessionException e) {
+            throw e;
+        } catch (final OsgpException | RuntimeException e) {
+            LOGGER.warn("Reconnecting to {} failed, attempt {}", device.getDeviceIdentification(), attempt, e);
+            return false;
+        }
+        this.reconnectPolicy.recordReconnected();
+        return true;
+    }
+
+    /**
+     * With HLS 5 every message sent uses the next invocation counter, so the
+     * messages sent before the connection broke have to be counted before a
+     * new connection determines its invocation counter.
+     */
+    private void updateInvocationCounter(final DlmsConnectionHolder conn, final DlmsDevice device) {
+        final DlmsMessageListener dlmsMessageListener = conn.getDlmsMessageListener();
+        if (device.isHls5Active() && dlmsMessageListener instanceof InvocationCountingDlmsMessageListener) {
+            final int numberOfSentMessages = ((InvocationCountingDlmsMessageListener) dlmsMessageListener)
+                    .getAndResetNumberOfSentMessages();
+            this.securityKeyService.incrementInvocationCounter(device, SecurityKeyType.E_METER_ENCRYPTION,
+                    numberOfSentMessages);
+        }
+    }
+
+    private void executeActions(final DlmsConnectionHolder conn, final DlmsDevice device,
+            final BundleMessagesRequestDto bundleMessagesRequest) {
+
         final List<ActionDto> actionList = bundleMessagesRequest.getActionList();
         for (final ActionDto actionDto : actionList) {
 
@@ -50,6 +174,10 @@ public class BundleService {
             // Because it could be a retry.
             if (actionDto.getResponse() == null) {
 
+                if (conn != null) {
+                    conn.checkDeadline("bundle action");
+                }
+
                 final Class<? extends ActionRequestDto> actionRequestClass = actionDto.getRequest().getClass();
 
                 final CommandExecutor<?, ?> executor = this.bundleCommandExecutorMap
@@ -89,8 +217,6 @@ public class BundleService {
                 }
             }
         }
-
-        return bundleMessagesRequest;
     }
 
     private void addFaultResponse(final ActionDto actionDto, final Exception exception, final String defaultMessage,
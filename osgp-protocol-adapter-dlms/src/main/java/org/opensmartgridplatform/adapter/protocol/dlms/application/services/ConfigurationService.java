@@ -244,11 +244,11 @@ public class ConfigurationService {
         final ChannelElementValuesDto channelElementValues = this.getMBusDeviceOnChannelCommandExecutor.execute(conn,
                 device, mbusDeviceOnChannelRequest);
 
-        final DlmsDevice mbusDevice = this.domainHelperService.findMbusDevice(
+        final String mbusDeviceIdentification = this.domainHelperService.findMbusDeviceIdentification(
                 Long.valueOf(channelElementValues.getIdentificationNumber()),
                 channelElementValues.getManufacturerIdentification());
 
-        return new GMeterInfoDto(setMbusUserKeyByChannelRequestData.getChannel(), mbusDevice.getDeviceIdentification());
+        return new GMeterInfoDto(setMbusUserKeyByChannelRequestData.getChannel(), mbusDeviceIdentification);
     }
 
     public String setActivityCalendar(final DlmsConnectionHolder conn, final DlmsDevice device,
@@ -0,0 +1,196 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.application.services;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.entities.SecurityKeyType;
+
+/**
+ * Short lived in-memory cache of decrypted DLMS keys, so setting up a
+ * connection does not need to decrypt the same keys over and over again.
+ * <p>
+ * Keys are cached per device and key type, together with the version (the id
+ * of the stored {@code SecurityKey}) they were decrypted from. A cached key is
+ * only returned for the same version, so a key that has been replaced is never
+ * used. Key bytes are overwritten with zeroes when they are evicted, and
+ * callers always get a copy.
+ */
+public class DecryptedKeyCache {
+
+    private static final class CacheKey {
+        private final String deviceIdentification;
+        private final SecurityKeyType securityKeyType;
+
+        private CacheKey(final String deviceIdentification, final SecurityKeyType securityKeyType) {
+            this.deviceIdentification = deviceIdentification;
+            this.securityKeyType = securityKeyType;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CacheKey)) {
+                return false;
+            }
+            final CacheKey other = (CacheKey) o;
+            return Objects.equals(this.deviceIdentification, other.deviceIdentification)
+                    && this.securityKeyType == other.securityKeyType;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.deviceIdentification, this.securityKeyType);
+        }
+    }
+
+    /**
+     * Cached key bytes, which are copied and overwritten under the lock of the
+     * entry, so a key that is being evicted is never handed out half zeroed.
+     */
+    private static final class CachedKey {
+        private final Long version;
+        private final byte[] key;
+        private final long expiresAt;
+        private boolean erased;
+
+        private CachedKey(final Long version, final byte[] key, final long expiresAt) {
+            this.version = version;
+            this.key = key;
+            this.expiresAt = expiresAt;
+        }
+
+        /**
+         * @return a copy of the key, or {@code null} if it has been erased.
+         */
+        private synchronized byte[] copy() {
+            if (this.erased) {
+                return null;
+            }
+            return Arrays.copyOf(this.key, this.key.length);
+        }
+
+        private synchronized void erase() {
+            this.erased = true;
+            Arrays.fill(this.key, (byte) 0);
+        }
+    }
+
+    private final Map<CacheKey, CachedKey> cache = new ConcurrentHashMap<>();
+
+    private final long timeToLive;
+    private final int maxSize;
+
+    /**
+     * @param timeToLive
+     *            time in milliseconds a decrypted key is kept.
+     * @param maxSize
+     *            maximum number of keys kept. A maximum size of {@code 0}
+     *            disables the cache.
+     */
+    public DecryptedKeyCache(final long timeToLive, final int maxSize) {
+        this.timeToLive = timeToLive;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Schedules the removal of expired keys with the given executor.
+     */
+    public void scheduleEviction(final ScheduledExecutorService executorService) {
+        if (this.maxSize > 0) {
+            executorService.scheduleWithFixedDelay(this::evictExpiredKeys, this.timeToLive, this.timeToLive,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @return a copy of the cached key, or {@code null} if no key of the given
+     *         version is cached.
+     */
+    public byte[] retrieve(final String deviceIdentification, final SecurityKeyType securityKeyType,
+            final Long version) {
+        final CacheKey cacheKey = new CacheKey(deviceIdentification, securityKeyType);
+        final CachedKey cachedKey = this.cache.get(cacheKey);
+        if (cachedKey == null) {
+            return null;
+        }
+        if (!Objects.equals(version, cachedKey.version) || cachedKey.expiresAt <= System.currentTimeMillis()) {
+            this.evict(cacheKey, cachedKey);
+            return null;
+        }
+        // Evicted or replaced after it was read from the cache if erased.
+        return cachedKey.copy();
+    }
+
+    /**
+     * Stores a copy of the given key.
+     */
+    public void store(final String deviceIdentification, final SecurityKeyType securityKeyType, final Long version,
+            final byte[] key) {
+        if (this.maxSize <= 0 || key == null || key.length == 0) {
+            return;
+        }
+        if (this.cache.size() >= this.maxSize) {
+            this.makeRoom();
+        }
+        final CachedKey previous = this.cache.put(new CacheKey(deviceIdentification, securityKeyType),
+                new CachedKey(version, Arrays.copyOf(key, key.length), System.currentTimeMillis() + this.timeToLive));
+        if (previous != null) {
+            previous.erase();
+        }
+    }
+
+    /**
+     * Removes all cached keys for the device.
+     */
+    public void invalidate(final String deviceIdentification) {
+        for (final SecurityKeyType securityKeyType : SecurityKeyType.values()) {
+            final CacheKey cacheKey = new CacheKey(deviceIdentification, securityKeyType);
+            final CachedKey cachedKey = this.cache.get(cacheKey);
+            if (cachedKey != null) {
+                this.evict(cacheKey, cachedKey);
+            }
+        }
+    }
+
+    public void evictExpiredKeys() {
+        final long now = System.currentTimeMillis();
+        for (final Map.Entry<CacheKey, CachedKey> entry : this.cache.entrySet()) {
+            if (entry.getValue().expiresAt <= now) {
+                this.evict(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    public int size() {
+        return this.cache.size();
+    }
+
+    private void makeRoom() {
+        this.evictExpiredKeys();
+        final Iterator<Map.Entry<CacheKey, CachedKey>> iterator = this.cache.entrySet().iterator();
+        while (this.cache.size() >= this.maxSize && iterator.hasNext()) {
+            final Map.Entry<CacheKey, CachedKey> entry = iterator.next();
+            this.evict(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void evict(final CacheKey cacheKey, final CachedKey cachedKey) {
+        if (this.cache.remove(cacheKey, cachedKey)) {
+            cachedKey.erase();
+        }
+    }
+}
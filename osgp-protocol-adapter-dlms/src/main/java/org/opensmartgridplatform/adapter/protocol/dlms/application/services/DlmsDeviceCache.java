@@ -0,0 +1,196 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.application.services;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.apache.commons.lang3.SerializationUtils;
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.entities.DlmsDevice;
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.valueobjects.DlmsDeviceVersion;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+/**
+ * Short lived in-memory read-through cache of DLMS devices, so handling a
+ * request does not need to query the same device, with its security keys,
+ * several times.
+ * <p>
+ * Devices are cached as serialized snapshots, and every lookup gets its own
+ * copy. Callers can change the device they get, like they could change a
+ * device that was just read from the database, without affecting the cache.
+ * Saving a changed copy is checked against the version of the device in the
+ * database, as before.
+ * <p>
+ * Code that saves a device must {@link #invalidate(String) invalidate} it.
+ * A device read before an invalidation is never stored afterwards, and a
+ * snapshot is never replaced by one with an older version. As other instances
+ * of the protocol adapter can save the device as well, every lookup checks the
+ * {@link DlmsDeviceVersion} of the cached device against the database, which
+ * only reads the versions of the device and its current keys.
+ */
+@ManagedResource(objectName = "org.opensmartgridplatform.adapter.protocol.dlms:name=DlmsDeviceCache", description = "In-memory cache of DLMS devices read from the database")
+public class DlmsDeviceCache {
+
+    private static final class CachedDevice {
+        private final DlmsDeviceVersion version;
+        private final byte[] snapshot;
+        private final long expiresAt;
+
+        private CachedDevice(final DlmsDeviceVersion version, final byte[] snapshot, final long expiresAt) {
+            this.version = version;
+            this.snapshot = snapshot;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final Map<String, CachedDevice> cache = new ConcurrentHashMap<>();
+
+    private final long timeToLive;
+    private final int maxSize;
+
+    private final AtomicLong invalidations = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong outdated = new AtomicLong();
+
+    /**
+     * @param timeToLive
+     *            time in milliseconds a device is kept.
+     * @param maxSize
+     *            maximum number of devices kept. A maximum size of {@code 0}
+     *            disables the cache.
+     */
+    public DlmsDeviceCache(final long timeToLive, final int maxSize) {
+        this.timeToLive = timeToLive;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Schedules the removal of expired devices with the given executor.
+     */
+    public void scheduleEviction(final ScheduledExecutorService executorService) {
+        if (this.maxSize > 0) {
+            executorService.scheduleWithFixedDelay(this::evictExpiredDevices, this.timeToLive, this.timeToLive,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Returns a copy of the cached device if it has the version read with the
+     * given version loader, or reads the device with the given loader and
+     * caches it.
+     *
+     * @return the device, or {@code null} if the loader does not find it.
+     */
+    public DlmsDevice findByDeviceIdentification(final String deviceIdentification,
+            final Function<String, DlmsDevice> loader, final Function<String, DlmsDeviceVersion> versionLoader) {
+        if (this.maxSize <= 0) {
+            return loader.apply(deviceIdentification);
+        }
+
+        final CachedDevice cachedDevice = this.cache.get(deviceIdentification);
+        if (cachedDevice != null) {
+            if (cachedDevice.expiresAt > System.currentTimeMillis()) {
+                if (cachedDevice.version.equals(versionLoader.apply(deviceIdentification))) {
+                    this.hits.incrementAndGet();
+                    return SerializationUtils.deserialize(cachedDevice.snapshot);
+                }
+                // Saved by another instance of the protocol adapter.
+                this.outdated.incrementAndGet();
+            }
+            this.cache.remove(deviceIdentification, cachedDevice);
+        }
+
+        this.misses.incrementAndGet();
+        final long invalidationsBeforeLoad = this.invalidations.get();
+        final DlmsDevice device = loader.apply(deviceIdentification);
+        if (device != null) {
+            this.store(deviceIdentification, device, invalidationsBeforeLoad);
+        }
+        return device;
+    }
+
+    private void store(final String deviceIdentification, final DlmsDevice device,
+            final long invalidationsBeforeLoad) {
+        if (this.cache.size() >= this.maxSize) {
+            this.makeRoom();
+        }
+        final CachedDevice loaded = new CachedDevice(DlmsDeviceVersion.of(device),
+                SerializationUtils.serialize(device), System.currentTimeMillis() + this.timeToLive);
+        final CachedDevice stored = this.cache.merge(deviceIdentification, loaded,
+                (current, candidate) -> current.version.getDeviceVersion() > candidate.version.getDeviceVersion()
+                        ? current : candidate);
+
+        /*
+         * An invalidation between reading the device and storing it may have
+         * removed the entry before it was stored, so remove it now.
+         */
+        if (stored == loaded && this.invalidations.get() != invalidationsBeforeLoad) {
+            this.cache.remove(deviceIdentification, loaded);
+        }
+    }
+
+    /**
+     * Removes the cached device, to be called whenever the device is saved.
+     */
+    @ManagedOperation(description = "Removes the cached device with the given identification")
+    public void invalidate(final String deviceIdentification) {
+        this.invalidations.incrementAndGet();
+        this.cache.remove(deviceIdentification);
+    }
+
+    public void evictExpiredDevices() {
+        final long now = System.currentTimeMillis();
+        for (final Map.Entry<String, CachedDevice> entry : this.cache.entrySet()) {
+            if (entry.getValue().expiresAt <= now) {
+                this.cache.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private void makeRoom() {
+        this.evictExpiredDevices();
+        final Iterator<Map.Entry<String, CachedDevice>> iterator = this.cache.entrySet().iterator();
+        while (this.cache.size() >= this.maxSize && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    @ManagedAttribute(description = "Number of devices cached")
+    public int getSize() {
+        return this.cache.size();
+    }
+
+    @ManagedAttribute(description = "Number of lookups answered from the cache")
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    @ManagedAttribute(description = "Number of lookups that read the device from the database")
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    @ManagedAttribute(description = "Number of lookups that found a cached device saved by another instance")
+    public long getOutdated() {
+        return this.outdated.get();
+    }
+
+    @ManagedAttribute(description = "Number of invalidations because a device was saved or could not be connected")
+    public long getInvalidations() {
+        return this.invalidations.get();
+    }
+}
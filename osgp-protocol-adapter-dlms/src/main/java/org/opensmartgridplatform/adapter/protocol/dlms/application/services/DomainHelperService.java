@@ -10,6 +10,8 @@ package org.opensmartgridplatform.adapter.protocol.dlms.application.services;
 import org.opensmartgridplatform.adapter.protocol.dlms.domain.entities.DlmsDevice;
 import org.opensmartgridplatform.adapter.protocol.dlms.domain.repositories.DlmsDeviceRepository;
 import org.opensmartgridplatform.adapter.protocol.dlms.exceptions.ProtocolAdapterException;
+import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.DlmsConnectionMetrics;
+import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.DlmsConnectionMetrics.Phase;
 import org.opensmartgridplatform.adapter.protocol.jasper.infra.ws.JasperWirelessSmsClient;
 import org.opensmartgridplatform.adapter.protocol.jasper.sessionproviders.SessionProvider;
 import org.opensmartgridplatform.adapter.protocol.jasper.sessionproviders.SessionProviderService;
@@ -35,6 +37,15 @@ public class DomainHelperService {
     @Autowired
     private DlmsDeviceRepository dlmsDeviceRepository;
 
+    @Autowired
+    private DlmsDeviceCache dlmsDeviceCache;
+
+    @Autowired
+    private UnknownMbusDeviceCache unknownMbusDeviceCache;
+
+    @Autowired
+    private SessionIpAddressCache sessionIpAddressCache;
+
     @Autowired
     private SessionProviderService sessionProviderService;
 
@@ -47,13 +58,18 @@ public class DomainHelperService {
     @Autowired
     private int jasperGetSessionSleepBetweenRetries;
 
+    @Autowired
+    private DlmsConnectionMetrics dlmsConnectionMetrics;
+
     /**
      * This method can be used to find an mBusDevice. For other devices, use
      * {@link #findDlmsDevice(MessageMetadata)} instead, as this will also set
      * the IP address.
      */
     public DlmsDevice findDlmsDevice(final String deviceIdentification) throws FunctionalException {
-        final DlmsDevice dlmsDevice = this.dlmsDeviceRepository.findByDeviceIdentification(deviceIdentification);
+        final DlmsDevice dlmsDevice = this.dlmsDeviceCache.findByDeviceIdentification(deviceIdentification,
+                this.dlmsDeviceRepository::findByDeviceIdentification,
+                this.dlmsDeviceRepository::findVersionByDeviceIdentification);
         if (dlmsDevice == null) {
             throw new FunctionalException(FunctionalExceptionType.UNKNOWN_DEVICE, COMPONENT_TYPE,
                     new ProtocolAdapterException("Unable to communicate with unknown device: " + deviceIdentification));
@@ -62,11 +78,19 @@ public class DomainHelperService {
     }
 
     public DlmsDevice findDlmsDevice(final MessageMetadata messageMetadata) throws OsgpException {
-        return this.findDlmsDevice(messageMetadata.getDeviceIdentification(), messageMetadata.getIpAddress());
+        return this.findDlmsDevice(messageMetadata.getDeviceIdentification(), messageMetadata.getIpAddress(),
+                messageMetadata.getMessageType());
     }
 
     public DlmsDevice findDlmsDevice(final String deviceIdentification, final String ipAddress) throws OsgpException {
-        final DlmsDevice dlmsDevice = this.dlmsDeviceRepository.findByDeviceIdentification(deviceIdentification);
+        return this.findDlmsDevice(deviceIdentification, ipAddress, null);
+    }
+
+    private DlmsDevice findDlmsDevice(final String deviceIdentification, final String ipAddress,
+            final String messageType) throws OsgpException {
+        final DlmsDevice dlmsDevice = this.dlmsDeviceCache.findByDeviceIdentification(deviceIdentification,
+                this.dlmsDeviceRepository::findByDeviceIdentification,
+                this.dlmsDeviceRepository::findVersionByDeviceIdentification);
         if (dlmsDevice == null) {
             final String errorMessage = String.format("Unable to communicate with unknown device: %s",
                     deviceIdentification);
@@ -78,12 +102,75 @@ public class DomainHelperService {
         if (dlmsDevice.isIpAddressIsStatic()) {
             dlmsDevice.setIpAddress(ipAddress);
         } else {
-            dlmsDevice.setIpAddress(this.getDeviceIpAddressFromSessionProvider(dlmsDevice));
+            final String cachedIpAddress = this.sessionIpAddressCache.retrieve(dlmsDevice.getIccId());
+            if (cachedIpAddress != null) {
+                dlmsDevice.setIpAddress(cachedIpAddress);
+            } else {
+                dlmsDevice.setIpAddress(this.getDeviceIpAddressFromSessionProvider(dlmsDevice, messageType));
+            }
         }
         return dlmsDevice;
     }
 
+    /**
+     * Asks the session provider for the IP address of the device, without
+     * looking at IP addresses cached from earlier lookups or push
+     * notifications. Used when reconnecting, as the device may have started a
+     * new session in the meantime.
+     */
     public String getDeviceIpAddressFromSessionProvider(final DlmsDevice dlmsDevice) throws OsgpException {
+        return this.getDeviceIpAddressFromSessionProvider(dlmsDevice, null);
+    }
+
+    /**
+     * Remembers the IP address a device with a dynamic IP address sent a push
+     * notification from, so a request following the push notification does
+     * not need to ask the session provider for it.
+     * <p>
+     * This looks up the device, which may read it from the database, so it
+     * should not be called on a network I/O thread.
+     */
+    public void storePushedIpAddress(final String deviceIdentification, final String ipAddress) {
+        if (ipAddress == null || !this.sessionIpAddressCache.isEnabled()) {
+            return;
+        }
+        try {
+            final DlmsDevice dlmsDevice = this.findDlmsDevice(deviceIdentification);
+            if (!dlmsDevice.isIpAddressIsStatic()) {
+                this.sessionIpAddressCache.store(dlmsDevice.getIccId(), ipAddress);
+            }
+        } catch (final FunctionalException e) {
+            LOGGER.warn("Not storing IP address {} pushed by unknown device {}", ipAddress, deviceIdentification, e);
+        }
+    }
+
+    /**
+     * Forgets the IP address of a device with a dynamic IP address after
+     * connecting to it failed, as its session may have ended.
+     */
+    public void invalidateSessionIpAddress(final DlmsDevice dlmsDevice) {
+        if (!dlmsDevice.isIpAddressIsStatic()) {
+            this.sessionIpAddressCache.invalidate(dlmsDevice.getIccId(), dlmsDevice.getIpAddress());
+        }
+    }
+
+    private String getDeviceIpAddressFromSessionProvider(final DlmsDevice dlmsDevice, final String messageType)
+            throws OsgpException {
+
+        final long start = System.currentTimeMillis();
+        boolean success = false;
+        try {
+            final String deviceIpAddress = this.lookupDeviceIpAddress(dlmsDevice);
+            this.sessionIpAddressCache.store(dlmsDevice.getIccId(), deviceIpAddress);
+            success = true;
+            return deviceIpAddress;
+        } finally {
+            this.dlmsConnectionMetrics.record(Phase.SESSION_PROVIDER, messageType,
+                    DlmsConnectionMetrics.securityLevel(dlmsDevice), success, System.currentTimeMillis() - start);
+        }
+    }
+
+    private String lookupDeviceIpAddress(final DlmsDevice dlmsDevice) throws OsgpException {
 
         final SessionProvider sessionProvider = this.sessionProviderService
                 .getSessionProvider(dlmsDevice.getCommunicationProvider());
@@ -134,16 +221,16 @@ public class DomainHelperService {
         return deviceIpAddress;
     }
 
-    public DlmsDevice findMbusDevice(final Long mbusIdentificationNumber, final String mbusManufacturerIdentification)
-            throws FunctionalException {
-        final DlmsDevice dlmsDevice = this.dlmsDeviceRepository
-                .findByMbusIdentificationNumberAndMbusManufacturerIdentification(mbusIdentificationNumber,
-                        mbusManufacturerIdentification);
-        if (dlmsDevice == null) {
+    public String findMbusDeviceIdentification(final Long mbusIdentificationNumber,
+            final String mbusManufacturerIdentification) throws FunctionalException {
+        final String deviceIdentification = this.unknownMbusDeviceCache.findDeviceIdentification(
+                mbusIdentificationNumber, mbusManufacturerIdentification,
+                this.dlmsDeviceRepository::findDeviceIdentificationByMbusIdentification);
+        if (deviceIdentification == null) {
             throw new FunctionalException(FunctionalExceptionType.UNKNOWN_DEVICE, COMPONENT_TYPE,
                     new ProtocolAdapterException("Unable to find M-Bus device for M-Bus identification number: "
                             + mbusIdentificationNumber + " and manufacturer ID: " + mbusManufacturerIdentification));
         }
-        return dlmsDevice;
+        return deviceIdentification;
     }
 }
@@ -35,6 +35,12 @@ public class InstallationService {
     @Autowired
     private DlmsDeviceRepository dlmsDeviceRepository;
 
+    @Autowired
+    private DlmsDeviceCache dlmsDeviceCache;
+
+    @Autowired
+    private UnknownMbusDeviceCache unknownMbusDeviceCache;
+
     @Autowired
     private InstallationMapper installationMapper;
 
@@ -55,6 +61,11 @@ public class InstallationService {
         this.reEncryptKeys(smartMeteringDevice);
         final DlmsDevice dlmsDevice = this.installationMapper.map(smartMeteringDevice, DlmsDevice.class);
         this.dlmsDeviceRepository.save(dlmsDevice);
+        this.dlmsDeviceCache.invalidate(dlmsDevice.getDeviceIdentification());
+        if (dlmsDevice.getMbusIdentificationNumber() != null) {
+            this.unknownMbusDeviceCache.invalidate(dlmsDevice.getMbusIdentificationNumber(),
+                    dlmsDevice.getMbusManufacturerIdentification());
+        }
     }
 
     private void reEncryptKeys(final SmartMeteringDeviceDto smartMeteringDevice) throws FunctionalException {
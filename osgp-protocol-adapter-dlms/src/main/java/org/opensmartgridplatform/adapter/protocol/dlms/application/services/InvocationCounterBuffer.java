@@ -0,0 +1,152 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.application.services;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.repositories.DlmsSecurityKeyRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collects invocation counter increments per security key and writes them to
+ * the database with a single atomic update per key.
+ * <p>
+ * With a flush interval of {@code 0} every increment is written immediately.
+ * Otherwise increments are written on the flush interval, or as soon as the
+ * pending increments for a key reach the safety margin.
+ * <p>
+ * Increments that were not yet written are lost if the adapter stops
+ * unexpectedly. To make sure an invocation counter is never used twice, the
+ * safety margin is added to the stored counter the first time a key is used
+ * after starting up.
+ * <p>
+ * Pending increments are kept in the memory of this instance only. Another
+ * instance of the adapter reads the stored counter without them, and would
+ * send invocation counters this instance already used, which the meter
+ * rejects as replays. Buffering must therefore only be enabled when a single
+ * instance of the adapter communicates with the devices.
+ */
+public class InvocationCounterBuffer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(InvocationCounterBuffer.class);
+
+    private final DlmsSecurityKeyRepository securityKeyRepository;
+    private final long flushInterval;
+    private final int safetyMargin;
+
+    private final Map<Long, AtomicInteger> pendingIncrements = new ConcurrentHashMap<>();
+    private final Set<Long> keysUsedSinceStartup = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param flushInterval
+     *            time in milliseconds between writes of buffered increments,
+     *            {@code 0} to write every increment immediately.
+     * @param safetyMargin
+     *            maximum number of increments buffered per key.
+     */
+    public InvocationCounterBuffer(final DlmsSecurityKeyRepository securityKeyRepository, final long flushInterval,
+            final int safetyMargin) {
+        this.securityKeyRepository = securityKeyRepository;
+        this.flushInterval = flushInterval;
+        this.safetyMargin = safetyMargin;
+    }
+
+    public boolean isBuffering() {
+        return this.flushInterval > 0;
+    }
+
+    /**
+     * Schedules writing of buffered increments with the given executor.
+     */
+    public void scheduleFlush(final ScheduledExecutorService executorService) {
+        if (this.isBuffering()) {
+            executorService.scheduleWithFixedDelay(this::flush, this.flushInterval, this.flushInterval,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Determines the invocation counter to continue with for the given key,
+     * taking increments into account that have not yet been written.
+     *
+     * @param securityKeyId
+     *            id of the security key
+     * @return the last invocation counter that may have been used with the
+     *         key.
+     */
+    public int getInvocationCounter(final Long securityKeyId) {
+        if (this.isBuffering() && this.keysUsedSinceStartup.add(securityKeyId)) {
+            LOGGER.info("First use of security key {} since startup, adding safety margin of {} to invocation counter",
+                    securityKeyId, this.safetyMargin);
+            this.securityKeyRepository.incrementInvocationCounter(securityKeyId, this.safetyMargin);
+        }
+
+        /*
+         * Read the pending increments before the stored value, so a flush in
+         * between is counted twice instead of not at all.
+         */
+        final AtomicInteger pending = this.pendingIncrements.get(securityKeyId);
+        final int pendingIncrement = pending == null ? 0 : pending.get();
+        final Integer storedInvocationCounter = this.securityKeyRepository.findInvocationCounterById(securityKeyId);
+        return (storedInvocationCounter == null ? 0 : storedInvocationCounter) + pendingIncrement;
+    }
+
+    /**
+     * Adds the given increment to the invocation counter of the key.
+     */
+    public void increment(final Long securityKeyId, final int increment) {
+        if (increment <= 0) {
+            return;
+        }
+        if (!this.isBuffering()) {
+            this.securityKeyRepository.incrementInvocationCounter(securityKeyId, increment);
+            return;
+        }
+
+        final int pending = this.pendingIncrements.computeIfAbsent(securityKeyId, key -> new AtomicInteger())
+                .addAndGet(increment);
+        if (pending >= this.safetyMargin) {
+            this.flush(securityKeyId);
+        }
+    }
+
+    /**
+     * Writes all buffered increments to the database.
+     */
+    public void flush() {
+        for (final Long securityKeyId : this.pendingIncrements.keySet()) {
+            this.flush(securityKeyId);
+        }
+    }
+
+    private void flush(final Long securityKeyId) {
+        final AtomicInteger pending = this.pendingIncrements.get(securityKeyId);
+        if (pending == null) {
+            return;
+        }
+        synchronized (pending) {
+            final int increment = pending.get();
+            if (increment == 0) {
+                return;
+            }
+            try {
+                this.securityKeyRepository.incrementInvocationCounter(securityKeyId, increment);
+                pending.addAndGet(-increment);
+            } catch (final RuntimeException e) {
+                LOGGER.error("Error writing invocation counter increment of {} for security key {}", increment,
+                        securityKeyId, e);
+            }
+        }
+    }
+}
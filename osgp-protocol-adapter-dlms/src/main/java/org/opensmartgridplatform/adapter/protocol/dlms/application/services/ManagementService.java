@@ -45,6 +45,9 @@ public class ManagementService {
     @Autowired
     private DlmsDeviceRepository dlmsDeviceRepository;
 
+    @Autowired
+    private DlmsDeviceCache dlmsDeviceCache;
+
     // === FIND EVENTS ===
 
     public EventMessageDataResponseDto findEvents(final DlmsConnectionHolder conn, final DlmsDevice device,
@@ -69,6 +72,7 @@ public class ManagementService {
     public void changeInDebugMode(final DlmsDevice device, final boolean debugMode) {
         device.setInDebugMode(debugMode);
         this.dlmsDeviceRepository.save(device);
+        this.dlmsDeviceCache.invalidate(device.getDeviceIdentification());
     }
 
     public void setDeviceCommunicationSettings(final DlmsDevice device,
@@ -76,6 +80,7 @@ public class ManagementService {
 
         this.dlmsDeviceRepository.save(this.setDeviceCommunicationSettings(device,
                 deviceCommunicationSettings.getSetDeviceCommunicationSettingsData()));
+        this.dlmsDeviceCache.invalidate(device.getDeviceIdentification());
     }
 
     private DlmsDevice setDeviceCommunicationSettings(final DlmsDevice device,
@@ -8,6 +8,9 @@
 package org.opensmartgridplatform.adapter.protocol.dlms.application.services;
 
 import java.io.Serializable;
+import java.util.function.Consumer;
+
+import org.joda.time.Period;
 
 import org.opensmartgridplatform.adapter.protocol.dlms.domain.commands.ClearAlarmRegisterCommandExecutor;
 import org.opensmartgridplatform.adapter.protocol.dlms.domain.commands.GetActualMeterReadsCommandExecutor;
@@ -27,6 +30,7 @@ import org.opensmartgridplatform.dto.valueobjects.smartmetering.AlarmRegisterRes
 import org.opensmartgridplatform.dto.valueobjects.smartmetering.ClearAlarmRegisterRequestDto;
 import org.opensmartgridplatform.dto.valueobjects.smartmetering.PeriodicMeterReadsRequestDto;
 import org.opensmartgridplatform.dto.valueobjects.smartmetering.ProfileGenericDataRequestDto;
+import org.opensmartgridplatform.dto.valueobjects.smartmetering.ProfileGenericDataResponseDto;
 import org.opensmartgridplatform.dto.valueobjects.smartmetering.ReadAlarmRegisterRequestDto;
 
 @Service(value = "dlmsDeviceMonitoringService")
@@ -94,6 +98,20 @@ public class MonitoringService {
         return this.getProfileGenericDataCommandExecutor.execute(conn, device, profileGenericDataRequest);
     }
 
+    /**
+     * Requests the profile generic data in chunks of the given interval,
+     * handing each chunk to the consumer as soon as it is read.
+     *
+     * @return the number of chunks handed to the consumer.
+     */
+    public int requestProfileGenericDataInChunks(final DlmsConnectionHolder conn, final DlmsDevice device,
+            final ProfileGenericDataRequestDto profileGenericDataRequest, final Period chunkInterval,
+            final Consumer<ProfileGenericDataResponseDto> chunkConsumer) throws ProtocolAdapterException {
+
+        return this.getProfileGenericDataCommandExecutor.executeInChunks(conn, device, profileGenericDataRequest,
+                chunkInterval, chunkConsumer);
+    }
+
     public void setClearAlarmRegister(final DlmsConnectionHolder conn, final DlmsDevice device,
             final ClearAlarmRegisterRequestDto clearAlarmRegisterRequestDto) throws ProtocolAdapterException {
 
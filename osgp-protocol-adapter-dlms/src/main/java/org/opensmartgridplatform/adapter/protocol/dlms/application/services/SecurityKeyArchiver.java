@@ -0,0 +1,100 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.application.services;
+
+import java.util.Date;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.repositories.DlmsSecurityKeyRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+/**
+ * Periodically moves security keys that expired some time ago to the archive
+ * table, so the security_key table only holds keys that are in use.
+ * <p>
+ * Expired keys are no longer read with their device, but meters that went
+ * through many key changes, or many failed attempts to replace their keys,
+ * would otherwise keep growing the table and its indexes. Keys are archived
+ * in batches, each in its own transaction, to keep the locks short.
+ */
+@ManagedResource(objectName = "org.opensmartgridplatform.adapter.protocol.dlms:name=SecurityKeyArchiver", description = "Archiving of expired security keys")
+public class SecurityKeyArchiver {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SecurityKeyArchiver.class);
+
+    private final DlmsSecurityKeyRepository securityKeyRepository;
+    private final long interval;
+    private final long retention;
+    private final int batchSize;
+
+    private final AtomicLong archivedKeys = new AtomicLong();
+
+    /**
+     * @param interval
+     *            time in milliseconds between runs, {@code 0} to not archive
+     *            keys.
+     * @param retention
+     *            time in milliseconds an expired key is kept with its device
+     *            before it is archived.
+     * @param batchSize
+     *            maximum number of keys archived in one transaction.
+     */
+    public SecurityKeyArchiver(final DlmsSecurityKeyRepository securityKeyRepository, final long interval,
+            final long retention, final int batchSize) {
+        this.securityKeyRepository = securityKeyRepository;
+        this.interval = interval;
+        this.retention = retention;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Schedules the archiving of expired keys with the given executor.
+     */
+    public void scheduleArchiving(final ScheduledExecutorService executorService) {
+        if (this.interval > 0) {
+            executorService.scheduleWithFixedDelay(this::archiveExpiredKeys, this.interval, this.interval,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Archives all keys that expired longer than the retention time ago.
+     *
+     * @return the number of archived keys
+     */
+    @ManagedOperation(description = "Archives all keys that expired longer than the retention time ago")
+    public int archiveExpiredKeys() {
+        final Date expiredBefore = new Date(System.currentTimeMillis() - this.retention);
+        int archived = 0;
+        try {
+            int archivedInBatch;
+            do {
+                archivedInBatch = this.securityKeyRepository.archiveKeysExpiredBefore(expiredBefore, this.batchSize);
+                archived += archivedInBatch;
+                this.archivedKeys.addAndGet(archivedInBatch);
+            } while (archivedInBatch > 0 && archivedInBatch >= this.batchSize);
+        } catch (final RuntimeException e) {
+            LOGGER.error("Error archiving security keys that expired before {}", expiredBefore, e);
+        }
+        if (archived > 0) {
+            LOGGER.info("Archived {} security keys that expired before {}", archived, expiredBefore);
+        }
+        return archived;
+    }
+
+    @ManagedAttribute(description = "Number of expired security keys archived since startup")
+    public long getArchivedKeys() {
+        return this.archivedKeys.get();
+    }
+}
@@ -26,13 +26,13 @@ import org.apache.commons.codec.binary.Hex;
 import org.opensmartgridplatform.adapter.protocol.dlms.domain.entities.DlmsDevice;
 import org.opensmartgridplatform.adapter.protocol.dlms.domain.entities.SecurityKey;
 import org.opensmartgridplatform.adapter.protocol.dlms.domain.entities.SecurityKeyType;
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.factories.DlmsConnectionPool;
 import org.opensmartgridplatform.adapter.protocol.dlms.domain.repositories.DlmsDeviceRepository;
 import org.opensmartgridplatform.adapter.protocol.dlms.exceptions.ProtocolAdapterException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import org.opensmartgridplatform.shared.exceptionhandling.ComponentType;
 import org.opensmartgridplatform.shared.exceptionhandling.EncrypterException;
@@ -47,9 +47,15 @@ import org.opensmartgridplatform.shared.security.RsaEncryptionService;
  * <p>
  * All code using or updating DLMS security keys for devices should use this
  * service to delegate all key handling to.
+ * <p>
+ * Connectors call this service while setting up a connection with a device,
+ * so it does not start transactions of its own. Reading a device, storing
+ * keys and updating invocation counters each use a short transaction of the
+ * repository, and no database connection is held while communicating with a
+ * device. Saved devices are invalidated in the {@link DlmsDeviceCache} after
+ * the transaction has been committed.
  */
 @Service(value = "dlmsSecurityKeyService")
-@Transactional(value = "transactionManager")
 public class SecurityKeyService {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(SecurityKeyService.class);
@@ -59,12 +65,24 @@ public class SecurityKeyService {
     @Autowired
     private DlmsDeviceRepository dlmsDeviceRepository;
 
+    @Autowired
+    private DlmsDeviceCache dlmsDeviceCache;
+
     @Autowired
     private EncryptionService encryptionService;
 
     @Autowired
     private RsaEncryptionService rsaEncryptionService;
 
+    @Autowired
+    private DlmsConnectionPool dlmsConnectionPool;
+
+    @Autowired
+    private DecryptedKeyCache decryptedKeyCache;
+
+    @Autowired
+    private InvocationCounterBuffer invocationCounterBuffer;
+
     /**
      * Re-encrypts the given key with a secret known only inside this protocol
      * adapter.
@@ -208,6 +226,25 @@ public class SecurityKeyService {
         return this.getKey(deviceIdentification, SecurityKeyType.E_METER_AUTHENTICATION);
     }
 
+    /**
+     * Retrieves the DLMS authentication key for the given device, without
+     * looking up the device again.
+     * <p>
+     * <strong>NB:</strong> Only retrieve keys like this at the moment they are
+     * required as part of the communication with a device.
+     *
+     * @param device
+     *            a DLMS device, as it is known when setting up a connection.
+     * @return the key, possibly an empty byte array if the device does not have
+     *         a valid authentication key.
+     * @throws EncrypterException
+     *             if there is an error decoding the key.
+     */
+    public byte[] getDlmsAuthenticationKey(final DlmsDevice device) {
+        LOGGER.info("Retrieving DLMS authentication key for device {}", device.getDeviceIdentification());
+        return this.getKey(device, SecurityKeyType.E_METER_AUTHENTICATION);
+    }
+
     /**
      * Retrieves the DLMS global unicast encryption key for the device with the
      * given {@code deviceIdentification}.
@@ -227,6 +264,25 @@ public class SecurityKeyService {
         return this.getKey(deviceIdentification, SecurityKeyType.E_METER_ENCRYPTION);
     }
 
+    /**
+     * Retrieves the DLMS global unicast encryption key for the given device,
+     * without looking up the device again.
+     * <p>
+     * <strong>NB:</strong> Only retrieve keys like this at the moment they are
+     * required as part of the communication with a device.
+     *
+     * @param device
+     *            a DLMS device, as it is known when setting up a connection.
+     * @return the key, possibly an empty byte array if the device does not have
+     *         a valid global unicast encryption key.
+     * @throws EncrypterException
+     *             if there is an error decoding the key.
+     */
+    public byte[] getDlmsGlobalUnicastEncryptionKey(final DlmsDevice device) {
+        LOGGER.info("Retrieving DLMS global unicast encryption key for device {}", device.getDeviceIdentification());
+        return this.getKey(device, SecurityKeyType.E_METER_ENCRYPTION);
+    }
+
     /**
      * Retrieves the M-Bus Default key for the M-Bus device with the given
      * {@code mbusDeviceIdentification}.
@@ -287,13 +343,21 @@ public class SecurityKeyService {
 
     private byte[] getKey(final String deviceIdentification, final SecurityKeyType securityKeyType) {
 
-        final DlmsDevice dlmsDevice = this.dlmsDeviceRepository.findByDeviceIdentification(deviceIdentification);
+        final DlmsDevice dlmsDevice = this.dlmsDeviceCache.findByDeviceIdentification(deviceIdentification,
+                this.dlmsDeviceRepository::findByDeviceIdentification,
+                this.dlmsDeviceRepository::findVersionByDeviceIdentification);
         if (dlmsDevice == null) {
             LOGGER.warn("No DlmsDevice found for identification {} - returning null as {} key.", deviceIdentification,
                     securityKeyType);
             return new byte[0];
         }
 
+        return this.getKey(dlmsDevice, securityKeyType);
+    }
+
+    private byte[] getKey(final DlmsDevice dlmsDevice, final SecurityKeyType securityKeyType) {
+
+        final String deviceIdentification = dlmsDevice.getDeviceIdentification();
         final SecurityKey securityKey = dlmsDevice.getValidSecurityKey(securityKeyType);
         if (securityKey == null) {
             LOGGER.warn("No valid {} key found with device {} - returning null.", securityKeyType,
@@ -301,9 +365,17 @@ public class SecurityKeyService {
             return new byte[0];
         }
 
+        final byte[] cachedKey = this.decryptedKeyCache.retrieve(deviceIdentification, securityKeyType,
+                securityKey.getId());
+        if (cachedKey != null) {
+            return cachedKey;
+        }
+
         try {
             final byte[] encryptedKey = Hex.decodeHex(securityKey.getKey().toCharArray());
-            return this.encryptionService.decrypt(encryptedKey);
+            final byte[] key = this.encryptionService.decrypt(encryptedKey);
+            this.decryptedKeyCache.store(deviceIdentification, securityKeyType, securityKey.getId(), key);
+            return key;
         } catch (final DecoderException | FunctionalException e) {
             throw new EncrypterException("Error decoding " + securityKey + " for device " + deviceIdentification, e);
         }
@@ -340,9 +412,11 @@ public class SecurityKeyService {
      * @return saved device, with a new key of the given type
      */
     public DlmsDevice storeNewKey(final DlmsDevice device, final byte[] encryptedKey, final SecurityKeyType keyType) {
+        this.dlmsConnectionPool.invalidate(device.getDeviceIdentification());
+        this.decryptedKeyCache.invalidate(device.getDeviceIdentification());
         this.removeEarlierStoredNewKeyIfFound(device, keyType);
         this.addNewKeyToDevice(device, encryptedKey, keyType);
-        return this.dlmsDeviceRepository.save(device);
+        return this.saveAndInvalidate(device);
     }
 
     private void removeEarlierStoredNewKeyIfFound(final DlmsDevice device, final SecurityKeyType keyType) {
@@ -381,6 +455,8 @@ public class SecurityKeyService {
     public DlmsDevice validateNewKey(final DlmsDevice device, final SecurityKeyType keyType)
             throws ProtocolAdapterException {
 
+        this.dlmsConnectionPool.invalidate(device.getDeviceIdentification());
+        this.decryptedKeyCache.invalidate(device.getDeviceIdentification());
         final SecurityKey newKey = this.findNewKey(device, keyType);
         final SecurityKey previousValidKey = device.getValidSecurityKey(keyType);
         return this.updateDeviceWithNewValidKey(device, previousValidKey, newKey);
@@ -404,7 +480,13 @@ public class SecurityKeyService {
             previousValidKey.setValidTo(now);
         }
         newKey.setValidFrom(now);
-        return this.dlmsDeviceRepository.save(device);
+        return this.saveAndInvalidate(device);
+    }
+
+    private DlmsDevice saveAndInvalidate(final DlmsDevice device) {
+        final DlmsDevice savedDevice = this.dlmsDeviceRepository.save(device);
+        this.dlmsDeviceCache.invalidate(device.getDeviceIdentification());
+        return savedDevice;
     }
 
     /**
@@ -487,23 +569,56 @@ public class SecurityKeyService {
     public void incrementInvocationCounter(final String deviceIdentification, final SecurityKeyType keyType,
             final int numberOfSentMessages) {
 
-        final DlmsDevice dlmsDevice = this.dlmsDeviceRepository.findByDeviceIdentification(deviceIdentification);
+        final DlmsDevice dlmsDevice = this.dlmsDeviceCache.findByDeviceIdentification(deviceIdentification,
+                this.dlmsDeviceRepository::findByDeviceIdentification,
+                this.dlmsDeviceRepository::findVersionByDeviceIdentification);
         if (dlmsDevice == null) {
             LOGGER.error("No DlmsDevice found for identification {} - unable to update invocation counter for {} key.",
                     deviceIdentification, keyType);
             return;
         }
 
+        this.incrementInvocationCounter(dlmsDevice, keyType, numberOfSentMessages);
+    }
+
+    /**
+     * Increments the invocation counter for the valid {@link SecurityKey} of
+     * the given {@code keyType} with the given device based on a number of sent
+     * messages with a DLMS client.
+     * <p>
+     * The counter is incremented in the database without saving the device, so
+     * concurrent increments are never lost.
+     */
+    public void incrementInvocationCounter(final DlmsDevice dlmsDevice, final SecurityKeyType keyType,
+            final int numberOfSentMessages) {
+
         final SecurityKey securityKey = dlmsDevice.getValidSecurityKey(keyType);
         if (securityKey == null) {
             LOGGER.error("No valid {} key found with device {} - unable to update invocation counter.", keyType,
-                    deviceIdentification);
+                    dlmsDevice.getDeviceIdentification());
             return;
         }
 
-        final int newInvocationCounter = securityKey.getInvocationCounter() + numberOfSentMessages;
-        securityKey.setInvocationCounter(newInvocationCounter);
+        this.invocationCounterBuffer.increment(securityKey.getId(), numberOfSentMessages);
+    }
+
+    /**
+     * Retrieves the last invocation counter that may have been used with the
+     * valid {@link SecurityKey} of the given {@code keyType} with the given
+     * device, including increments that are not yet stored with the key.
+     *
+     * @return the invocation counter, or {@code 0} if the device does not have
+     *         a valid key of the given type.
+     */
+    public int getInvocationCounter(final DlmsDevice dlmsDevice, final SecurityKeyType keyType) {
+
+        final SecurityKey securityKey = dlmsDevice.getValidSecurityKey(keyType);
+        if (securityKey == null) {
+            LOGGER.warn("No valid {} key found with device {} - using invocation counter 0.", keyType,
+                    dlmsDevice.getDeviceIdentification());
+            return 0;
+        }
 
-        this.dlmsDeviceRepository.save(dlmsDevice);
+        return this.invocationCounterBuffer.getInvocationCounter(securityKey.getId());
     }
 }
@@ -0,0 +1,170 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.application.services;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+/**
+ * Short lived in-memory cache of the IP addresses of devices with a dynamic IP
+ * address, per ICCID of their SIM, so a request to a device that was in
+ * session a short while ago does not need another session provider lookup.
+ * <p>
+ * IP addresses are stored when the session provider returned one, and when a
+ * device sends a push notification. An IP address is removed when connecting
+ * to it fails, as the session may have ended.
+ */
+@ManagedResource(objectName = "org.opensmartgridplatform.adapter.protocol.dlms:name=SessionIpAddressCache", description = "In-memory cache of IP addresses of devices in session")
+public class SessionIpAddressCache {
+
+    private static final class CachedIpAddress {
+        private final String ipAddress;
+        private final long expiresAt;
+
+        private CachedIpAddress(final String ipAddress, final long expiresAt) {
+            this.ipAddress = ipAddress;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final Map<String, CachedIpAddress> cache = new ConcurrentHashMap<>();
+
+    private final long timeToLive;
+    private final int maxSize;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * @param timeToLive
+     *            time in milliseconds an IP address is kept.
+     * @param maxSize
+     *            maximum number of IP addresses kept. A maximum size of
+     *            {@code 0} disables the cache.
+     */
+    public SessionIpAddressCache(final long timeToLive, final int maxSize) {
+        this.timeToLive = timeToLive;
+        this.maxSize = maxSize;
+    }
+
+    public boolean isEnabled() {
+        return this.maxSize > 0;
+    }
+
+    /**
+     * Schedules the removal of expired IP addresses with the given executor.
+     */
+    public void scheduleEviction(final ScheduledExecutorService executorService) {
+        if (this.maxSize > 0) {
+            executorService.scheduleWithFixedDelay(this::evictExpiredIpAddresses, this.timeToLive, this.timeToLive,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @return the cached IP address for the ICCID, or {@code null} if none is
+     *         cached.
+     */
+    public String retrieve(final String iccId) {
+        if (this.maxSize <= 0 || iccId == null) {
+            return null;
+        }
+        final CachedIpAddress cachedIpAddress = this.cache.get(iccId);
+        if (cachedIpAddress == null) {
+            this.misses.incrementAndGet();
+            return null;
+        }
+        if (cachedIpAddress.expiresAt <= System.currentTimeMillis()) {
+            this.cache.remove(iccId, cachedIpAddress);
+            this.misses.incrementAndGet();
+            return null;
+        }
+        this.hits.incrementAndGet();
+        return cachedIpAddress.ipAddress;
+    }
+
+    public void store(final String iccId, final String ipAddress) {
+        if (this.maxSize <= 0 || iccId == null || ipAddress == null || ipAddress.isEmpty()) {
+            return;
+        }
+        if (this.cache.size() >= this.maxSize && !this.cache.containsKey(iccId)) {
+            this.makeRoom();
+        }
+        this.cache.put(iccId, new CachedIpAddress(ipAddress, System.currentTimeMillis() + this.timeToLive));
+    }
+
+    /**
+     * Removes the IP address for the ICCID, if it is still the given IP
+     * address. A newer IP address, for instance from a push notification, is
+     * kept.
+     */
+    public void invalidate(final String iccId, final String ipAddress) {
+        if (iccId == null) {
+            return;
+        }
+        final CachedIpAddress cachedIpAddress = this.cache.get(iccId);
+        if (cachedIpAddress != null && cachedIpAddress.ipAddress.equals(ipAddress)
+                && this.cache.remove(iccId, cachedIpAddress)) {
+            this.invalidations.incrementAndGet();
+        }
+    }
+
+    @ManagedOperation(description = "Removes the IP address cached for the given ICCID")
+    public void invalidate(final String iccId) {
+        if (iccId != null && this.cache.remove(iccId) != null) {
+            this.invalidations.incrementAndGet();
+        }
+    }
+
+    public void evictExpiredIpAddresses() {
+        final long now = System.currentTimeMillis();
+        for (final Map.Entry<String, CachedIpAddress> entry : this.cache.entrySet()) {
+            if (entry.getValue().expiresAt <= now) {
+                this.cache.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private void makeRoom() {
+        this.evictExpiredIpAddresses();
+        final Iterator<Map.Entry<String, CachedIpAddress>> iterator = this.cache.entrySet().iterator();
+        while (this.cache.size() >= this.maxSize && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    @ManagedAttribute(description = "Number of IP addresses cached")
+    public int getSize() {
+        return this.cache.size();
+    }
+
+    @ManagedAttribute(description = "Number of lookups answered from the cache")
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    @ManagedAttribute(description = "Number of lookups that needed the session provider")
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    @ManagedAttribute(description = "Number of IP addresses removed because connecting to them failed")
+    public long getInvalidations() {
+        return this.invalidations.get();
+    }
+}
@@ -0,0 +1,165 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.application.services;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+/**
+ * Short lived in-memory cache of M-Bus identifications for which no device is
+ * known, so a gas meter that is not installed yet, but shows up on a channel
+ * of an E-meter again and again, does not cause a query every time.
+ * <p>
+ * Only lookups that found no device are cached. Adding a device with an M-Bus
+ * identification must {@link #invalidate(Long, String) invalidate} it.
+ */
+@ManagedResource(objectName = "org.opensmartgridplatform.adapter.protocol.dlms:name=UnknownMbusDeviceCache", description = "In-memory cache of M-Bus identifications without a known device")
+public class UnknownMbusDeviceCache {
+
+    private static final class CacheKey {
+        private final Long mbusIdentificationNumber;
+        private final String mbusManufacturerIdentification;
+
+        private CacheKey(final Long mbusIdentificationNumber, final String mbusManufacturerIdentification) {
+            this.mbusIdentificationNumber = mbusIdentificationNumber;
+            this.mbusManufacturerIdentification = mbusManufacturerIdentification;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CacheKey)) {
+                return false;
+            }
+            final CacheKey other = (CacheKey) o;
+            return Objects.equals(this.mbusIdentificationNumber, other.mbusIdentificationNumber)
+                    && Objects.equals(this.mbusManufacturerIdentification, other.mbusManufacturerIdentification);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.mbusIdentificationNumber, this.mbusManufacturerIdentification);
+        }
+    }
+
+    /**
+     * Expiry time of the unknown M-Bus identifications.
+     */
+    private final Map<CacheKey, Long> cache = new ConcurrentHashMap<>();
+
+    private final long timeToLive;
+    private final int maxSize;
+
+    private final AtomicLong invalidations = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+
+    /**
+     * @param timeToLive
+     *            time in milliseconds an unknown M-Bus identification is kept.
+     * @param maxSize
+     *            maximum number of unknown M-Bus identifications kept. A
+     *            maximum size of {@code 0} disables the cache.
+     */
+    public UnknownMbusDeviceCache(final long timeToLive, final int maxSize) {
+        this.timeToLive = timeToLive;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns {@code null} if the M-Bus identification is cached as unknown,
+     * or looks up the device identification with the given loader and caches
+     * the M-Bus identification if no device was found.
+     *
+     * @return the identification of the M-Bus device, or {@code null} if no
+     *         device is known.
+     */
+    public String findDeviceIdentification(final Long mbusIdentificationNumber,
+            final String mbusManufacturerIdentification, final BiFunction<Long, String, String> loader) {
+        if (this.maxSize <= 0) {
+            return loader.apply(mbusIdentificationNumber, mbusManufacturerIdentification);
+        }
+
+        final CacheKey cacheKey = new CacheKey(mbusIdentificationNumber, mbusManufacturerIdentification);
+        final Long expiresAt = this.cache.get(cacheKey);
+        if (expiresAt != null) {
+            if (expiresAt > System.currentTimeMillis()) {
+                this.hits.incrementAndGet();
+                return null;
+            }
+            this.cache.remove(cacheKey, expiresAt);
+        }
+
+        final long invalidationsBeforeLoad = this.invalidations.get();
+        final String deviceIdentification = loader.apply(mbusIdentificationNumber, mbusManufacturerIdentification);
+        if (deviceIdentification == null) {
+            this.storeUnknown(cacheKey, invalidationsBeforeLoad);
+        }
+        return deviceIdentification;
+    }
+
+    private void storeUnknown(final CacheKey cacheKey, final long invalidationsBeforeLoad) {
+        if (this.cache.size() >= this.maxSize) {
+            this.makeRoom();
+        }
+        final Long expiresAt = System.currentTimeMillis() + this.timeToLive;
+        this.cache.put(cacheKey, expiresAt);
+
+        /*
+         * A device may have been added between the lookup and storing the
+         * result, so remove the result again.
+         */
+        if (this.invalidations.get() != invalidationsBeforeLoad) {
+            this.cache.remove(cacheKey, expiresAt);
+        }
+    }
+
+    /**
+     * Removes the M-Bus identification, to be called when a device with this
+     * M-Bus identification is added.
+     */
+    public void invalidate(final Long mbusIdentificationNumber, final String mbusManufacturerIdentification) {
+        this.invalidations.incrementAndGet();
+        this.cache.remove(new CacheKey(mbusIdentificationNumber, mbusManufacturerIdentification));
+    }
+
+    @ManagedOperation(description = "Removes all unknown M-Bus identifications")
+    public void clear() {
+        this.invalidations.incrementAndGet();
+        this.cache.clear();
+    }
+
+    private void makeRoom() {
+        final long now = System.currentTimeMillis();
+        this.cache.values().removeIf(expiresAt -> expiresAt <= now);
+        final Iterator<CacheKey> iterator = this.cache.keySet().iterator();
+        while (this.cache.size() >= this.maxSize && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    @ManagedAttribute(description = "Number of unknown M-Bus identifications cached")
+    public int getSize() {
+        return this.cache.size();
+    }
+
+    @ManagedAttribute(description = "Number of lookups answered from the cache")
+    public long getHits() {
+        return this.hits.get();
+    }
+}
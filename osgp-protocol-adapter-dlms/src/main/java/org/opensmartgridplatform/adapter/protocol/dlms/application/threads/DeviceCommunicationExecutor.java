@@ -0,0 +1,285 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.application.threads;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.factories.NetworkCell;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+/**
+ * Runs blocking device communication on threads of its own.
+ * <p>
+ * When enabled, requests from the JMS queue are handed off to a pool of device
+ * I/O threads, so the number of requests that wait for devices concurrently is
+ * no longer limited by the number of JMS consumers. The number of requests in
+ * progress is limited by a global permit, which is acquired by the JMS consumer
+ * before handing off, so messages stay on the queue when all permits are in
+ * use.
+ * <p>
+ * Independent of whether requests are handed off, the number of concurrent
+ * connection attempts per network cell can be limited, and background tasks
+ * waiting for devices (key recovery, image transfer status checks) run on a
+ * bounded background pool.
+ */
+@ManagedResource(objectName = "org.opensmartgridplatform.adapter.protocol.dlms:name=DeviceCommunicationExecutor", description = "Threads and permits for communication with devices")
+public class DeviceCommunicationExecutor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DeviceCommunicationExecutor.class);
+
+    /**
+     * Permits for connection attempts in a network cell, kept only as long as
+     * connection attempts are waiting or in progress in the cell. The number
+     * of users is only changed while computing the entry in the map.
+     */
+    private static final class CellPermits {
+        private final Semaphore semaphore;
+        private int users;
+
+        private CellPermits(final int permits) {
+            this.semaphore = new Semaphore(permits, true);
+        }
+    }
+
+    private final boolean enabled;
+    private final int maxConcurrentRequests;
+    private final int maxConnectsPerCell;
+    private final int cellPrefixLength;
+    private final long cellPermitTimeout;
+
+    private final Semaphore requestPermits;
+    private final ThreadPoolExecutor requestExecutor;
+    private final ThreadPoolExecutor backgroundExecutor;
+    private final Map<String, CellPermits> cellPermits = new ConcurrentHashMap<>();
+
+    private final AtomicInteger activeRequests = new AtomicInteger();
+    private final AtomicInteger waitingForPermit = new AtomicInteger();
+    private final AtomicLong cellPermitTimeouts = new AtomicLong();
+
+    /**
+     * @param enabled
+     *            whether requests are handed off to device I/O threads.
+     * @param maxConcurrentRequests
+     *            maximum number of requests handed off and in progress at the
+     *            same time.
+     * @param maxConnectsPerCell
+     *            maximum number of concurrent connection attempts to devices
+     *            in the same network cell, 0 for no limit.
+     * @param cellPrefixLength
+     *            length of the network prefix of IPv4 addresses that
+     *            determines the network cell of a device.
+     * @param cellPermitTimeout
+     *            time in milliseconds to wait for a connection attempt in a
+     *            network cell to finish.
+     * @param backgroundPoolSize
+     *            number of threads for background tasks.
+     */
+    public DeviceCommunicationExecutor(final boolean enabled, final int maxConcurrentRequests,
+            final int maxConnectsPerCell, final int cellPrefixLength, final long cellPermitTimeout,
+            final int backgroundPoolSize) {
+        this.enabled = enabled;
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.maxConnectsPerCell = maxConnectsPerCell;
+        this.cellPrefixLength = cellPrefixLength;
+        this.cellPermitTimeout = cellPermitTimeout;
+        this.requestPermits = new Semaphore(maxConcurrentRequests, true);
+        this.requestExecutor = newThreadPool(maxConcurrentRequests, "dlms-device-io-");
+        this.backgroundExecutor = newThreadPool(backgroundPoolSize, "dlms-background-");
+    }
+
+    private static ThreadPoolExecutor newThreadPool(final int poolSize, final String threadNamePrefix) {
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new CustomizableThreadFactory(threadNamePrefix));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /**
+     * Runs the request on a device I/O thread, waiting for a permit if the
+     * maximum number of concurrent requests is reached.
+     *
+     * @throws InterruptedException
+     *             if interrupted while waiting for a permit; the request is
+     *             not run in that case.
+     */
+    public void execute(final Runnable request) throws InterruptedException {
+        this.waitingForPermit.incrementAndGet();
+        try {
+            this.requestPermits.acquire();
+        } finally {
+            this.waitingForPermit.decrementAndGet();
+        }
+        try {
+            this.requestExecutor.execute(() -> {
+                try {
+                    this.runCounted(request);
+                } finally {
+                    this.requestPermits.release();
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            this.requestPermits.release();
+            throw e;
+        }
+    }
+
+    public int getMaxConcurrentRequests() {
+        return this.maxConcurrentRequests;
+    }
+
+    /**
+     * @return an executor that runs tasks on the device I/O threads without
+     *         a permit, for callers that limit the number of requests in
+     *         progress themselves. Each task running is counted as a request
+     *         in progress.
+     */
+    public Executor getRequestExecutor() {
+        return task -> this.requestExecutor.execute(() -> this.runCounted(task));
+    }
+
+    private void runCounted(final Runnable request) {
+        this.activeRequests.incrementAndGet();
+        try {
+            request.run();
+        } finally {
+            this.activeRequests.decrementAndGet();
+        }
+    }
+
+    /**
+     * @return the executor for background tasks that wait for devices.
+     */
+    public ExecutorService getBackgroundExecutor() {
+        return this.backgroundExecutor;
+    }
+
+    /**
+     * Waits until a connection attempt to a device with the IP address is
+     * allowed in its network cell. A successful call has to be followed by a
+     * call to {@link #releaseCellPermit(String)}.
+     *
+     * @return {@code true} if the connection attempt is allowed,
+     *         {@code false} if other connection attempts in the cell did not
+     *         finish in time, or the thread was interrupted while waiting. In
+     *         the latter case the interrupt status of the thread is set.
+     */
+    public boolean acquireCellPermit(final String ipAddress) {
+        final String cell = this.cell(ipAddress);
+        if (cell == null) {
+            return true;
+        }
+        final CellPermits permits = this.cellPermits.compute(cell, (key, existing) -> {
+            final CellPermits result = existing == null ? new CellPermits(this.maxConnectsPerCell) : existing;
+            result.users++;
+            return result;
+        });
+        try {
+            if (permits.semaphore.tryAcquire(this.cellPermitTimeout, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            this.leaveCell(cell);
+            return false;
+        }
+        this.leaveCell(cell);
+        LOGGER.warn("No connection attempt allowed for IP address {}, because of concurrent attempts in its cell",
+                ipAddress);
+        this.cellPermitTimeouts.incrementAndGet();
+        return false;
+    }
+
+    public void releaseCellPermit(final String ipAddress) {
+        final String cell = this.cell(ipAddress);
+        if (cell == null) {
+            return;
+        }
+        final CellPermits permits = this.cellPermits.get(cell);
+        if (permits != null) {
+            permits.semaphore.release();
+            this.leaveCell(cell);
+        }
+    }
+
+    /**
+     * Removes the permits of the cell when no connection attempts are waiting
+     * or in progress in it anymore, so permits are only kept for busy cells.
+     */
+    private void leaveCell(final String cell) {
+        this.cellPermits.computeIfPresent(cell, (key, permits) -> --permits.users == 0 ? null : permits);
+    }
+
+    private String cell(final String ipAddress) {
+        if (this.maxConnectsPerCell <= 0) {
+            return null;
+        }
+        return NetworkCell.of(ipAddress, this.cellPrefixLength);
+    }
+
+    public void shutdown() {
+        this.requestExecutor.shutdown();
+        this.backgroundExecutor.shutdown();
+    }
+
+    @ManagedAttribute(description = "Number of requests in progress on device I/O threads")
+    public int getActiveRequests() {
+        return this.activeRequests.get();
+    }
+
+    @ManagedAttribute(description = "Number of JMS consumers waiting for a permit to hand off a request")
+    public int getWaitingRequests() {
+        return this.waitingForPermit.get();
+    }
+
+    @ManagedAttribute(description = "Number of background tasks waiting for a thread")
+    public int getQueuedBackgroundTasks() {
+        return this.backgroundExecutor.getQueue().size();
+    }
+
+    @ManagedAttribute(description = "Number of connection attempts not allowed because of concurrent attempts in a cell")
+    public long getCellPermitTimeouts() {
+        return this.cellPermitTimeouts.get();
+    }
+
+    @ManagedAttribute(description = "Number of network cells with connection attempts waiting or in progress")
+    public int getNumberOfBusyCells() {
+        return this.cellPermits.size();
+    }
+
+    @ManagedAttribute(description = "Network cells with connection attempts in progress")
+    public String[] getBusyCells() {
+        final List<String> result = new ArrayList<>();
+        for (final Map.Entry<String, CellPermits> entry : this.cellPermits.entrySet()) {
+            final int inProgress = this.maxConnectsPerCell - entry.getValue().semaphore.availablePermits();
+            if (inProgress > 0) {
+                result.add(String.format("%s: %d connection attempts", entry.getKey(), inProgress));
+            }
+        }
+        return result.toArray(new String[result.size()]);
+    }
+}
@@ -0,0 +1,213 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.application.threads;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+/**
+ * Runs requests of different organisations in weighted round robin order, so
+ * a bulk of requests from one organisation does not hold up the requests of
+ * the others.
+ * <p>
+ * Requests are buffered per organisation. Device I/O threads take the next
+ * request from the organisations in turn, taking as many consecutive requests
+ * from an organisation as its weight. Organisations that have the maximum
+ * number of requests in progress are skipped until one of them finishes.
+ * <p>
+ * Submitting a request waits while the buffer is full, so the remaining
+ * requests stay on the queue. Requests are only reordered within the buffer:
+ * a larger buffer makes the scheduling more fair, at the cost of more
+ * requests that have been received but not yet acknowledged.
+ */
+@ManagedResource(objectName = "org.opensmartgridplatform.adapter.protocol.dlms:name=FairRequestScheduler", description = "Weighted fair scheduling of requests per organisation")
+public class FairRequestScheduler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FairRequestScheduler.class);
+
+    private final boolean enabled;
+    private final Map<String, Integer> weights;
+    private final int defaultWeight;
+    private final int maxInProgressPerOrganisation;
+    private final int maxBuffered;
+    private final int maxWorkers;
+    private final Executor executor;
+
+    /**
+     * The requests per organisation, for organisations with buffered requests
+     * or requests in progress. All state is guarded by synchronizing on this
+     * map.
+     */
+    private final Map<String, OrganisationRequests> organisations = new HashMap<>();
+    /**
+     * Organisations with buffered requests, in the order they take turns.
+     */
+    private final Deque<OrganisationRequests> turns = new ArrayDeque<>();
+    private int buffered;
+    private int workers;
+
+    /**
+     * @param enabled
+     *            whether requests are scheduled per organisation.
+     * @param weights
+     *            weight per organisation identification.
+     * @param defaultWeight
+     *            weight of organisations without a configured weight.
+     * @param maxInProgressPerOrganisation
+     *            maximum number of requests of an organisation in progress at
+     *            the same time, 0 for no limit.
+     * @param maxBuffered
+     *            maximum number of requests waiting to be run.
+     * @param maxWorkers
+     *            maximum number of requests in progress at the same time.
+     * @param executor
+     *            the executor on which the requests are run.
+     */
+    public FairRequestScheduler(final boolean enabled, final Map<String, Integer> weights, final int defaultWeight,
+            final int maxInProgressPerOrganisation, final int maxBuffered, final int maxWorkers,
+            final Executor executor) {
+        this.enabled = enabled;
+        this.weights = new HashMap<>(weights);
+        this.defaultWeight = defaultWeight;
+        this.maxInProgressPerOrganisation = maxInProgressPerOrganisation;
+        this.maxBuffered = maxBuffered;
+        this.maxWorkers = maxWorkers;
+        this.executor = executor;
+    }
+
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /**
+     * Buffers the request of the organisation until it is its turn, waiting
+     * while the buffer is full.
+     *
+     * @throws InterruptedException
+     *             if interrupted while waiting for the buffer; the request is
+     *             not run in that case.
+     */
+    public void submit(final String organisationIdentification, final Runnable request) throws InterruptedException {
+        final String key = organisationIdentification == null ? "" : organisationIdentification;
+        synchronized (this.organisations) {
+            while (this.buffered >= this.maxBuffered) {
+                this.organisations.wait();
+            }
+            final OrganisationRequests requests = this.organisations.computeIfAbsent(key,
+                    id -> new OrganisationRequests(id, this.weights.getOrDefault(id, this.defaultWeight)));
+            if (requests.buffered.isEmpty()) {
+                this.turns.add(requests);
+            }
+            requests.buffered.add(request);
+            this.buffered++;
+
+            if (this.workers < this.maxWorkers) {
+                this.workers++;
+                this.executor.execute(this::runRequests);
+            }
+        }
+    }
+
+    /**
+     * Runs requests until none of the buffered requests is allowed to run.
+     */
+    private void runRequests() {
+        OrganisationRequests current = null;
+        while (true) {
+            final Runnable request;
+            synchronized (this.organisations) {
+                if (current != null) {
+                    this.finished(current);
+                }
+                current = this.nextOrganisation();
+                if (current == null) {
+                    this.workers--;
+                    return;
+                }
+                request = current.buffered.poll();
+                current.inProgress++;
+                this.buffered--;
+                this.organisations.notifyAll();
+            }
+            try {
+                request.run();
+            } catch (final RuntimeException e) {
+                LOGGER.error("Exception running request for organisation {}", current.organisationIdentification, e);
+            }
+        }
+    }
+
+    private OrganisationRequests nextOrganisation() {
+        for (int i = 0; i < this.turns.size(); i++) {
+            final OrganisationRequests requests = this.turns.peek();
+            if (this.maxInProgressPerOrganisation <= 0 || requests.inProgress < this.maxInProgressPerOrganisation) {
+                requests.credits--;
+                if (requests.credits <= 0 || requests.buffered.size() == 1) {
+                    requests.credits = requests.weight;
+                    this.turns.poll();
+                    if (requests.buffered.size() > 1) {
+                        this.turns.add(requests);
+                    }
+                }
+                return requests;
+            }
+            requests.credits = requests.weight;
+            this.turns.add(this.turns.poll());
+        }
+        return null;
+    }
+
+    private void finished(final OrganisationRequests requests) {
+        requests.inProgress--;
+        if (requests.inProgress == 0 && requests.buffered.isEmpty()) {
+            this.organisations.remove(requests.organisationIdentification);
+        }
+    }
+
+    @ManagedAttribute(description = "Number of requests waiting to be run")
+    public int getBufferedRequests() {
+        synchronized (this.organisations) {
+            return this.buffered;
+        }
+    }
+
+    @ManagedAttribute(description = "Number of requests waiting and in progress per organisation")
+    public String[] getBacklog() {
+        synchronized (this.organisations) {
+            final Map<String, String> backlog = new TreeMap<>();
+            for (final OrganisationRequests requests : this.organisations.values()) {
+                backlog.put(requests.organisationIdentification, String.format("%s: %d waiting, %d in progress",
+                        requests.organisationIdentification, requests.buffered.size(), requests.inProgress));
+            }
+            return backlog.values().toArray(new String[backlog.size()]);
+        }
+    }
+
+    private static class OrganisationRequests {
+        private final String organisationIdentification;
+        private final int weight;
+        private final Deque<Runnable> buffered = new ArrayDeque<>();
+        private int credits;
+        private int inProgress;
+
+        OrganisationRequests(final String organisationIdentification, final int weight) {
+            this.organisationIdentification = organisationIdentification;
+            this.weight = Math.max(1, weight);
+            this.credits = this.weight;
+        }
+    }
+}
@@ -16,10 +16,13 @@ import org.openmuc.jdlms.DlmsConnection;
 import org.openmuc.jdlms.SecuritySuite;
 import org.openmuc.jdlms.SecuritySuite.EncryptionMechanism;
 import org.openmuc.jdlms.TcpConnectionBuilder;
+import org.opensmartgridplatform.adapter.protocol.dlms.application.services.DecryptedKeyCache;
+import org.opensmartgridplatform.adapter.protocol.dlms.application.services.DlmsDeviceCache;
 import org.opensmartgridplatform.adapter.protocol.dlms.application.services.DomainHelperService;
 import org.opensmartgridplatform.adapter.protocol.dlms.domain.entities.DlmsDevice;
 import org.opensmartgridplatform.adapter.protocol.dlms.domain.entities.SecurityKey;
 import org.opensmartgridplatform.adapter.protocol.dlms.domain.entities.SecurityKeyType;
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.factories.DlmsConnectionPool;
 import org.opensmartgridplatform.adapter.protocol.dlms.domain.repositories.DlmsDeviceRepository;
 import org.opensmartgridplatform.adapter.protocol.dlms.exceptions.ProtocolAdapterException;
 import org.opensmartgridplatform.adapter.protocol.dlms.exceptions.RecoverKeyException;
@@ -39,6 +42,12 @@ public class RecoverKeyProcess implements Runnable {
 
     private final DlmsDeviceRepository dlmsDeviceRepository;
 
+    private final DlmsConnectionPool dlmsConnectionPool;
+
+    private final DecryptedKeyCache decryptedKeyCache;
+
+    private final DlmsDeviceCache dlmsDeviceCache;
+
     private final int responseTimeout;
 
     private final int logicalDeviceAddress;
@@ -52,10 +61,14 @@ public class RecoverKeyProcess implements Runnable {
     private String ipAddress;
 
     public RecoverKeyProcess(final DomainHelperService domainHelperService,
-            final DlmsDeviceRepository dlmsDeviceRepository, final int responseTimeout, final int logicalDeviceAddress,
-            final int clientAccessPoint) {
+            final DlmsDeviceRepository dlmsDeviceRepository, final DlmsConnectionPool dlmsConnectionPool,
+            final DecryptedKeyCache decryptedKeyCache, final DlmsDeviceCache dlmsDeviceCache, final int responseTimeout,
+            final int logicalDeviceAddress, final int clientAccessPoint) {
         this.domainHelperService = domainHelperService;
         this.dlmsDeviceRepository = dlmsDeviceRepository;
+        this.dlmsConnectionPool = dlmsConnectionPool;
+        this.decryptedKeyCache = decryptedKeyCache;
+        this.dlmsDeviceCache = dlmsDeviceCache;
         this.responseTimeout = responseTimeout;
         this.logicalDeviceAddress = logicalDeviceAddress;
         this.clientAccessPoint = clientAccessPoint;
@@ -127,8 +140,11 @@ public class RecoverKeyProcess implements Runnable {
     }
 
     private void promoteInvalidKey() {
+        this.dlmsConnectionPool.invalidate(this.deviceIdentification);
+        this.decryptedKeyCache.invalidate(this.deviceIdentification);
         this.device.promoteInvalidKey();
         this.dlmsDeviceRepository.save(this.device);
+        this.dlmsDeviceCache.invalidate(this.deviceIdentification);
     }
 
     /**
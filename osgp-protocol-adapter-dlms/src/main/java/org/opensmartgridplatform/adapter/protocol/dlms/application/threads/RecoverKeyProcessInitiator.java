@@ -7,6 +7,7 @@
  */
 package org.opensmartgridplatform.adapter.protocol.dlms.application.threads;
 
+import java.util.concurrent.Executor;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
@@ -15,13 +16,24 @@ import javax.inject.Provider;
 public class RecoverKeyProcessInitiator {
     private ScheduledExecutorService executorService;
 
+    private Executor backgroundExecutor;
+
     private Provider<RecoverKeyProcess> recoverKeyProcessProvider;
 
     private int recoverKeyDelay;
 
+    /**
+     * @param executorService
+     *            schedules the key recovery after the delay.
+     * @param backgroundExecutor
+     *            runs the key recovery, so its communication with the device
+     *            does not hold up other scheduled tasks.
+     */
     public RecoverKeyProcessInitiator(final ScheduledExecutorService executorService,
-            final Provider<RecoverKeyProcess> recoverKeyProcessProvider, final int recoverKeyDelay) {
+            final Executor backgroundExecutor, final Provider<RecoverKeyProcess> recoverKeyProcessProvider,
+            final int recoverKeyDelay) {
         this.executorService = executorService;
+        this.backgroundExecutor = backgroundExecutor;
         this.recoverKeyProcessProvider = recoverKeyProcessProvider;
         this.recoverKeyDelay = recoverKeyDelay;
     }
@@ -30,7 +42,8 @@ public class RecoverKeyProcessInitiator {
         final RecoverKeyProcess process = this.recoverKeyProcessProvider.get();
         process.setDeviceIdentification(deviceIdentification);
         process.setIpAddress(ipAddress);
-        this.executorService.schedule(process, this.recoverKeyDelay, TimeUnit.MILLISECONDS);
+        this.executorService.schedule(() -> this.backgroundExecutor.execute(process), this.recoverKeyDelay,
+                TimeUnit.MILLISECONDS);
     }
 
 }
@@ -12,8 +12,10 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 import org.joda.time.DateTime;
+import org.joda.time.Period;
 import org.openmuc.jdlms.AttributeAddress;
 import org.openmuc.jdlms.GetResult;
 import org.openmuc.jdlms.ObisCode;
@@ -92,6 +94,51 @@ public class GetProfileGenericDataCommandExecutor
                 device.isSelectiveAccessSupported(), bufferList);
     }
 
+    /**
+     * Retrieves the profile generic data like
+     * {@link #execute(DlmsConnectionHolder, DlmsDevice, ProfileGenericDataRequestDataDto)},
+     * but split the requested period in sub-periods of the given interval. The
+     * buffer for each sub-period is retrieved with selective access in turn,
+     * and handed to the consumer before the next one is retrieved, so only the
+     * data of one sub-period is held in memory.
+     *
+     * @return the number of chunks handed to the consumer.
+     */
+    public int executeInChunks(final DlmsConnectionHolder conn, final DlmsDevice device,
+            final ProfileGenericDataRequestDataDto profileGenericDataRequestDataDto, final Period chunkInterval,
+            final Consumer<ProfileGenericDataResponseDto> chunkConsumer) throws ProtocolAdapterException {
+
+        final ObisCodeValuesDto obisCodeValues = profileGenericDataRequestDataDto.getObisCode();
+        final ObisCode obisCode = this.makeObisCode(obisCodeValues);
+        final DateTime beginDateTime = new DateTime(profileGenericDataRequestDataDto.getBeginDate());
+        final DateTime endDateTime = new DateTime(profileGenericDataRequestDataDto.getEndDate());
+        final List<CaptureObjectDefinitionDto> selectedValues = profileGenericDataRequestDataDto.getSelectedValues();
+
+        LOGGER.debug("Retrieving profile generic data for {}, from: {}, to: {}, in chunks of {}", obisCodeValues,
+                beginDateTime, endDateTime, chunkInterval);
+
+        final List<GetResult> captureObjects = this.retrieveCaptureObjects(conn, device, obisCode);
+        final List<ScalerUnitInfo> scalerUnitInfos = this.retrieveScalerUnits(conn, device, captureObjects);
+
+        int chunks = 0;
+        DateTime chunkBeginDateTime = beginDateTime;
+        do {
+            conn.checkDeadline("profile generic data chunk");
+            final DateTime nextBeginDateTime = chunkBeginDateTime.plus(chunkInterval);
+            // The range descriptor includes the end, so stop just before the
+            // start of the next chunk.
+            final DateTime chunkEndDateTime = nextBeginDateTime.isBefore(endDateTime)
+                    ? nextBeginDateTime.minusSeconds(1) : endDateTime;
+            final List<GetResult> bufferList = this.retrieveBuffer(conn, device, obisCode, chunkBeginDateTime,
+                    chunkEndDateTime, selectedValues);
+            chunkConsumer.accept(this.processData(obisCodeValues, captureObjects, scalerUnitInfos, selectedValues,
+                    device.isSelectiveAccessSupported(), bufferList));
+            chunks++;
+            chunkBeginDateTime = nextBeginDateTime;
+        } while (chunkBeginDateTime.isBefore(endDateTime));
+        return chunks;
+    }
+
     private List<GetResult> retrieveCaptureObjects(final DlmsConnectionHolder conn, final DlmsDevice device,
             final ObisCode obisCode) throws ProtocolAdapterException {
         final AttributeAddress captureObjectsAttributeAddress = new AttributeAddress(
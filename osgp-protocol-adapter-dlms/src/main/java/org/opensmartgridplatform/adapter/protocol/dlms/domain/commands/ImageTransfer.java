@@ -16,7 +16,6 @@ import java.util.Locale;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
 import org.openmuc.jdlms.MethodResultCode;
@@ -51,23 +50,29 @@ class ImageTransfer {
 
     private static final int CLASS_ID = 18;
     private static final ObisCode OBIS_CODE = new ObisCode("0.0.44.0.0.255");
-    private static final ExecutorService EXECUTOR_SERVICE = Executors.newSingleThreadExecutor();
 
     private final ImageTranferProperties properties;
     private final String imageIdentifier;
     private final byte[] imageData;
     private final DlmsConnectionHolder connector;
+    private final ExecutorService executorService;
     private final CosemObjectAccessor imageTransferCosem;
     private int imageBlockSize;
     private boolean imageBlockSizeReadFlag;
 
+    /**
+     * @param executorService
+     *            runs the checks of the image transfer status while waiting
+     *            for the device.
+     */
     public ImageTransfer(final DlmsConnectionHolder connector, final ImageTranferProperties properties,
-            final String imageIdentifier, final byte[] imageData) {
+            final String imageIdentifier, final byte[] imageData, final ExecutorService executorService) {
         this.properties = properties;
         this.imageIdentifier = imageIdentifier;
         this.imageData = imageData;
         this.imageBlockSizeReadFlag = false;
         this.connector = connector;
+        this.executorService = executorService;
         this.imageTransferCosem = new CosemObjectAccessor(connector, OBIS_CODE, CLASS_ID);
     }
 
@@ -295,7 +300,7 @@ class ImageTransfer {
     }
 
     private void waitForImageInitiation() throws OsgpException {
-        final Future<Integer> newStatus = EXECUTOR_SERVICE.submit(new ImageTransferStatusChangeWatcher(
+        final Future<Integer> newStatus = this.executorService.submit(new ImageTransferStatusChangeWatcher(
                 ImageTransferStatus.NOT_INITIATED, this.properties.getInitiationStatusCheckInterval(),
                 this.properties.getInitiationStatusCheckTimeout()));
 
@@ -312,7 +317,7 @@ class ImageTransfer {
     }
 
     private void waitForImageVerification() throws OsgpException {
-        final Future<Integer> newStatus = EXECUTOR_SERVICE.submit(new ImageTransferStatusChangeWatcher(
+        final Future<Integer> newStatus = this.executorService.submit(new ImageTransferStatusChangeWatcher(
                 ImageTransferStatus.VERIFICATION_INITIATED, this.properties.getVerificationStatusCheckInterval(),
                 this.properties.getVerificationStatusCheckTimeout()));
 
@@ -329,7 +334,7 @@ class ImageTransfer {
     }
 
     private void waitForImageActivation() throws OsgpException {
-        final Future<Integer> newStatus = EXECUTOR_SERVICE.submit(new ImageTransferStatusChangeWatcher(
+        final Future<Integer> newStatus = this.executorService.submit(new ImageTransferStatusChangeWatcher(
                 ImageTransferStatus.ACTIVATION_INITIATED, this.properties.getActivationStatusCheckInterval(),
                 this.properties.getActivationStatusCheckTimeout(), true));
 
@@ -7,6 +7,7 @@
  */
 package org.opensmartgridplatform.adapter.protocol.dlms.domain.commands;
 
+import org.opensmartgridplatform.adapter.protocol.dlms.application.services.UnknownMbusDeviceCache;
 import org.opensmartgridplatform.adapter.protocol.dlms.domain.entities.DlmsDevice;
 import org.opensmartgridplatform.adapter.protocol.dlms.domain.factories.DlmsConnectionHolder;
 import org.opensmartgridplatform.adapter.protocol.dlms.domain.repositories.DlmsDeviceRepository;
@@ -32,6 +33,9 @@ public class SetDeviceLifecycleStatusByChannelCommandExecutor extends
     @Autowired
     private DlmsDeviceRepository dlmsDeviceRepository;
 
+    @Autowired
+    private UnknownMbusDeviceCache unknownMbusDeviceCache;
+
     public SetDeviceLifecycleStatusByChannelCommandExecutor() {
         super(SetDeviceLifecycleStatusByChannelRequestDataDto.class);
     }
@@ -52,17 +56,17 @@ public class SetDeviceLifecycleStatusByChannelCommandExecutor extends
                     ComponentType.PROTOCOL_DLMS);
         }
 
-        final DlmsDevice mbusDevice = this.dlmsDeviceRepository
-                .findByMbusIdentificationNumberAndMbusManufacturerIdentification(
-                        Long.valueOf(channelElementValues.getIdentificationNumber()),
-                        channelElementValues.getManufacturerIdentification());
+        final String mbusDeviceIdentification = this.unknownMbusDeviceCache.findDeviceIdentification(
+                Long.valueOf(channelElementValues.getIdentificationNumber()),
+                channelElementValues.getManufacturerIdentification(),
+                this.dlmsDeviceRepository::findDeviceIdentificationByMbusIdentification);
 
-        if (mbusDevice == null) {
+        if (mbusDeviceIdentification == null) {
             throw new FunctionalException(FunctionalExceptionType.NO_MATCHING_MBUS_DEVICE_FOUND,
                     ComponentType.PROTOCOL_DLMS);
         }
 
         return new SetDeviceLifecycleStatusByChannelResponseDto(gatewayDevice.getDeviceIdentification(),
-                request.getChannel(), mbusDevice.getDeviceIdentification(), request.getDeviceLifecycleStatus());
+                request.getChannel(), mbusDeviceIdentification, request.getDeviceLifecycleStatus());
     }
 }
\ No newline at end of file
@@ -11,6 +11,7 @@ import java.util.List;
 
 import javax.annotation.PostConstruct;
 
+import org.opensmartgridplatform.adapter.protocol.dlms.application.threads.DeviceCommunicationExecutor;
 import org.opensmartgridplatform.adapter.protocol.dlms.domain.entities.DlmsDevice;
 import org.opensmartgridplatform.adapter.protocol.dlms.domain.factories.DlmsConnectionHolder;
 import org.opensmartgridplatform.adapter.protocol.dlms.domain.repositories.FirmwareFileCachingRepository;
@@ -44,6 +45,9 @@ public class UpdateFirmwareCommandExecutor extends AbstractCommandExecutor<Strin
     @Autowired
     private GetFirmwareVersionsCommandExecutor getFirmwareVersionsCommandExecutor;
 
+    @Autowired
+    private DeviceCommunicationExecutor deviceCommunicationExecutor;
+
     @Value("${command.updatefirmware.activationstatuscheck.interval}")
     private int activationStatusCheckInterval;
 
@@ -86,7 +90,7 @@ public class UpdateFirmwareCommandExecutor extends AbstractCommandExecutor<Strin
     public UpdateFirmwareResponseDto execute(final DlmsConnectionHolder conn, final DlmsDevice device,
             final String firmwareIdentification) throws OsgpException {
         final ImageTransfer transfer = new ImageTransfer(conn, this.imageTransferProperties, firmwareIdentification,
-                this.getImageData(firmwareIdentification));
+                this.getImageData(firmwareIdentification), this.deviceCommunicationExecutor.getBackgroundExecutor());
 
         try {
             this.prepare(transfer);
@@ -20,6 +20,7 @@ import javax.persistence.OneToMany;
 import javax.persistence.Transient;
 
 import org.hibernate.annotations.Cascade;
+import org.hibernate.annotations.Where;
 
 import org.opensmartgridplatform.shared.domain.entities.AbstractEntity;
 
@@ -57,8 +58,14 @@ public class DlmsDevice extends AbstractEntity {
     @Column
     private boolean hls5Active;
 
+    /**
+     * The keys that have not expired: the valid keys and new keys that are not
+     * valid yet. Expired keys are not read with the device, and are moved to
+     * the archive after a while.
+     */
     @OneToMany(mappedBy = "dlmsDevice", fetch = FetchType.EAGER, cascade = { CascadeType.ALL })
     @Cascade(org.hibernate.annotations.CascadeType.DELETE_ORPHAN)
+    @Where(clause = "valid_to IS NULL")
     private final List<SecurityKey> securityKeys = new ArrayList<>();
 
     @Column
@@ -345,9 +352,10 @@ public class DlmsDevice extends AbstractEntity {
      * @return Security key, or null if no valid key is found.
      */
     public SecurityKey getValidSecurityKey(final SecurityKeyType securityKeyType) {
+        final Date now = new Date();
         for (final SecurityKey securityKey : this.securityKeys) {
-            if (securityKey.getSecurityKeyType().equals(securityKeyType) && this.securityKeyActivated(securityKey)
-                    && !this.securityKeyExpired(securityKey)) {
+            if (securityKey.getSecurityKeyType().equals(securityKeyType) && this.securityKeyActivated(securityKey, now)
+                    && !this.securityKeyExpired(securityKey, now)) {
                 return securityKey;
             }
         }
@@ -385,12 +393,11 @@ public class DlmsDevice extends AbstractEntity {
      *
      * @return activated
      */
-    private boolean securityKeyActivated(final SecurityKey securityKey) {
+    private boolean securityKeyActivated(final SecurityKey securityKey, final Date now) {
         if (securityKey.getValidFrom() == null) {
             return false;
         }
 
-        final Date now = new Date();
         return securityKey.getValidFrom().before(now) || securityKey.getValidFrom().equals(now);
     }
 
@@ -399,8 +406,7 @@ public class DlmsDevice extends AbstractEntity {
      *
      * @return expired.
      */
-    private boolean securityKeyExpired(final SecurityKey securityKey) {
-        final Date now = new Date();
+    private boolean securityKeyExpired(final SecurityKey securityKey, final Date now) {
         final Date validTo = securityKey.getValidTo();
         return validTo != null && validTo.before(now);
     }
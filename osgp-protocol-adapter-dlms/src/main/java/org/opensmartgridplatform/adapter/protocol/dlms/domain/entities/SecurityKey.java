@@ -46,7 +46,12 @@ public class SecurityKey extends AbstractEntity {
     @Column(name = "security_key")
     private String key;
 
-    @Column(nullable = true)
+    /**
+     * The invocation counter is only updated with
+     * {@code DlmsSecurityKeyRepository.incrementInvocationCounter}, so saving
+     * a device that was loaded earlier never sets it back to an older value.
+     */
+    @Column(nullable = true, updatable = false)
     private Integer invocationCounter;
 
     public SecurityKey() {
@@ -0,0 +1,224 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.domain.factories;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.opensmartgridplatform.adapter.protocol.dlms.exceptions.ConcurrencyLimitException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+/**
+ * Limits the number of connections with devices in use at the same time, and
+ * adapts the limit to how well connecting to devices goes (additive increase,
+ * multiplicative decrease).
+ * <p>
+ * Every connection that is set up within the latency threshold raises the
+ * limit by one over the current limit, so the limit grows by about one per
+ * round of connections while the network is healthy. Connections that take
+ * longer do not raise the limit. Every failed connection attempt multiplies
+ * the limit by the backoff ratio, so a burst of failures during an outage
+ * quickly brings the limit down and keeps threads from waiting in connect
+ * timeouts.
+ * <p>
+ * A request that cannot get a permit within the acquire timeout fails with a
+ * {@link ConcurrencyLimitException}, so it is retried later.
+ */
+@ManagedResource(objectName = "org.opensmartgridplatform.adapter.protocol.dlms:name=AdaptiveConcurrencyLimiter", description = "Adaptive limit on the number of connections with devices in use")
+public class AdaptiveConcurrencyLimiter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AdaptiveConcurrencyLimiter.class);
+
+    /**
+     * Permit for one connection with a device, held until {@link #release()}
+     * is called. Releasing more than once has no effect.
+     */
+    public final class Permit {
+        private final AtomicBoolean held = new AtomicBoolean(true);
+
+        private Permit() {
+        }
+
+        /**
+         * Records a connection to the device that was set up in the given
+         * time.
+         */
+        public void recordSuccess(final long latency) {
+            AdaptiveConcurrencyLimiter.this.onSuccess(latency);
+        }
+
+        /**
+         * Records a failed connection attempt to the device.
+         */
+        public void recordFailure() {
+            AdaptiveConcurrencyLimiter.this.onFailure();
+        }
+
+        public void release() {
+            if (this.held.compareAndSet(true, false)) {
+                AdaptiveConcurrencyLimiter.this.releasePermit();
+            }
+        }
+    }
+
+    private final boolean enabled;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final long latencyThreshold;
+    private final long acquireTimeout;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition permitReleased = this.lock.newCondition();
+    /**
+     * Guarded by {@link #lock}.
+     */
+    private double limit;
+    private int inUse;
+
+    private final AtomicLong rejections = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    /**
+     * @param enabled
+     *            whether connections are limited.
+     * @param initialLimit
+     *            the limit to start with.
+     * @param minLimit
+     *            the lowest limit.
+     * @param maxLimit
+     *            the highest limit.
+     * @param backoffRatio
+     *            factor the limit is multiplied with on a failed connection
+     *            attempt.
+     * @param latencyThreshold
+     *            time in milliseconds within which a connection has to be set
+     *            up to raise the limit.
+     * @param acquireTimeout
+     *            time in milliseconds to wait for a permit.
+     */
+    public AdaptiveConcurrencyLimiter(final boolean enabled, final int initialLimit, final int minLimit,
+            final int maxLimit, final double backoffRatio, final long latencyThreshold, final long acquireTimeout) {
+        this.enabled = enabled;
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.backoffRatio = backoffRatio;
+        this.latencyThreshold = latencyThreshold;
+        this.acquireTimeout = acquireTimeout;
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+    }
+
+    /**
+     * Waits for a permit to use a connection with a device.
+     *
+     * @return the permit, or {@code null} if the limiter is disabled.
+     * @throws ConcurrencyLimitException
+     *             if no permit became available within the acquire timeout.
+     */
+    public Permit acquire(final String deviceIdentification) {
+        if (!this.enabled) {
+            return null;
+        }
+        long remaining = TimeUnit.MILLISECONDS.toNanos(this.acquireTimeout);
+        this.lock.lock();
+        try {
+            while (this.inUse >= (int) this.limit) {
+                if (remaining <= 0) {
+                    this.rejections.incrementAndGet();
+                    LOGGER.warn("No connection to device {} allowed, {} connections in use with limit {}",
+                            deviceIdentification, this.inUse, (int) this.limit);
+                    throw new ConcurrencyLimitException(String.format(
+                            "Concurrency limit of %d connections with devices reached", (int) this.limit));
+                }
+                remaining = this.permitReleased.awaitNanos(remaining);
+            }
+            this.inUse++;
+            return new Permit();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConcurrencyLimitException("Interrupted while waiting for a connection permit");
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private void releasePermit() {
+        this.lock.lock();
+        try {
+            this.inUse--;
+            this.permitReleased.signal();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private void onSuccess(final long latency) {
+        if (latency > this.latencyThreshold) {
+            return;
+        }
+        this.lock.lock();
+        try {
+            // Only grow the limit when it is actually used.
+            if (this.inUse * 2 >= this.limit) {
+                final int before = (int) this.limit;
+                this.limit = Math.min(this.maxLimit, this.limit + 1.0 / this.limit);
+                if ((int) this.limit > before) {
+                    this.permitReleased.signal();
+                }
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private void onFailure() {
+        this.failures.incrementAndGet();
+        this.lock.lock();
+        try {
+            this.limit = Math.max(this.minLimit, this.limit * this.backoffRatio);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @ManagedAttribute(description = "Current limit on the number of connections with devices in use")
+    public int getLimit() {
+        this.lock.lock();
+        try {
+            return (int) this.limit;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @ManagedAttribute(description = "Number of connections with devices in use")
+    public int getInUse() {
+        this.lock.lock();
+        try {
+            return this.inUse;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @ManagedAttribute(description = "Number of requests rejected because the limit was reached")
+    public long getRejections() {
+        return this.rejections.get();
+    }
+
+    @ManagedAttribute(description = "Number of failed connection attempts that lowered the limit")
+    public long getFailures() {
+        return this.failures.get();
+    }
+}
@@ -0,0 +1,313 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.domain.factories;
+
+import java.io.EOFException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.opensmartgridplatform.adapter.protocol.dlms.exceptions.CircuitOpenException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+/**
+ * Stops connection attempts to devices that keep failing to connect, so
+ * requests for them are retried later instead of each waiting for a timeout.
+ * <p>
+ * Failures are counted per device and per network cell: the IPv4 network of
+ * the IP address of the device with the configured prefix length. After the
+ * configured number of consecutive failures the circuit opens, and connection
+ * attempts fail immediately with a {@link CircuitOpenException}. When the
+ * circuit has been open for the configured duration, a single connection
+ * attempt is let through as a probe. The circuit closes if the probe succeeds,
+ * and opens again if it fails.
+ * <p>
+ * Only failures to reach the device over the network are counted, not
+ * failures to set up the association with a device that was reached, like
+ * authentication failures with wrong keys.
+ * <p>
+ * Circuits of devices and cells without connection failures for the
+ * configured expiry time are forgotten, and at most the configured number of
+ * circuits is kept. Failures of devices and cells without a circuit are not
+ * counted while that number is reached.
+ */
+@ManagedResource(objectName = "org.opensmartgridplatform.adapter.protocol.dlms:name=ConnectionCircuitBreaker", description = "Circuit breakers for connections per device and per network cell")
+public class ConnectionCircuitBreaker {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConnectionCircuitBreaker.class);
+
+    private enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private static final class Circuit {
+        private final String key;
+        private State state = State.CLOSED;
+        private int consecutiveFailures;
+        private long openedAt;
+        private long lastFailureAt;
+
+        private Circuit(final String key) {
+            this.key = key;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return String.format("%s: state=%s, consecutiveFailures=%d", this.key, this.state,
+                    this.consecutiveFailures);
+        }
+    }
+
+    private final boolean enabled;
+    private final int deviceFailureThreshold;
+    private final int cellFailureThreshold;
+    private final long openDuration;
+    private final int cellPrefixLength;
+    private final int maxCircuits;
+    private final long expiry;
+
+    private final Map<String, Circuit> circuits = new ConcurrentHashMap<>();
+    private final Object probeLock = new Object();
+
+    private final AtomicLong rejectedConnections = new AtomicLong();
+    private final AtomicLong openedCircuits = new AtomicLong();
+
+    /**
+     * @param deviceFailureThreshold
+     *            number of consecutive failures for a device that opens its
+     *            circuit.
+     * @param cellFailureThreshold
+     *            number of consecutive failures for devices in the same
+     *            network cell that opens the circuit of the cell.
+     * @param openDuration
+     *            time in milliseconds before a probe is let through an open
+     *            circuit.
+     * @param cellPrefixLength
+     *            length of the network prefix of IPv4 addresses that
+     *            determines the network cell of a device.
+     * @param maxCircuits
+     *            maximum number of devices and network cells for which
+     *            failures are kept.
+     * @param expiry
+     *            time in milliseconds after the last failure before the
+     *            failures of a device or network cell are forgotten.
+     */
+    public ConnectionCircuitBreaker(final boolean enabled, final int deviceFailureThreshold,
+            final int cellFailureThreshold, final long openDuration, final int cellPrefixLength,
+            final int maxCircuits, final long expiry) {
+        this.enabled = enabled;
+        this.deviceFailureThreshold = deviceFailureThreshold;
+        this.cellFailureThreshold = cellFailureThreshold;
+        this.openDuration = openDuration;
+        this.cellPrefixLength = cellPrefixLength;
+        this.maxCircuits = maxCircuits;
+        this.expiry = expiry;
+    }
+
+    /**
+     * Schedules the removal of expired circuits with the given executor.
+     */
+    public void scheduleEviction(final ScheduledExecutorService executorService) {
+        if (this.enabled) {
+            executorService.scheduleWithFixedDelay(this::evictExpiredCircuits, this.expiry, this.expiry,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Checks if a connection attempt to the device is allowed. If it is, the
+     * outcome has to be reported with {@link #recordSuccess(String, String)}
+     * or {@link #recordFailure(String, String)}.
+     *
+     * @throws CircuitOpenException
+     *             if the circuit for the device or its network cell is open.
+     */
+    public void checkConnectionAllowed(final String deviceIdentification, final String ipAddress) {
+        if (!this.enabled) {
+            return;
+        }
+        final Circuit deviceCircuit = this.circuits.get(deviceKey(deviceIdentification));
+        final String cellKey = this.cellKey(ipAddress);
+        final Circuit cellCircuit = cellKey == null ? null : this.circuits.get(cellKey);
+        if (!this.allows(deviceCircuit, cellCircuit)) {
+            this.rejectedConnections.incrementAndGet();
+            throw new CircuitOpenException(String.format(
+                    "Not connecting to device %s with IP address %s, because earlier connection attempts failed",
+                    deviceIdentification, ipAddress));
+        }
+    }
+
+    public void recordSuccess(final String deviceIdentification, final String ipAddress) {
+        if (!this.enabled) {
+            return;
+        }
+        this.circuits.remove(deviceKey(deviceIdentification));
+        final String cellKey = this.cellKey(ipAddress);
+        if (cellKey != null) {
+            this.circuits.remove(cellKey);
+        }
+    }
+
+    public void recordFailure(final String deviceIdentification, final String ipAddress) {
+        if (!this.enabled) {
+            return;
+        }
+        this.failed(deviceKey(deviceIdentification), this.deviceFailureThreshold);
+        final String cellKey = this.cellKey(ipAddress);
+        if (cellKey != null) {
+            this.failed(cellKey, this.cellFailureThreshold);
+        }
+    }
+
+    /**
+     * @return whether the failure to connect is a failure to reach the device
+     *         over the network, as opposed to a failure to set up the
+     *         association once connected.
+     */
+    public static boolean isTransportFailure(final Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SocketException || cause instanceof SocketTimeoutException
+                    || cause instanceof UnknownHostException || cause instanceof EOFException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Lets a connection attempt through if neither circuit rejects it. Only
+     * then open circuits are made half open, so a probe rejected by the other
+     * circuit does not postpone the next probe.
+     */
+    private boolean allows(final Circuit deviceCircuit, final Circuit cellCircuit) {
+        if (deviceCircuit == null && cellCircuit == null) {
+            return true;
+        }
+        final long now = System.currentTimeMillis();
+        synchronized (this.probeLock) {
+            if (!this.allows(deviceCircuit, now) || !this.allows(cellCircuit, now)) {
+                return false;
+            }
+            this.letProbeThrough(deviceCircuit, now);
+            this.letProbeThrough(cellCircuit, now);
+            return true;
+        }
+    }
+
+    private boolean allows(final Circuit circuit, final long now) {
+        if (circuit == null) {
+            return true;
+        }
+        synchronized (circuit) {
+            /*
+             * When open, or half open with a probe that did not report back in
+             * time, let a (new) probe through after the open duration.
+             */
+            return circuit.state == State.CLOSED || now - circuit.openedAt >= this.openDuration;
+        }
+    }
+
+    private void letProbeThrough(final Circuit circuit, final long now) {
+        if (circuit == null) {
+            return;
+        }
+        synchronized (circuit) {
+            if (circuit.state != State.CLOSED) {
+                LOGGER.info("Letting a probe through the open circuit for {}", circuit.key);
+                circuit.state = State.HALF_OPEN;
+                circuit.openedAt = now;
+            }
+        }
+    }
+
+    private void failed(final String key, final int threshold) {
+        Circuit circuit = this.circuits.get(key);
+        if (circuit == null) {
+            if (this.circuits.size() >= this.maxCircuits) {
+                this.evictExpiredCircuits();
+            }
+            if (this.circuits.size() >= this.maxCircuits) {
+                LOGGER.warn("Not counting connection failure for {}, maximum of {} circuits reached", key,
+                        this.maxCircuits);
+                return;
+            }
+            circuit = this.circuits.computeIfAbsent(key, Circuit::new);
+        }
+        synchronized (circuit) {
+            circuit.consecutiveFailures++;
+            circuit.lastFailureAt = System.currentTimeMillis();
+            if (circuit.state == State.HALF_OPEN
+                    || (circuit.state == State.CLOSED && circuit.consecutiveFailures >= threshold)) {
+                LOGGER.warn("Opening circuit for {} after {} consecutive connection failures", key,
+                        circuit.consecutiveFailures);
+                circuit.state = State.OPEN;
+                circuit.openedAt = System.currentTimeMillis();
+                this.openedCircuits.incrementAndGet();
+            }
+        }
+    }
+
+    public void evictExpiredCircuits() {
+        final long expiredBefore = System.currentTimeMillis() - this.expiry;
+        for (final Circuit circuit : this.circuits.values()) {
+            final boolean expired;
+            synchronized (circuit) {
+                expired = circuit.lastFailureAt <= expiredBefore;
+            }
+            if (expired) {
+                this.circuits.remove(circuit.key, circuit);
+            }
+        }
+    }
+
+    private static String deviceKey(final String deviceIdentification) {
+        return "device " + deviceIdentification;
+    }
+
+    private String cellKey(final String ipAddress) {
+        final String cell = NetworkCell.of(ipAddress, this.cellPrefixLength);
+        return cell == null ? null : "cell " + cell;
+    }
+
+    @ManagedAttribute(description = "Number of connection attempts rejected because of an open circuit")
+    public long getRejectedConnections() {
+        return this.rejectedConnections.get();
+    }
+
+    @ManagedAttribute(description = "Number of times a circuit was opened")
+    public long getOpenedCircuits() {
+        return this.openedCircuits.get();
+    }
+
+    @ManagedAttribute(description = "Devices and network cells with connection failures")
+    public String[] getCircuits() {
+        final List<String> result = new ArrayList<>();
+        for (final Circuit circuit : this.circuits.values()) {
+            result.add(circuit.toString());
+        }
+        return result.toArray(new String[result.size()]);
+    }
+
+    @ManagedOperation(description = "Closes all circuits")
+    public void reset() {
+        this.circuits.clear();
+    }
+}
@@ -0,0 +1,219 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.domain.factories;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.opensmartgridplatform.adapter.protocol.dlms.exceptions.DeviceLockException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+/**
+ * Makes sure only one connection per device is set up at the same time.
+ * <p>
+ * Meters accept a single association, so a second request for a device that is
+ * busy waits for the first to finish instead of failing to connect. Locks only
+ * exist for devices that are in use, and are not shared between devices.
+ * <p>
+ * Wait times and contention are exposed over JMX.
+ */
+@ManagedResource(objectName = "org.opensmartgridplatform.adapter.protocol.dlms:name=DeviceLockTable", description = "Per device connection locks")
+public class DeviceLockTable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DeviceLockTable.class);
+
+    /**
+     * Lock held for a device until {@link #release()} is called. Releasing
+     * more than once has no effect.
+     */
+    public final class DeviceLock {
+        private final LockEntry entry;
+        private final AtomicBoolean held = new AtomicBoolean(true);
+
+        private DeviceLock(final LockEntry entry) {
+            this.entry = entry;
+        }
+
+        public String getDeviceIdentification() {
+            return this.entry.deviceIdentification;
+        }
+
+        public void release() {
+            if (this.held.compareAndSet(true, false)) {
+                this.entry.semaphore.release();
+                DeviceLockTable.this.unregister(this.entry);
+            }
+        }
+    }
+
+    private static final class LockEntry {
+        private final String deviceIdentification;
+        private final Semaphore semaphore = new Semaphore(1, true);
+        private int users;
+
+        private LockEntry(final String deviceIdentification) {
+            this.deviceIdentification = deviceIdentification;
+        }
+    }
+
+    private static final class DeviceLockStatistics {
+        private final AtomicLong contended = new AtomicLong();
+        private final AtomicLong waitTimeMillis = new AtomicLong();
+        private final AtomicLong timeouts = new AtomicLong();
+
+        @Override
+        public String toString() {
+            return String.format("contended=%d, waitTimeMillis=%d, timeouts=%d", this.contended.get(),
+                    this.waitTimeMillis.get(), this.timeouts.get());
+        }
+    }
+
+    private final long timeout;
+    private final int maxTrackedDevices;
+
+    private final Map<String, LockEntry> locks = new ConcurrentHashMap<>();
+    private final Map<String, DeviceLockStatistics> statistics = new ConcurrentHashMap<>();
+
+    private final AtomicLong acquisitions = new AtomicLong();
+    private final AtomicLong contendedAcquisitions = new AtomicLong();
+    private final AtomicLong totalWaitTimeMillis = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+
+    /**
+     * @param timeout
+     *            maximum time in milliseconds to wait for a busy device.
+     * @param maxTrackedDevices
+     *            maximum number of devices for which contention statistics
+     *            are kept.
+     */
+    public DeviceLockTable(final long timeout, final int maxTrackedDevices) {
+        this.timeout = timeout;
+        this.maxTrackedDevices = maxTrackedDevices;
+    }
+
+    /**
+     * Waits until no other request holds the lock for the device.
+     *
+     * @return the lock for the device, to be released when communication with
+     *         the device is done.
+     * @throws DeviceLockException
+     *             if the device is still locked after waiting for the
+     *             configured timeout.
+     */
+    public DeviceLock acquire(final String deviceIdentification) {
+        final LockEntry entry = this.register(deviceIdentification);
+
+        this.acquisitions.incrementAndGet();
+        if (entry.semaphore.tryAcquire()) {
+            return new DeviceLock(entry);
+        }
+
+        LOGGER.info("Device {} is busy, waiting at most {} ms for it to become available", deviceIdentification,
+                this.timeout);
+        this.contendedAcquisitions.incrementAndGet();
+        final long start = System.currentTimeMillis();
+        boolean acquired = false;
+        try {
+            acquired = entry.semaphore.tryAcquire(this.timeout, TimeUnit.MILLISECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        final long waitTime = System.currentTimeMillis() - start;
+        this.totalWaitTimeMillis.addAndGet(waitTime);
+
+        final DeviceLockStatistics deviceStatistics = this.statisticsFor(deviceIdentification);
+        if (deviceStatistics != null) {
+            deviceStatistics.contended.incrementAndGet();
+            deviceStatistics.waitTimeMillis.addAndGet(waitTime);
+        }
+
+        if (!acquired) {
+            this.timeouts.incrementAndGet();
+            if (deviceStatistics != null) {
+                deviceStatistics.timeouts.incrementAndGet();
+            }
+            this.unregister(entry);
+            throw new DeviceLockException(String.format("Device %s is still busy after waiting %d ms",
+                    deviceIdentification, waitTime));
+        }
+
+        return new DeviceLock(entry);
+    }
+
+    private LockEntry register(final String deviceIdentification) {
+        return this.locks.compute(deviceIdentification, (key, existing) -> {
+            final LockEntry entry = existing == null ? new LockEntry(key) : existing;
+            entry.users++;
+            return entry;
+        });
+    }
+
+    private void unregister(final LockEntry entry) {
+        this.locks.computeIfPresent(entry.deviceIdentification, (key, existing) -> {
+            existing.users--;
+            return existing.users == 0 ? null : existing;
+        });
+    }
+
+    private DeviceLockStatistics statisticsFor(final String deviceIdentification) {
+        final DeviceLockStatistics deviceStatistics = this.statistics.get(deviceIdentification);
+        if (deviceStatistics != null || this.statistics.size() >= this.maxTrackedDevices) {
+            return deviceStatistics;
+        }
+        return this.statistics.computeIfAbsent(deviceIdentification, key -> new DeviceLockStatistics());
+    }
+
+    @ManagedAttribute(description = "Number of devices that are currently locked or waited for")
+    public int getLockedDevices() {
+        return this.locks.size();
+    }
+
+    @ManagedAttribute(description = "Number of lock acquisitions")
+    public long getAcquisitions() {
+        return this.acquisitions.get();
+    }
+
+    @ManagedAttribute(description = "Number of lock acquisitions that had to wait for another request")
+    public long getContendedAcquisitions() {
+        return this.contendedAcquisitions.get();
+    }
+
+    @ManagedAttribute(description = "Total time in milliseconds spent waiting for device locks")
+    public long getTotalWaitTimeMillis() {
+        return this.totalWaitTimeMillis.get();
+    }
+
+    @ManagedAttribute(description = "Number of requests that gave up waiting for a device lock")
+    public long getTimeouts() {
+        return this.timeouts.get();
+    }
+
+    @ManagedAttribute(description = "Contention statistics per device")
+    public String[] getDeviceContention() {
+        final List<String> result = new ArrayList<>();
+        for (final Map.Entry<String, DeviceLockStatistics> entry : this.statistics.entrySet()) {
+            result.add(entry.getKey() + ": " + entry.getValue());
+        }
+        return result.toArray(new String[result.size()]);
+    }
+
+    @ManagedOperation(description = "Clears the contention statistics per device")
+    public void resetDeviceContention() {
+        this.statistics.clear();
+    }
+}
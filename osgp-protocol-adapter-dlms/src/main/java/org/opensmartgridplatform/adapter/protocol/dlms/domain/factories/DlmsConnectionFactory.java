@@ -10,8 +10,16 @@ package org.opensmartgridplatform.adapter.protocol.dlms.domain.factories;
 import javax.inject.Provider;
 
 import org.openmuc.jdlms.DlmsConnection;
+import org.opensmartgridplatform.adapter.protocol.dlms.application.services.DlmsDeviceCache;
 import org.opensmartgridplatform.adapter.protocol.dlms.application.services.DomainHelperService;
 import org.opensmartgridplatform.adapter.protocol.dlms.domain.entities.DlmsDevice;
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.factories.DeviceLockTable.DeviceLock;
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.valueobjects.RequestDeadline;
+import org.opensmartgridplatform.adapter.protocol.dlms.exceptions.CellLimitException;
+import org.opensmartgridplatform.adapter.protocol.dlms.exceptions.ConcurrencyLimitException;
+import org.opensmartgridplatform.adapter.protocol.dlms.exceptions.ConnectionException;
+import org.opensmartgridplatform.adapter.protocol.dlms.exceptions.DeadlineExceededException;
+import org.opensmartgridplatform.adapter.protocol.dlms.exceptions.DeviceLockException;
 import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.DlmsMessageListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -47,6 +55,21 @@ public class DlmsConnectionFactory {
     @Autowired
     private DomainHelperService domainHelperService;
 
+    @Autowired
+    private DlmsConnectionPool dlmsConnectionPool;
+
+    @Autowired
+    private DeviceLockTable deviceLockTable;
+
+    @Autowired
+    private AdaptiveConcurrencyLimiter adaptiveConcurrencyLimiter;
+
+    @Autowired
+    private HungSessionWatchdog hungSessionWatchdog;
+
+    @Autowired
+    private DlmsDeviceCache dlmsDeviceCache;
+
     /**
      * Returns an open connection using the appropriate security settings for
      * the device.
@@ -62,12 +85,40 @@ public class DlmsConnectionFactory {
      *            mode}. If this is {@code null} no DLMS device communication
      *            debug logging will be done.
      * @return a holder providing access to an open DLMS connection as well as
-     *         an optional message listener active in the connection.
+     *         an optional message listener active in the connection. When the
+     *         {@link DlmsConnectionPool} is enabled the connection may be a
+     *         pooled one, and closing the holder hands it back to the pool.
      * @throws OsgpException
      *             in case of a TechnicalException or FunctionalException
+     * @throws DeviceLockException
+     *             if another request is still communicating with the device
+     *             after waiting for it.
+     * @throws ConcurrencyLimitException
+     *             if the {@link AdaptiveConcurrencyLimiter} does not allow
+     *             another connection with a device after waiting.
+     * @throws CellLimitException
+     *             if too many connection attempts to devices in the same
+     *             network cell are in progress. This is not a failure to
+     *             connect to the device.
      */
     public DlmsConnectionHolder getConnection(final DlmsDevice device, final DlmsMessageListener dlmsMessageListener)
             throws OsgpException {
+        return this.getConnection(device, dlmsMessageListener, RequestDeadline.NONE, null);
+    }
+
+    /**
+     * Returns an open connection for a request with a deadline, like
+     * {@link #getConnection(DlmsDevice, DlmsMessageListener)}.
+     *
+     * @param messageType
+     *            the message type of the request, which determines the
+     *            response timeout of the connection, {@code null} if not
+     *            known.
+     * @throws DeadlineExceededException
+     *             if the deadline passed before connecting.
+     */
+    public DlmsConnectionHolder getConnection(final DlmsDevice device, final DlmsMessageListener dlmsMessageListener,
+            final RequestDeadline deadline, final String messageType) throws OsgpException {
 
         DlmsConnector connector;
         if (device.isHls5Active()) {
@@ -82,9 +133,42 @@ public class DlmsConnectionFactory {
                     ComponentType.PROTOCOL_DLMS);
         }
 
-        final DlmsConnectionHolder holder = new DlmsConnectionHolder(connector, device, dlmsMessageListener,
-                this.domainHelperService);
-        holder.connect();
-        return holder;
+        final DeviceLock deviceLock = this.deviceLockTable.acquire(device.getDeviceIdentification());
+        AdaptiveConcurrencyLimiter.Permit concurrencyPermit = null;
+        HungSessionWatchdog.WatchedSession watchedSession = null;
+        try {
+            concurrencyPermit = this.adaptiveConcurrencyLimiter.acquire(device.getDeviceIdentification());
+            final DlmsConnectionHolder holder = new DlmsConnectionHolder(connector, device, dlmsMessageListener,
+                    this.domainHelperService, this.dlmsConnectionPool);
+            holder.setDeviceLock(deviceLock);
+            holder.setConcurrencyPermit(concurrencyPermit);
+            holder.setDeadline(deadline);
+            watchedSession = this.hungSessionWatchdog.register(holder, device.getDeviceIdentification());
+            holder.setWatchedSession(watchedSession);
+            holder.setMessageType(messageType);
+            holder.connect();
+            return holder;
+        } catch (final OsgpException | RuntimeException e) {
+            deviceLock.release();
+            if (concurrencyPermit != null) {
+                concurrencyPermit.release();
+            }
+            if (watchedSession != null) {
+                watchedSession.unregister();
+            }
+            if (e instanceof ConnectionException) {
+                /*
+                 * The device may have been changed elsewhere, for instance
+                 * with new keys, so read it again for the next attempt.
+                 */
+                this.dlmsDeviceCache.invalidate(device.getDeviceIdentification());
+                /*
+                 * The session of a device with a dynamic IP address may have
+                 * ended, so ask the session provider again next time.
+                 */
+                this.domainHelperService.invalidateSessionIpAddress(device);
+            }
+            throw e;
+        }
     }
 }
@@ -13,13 +13,23 @@ import org.openmuc.jdlms.DlmsConnection;
 import org.openmuc.jdlms.RawMessageData;
 import org.opensmartgridplatform.adapter.protocol.dlms.application.services.DomainHelperService;
 import org.opensmartgridplatform.adapter.protocol.dlms.domain.entities.DlmsDevice;
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.factories.DeviceLockTable.DeviceLock;
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.valueobjects.RequestDeadline;
+import org.opensmartgridplatform.adapter.protocol.dlms.exceptions.ConnectionException;
+import org.opensmartgridplatform.adapter.protocol.dlms.exceptions.DeadlineExceededException;
+import org.opensmartgridplatform.adapter.protocol.dlms.exceptions.HungSessionException;
+import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.ConnectionPhaseRecorder;
 import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.DlmsMessageListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import org.opensmartgridplatform.shared.exceptionhandling.OsgpException;
 import org.opensmartgridplatform.shared.infra.jms.MessageMetadata;
 
 public class DlmsConnectionHolder implements AutoCloseable {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(DlmsConnectionHolder.class);
+
     private static final DlmsMessageListener DO_NOTHING_LISTENER = new DlmsMessageListener() {
 
         @Override
@@ -40,16 +50,33 @@ public class DlmsConnectionHolder implements AutoCloseable {
 
     private final DlmsConnector connector;
     private final DlmsDevice device;
-    private final DlmsMessageListener dlmsMessageListener;
     private final DomainHelperService domainHelperService;
+    private final DlmsConnectionPool connectionPool;
 
-    private DlmsConnection dlmsConnection;
+    private final DlmsMessageListener dlmsMessageListener;
+    private RebindableDlmsMessageListener connectionListener;
+    private boolean adaptiveResponseTimeout;
+    private String messageType;
+    private volatile DlmsConnection dlmsConnection;
+    private volatile boolean reusable = true;
+    private volatile boolean aborted;
+    private DeviceLock deviceLock;
+    private AdaptiveConcurrencyLimiter.Permit concurrencyPermit;
+    private HungSessionWatchdog.WatchedSession watchedSession;
+    private RequestDeadline deadline = RequestDeadline.NONE;
 
     public DlmsConnectionHolder(final DlmsConnector connector, final DlmsDevice device,
             final DlmsMessageListener dlmsMessageListener, final DomainHelperService domainHelperService) {
+        this(connector, device, dlmsMessageListener, domainHelperService, null);
+    }
+
+    public DlmsConnectionHolder(final DlmsConnector connector, final DlmsDevice device,
+            final DlmsMessageListener dlmsMessageListener, final DomainHelperService domainHelperService,
+            final DlmsConnectionPool connectionPool) {
         this.connector = connector;
         this.device = device;
         this.domainHelperService = domainHelperService;
+        this.connectionPool = connectionPool;
         if (dlmsMessageListener == null) {
             this.dlmsMessageListener = DO_NOTHING_LISTENER;
         } else {
@@ -70,6 +97,104 @@ public class DlmsConnectionHolder implements AutoCloseable {
         return this.dlmsConnection;
     }
 
+    /**
+     * Sets the lock for the device that is held as long as this holder is in
+     * use. The lock is released when this holder is closed.
+     */
+    void setDeviceLock(final DeviceLock deviceLock) {
+        this.deviceLock = deviceLock;
+    }
+
+    /**
+     * Sets the permit for this connection from the
+     * {@link AdaptiveConcurrencyLimiter}, which is informed about connection
+     * attempts and released when this holder is closed.
+     */
+    void setConcurrencyPermit(final AdaptiveConcurrencyLimiter.Permit concurrencyPermit) {
+        this.concurrencyPermit = concurrencyPermit;
+    }
+
+    /**
+     * Sets the registration of this holder with the
+     * {@link HungSessionWatchdog}, which is removed when this holder is
+     * closed.
+     */
+    void setWatchedSession(final HungSessionWatchdog.WatchedSession watchedSession) {
+        this.watchedSession = watchedSession;
+    }
+
+    /**
+     * Sets the message type of the request this holder is used for, which
+     * determines the response timeout of a new connection, and how long the
+     * session may take before the {@link HungSessionWatchdog} closes it.
+     */
+    public void setMessageType(final String messageType) {
+        this.messageType = messageType;
+        if (this.watchedSession != null) {
+            this.watchedSession.setMessageType(messageType);
+        }
+    }
+
+    /**
+     * @return whether the session was closed by the {@link HungSessionWatchdog}
+     *         while in use. Any failure of the request after this is caused by
+     *         closing the session.
+     */
+    public boolean isAborted() {
+        return this.aborted;
+    }
+
+    /**
+     * Closes the connection while another thread may be waiting for a
+     * response on it, so that thread fails instead of waiting for the response
+     * timeout. The connection is not handed back to the pool, and connecting
+     * again with this holder fails.
+     */
+    void abort() {
+        this.aborted = true;
+        this.reusable = false;
+        final DlmsConnection connection = this.dlmsConnection;
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.close();
+        } catch (final IOException | RuntimeException e) {
+            LOGGER.debug("Error closing aborted connection with {}", this.device.getDeviceIdentification(), e);
+        }
+    }
+
+    /**
+     * Sets the deadline of the request this holder is used for. Connecting
+     * fails once the deadline has passed, and response timeouts are capped to
+     * the time remaining until the deadline.
+     */
+    void setDeadline(final RequestDeadline deadline) {
+        this.deadline = deadline;
+    }
+
+    public RequestDeadline getDeadline() {
+        return this.deadline;
+    }
+
+    /**
+     * @param stage
+     *            description of the work that is about to start.
+     * @throws DeadlineExceededException
+     *             if the deadline of the request has passed.
+     */
+    public void checkDeadline(final String stage) {
+        this.checkNotAborted(stage);
+        this.deadline.check(stage);
+    }
+
+    private void checkNotAborted(final String stage) {
+        if (this.aborted) {
+            throw new HungSessionException(String.format("Session with %s was closed for taking too long, before %s",
+                    this.device.getDeviceIdentification(), stage));
+        }
+    }
+
     public boolean hasDlmsMessageListener() {
         return DO_NOTHING_LISTENER != this.dlmsMessageListener;
     }
@@ -87,11 +212,18 @@ public class DlmsConnectionHolder implements AutoCloseable {
      */
     public void disconnect() throws IOException {
         if (this.dlmsConnection != null) {
+            this.discardFromPool();
             this.dlmsConnection.disconnect();
             this.dlmsConnection = null;
         }
     }
 
+    private void discardFromPool() {
+        if (this.connectionPool != null) {
+            this.connectionPool.discard(this.device.getDeviceIdentification());
+        }
+    }
+
     public boolean isConnected() {
         return this.dlmsConnection != null;
     }
@@ -102,6 +234,8 @@ public class DlmsConnectionHolder implements AutoCloseable {
      *
      * @throws IllegalStateException
      *             When there is already a connection set.
+     * @throws DeadlineExceededException
+     *             if the deadline of the request has passed.
      * @throws OsgpException
      *             in case of a TechnicalException (When an exceptions occurs
      *             while creating the exception) or a FunctionalException
@@ -110,8 +244,92 @@ public class DlmsConnectionHolder implements AutoCloseable {
         if (this.dlmsConnection != null) {
             throw new IllegalStateException("Cannot create a new connection because a connection already exists.");
         }
+        this.checkDeadline("connect");
+
+        if (this.connectionPool != null) {
+            final DlmsConnectionPool.PooledDlmsConnection pooled = this.connectionPool
+                    .borrow(this.device.getDeviceIdentification(), this.connector, this.dlmsMessageListener,
+                            this.messageType);
+            if (pooled != null) {
+                this.connectionListener = pooled.getDlmsMessageListener();
+                this.adaptiveResponseTimeout = pooled.hasAdaptiveResponseTimeout();
+                this.dlmsConnection = pooled.getConnection();
+                return;
+            }
+        }
+
+        this.connectWithConnector();
+    }
 
-        this.dlmsConnection = this.connector.connect(this.device, this.dlmsMessageListener);
+    private void connectWithConnector() throws OsgpException {
+        final ConnectionPhaseRecorder connectionPhaseRecorder = this.dlmsMessageListener
+                .getConnectionPhaseRecorder();
+        if (connectionPhaseRecorder != null) {
+            connectionPhaseRecorder.connectStarted();
+        }
+        final long connectStartedAt = System.currentTimeMillis();
+        boolean connected = false;
+        /*
+         * A connection that may be handed back to the pool gets a listener that
+         * can be bound to the listener of a later request.
+         */
+        final DlmsMessageListener listener;
+        if (this.connectionPool == null) {
+            listener = this.dlmsMessageListener;
+        } else {
+            this.connectionListener = new RebindableDlmsMessageListener(this.dlmsMessageListener);
+            listener = this.connectionListener;
+        }
+        try {
+            this.dlmsConnection = this.connector.connect(this.device, listener, this.deadline, this.messageType);
+            this.adaptiveResponseTimeout = this.connector.hasAdaptiveResponseTimeout(this.messageType);
+            connected = true;
+        } catch (final ConnectionException e) {
+            if (this.concurrencyPermit != null) {
+                this.concurrencyPermit.recordFailure();
+            }
+            throw e;
+        } finally {
+            if (connectionPhaseRecorder != null) {
+                connectionPhaseRecorder.connectFinished(connected);
+            }
+        }
+        if (this.concurrencyPermit != null) {
+            this.concurrencyPermit.recordSuccess(System.currentTimeMillis() - connectStartedAt);
+        }
+        if (this.connectionPool != null) {
+            this.connectionPool.created(this.device.getDeviceIdentification());
+        }
+    }
+
+    /**
+     * Makes sure the connection is not handed back to the connection pool when
+     * this holder is closed, for instance because an error occurred that may
+     * have left the association in an unknown state.
+     */
+    public void discardOnClose() {
+        this.reusable = false;
+    }
+
+    /**
+     * Closes the current connection, which may have been broken, so
+     * {@link #reconnect()} can be called. Unlike {@link #close()}, the lock for
+     * the device is kept, and the connection is never handed back to the
+     * connection pool.
+     */
+    public void closeForReconnect() {
+        if (this.dlmsConnection == null) {
+            return;
+        }
+        this.discardFromPool();
+        try {
+            this.closeConnection();
+        } catch (final IOException e) {
+            LOGGER.debug("Error closing connection with {} before reconnecting", this.device.getDeviceIdentification(),
+                    e);
+        } finally {
+            this.dlmsConnection = null;
+        }
     }
 
     /**
@@ -126,21 +344,76 @@ public class DlmsConnectionHolder implements AutoCloseable {
         if (this.dlmsConnection != null) {
             throw new IllegalStateException("Cannot create a new connection because a connection already exists.");
         }
+        this.checkDeadline("reconnect");
 
         if (!this.device.isIpAddressIsStatic()) {
             this.device.setIpAddress(this.domainHelperService.getDeviceIpAddressFromSessionProvider(this.device));
         }
-        this.dlmsConnection = this.connector.connect(this.device, this.dlmsMessageListener);
+        this.connectWithConnector();
     }
 
     /**
      * Closes the connection with the device and releases the internal
      * connection reference. The connection will be closed, but no disconnection
      * message will be sent to the device.
+     * <p>
+     * If the connection was obtained using a {@link DlmsConnectionPool}, the
+     * open association is handed back to the pool instead, unless
+     * {@link #discardOnClose()} has been called.
+     * <p>
+     * Any lock for the device and permit for the connection held by this
+     * holder are released.
      */
     @Override
     public void close() throws Exception {
-        this.dlmsConnection.close();
-        this.dlmsConnection = null;
+        if (this.dlmsConnection == null) {
+            this.releaseLocks();
+            return;
+        }
+
+        try {
+            if (this.connectionPool != null && this.reusable) {
+                this.connectionPool.release(this.device.getDeviceIdentification(), this.connector,
+                        this.dlmsConnection, this.connectionListener, this.adaptiveResponseTimeout);
+            } else {
+                this.discardFromPool();
+                this.closeConnection();
+            }
+        } finally {
+            this.dlmsConnection = null;
+            this.releaseLocks();
+        }
+    }
+
+    private void closeConnection() throws IOException {
+        final ConnectionPhaseRecorder connectionPhaseRecorder = this.dlmsMessageListener
+                .getConnectionPhaseRecorder();
+        if (connectionPhaseRecorder == null) {
+            this.dlmsConnection.close();
+            return;
+        }
+        final long releaseStartedAt = connectionPhaseRecorder.releaseStarted();
+        boolean closed = false;
+        try {
+            this.dlmsConnection.close();
+            closed = true;
+        } finally {
+            connectionPhaseRecorder.releaseFinished(releaseStartedAt, closed);
+        }
+    }
+
+    private void releaseLocks() {
+        if (this.deviceLock != null) {
+            this.deviceLock.release();
+            this.deviceLock = null;
+        }
+        if (this.concurrencyPermit != null) {
+            this.concurrencyPermit.release();
+            this.concurrencyPermit = null;
+        }
+        if (this.watchedSession != null) {
+            this.watchedSession.unregister();
+            this.watchedSession = null;
+        }
     }
 }
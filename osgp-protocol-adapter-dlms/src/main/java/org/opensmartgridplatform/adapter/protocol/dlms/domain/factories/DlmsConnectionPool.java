@@ -0,0 +1,320 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.domain.factories;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.openmuc.jdlms.AccessResultCode;
+import org.openmuc.jdlms.AttributeAddress;
+import org.openmuc.jdlms.DlmsConnection;
+import org.openmuc.jdlms.GetResult;
+import org.openmuc.jdlms.ObisCode;
+import org.openmuc.jdlms.interfaceclass.InterfaceClass;
+import org.openmuc.jdlms.interfaceclass.attribute.ClockAttribute;
+import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.DlmsMessageListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps DLMS associations open after a request has been handled, so a next
+ * request for the same device can skip the TCP connect and the association
+ * (including the HLS5 handshake).
+ * <p>
+ * Connections are kept per device identification. A connection is borrowed
+ * exclusively by a {@link DlmsConnectionHolder}, and handed back when the
+ * holder is closed. Idle connections are closed after the configured idle
+ * timeout. Borrowed and idle connections together are counted against
+ * {@code maxOpen}: a connection handed back while that many are open is closed.
+ * <p>
+ * The listener a connection was set up with stays registered with jDLMS, so
+ * it is a {@link RebindableDlmsMessageListener} that is bound to the listener
+ * of the borrowing request, keeping debug logging, metrics and flight
+ * recordings with the request they belong to.
+ * <p>
+ * When the pool is not enabled, no connections are kept and every holder
+ * closes its connection as before.
+ * <p>
+ * Independent of whether the pool is enabled, the connection for a device can
+ * be held open while requests for the device are executed back-to-back, see
+ * {@link #hold(String)}.
+ */
+public class DlmsConnectionPool {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DlmsConnectionPool.class);
+
+    private static final AttributeAddress HEALTH_CHECK_ATTRIBUTE = new AttributeAddress(InterfaceClass.CLOCK.id(),
+            new ObisCode("0.0.1.0.0.255"), ClockAttribute.TIME.attributeId());
+
+    static final class PooledDlmsConnection {
+        private final DlmsConnector connector;
+        private final DlmsConnection connection;
+        private final RebindableDlmsMessageListener dlmsMessageListener;
+        private final boolean adaptiveResponseTimeout;
+        private final long releasedAt;
+
+        PooledDlmsConnection(final DlmsConnector connector, final DlmsConnection connection,
+                final RebindableDlmsMessageListener dlmsMessageListener, final boolean adaptiveResponseTimeout,
+                final long releasedAt) {
+            this.connector = connector;
+            this.connection = connection;
+            this.dlmsMessageListener = dlmsMessageListener;
+            this.adaptiveResponseTimeout = adaptiveResponseTimeout;
+            this.releasedAt = releasedAt;
+        }
+
+        DlmsConnector getConnector() {
+            return this.connector;
+        }
+
+        DlmsConnection getConnection() {
+            return this.connection;
+        }
+
+        RebindableDlmsMessageListener getDlmsMessageListener() {
+            return this.dlmsMessageListener;
+        }
+
+        boolean hasAdaptiveResponseTimeout() {
+            return this.adaptiveResponseTimeout;
+        }
+
+        long getReleasedAt() {
+            return this.releasedAt;
+        }
+    }
+
+    private final boolean enabled;
+    private final int maxOpen;
+    private final long idleTimeout;
+    private final boolean healthCheck;
+
+    private final Map<String, PooledDlmsConnection> idleConnections = new ConcurrentHashMap<>();
+    private final Set<String> borrowedConnections = ConcurrentHashMap.newKeySet();
+    private final Set<String> invalidatedConnections = ConcurrentHashMap.newKeySet();
+    private final Map<String, Integer> holds = new ConcurrentHashMap<>();
+
+    public DlmsConnectionPool(final boolean enabled, final int maxOpen, final long idleTimeout,
+            final boolean healthCheck) {
+        this.enabled = enabled;
+        this.maxOpen = maxOpen;
+        this.idleTimeout = idleTimeout;
+        this.healthCheck = healthCheck;
+    }
+
+    /**
+     * Schedules the eviction of idle connections with the given executor.
+     */
+    public void scheduleEviction(final ScheduledExecutorService executorService) {
+        if (this.enabled) {
+            executorService.scheduleWithFixedDelay(this::evictIdleConnections, this.idleTimeout, this.idleTimeout,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    public int getNumberOfIdleConnections() {
+        return this.idleConnections.size();
+    }
+
+    public int getNumberOfBorrowedConnections() {
+        return this.borrowedConnections.size();
+    }
+
+    /**
+     * Keeps the connection for the device open when its holder is closed, until
+     * {@link #endHold(String)} is called, even if the pool is disabled or full.
+     * Holds are counted, so every call has to be followed by a call to
+     * {@link #endHold(String)}.
+     */
+    public void hold(final String deviceIdentification) {
+        this.holds.merge(deviceIdentification, 1, Integer::sum);
+    }
+
+    /**
+     * Ends a hold of the connection for the device. After the last hold ends,
+     * an idle connection for the device is closed if the pool is disabled.
+     */
+    public void endHold(final String deviceIdentification) {
+        final Integer remaining = this.holds.computeIfPresent(deviceIdentification,
+                (key, count) -> count > 1 ? count - 1 : null);
+        if (remaining == null && !this.enabled) {
+            final PooledDlmsConnection pooled = this.idleConnections.remove(deviceIdentification);
+            if (pooled != null) {
+                this.closeQuietly(deviceIdentification, pooled.getConnection());
+            }
+        }
+    }
+
+    private boolean isHeld(final String deviceIdentification) {
+        return this.holds.containsKey(deviceIdentification);
+    }
+
+    /**
+     * Takes an idle connection for the device from the pool.
+     *
+     * @param deviceIdentification
+     *            the device to get a connection for.
+     * @param connector
+     *            the connector that would be used to set up a new connection.
+     *            A pooled connection is only returned if it was set up by the
+     *            same connector.
+     * @param dlmsMessageListener
+     *            the listener of the borrowing request, that receives the raw
+     *            messages of the pooled connection from now on.
+     * @param messageType
+     *            the message type of the borrowing request. A connection with
+     *            a response timeout that was adapted to the device is only
+     *            returned if the connector would adapt the response timeout
+     *            for this message type as well.
+     * @return a healthy pooled connection, or {@code null} if none is
+     *         available.
+     */
+    PooledDlmsConnection borrow(final String deviceIdentification, final DlmsConnector connector,
+            final DlmsMessageListener dlmsMessageListener, final String messageType) {
+        if (!this.enabled && !this.isHeld(deviceIdentification)) {
+            return null;
+        }
+
+        final PooledDlmsConnection pooled = this.idleConnections.remove(deviceIdentification);
+        if (pooled == null) {
+            return null;
+        }
+
+        pooled.getDlmsMessageListener().bind(dlmsMessageListener);
+        if (pooled.getConnector() != connector
+                || (pooled.hasAdaptiveResponseTimeout() && !connector.hasAdaptiveResponseTimeout(messageType))
+                || this.isExpired(pooled, System.currentTimeMillis()) || !this.isHealthy(deviceIdentification, pooled)) {
+            this.closeQuietly(deviceIdentification, pooled.getConnection());
+            return null;
+        }
+
+        LOGGER.debug("Reusing pooled connection for device {}", deviceIdentification);
+        this.borrowedConnections.add(deviceIdentification);
+        return pooled;
+    }
+
+    /**
+     * Registers that a new connection for the device was created through a
+     * holder that will hand it back to this pool.
+     */
+    void created(final String deviceIdentification) {
+        if (this.enabled || this.isHeld(deviceIdentification)) {
+            this.borrowedConnections.add(deviceIdentification);
+        }
+    }
+
+    /**
+     * Hands a connection back to the pool. The connection is closed instead if
+     * the pool is disabled or full and the connection is not held, or if the
+     * device has been invalidated while the connection was borrowed.
+     */
+    void release(final String deviceIdentification, final DlmsConnector connector, final DlmsConnection connection,
+            final RebindableDlmsMessageListener dlmsMessageListener, final boolean adaptiveResponseTimeout) {
+        this.borrowedConnections.remove(deviceIdentification);
+
+        final boolean held = this.isHeld(deviceIdentification);
+        if (this.invalidatedConnections.remove(deviceIdentification) || (!held && (!this.enabled
+                || this.borrowedConnections.size() + this.idleConnections.size() >= this.maxOpen))) {
+            this.closeQuietly(deviceIdentification, connection);
+            return;
+        }
+
+        // The request that used the connection is done.
+        dlmsMessageListener.bind(null);
+
+        final PooledDlmsConnection previous = this.idleConnections.put(deviceIdentification,
+                new PooledDlmsConnection(connector, connection, dlmsMessageListener, adaptiveResponseTimeout,
+                        System.currentTimeMillis()));
+        if (previous != null) {
+            this.closeQuietly(deviceIdentification, previous.getConnection());
+        }
+    }
+
+    /**
+     * Registers that a borrowed connection for the device has been closed by
+     * its holder instead of being handed back to the pool.
+     */
+    void discard(final String deviceIdentification) {
+        this.borrowedConnections.remove(deviceIdentification);
+        this.invalidatedConnections.remove(deviceIdentification);
+    }
+
+    /**
+     * Makes sure no connection for the device is reused, for instance because
+     * the security keys of the device have changed.
+     */
+    public void invalidate(final String deviceIdentification) {
+        if (!this.enabled && !this.isHeld(deviceIdentification)) {
+            return;
+        }
+
+        if (this.borrowedConnections.contains(deviceIdentification)) {
+            this.invalidatedConnections.add(deviceIdentification);
+        }
+
+        final PooledDlmsConnection pooled = this.idleConnections.remove(deviceIdentification);
+        if (pooled != null) {
+            this.closeQuietly(deviceIdentification, pooled.getConnection());
+        }
+    }
+
+    public void evictIdleConnections() {
+        final long now = System.currentTimeMillis();
+        for (final Map.Entry<String, PooledDlmsConnection> entry : this.idleConnections.entrySet()) {
+            if (this.isExpired(entry.getValue(), now)
+                    && this.idleConnections.remove(entry.getKey(), entry.getValue())) {
+                LOGGER.debug("Evicting idle connection for device {}", entry.getKey());
+                this.closeQuietly(entry.getKey(), entry.getValue().getConnection());
+            }
+        }
+    }
+
+    public void closeAll() {
+        for (final String deviceIdentification : this.idleConnections.keySet()) {
+            final PooledDlmsConnection pooled = this.idleConnections.remove(deviceIdentification);
+            if (pooled != null) {
+                this.closeQuietly(deviceIdentification, pooled.getConnection());
+            }
+        }
+    }
+
+    private boolean isExpired(final PooledDlmsConnection pooled, final long now) {
+        return now - pooled.getReleasedAt() >= this.idleTimeout;
+    }
+
+    private boolean isHealthy(final String deviceIdentification, final PooledDlmsConnection pooled) {
+        if (!this.healthCheck) {
+            return true;
+        }
+        try {
+            pooled.getDlmsMessageListener().setDescription("Connection pool health check");
+            final GetResult result = pooled.getConnection().get(HEALTH_CHECK_ATTRIBUTE);
+            return result != null && AccessResultCode.SUCCESS == result.getResultCode();
+        } catch (final IOException | RuntimeException e) {
+            LOGGER.info("Pooled connection for device {} failed the health check: {}", deviceIdentification,
+                    e.getMessage());
+            return false;
+        }
+    }
+
+    private void closeQuietly(final String deviceIdentification, final DlmsConnection connection) {
+        try {
+            connection.close();
+        } catch (final IOException | RuntimeException e) {
+            LOGGER.warn("Error while closing pooled connection for device {}", deviceIdentification, e);
+        }
+    }
+}
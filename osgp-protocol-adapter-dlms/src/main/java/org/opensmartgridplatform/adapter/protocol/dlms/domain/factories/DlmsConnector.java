@@ -10,6 +10,7 @@ package org.opensmartgridplatform.adapter.protocol.dlms.domain.factories;
 import org.openmuc.jdlms.DlmsConnection;
 import org.openmuc.jdlms.TcpConnectionBuilder;
 import org.opensmartgridplatform.adapter.protocol.dlms.domain.entities.DlmsDevice;
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.valueobjects.RequestDeadline;
 import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.DlmsMessageListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -24,8 +25,25 @@ public abstract class DlmsConnector {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(DlmsConnector.class);
 
-    public abstract DlmsConnection connect(final DlmsDevice device, final DlmsMessageListener dlmsMessageListener)
-            throws OsgpException;
+    /**
+     * @param deadline
+     *            the deadline of the request the connection is for; response
+     *            timeouts are capped to the time remaining until the deadline.
+     * @param messageType
+     *            the message type of the request the connection is for,
+     *            {@code null} if not known.
+     */
+    public abstract DlmsConnection connect(final DlmsDevice device, final DlmsMessageListener dlmsMessageListener,
+            final RequestDeadline deadline, final String messageType) throws OsgpException;
+
+    /**
+     * @return whether a connection set up for the given message type may have
+     *         a response timeout that is shorter than the configured one, so
+     *         it should not be reused for other message types.
+     */
+    public boolean hasAdaptiveResponseTimeout(final String messageType) {
+        return false;
+    }
 
     protected void checkDevice(final DlmsDevice device) {
         if (device == null) {
@@ -20,6 +20,7 @@ import org.opensmartgridplatform.adapter.protocol.dlms.application.services.Secu
 import org.opensmartgridplatform.adapter.protocol.dlms.application.threads.RecoverKeyProcessInitiator;
 import org.opensmartgridplatform.adapter.protocol.dlms.domain.entities.DlmsDevice;
 import org.opensmartgridplatform.adapter.protocol.dlms.domain.entities.SecurityKeyType;
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.valueobjects.RequestDeadline;
 import org.opensmartgridplatform.adapter.protocol.dlms.exceptions.ConnectionException;
 import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.DlmsMessageListener;
 import org.slf4j.Logger;
@@ -51,15 +52,15 @@ public class Hls5Connector extends SecureDlmsConnector {
     }
 
     @Override
-    public DlmsConnection connect(final DlmsDevice device, final DlmsMessageListener dlmsMessageListener)
-            throws OsgpException {
+    public DlmsConnection connect(final DlmsDevice device, final DlmsMessageListener dlmsMessageListener,
+            final RequestDeadline deadline, final String messageType) throws OsgpException {
 
         // Make sure neither device or device.getIpAddress() is null.
         this.checkDevice(device);
         this.checkIpAddress(device);
 
         try {
-            return this.createConnection(device, dlmsMessageListener);
+            return this.createConnection(device, dlmsMessageListener, deadline, messageType);
         } catch (final UnknownHostException e) {
             LOGGER.error("The IP address is not found: {}", device.getIpAddress(), e);
             // Unknown IP, unrecoverable.
@@ -89,12 +90,11 @@ public class Hls5Connector extends SecureDlmsConnector {
     protected void setSecurity(final DlmsDevice device, final TcpConnectionBuilder tcpConnectionBuilder)
             throws OsgpException {
 
-        final String deviceIdentification = device.getDeviceIdentification();
         final byte[] dlmsAuthenticationKey;
         final byte[] dlmsEncryptionKey;
         try {
-            dlmsAuthenticationKey = this.securityKeyService.getDlmsAuthenticationKey(deviceIdentification);
-            dlmsEncryptionKey = this.securityKeyService.getDlmsGlobalUnicastEncryptionKey(deviceIdentification);
+            dlmsAuthenticationKey = this.securityKeyService.getDlmsAuthenticationKey(device);
+            dlmsEncryptionKey = this.securityKeyService.getDlmsGlobalUnicastEncryptionKey(device);
         } catch (final EncrypterException e) {
             LOGGER.error("Error determining DLMS communication key setting up HLS5 connection", e);
             throw new FunctionalException(FunctionalExceptionType.INVALID_DLMS_KEY_ENCRYPTION,
@@ -140,7 +140,7 @@ public class Hls5Connector extends SecureDlmsConnector {
         }
         tcpConnectionBuilder.setSystemTitle(manufacturerId, device.getDeviceId());
         tcpConnectionBuilder.setFrameCounter(
-                device.getValidSecurityKey(SecurityKeyType.E_METER_ENCRYPTION).getInvocationCounter() + 1);
+                this.securityKeyService.getInvocationCounter(device, SecurityKeyType.E_METER_ENCRYPTION) + 1);
     }
 
     private void validateKeys(final byte[] encryptionKey, final byte[] authenticationKey)
@@ -0,0 +1,235 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.domain.factories;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+/**
+ * Keeps track of the sessions with devices in use, and forcibly closes
+ * sessions that take longer than the budget for their message type.
+ * <p>
+ * A device that accepts a connection but stops responding halfway keeps a
+ * thread waiting for the response timeout, which can be very long. A session
+ * over budget has its connection closed, which makes the waiting thread fail.
+ * If the thread is still in the session at the next check, it is interrupted.
+ * The request then fails with a retryable {@code HungSessionException}.
+ * <p>
+ * The active sessions, with their device, message type, age and current
+ * operation, are exposed over JMX.
+ */
+@ManagedResource(objectName = "org.opensmartgridplatform.adapter.protocol.dlms:name=HungSessionWatchdog", description = "Sessions with devices in use, and forced closing of stuck sessions")
+public class HungSessionWatchdog {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HungSessionWatchdog.class);
+
+    /**
+     * Registration of a session in use, removed when the session is closed.
+     */
+    public final class WatchedSession {
+        private final DlmsConnectionHolder holder;
+        private final String deviceIdentification;
+        private final Thread thread;
+        private final long startedAt;
+        private volatile String messageType;
+        private volatile long abortedAt;
+        private boolean registered = true;
+        private boolean interrupted;
+
+        private WatchedSession(final DlmsConnectionHolder holder, final String deviceIdentification) {
+            this.holder = holder;
+            this.deviceIdentification = deviceIdentification;
+            this.thread = Thread.currentThread();
+            this.startedAt = System.currentTimeMillis();
+        }
+
+        public void setMessageType(final String messageType) {
+            this.messageType = messageType;
+        }
+
+        public boolean isAborted() {
+            return this.abortedAt != 0;
+        }
+
+        /**
+         * Removes the registration. If the watchdog interrupted the thread of
+         * this session, the interrupt is cleared when called from that thread,
+         * so it does not affect the next work of the thread.
+         */
+        public synchronized void unregister() {
+            HungSessionWatchdog.this.sessions.remove(this.holder, this);
+            this.registered = false;
+            if (this.interrupted && Thread.currentThread() == this.thread) {
+                Thread.interrupted();
+            }
+        }
+
+        /**
+         * Interrupts the thread of this session, unless it has already left
+         * the session.
+         */
+        private synchronized boolean interrupt() {
+            if (!this.registered) {
+                return false;
+            }
+            this.interrupted = true;
+            this.thread.interrupt();
+            return true;
+        }
+
+        private long getAge(final long now) {
+            return now - this.startedAt;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("device=%s, messageType=%s, age=%d ms, thread=%s, operation=%s%s",
+                    this.deviceIdentification, this.messageType, this.getAge(System.currentTimeMillis()),
+                    this.thread.getName(), this.holder.getDlmsMessageListener().getDescription(),
+                    this.isAborted() ? ", aborted" : "");
+        }
+    }
+
+    private final boolean enabled;
+    private final Map<String, Long> budgetPerMessageType;
+    private final long defaultBudget;
+    private final long checkInterval;
+
+    private final Map<DlmsConnectionHolder, WatchedSession> sessions = new ConcurrentHashMap<>();
+
+    private final AtomicLong abortedSessions = new AtomicLong();
+    private final AtomicLong interruptedThreads = new AtomicLong();
+
+    /**
+     * @param enabled
+     *            whether sessions over budget are closed; sessions are always
+     *            tracked.
+     * @param budgetPerMessageType
+     *            maximum duration of a session in milliseconds per message
+     *            type.
+     * @param defaultBudget
+     *            maximum duration in milliseconds for other message types.
+     * @param checkInterval
+     *            milliseconds between checks of the sessions in use.
+     */
+    public HungSessionWatchdog(final boolean enabled, final Map<String, Long> budgetPerMessageType,
+            final long defaultBudget, final long checkInterval) {
+        this.enabled = enabled;
+        this.budgetPerMessageType = budgetPerMessageType;
+        this.defaultBudget = defaultBudget;
+        this.checkInterval = checkInterval;
+    }
+
+    /**
+     * Schedules the checks of the sessions in use with the given executor.
+     */
+    public void scheduleChecks(final ScheduledExecutorService executorService) {
+        if (this.enabled) {
+            executorService.scheduleWithFixedDelay(this::checkSessions, this.checkInterval, this.checkInterval,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Registers a session that is about to be used by the current thread.
+     */
+    public WatchedSession register(final DlmsConnectionHolder holder, final String deviceIdentification) {
+        final WatchedSession session = new WatchedSession(holder, deviceIdentification);
+        this.sessions.put(holder, session);
+        return session;
+    }
+
+    void checkSessions() {
+        final long now = System.currentTimeMillis();
+        for (final WatchedSession session : this.sessions.values()) {
+            try {
+                this.checkSession(session, now);
+            } catch (final RuntimeException e) {
+                LOGGER.error("Unable to check session {}", session, e);
+            }
+        }
+    }
+
+    private void checkSession(final WatchedSession session, final long now) {
+        if (session.isAborted()) {
+            // Closing the connection did not free the thread.
+            if (now - session.abortedAt >= this.checkInterval) {
+                session.abortedAt = now;
+                if (session.interrupt()) {
+                    LOGGER.warn("Interrupted thread of aborted session {}", session);
+                    this.interruptedThreads.incrementAndGet();
+                }
+            }
+            return;
+        }
+
+        final long budget = this.budgetPerMessageType.getOrDefault(session.messageType, this.defaultBudget);
+        if (budget > 0 && session.getAge(now) > budget) {
+            LOGGER.warn("Aborting session over its budget of {} ms: {}", budget, session);
+            this.abort(session, now);
+        }
+    }
+
+    private void abort(final WatchedSession session, final long now) {
+        this.abortedSessions.incrementAndGet();
+        session.abortedAt = now;
+        session.holder.abort();
+    }
+
+    @ManagedAttribute(description = "Number of sessions with devices in use")
+    public int getActiveSessions() {
+        return this.sessions.size();
+    }
+
+    @ManagedAttribute(description = "Sessions with devices in use, oldest first")
+    public List<String> getSessions() {
+        final List<WatchedSession> sortedSessions = new ArrayList<>(this.sessions.values());
+        sortedSessions.sort(Comparator.comparingLong(session -> session.startedAt));
+        final List<String> descriptions = new ArrayList<>(sortedSessions.size());
+        for (final WatchedSession session : sortedSessions) {
+            descriptions.add(session.toString());
+        }
+        return descriptions;
+    }
+
+    @ManagedAttribute(description = "Number of sessions closed for being over budget or by request")
+    public long getAbortedSessions() {
+        return this.abortedSessions.get();
+    }
+
+    @ManagedAttribute(description = "Number of threads interrupted because closing their session did not free them")
+    public long getInterruptedThreads() {
+        return this.interruptedThreads.get();
+    }
+
+    @ManagedOperation(description = "Closes the sessions with the given device")
+    public int abortSessions(final String deviceIdentification) {
+        final long now = System.currentTimeMillis();
+        int aborted = 0;
+        for (final WatchedSession session : this.sessions.values()) {
+            if (session.deviceIdentification.equals(deviceIdentification) && !session.isAborted()) {
+                LOGGER.warn("Aborting session by request: {}", session);
+                this.abort(session, now);
+                aborted++;
+            }
+        }
+        return aborted;
+    }
+}
@@ -12,13 +12,20 @@ import java.net.InetAddress;
 import java.net.UnknownHostException;
 
 import org.openmuc.jdlms.DlmsConnection;
+import org.openmuc.jdlms.RawMessageListener;
 import org.openmuc.jdlms.TcpConnectionBuilder;
 import org.openmuc.jdlms.settings.client.ReferencingMethod;
+import org.opensmartgridplatform.adapter.protocol.dlms.application.threads.DeviceCommunicationExecutor;
 import org.opensmartgridplatform.adapter.protocol.dlms.domain.entities.DlmsDevice;
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.valueobjects.RequestDeadline;
+import org.opensmartgridplatform.adapter.protocol.dlms.exceptions.CellLimitException;
+import org.opensmartgridplatform.adapter.protocol.dlms.exceptions.CircuitOpenException;
 import org.opensmartgridplatform.adapter.protocol.dlms.exceptions.ConnectionException;
 import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.DlmsMessageListener;
+import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.InvocationCountingDlmsMessageListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 
 import org.opensmartgridplatform.shared.exceptionhandling.ComponentType;
 import org.opensmartgridplatform.shared.exceptionhandling.OsgpException;
@@ -34,6 +41,15 @@ public class Lls0Connector extends DlmsConnector {
 
     protected final int clientAccessPoint;
 
+    @Autowired
+    private ResponseTimeoutEstimator responseTimeoutEstimator;
+
+    @Autowired
+    private ConnectionCircuitBreaker connectionCircuitBreaker;
+
+    @Autowired
+    private DeviceCommunicationExecutor deviceCommunicationExecutor;
+
     public Lls0Connector(final int responseTimeout, final int logicalDeviceAddress) {
         this(responseTimeout, logicalDeviceAddress, DlmsConnector.DLMS_PUBLIC_CLIENT_ID);
     }
@@ -45,8 +61,8 @@ public class Lls0Connector extends DlmsConnector {
     }
 
     @Override
-    public DlmsConnection connect(final DlmsDevice device, final DlmsMessageListener dlmsMessageListener)
-            throws OsgpException {
+    public DlmsConnection connect(final DlmsDevice device, final DlmsMessageListener dlmsMessageListener,
+            final RequestDeadline deadline, final String messageType) throws OsgpException {
 
         // Make sure neither device or device.getIpAddress() is null.
         this.checkDevice(device);
@@ -57,7 +73,8 @@ public class Lls0Connector extends DlmsConnector {
         try {
 
             tcpConnectionBuilder = new TcpConnectionBuilder(InetAddress.getByName(device.getIpAddress()))
-                    .setResponseTimeout(this.responseTimeout).setLogicalDeviceId(this.logicalDeviceAddress)
+                    .setResponseTimeout(this.getResponseTimeout(device, deadline, messageType))
+                    .setLogicalDeviceId(this.logicalDeviceAddress)
                     .setClientId(this.clientAccessPoint)
                     .setReferencingMethod(device.isUseSn() ? ReferencingMethod.SHORT : ReferencingMethod.LOGICAL);
 
@@ -73,12 +90,11 @@ public class Lls0Connector extends DlmsConnector {
 
         this.setOptionalValues(device, tcpConnectionBuilder);
 
-        if (device.isInDebugMode()) {
-            tcpConnectionBuilder.setRawMessageListener(dlmsMessageListener);
-        }
+        this.setRawMessageListener(device, tcpConnectionBuilder,
+                this.getRawMessageListener(device, dlmsMessageListener));
 
         try {
-            return tcpConnectionBuilder.build();
+            return this.buildConnection(device, tcpConnectionBuilder);
         } catch (final IOException e) {
             final String msg = String.format(
                     "Error creating connection for device %s with Ip address:%s Port:%d UseHdlc:%b UseSn:%b Message:%s",
@@ -88,4 +104,96 @@ public class Lls0Connector extends DlmsConnector {
             throw new ConnectionException(msg, e);
         }
     }
+
+    /**
+     * @return the response timeout for the device, which is at most the
+     *         configured response timeout of this connector, and at most the
+     *         time remaining until the deadline.
+     */
+    protected int getResponseTimeout(final DlmsDevice device, final RequestDeadline deadline,
+            final String messageType) {
+        return deadline.capTimeout(this.responseTimeoutEstimator
+                .getResponseTimeout(device.getDeviceIdentification(), messageType, this.responseTimeout));
+    }
+
+    @Override
+    public boolean hasAdaptiveResponseTimeout(final String messageType) {
+        return this.responseTimeoutEstimator.isAdaptive(messageType);
+    }
+
+    /**
+     * @return the given listener if it needs the raw messages of the
+     *         connection: for debug logging, for counting invocations,
+     *         measuring connection phases or flight recording, or because the
+     *         connection may be handed back to the {@link DlmsConnectionPool}.
+     *         {@code null} otherwise.
+     */
+    protected DlmsMessageListener getRawMessageListener(final DlmsDevice device,
+            final DlmsMessageListener dlmsMessageListener) {
+        if (device.isInDebugMode() || dlmsMessageListener instanceof InvocationCountingDlmsMessageListener
+                || dlmsMessageListener instanceof RebindableDlmsMessageListener) {
+            return dlmsMessageListener;
+        }
+        return null;
+    }
+
+    /**
+     * Registers the listener with the connection, together with the
+     * measurement of the response times of the device if response timeouts are
+     * adapted.
+     *
+     * @param dlmsMessageListener
+     *            the listener, {@code null} if the raw messages are not
+     *            needed.
+     */
+    protected void setRawMessageListener(final DlmsDevice device, final TcpConnectionBuilder tcpConnectionBuilder,
+            final DlmsMessageListener dlmsMessageListener) {
+        final RawMessageListener listener = this.responseTimeoutEstimator
+                .measure(device.getDeviceIdentification(), dlmsMessageListener);
+        if (listener != null) {
+            tcpConnectionBuilder.setRawMessageListener(listener);
+        }
+    }
+
+    /**
+     * Builds the connection, keeping track of failures to connect.
+     *
+     * @throws CircuitOpenException
+     *             if earlier connection attempts for the device, or for
+     *             devices in the same network cell, keep failing.
+     * @throws CellLimitException
+     *             if too many connection attempts to devices in the same
+     *             network cell are in progress.
+     */
+    protected DlmsConnection buildConnection(final DlmsDevice device, final TcpConnectionBuilder tcpConnectionBuilder)
+            throws IOException {
+        final String deviceIdentification = device.getDeviceIdentification();
+        this.connectionCircuitBreaker.checkConnectionAllowed(deviceIdentification, device.getIpAddress());
+        if (!this.deviceCommunicationExecutor.acquireCellPermit(device.getIpAddress())) {
+            throw new CellLimitException(String.format(
+                    "Not connecting to device %s with IP address %s, because of concurrent connection attempts in "
+                            + "its network cell%s",
+                    deviceIdentification, device.getIpAddress(),
+                    Thread.currentThread().isInterrupted() ? " (interrupted while waiting)" : ""));
+        }
+
+        try {
+            final DlmsConnection connection = tcpConnectionBuilder.build();
+            this.connectionCircuitBreaker.recordSuccess(deviceIdentification, device.getIpAddress());
+            return connection;
+        } catch (final IOException e) {
+            this.responseTimeoutEstimator.recordFailure(deviceIdentification);
+            /*
+             * Building the connection also sets up the association, which
+             * fails with wrong keys as well. Only failures to reach the device
+             * say anything about the network.
+             */
+            if (ConnectionCircuitBreaker.isTransportFailure(e)) {
+                this.connectionCircuitBreaker.recordFailure(deviceIdentification, device.getIpAddress());
+            }
+            throw e;
+        } finally {
+            this.deviceCommunicationExecutor.releaseCellPermit(device.getIpAddress());
+        }
+    }
 }
@@ -16,6 +16,7 @@ import org.openmuc.jdlms.SecuritySuite;
 import org.openmuc.jdlms.TcpConnectionBuilder;
 import org.opensmartgridplatform.adapter.protocol.dlms.application.services.SecurityKeyService;
 import org.opensmartgridplatform.adapter.protocol.dlms.domain.entities.DlmsDevice;
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.valueobjects.RequestDeadline;
 import org.opensmartgridplatform.adapter.protocol.dlms.exceptions.ConnectionException;
 import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.DlmsMessageListener;
 import org.slf4j.Logger;
@@ -41,15 +42,15 @@ public class Lls1Connector extends SecureDlmsConnector {
     }
 
     @Override
-    public DlmsConnection connect(final DlmsDevice device, final DlmsMessageListener dlmsMessageListener)
-            throws OsgpException {
+    public DlmsConnection connect(final DlmsDevice device, final DlmsMessageListener dlmsMessageListener,
+            final RequestDeadline deadline, final String messageType) throws OsgpException {
 
         // Make sure neither device or device.getIpAddress() is null.
         this.checkDevice(device);
         this.checkIpAddress(device);
 
         try {
-            return this.createConnection(device, dlmsMessageListener);
+            return this.createConnection(device, dlmsMessageListener, deadline, messageType);
         } catch (final UnknownHostException e) {
             LOGGER.warn("The IP address is not found: {}", device.getIpAddress(), e);
             // Unknown IP, unrecoverable.
@@ -88,4 +89,18 @@ public class Lls1Connector extends SecureDlmsConnector {
         tcpConnectionBuilder.setSecuritySuite(securitySuite).setClientId(this.clientAccessPoint);
     }
 
+    /**
+     * LLS1 devices are known to take very long for some responses, so their
+     * response timeout is not adapted to the observed response times.
+     */
+    @Override
+    protected int getResponseTimeout(final DlmsDevice device, final RequestDeadline deadline,
+            final String messageType) {
+        return deadline.capTimeout(this.responseTimeout);
+    }
+
+    @Override
+    public boolean hasAdaptiveResponseTimeout(final String messageType) {
+        return false;
+    }
 }
@@ -0,0 +1,46 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.domain.factories;
+
+/**
+ * Groups devices by network cell: the IPv4 network of the IP address of a
+ * device with a given prefix length. Devices in the same cell share the
+ * capacity of the mobile network cell they are connected through.
+ */
+public final class NetworkCell {
+
+    private NetworkCell() {
+        // Utility class
+    }
+
+    /**
+     * @return the network cell of the IP address, like "10.1.2.0/24", or
+     *         {@code null} if the IP address is not an IPv4 address.
+     */
+    public static String of(final String ipAddress, final int prefixLength) {
+        if (ipAddress == null) {
+            return null;
+        }
+        final String[] octets = ipAddress.split("\\.");
+        if (octets.length != 4) {
+            return null;
+        }
+        try {
+            long address = 0;
+            for (final String octet : octets) {
+                address = (address << 8) | Integer.parseInt(octet);
+            }
+            final long mask = (0xFFFFFFFFL << (32 - prefixLength)) & 0xFFFFFFFFL;
+            final long network = address & mask;
+            return String.format("%d.%d.%d.%d/%d", (network >> 24) & 0xFF, (network >> 16) & 0xFF,
+                    (network >> 8) & 0xFF, network & 0xFF, prefixLength);
+        } catch (final NumberFormatException e) {
+            return null;
+        }
+    }
+}
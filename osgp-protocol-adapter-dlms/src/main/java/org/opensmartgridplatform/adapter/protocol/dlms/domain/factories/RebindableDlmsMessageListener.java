@@ -0,0 +1,85 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.domain.factories;
+
+import org.openmuc.jdlms.RawMessageData;
+import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.ConnectionPhaseRecorder;
+import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.DlmsMessageListener;
+import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.FlightRecorder;
+
+import org.opensmartgridplatform.shared.infra.jms.MessageMetadata;
+
+/**
+ * Listener registered with a connection that may be kept in the
+ * {@link DlmsConnectionPool}. jDLMS keeps the listener a connection was set up
+ * with, so this listener passes the raw messages on to the listener of the
+ * request currently using the connection, which is bound when the connection
+ * is borrowed.
+ */
+final class RebindableDlmsMessageListener implements DlmsMessageListener {
+
+    private volatile DlmsMessageListener target;
+
+    RebindableDlmsMessageListener(final DlmsMessageListener target) {
+        this.target = target;
+    }
+
+    /**
+     * Passes the raw messages on to the given listener from now on, or drops
+     * them if the listener is {@code null}.
+     */
+    void bind(final DlmsMessageListener target) {
+        this.target = target;
+    }
+
+    DlmsMessageListener getTarget() {
+        return this.target;
+    }
+
+    @Override
+    public void messageCaptured(final RawMessageData rawMessageData) {
+        final DlmsMessageListener current = this.target;
+        if (current != null) {
+            current.messageCaptured(rawMessageData);
+        }
+    }
+
+    @Override
+    public void setMessageMetadata(final MessageMetadata messageMetadata) {
+        final DlmsMessageListener current = this.target;
+        if (current != null) {
+            current.setMessageMetadata(messageMetadata);
+        }
+    }
+
+    @Override
+    public void setDescription(final String description) {
+        final DlmsMessageListener current = this.target;
+        if (current != null) {
+            current.setDescription(description);
+        }
+    }
+
+    @Override
+    public String getDescription() {
+        final DlmsMessageListener current = this.target;
+        return current == null ? null : current.getDescription();
+    }
+
+    @Override
+    public ConnectionPhaseRecorder getConnectionPhaseRecorder() {
+        final DlmsMessageListener current = this.target;
+        return current == null ? null : current.getConnectionPhaseRecorder();
+    }
+
+    @Override
+    public FlightRecorder getFlightRecorder() {
+        final DlmsMessageListener current = this.target;
+        return current == null ? null : current.getFlightRecorder();
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.domain.factories;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+/**
+ * Decides whether a request reconnects to a device after its connection broke,
+ * instead of failing the request so it is retried later as a whole.
+ * <p>
+ * A request reconnects at most the configured number of times. Reconnects are
+ * attempted right away: the request holds the lock for the device and a
+ * connection permit, so it does not wait before reconnecting. When waiting is
+ * needed, the request fails and the retry of the request, which is scheduled
+ * with a delay, resumes it later. On top of that, reconnects are limited by a
+ * retry budget shared by all requests: every
+ * request adds the configured ratio of a reconnect to the budget (up to the
+ * configured maximum), and every reconnect takes one. When many connections
+ * break, for instance because of network problems, the budget runs out and
+ * requests fall back to being retried later.
+ */
+@ManagedResource(objectName = "org.opensmartgridplatform.adapter.protocol.dlms:name=ReconnectPolicy", description = "Reconnects to devices after a connection broke during a request")
+public class ReconnectPolicy {
+
+    /**
+     * The retry budget is kept in thousandths of a reconnect.
+     */
+    private static final long UNIT = 1000;
+
+    private final int maxAttempts;
+    private final long depositPerRequest;
+    private final long maxBudget;
+
+    private final AtomicLong budget;
+
+    private final AtomicLong reconnectAttempts = new AtomicLong();
+    private final AtomicLong successfulReconnects = new AtomicLong();
+    private final AtomicLong budgetExhausted = new AtomicLong();
+
+    /**
+     * @param maxAttempts
+     *            maximum number of reconnects per request, 0 to never
+     *            reconnect.
+     * @param budgetRatio
+     *            number of reconnects added to the retry budget for every
+     *            request.
+     * @param maxBudget
+     *            maximum number of reconnects in the retry budget.
+     */
+    public ReconnectPolicy(final int maxAttempts, final double budgetRatio, final int maxBudget) {
+        this.maxAttempts = maxAttempts;
+        this.depositPerRequest = Math.round(budgetRatio * UNIT);
+        this.maxBudget = maxBudget * UNIT;
+        this.budget = new AtomicLong(this.maxBudget);
+    }
+
+    /**
+     * Adds to the retry budget for a request that communicates with a device.
+     */
+    public void recordRequest() {
+        this.budget.accumulateAndGet(this.depositPerRequest, (current, deposit) -> Math.min(this.maxBudget,
+                current + deposit));
+    }
+
+    /**
+     * Checks whether a request may reconnect, and takes the reconnect from the
+     * retry budget if it may.
+     *
+     * @param attempt
+     *            the number of the reconnect for the request, starting at 1.
+     */
+    public boolean tryReconnect(final int attempt) {
+        if (attempt > this.maxAttempts) {
+            return false;
+        }
+        final long remaining = this.budget.getAndUpdate(current -> current >= UNIT ? current - UNIT : current);
+        if (remaining < UNIT) {
+            this.budgetExhausted.incrementAndGet();
+            return false;
+        }
+        this.reconnectAttempts.incrementAndGet();
+        return true;
+    }
+
+    public void recordReconnected() {
+        this.successfulReconnects.incrementAndGet();
+    }
+
+    @ManagedAttribute(description = "Number of reconnects attempted")
+    public long getReconnectAttempts() {
+        return this.reconnectAttempts.get();
+    }
+
+    @ManagedAttribute(description = "Number of successful reconnects")
+    public long getSuccessfulReconnects() {
+        return this.successfulReconnects.get();
+    }
+
+    @ManagedAttribute(description = "Number of reconnects not attempted because the retry budget ran out")
+    public long getBudgetExhausted() {
+        return this.budgetExhausted.get();
+    }
+
+    @ManagedAttribute(description = "Number of reconnects left in the retry budget")
+    public double getRetryBudget() {
+        return (double) this.budget.get() / UNIT;
+    }
+}
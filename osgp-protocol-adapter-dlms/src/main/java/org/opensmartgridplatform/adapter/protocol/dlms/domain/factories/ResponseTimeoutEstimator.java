@@ -0,0 +1,232 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.domain.factories;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.openmuc.jdlms.RawMessageData;
+import org.openmuc.jdlms.RawMessageData.MessageSource;
+import org.openmuc.jdlms.RawMessageListener;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+/**
+ * Determines the response timeout for a device from the response times
+ * observed earlier, the way TCP determines its retransmission timeout: a
+ * smoothed response time plus four times its variation.
+ * <p>
+ * The observed response times are the round trips of the APDUs exchanged with
+ * the device: the time from sending a request until the next response is
+ * received, see {@link #measure(String, RawMessageListener)}.
+ * <p>
+ * The response timeout applies to every APDU of a session. Message types that
+ * read large amounts of data, for which a single response may take much
+ * longer than usual, are excluded and always get the configured response
+ * timeout. So do connections for which the message type is not known.
+ * <p>
+ * The configured response timeout of a connector is the upper bound. It is
+ * used as is for devices without observed response times. Every failed
+ * connection attempt doubles the timeout for a device (at most
+ * {@value #MAX_BACKOFF} times), until a response is received again.
+ */
+@ManagedResource(objectName = "org.opensmartgridplatform.adapter.protocol.dlms:name=ResponseTimeoutEstimator", description = "Response timeouts per device based on observed response times")
+public class ResponseTimeoutEstimator {
+
+    private static final int MAX_BACKOFF = 2;
+
+    private static final class Estimate {
+        private long smoothedResponseTime;
+        private long responseTimeVariation;
+        private int backoff;
+
+        private synchronized void record(final long responseTime) {
+            if (this.smoothedResponseTime == 0) {
+                this.smoothedResponseTime = responseTime;
+                this.responseTimeVariation = responseTime / 2;
+            } else {
+                this.responseTimeVariation = (3 * this.responseTimeVariation
+                        + Math.abs(this.smoothedResponseTime - responseTime)) / 4;
+                this.smoothedResponseTime = (7 * this.smoothedResponseTime + responseTime) / 8;
+            }
+            this.backoff = 0;
+        }
+
+        private synchronized void failed() {
+            if (this.backoff < MAX_BACKOFF) {
+                this.backoff++;
+            }
+        }
+
+        private synchronized long timeout() {
+            return (this.smoothedResponseTime + 4 * this.responseTimeVariation) << this.backoff;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return String.format("srtt=%d, rttvar=%d, backoff=%d", this.smoothedResponseTime,
+                    this.responseTimeVariation, this.backoff);
+        }
+    }
+
+    /**
+     * Measures the round trips of the APDUs exchanged over one connection,
+     * passing the messages on to the listener of the connection.
+     */
+    private final class RoundTripMeasuringListener implements RawMessageListener {
+        private final String deviceIdentification;
+        private final RawMessageListener listener;
+
+        private volatile boolean awaitingResponse;
+        private volatile long requestSentAt;
+
+        private RoundTripMeasuringListener(final String deviceIdentification, final RawMessageListener listener) {
+            this.deviceIdentification = deviceIdentification;
+            this.listener = listener;
+        }
+
+        @Override
+        public void messageCaptured(final RawMessageData rawMessageData) {
+            final long now = System.currentTimeMillis();
+            if (MessageSource.CLIENT == rawMessageData.getMessageSource()) {
+                this.requestSentAt = now;
+                this.awaitingResponse = true;
+            } else if (this.awaitingResponse) {
+                this.awaitingResponse = false;
+                ResponseTimeoutEstimator.this.recordResponseTime(this.deviceIdentification,
+                        now - this.requestSentAt);
+            }
+            if (this.listener != null) {
+                this.listener.messageCaptured(rawMessageData);
+            }
+        }
+    }
+
+    private final boolean enabled;
+    private final int minimumTimeout;
+    private final int maxTrackedDevices;
+    private final Set<String> excludedMessageTypes;
+
+    private final Map<String, Estimate> estimates = new ConcurrentHashMap<>();
+
+    /**
+     * @param enabled
+     *            whether response timeouts are adapted per device.
+     * @param minimumTimeout
+     *            lower bound in milliseconds for the response timeout.
+     * @param maxTrackedDevices
+     *            maximum number of devices for which response times are kept.
+     * @param excludedMessageTypes
+     *            message types that always get the configured response
+     *            timeout.
+     */
+    public ResponseTimeoutEstimator(final boolean enabled, final int minimumTimeout, final int maxTrackedDevices,
+            final Collection<String> excludedMessageTypes) {
+        this.enabled = enabled;
+        this.minimumTimeout = minimumTimeout;
+        this.maxTrackedDevices = maxTrackedDevices;
+        this.excludedMessageTypes = new HashSet<>(excludedMessageTypes);
+    }
+
+    /**
+     * @return whether the response timeout of connections for the given
+     *         message type may be shorter than the configured response
+     *         timeout.
+     */
+    public boolean isAdaptive(final String messageType) {
+        return this.enabled && messageType != null && !this.excludedMessageTypes.contains(messageType);
+    }
+
+    /**
+     * @param deviceIdentification
+     *            the device to determine the timeout for.
+     * @param messageType
+     *            the message type of the request the connection is set up
+     *            for, {@code null} if not known.
+     * @param maximumTimeout
+     *            the configured response timeout in milliseconds.
+     * @return the response timeout in milliseconds to use for the device.
+     */
+    public int getResponseTimeout(final String deviceIdentification, final String messageType,
+            final int maximumTimeout) {
+        if (!this.isAdaptive(messageType)) {
+            return maximumTimeout;
+        }
+        final Estimate estimate = this.estimates.get(deviceIdentification);
+        if (estimate == null) {
+            return maximumTimeout;
+        }
+        final long timeout = Math.max(this.minimumTimeout, estimate.timeout());
+        return (int) Math.min(maximumTimeout, timeout);
+    }
+
+    /**
+     * @param listener
+     *            the listener to register with a connection with the device,
+     *            may be {@code null}.
+     * @return a listener that measures the response times of the device
+     *         before passing the messages on to the given listener, or the
+     *         given listener if response timeouts are not adapted.
+     */
+    public RawMessageListener measure(final String deviceIdentification, final RawMessageListener listener) {
+        if (!this.enabled) {
+            return listener;
+        }
+        return new RoundTripMeasuringListener(deviceIdentification, listener);
+    }
+
+    /**
+     * Records the time it took the device to respond to a request.
+     */
+    public void recordResponseTime(final String deviceIdentification, final long responseTime) {
+        if (!this.enabled) {
+            return;
+        }
+        Estimate estimate = this.estimates.get(deviceIdentification);
+        if (estimate == null) {
+            if (this.estimates.size() >= this.maxTrackedDevices) {
+                return;
+            }
+            estimate = this.estimates.computeIfAbsent(deviceIdentification, key -> new Estimate());
+        }
+        estimate.record(Math.max(1, responseTime));
+    }
+
+    /**
+     * Records that the device did not respond in time, or not at all.
+     */
+    public void recordFailure(final String deviceIdentification) {
+        if (!this.enabled) {
+            return;
+        }
+        final Estimate estimate = this.estimates.get(deviceIdentification);
+        if (estimate != null) {
+            estimate.failed();
+        }
+    }
+
+    @ManagedAttribute(description = "Number of devices for which response times are kept")
+    public int getTrackedDevices() {
+        return this.estimates.size();
+    }
+
+    @ManagedOperation(description = "Shows the response time estimate for a device")
+    public String getEstimate(final String deviceIdentification) {
+        final Estimate estimate = this.estimates.get(deviceIdentification);
+        return estimate == null ? "no response times observed" : estimate.toString();
+    }
+
+    @ManagedOperation(description = "Forgets all observed response times")
+    public void reset() {
+        this.estimates.clear();
+    }
+}
@@ -16,8 +16,8 @@ import org.openmuc.jdlms.settings.client.ReferencingMethod;
 import org.opensmartgridplatform.adapter.protocol.dlms.domain.entities.DlmsDevice;
 import org.opensmartgridplatform.adapter.protocol.dlms.domain.entities.SecurityKey;
 import org.opensmartgridplatform.adapter.protocol.dlms.domain.entities.SecurityKeyType;
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.valueobjects.RequestDeadline;
 import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.DlmsMessageListener;
-import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.InvocationCountingDlmsMessageListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -54,6 +54,10 @@ public abstract class SecureDlmsConnector extends Lls0Connector {
      *            The device to connect with.
      * @param dlmsMessageListener
      *            Listener to set on the connection.
+     * @param deadline
+     *            The deadline of the request the connection is for.
+     * @param messageType
+     *            The message type of the request the connection is for.
      * @return The connection.
      * @throws IOException
      *             When there are problems in connecting to or communicating
@@ -62,13 +66,14 @@ public abstract class SecureDlmsConnector extends Lls0Connector {
      *             When there are problems reading the security and
      *             authorization keys.
      */
-    protected DlmsConnection createConnection(final DlmsDevice device, final DlmsMessageListener dlmsMessageListener)
-            throws IOException, OsgpException {
+    protected DlmsConnection createConnection(final DlmsDevice device, final DlmsMessageListener dlmsMessageListener,
+            final RequestDeadline deadline, final String messageType) throws IOException, OsgpException {
 
         // Setup connection to device
         final TcpConnectionBuilder tcpConnectionBuilder = new TcpConnectionBuilder(
-                InetAddress.getByName(device.getIpAddress())).setResponseTimeout(this.responseTimeout)
-                .setLogicalDeviceId(this.logicalDeviceAddress);
+                InetAddress.getByName(device.getIpAddress()))
+                        .setResponseTimeout(this.getResponseTimeout(device, deadline, messageType))
+                        .setLogicalDeviceId(this.logicalDeviceAddress);
         tcpConnectionBuilder.setClientId(this.clientAccessPoint)
         .setReferencingMethod(device.isUseSn() ? ReferencingMethod.SHORT : ReferencingMethod.LOGICAL);
 
@@ -79,11 +84,10 @@ public abstract class SecureDlmsConnector extends Lls0Connector {
         this.setSecurity(device, tcpConnectionBuilder);
         this.setOptionalValues(device, tcpConnectionBuilder);
 
-        if (device.isInDebugMode() || dlmsMessageListener instanceof InvocationCountingDlmsMessageListener) {
-            tcpConnectionBuilder.setRawMessageListener(dlmsMessageListener);
-        }
+        this.setRawMessageListener(device, tcpConnectionBuilder,
+                this.getRawMessageListener(device, dlmsMessageListener));
 
-        return tcpConnectionBuilder.build();
+        return this.buildConnection(device, tcpConnectionBuilder);
     }
 
     /**
@@ -8,7 +8,10 @@
 package org.opensmartgridplatform.adapter.protocol.dlms.domain.repositories;
 
 import org.opensmartgridplatform.adapter.protocol.dlms.domain.entities.DlmsDevice;
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.valueobjects.DlmsDeviceVersion;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 @Repository
@@ -16,6 +19,23 @@ public interface DlmsDeviceRepository extends JpaRepository<DlmsDevice, Long> {
 
     DlmsDevice findByDeviceIdentification(String deviceIdentification);
 
-    DlmsDevice findByMbusIdentificationNumberAndMbusManufacturerIdentification(Long mbusIdentificationNumber,
-            String mbusManufacturerIdentification);
+    /**
+     * Finds only the version of the device with its current security keys,
+     * to check whether a cached copy of the device is still up to date.
+     */
+    @Query("SELECT NEW org.opensmartgridplatform.adapter.protocol.dlms.domain.valueobjects.DlmsDeviceVersion("
+            + "d.version, COUNT(k), SUM(k.version)) FROM DlmsDevice d LEFT JOIN d.securityKeys k ON k.validTo IS NULL "
+            + "WHERE d.deviceIdentification = (:deviceIdentification) GROUP BY d.version")
+    DlmsDeviceVersion findVersionByDeviceIdentification(@Param("deviceIdentification") String deviceIdentification);
+
+    /**
+     * Finds only the identification of the device with the given M-Bus
+     * identification, without reading the device and its keys.
+     */
+    @Query("SELECT d.deviceIdentification FROM DlmsDevice d "
+            + "WHERE d.mbusIdentificationNumber = (:mbusIdentificationNumber) "
+            + "AND d.mbusManufacturerIdentification = (:mbusManufacturerIdentification)")
+    String findDeviceIdentificationByMbusIdentification(
+            @Param("mbusIdentificationNumber") Long mbusIdentificationNumber,
+            @Param("mbusManufacturerIdentification") String mbusManufacturerIdentification);
 }
@@ -7,15 +7,18 @@
  */
 package org.opensmartgridplatform.adapter.protocol.dlms.domain.repositories;
 
+import java.util.Date;
 import java.util.List;
 
 import org.opensmartgridplatform.adapter.protocol.dlms.domain.entities.DlmsDevice;
 import org.opensmartgridplatform.adapter.protocol.dlms.domain.entities.SecurityKey;
 import org.opensmartgridplatform.adapter.protocol.dlms.domain.entities.SecurityKeyType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 @Repository
 public interface DlmsSecurityKeyRepository extends JpaRepository<SecurityKey, Long> {
@@ -29,4 +32,37 @@ public interface DlmsSecurityKeyRepository extends JpaRepository<SecurityKey, Lo
     SecurityKey findByDlmsDeviceAndSecurityKeyTypeAndValidToNotNull(DlmsDevice dlmsDevice,
             SecurityKeyType securityKeyType);
 
-}
\ No newline at end of file
+    @Query("SELECT s.invocationCounter FROM SecurityKey s WHERE s.id = (:id)")
+    Integer findInvocationCounterById(@Param("id") Long id);
+
+    /**
+     * Increments the invocation counter of the key with the given id in the
+     * database, without loading the key or its device.
+     *
+     * @return the number of updated keys
+     */
+    @Transactional(value = "transactionManager")
+    @Modifying
+    @Query("UPDATE SecurityKey s SET s.invocationCounter = COALESCE(s.invocationCounter, 0) + (:increment) "
+            + "WHERE s.id = (:id)")
+    int incrementInvocationCounter(@Param("id") Long id, @Param("increment") int increment);
+
+    /**
+     * Moves at most {@code batchSize} keys that expired before the given time
+     * from the security_key table to the security_key_archive table, in a
+     * single statement.
+     *
+     * @return the number of archived keys
+     */
+    @Transactional(value = "transactionManager")
+    @Modifying
+    @Query(value = "WITH archived AS (DELETE FROM security_key WHERE id IN ("
+            + "SELECT id FROM security_key WHERE valid_to < (:expiredBefore) ORDER BY id LIMIT (:batchSize)) "
+            + "RETURNING id, creation_time, modification_time, version, dlms_device_id, security_key_type, "
+            + "valid_from, valid_to, security_key, invocation_counter) "
+            + "INSERT INTO security_key_archive (id, creation_time, modification_time, version, dlms_device_id, "
+            + "security_key_type, valid_from, valid_to, security_key, invocation_counter, archived_time) "
+            + "SELECT id, creation_time, modification_time, version, dlms_device_id, security_key_type, valid_from, "
+            + "valid_to, security_key, invocation_counter, now() FROM archived", nativeQuery = true)
+    int archiveKeysExpiredBefore(@Param("expiredBefore") Date expiredBefore, @Param("batchSize") int batchSize);
+}
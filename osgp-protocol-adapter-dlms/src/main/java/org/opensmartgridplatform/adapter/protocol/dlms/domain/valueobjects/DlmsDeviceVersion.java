@@ -0,0 +1,74 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.domain.valueobjects;
+
+import java.util.Objects;
+
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.entities.DlmsDevice;
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.entities.SecurityKey;
+
+/**
+ * Version of a DLMS device together with its current security keys, which
+ * changes whenever the device or one of its current keys is saved, or a key
+ * is added or expires. Saving a key does not change the version of the device
+ * itself.
+ */
+public final class DlmsDeviceVersion {
+
+    private final long deviceVersion;
+    private final long numberOfKeys;
+    private final long sumOfKeyVersions;
+
+    public DlmsDeviceVersion(final Long deviceVersion, final Long numberOfKeys, final Long sumOfKeyVersions) {
+        this.deviceVersion = deviceVersion == null ? -1 : deviceVersion;
+        this.numberOfKeys = numberOfKeys == null ? 0 : numberOfKeys;
+        this.sumOfKeyVersions = sumOfKeyVersions == null ? 0 : sumOfKeyVersions;
+    }
+
+    /**
+     * @return the version of the device as read from the database, with the
+     *         keys read with it.
+     */
+    public static DlmsDeviceVersion of(final DlmsDevice device) {
+        long sumOfKeyVersions = 0;
+        for (final SecurityKey securityKey : device.getSecurityKeys()) {
+            if (securityKey.getVersion() != null) {
+                sumOfKeyVersions += securityKey.getVersion();
+            }
+        }
+        return new DlmsDeviceVersion(device.getVersion(), (long) device.getSecurityKeys().size(), sumOfKeyVersions);
+    }
+
+    public long getDeviceVersion() {
+        return this.deviceVersion;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof DlmsDeviceVersion)) {
+            return false;
+        }
+        final DlmsDeviceVersion other = (DlmsDeviceVersion) o;
+        return this.deviceVersion == other.deviceVersion && this.numberOfKeys == other.numberOfKeys
+                && this.sumOfKeyVersions == other.sumOfKeyVersions;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.deviceVersion, this.numberOfKeys, this.sumOfKeyVersions);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("DlmsDeviceVersion[device=%d, keys=%d, keyVersions=%d]", this.deviceVersion,
+                this.numberOfKeys, this.sumOfKeyVersions);
+    }
+}
@@ -0,0 +1,79 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.domain.valueobjects;
+
+import org.opensmartgridplatform.adapter.protocol.dlms.exceptions.DeadlineExceededException;
+
+/**
+ * The time after which nobody waits for the response to a request anymore, so
+ * communicating with the device for it is wasted effort.
+ */
+public final class RequestDeadline {
+
+    /**
+     * A deadline for requests without a known expiration time.
+     */
+    public static final RequestDeadline NONE = new RequestDeadline(0);
+
+    private final long expirationTime;
+
+    private RequestDeadline(final long expirationTime) {
+        this.expirationTime = expirationTime;
+    }
+
+    /**
+     * @param expirationTime
+     *            the expiration time in milliseconds since the epoch, as in
+     *            {@code JMSExpiration}, 0 if the request does not expire.
+     */
+    public static RequestDeadline of(final long expirationTime) {
+        if (expirationTime <= 0) {
+            return NONE;
+        }
+        return new RequestDeadline(expirationTime);
+    }
+
+    public boolean isExpired() {
+        return this.expirationTime > 0 && System.currentTimeMillis() >= this.expirationTime;
+    }
+
+    /**
+     * @return the time in milliseconds until the deadline, or
+     *         {@code Long.MAX_VALUE} without a deadline.
+     */
+    public long getRemainingTime() {
+        if (this.expirationTime <= 0) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, this.expirationTime - System.currentTimeMillis());
+    }
+
+    /**
+     * @return the timeout, or the remaining time if that is shorter.
+     */
+    public int capTimeout(final int timeout) {
+        return (int) Math.max(1, Math.min(timeout, this.getRemainingTime()));
+    }
+
+    /**
+     * @param stage
+     *            description of the work that is about to start.
+     * @throws DeadlineExceededException
+     *             if the deadline has passed.
+     */
+    public void check(final String stage) {
+        if (this.isExpired()) {
+            throw new DeadlineExceededException(stage, this.expirationTime);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.expirationTime <= 0 ? "no deadline" : "deadline " + this.expirationTime;
+    }
+}
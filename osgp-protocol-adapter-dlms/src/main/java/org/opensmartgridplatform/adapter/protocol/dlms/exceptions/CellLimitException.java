@@ -0,0 +1,26 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.exceptions;
+
+/**
+ * Thrown instead of connecting to a device while too many connection attempts
+ * to devices in the same network cell are in progress. Nothing is known about
+ * the device itself, so this is not a failure to connect. The request can be
+ * retried later.
+ * <p>
+ * This exception is thrown often during outages and is not thrown because of
+ * a programming error, so no stack trace is filled in.
+ */
+public class CellLimitException extends RetryableException {
+
+    private static final long serialVersionUID = 6384420575217036930L;
+
+    public CellLimitException(final String message) {
+        super(message, null, false, false);
+    }
+}
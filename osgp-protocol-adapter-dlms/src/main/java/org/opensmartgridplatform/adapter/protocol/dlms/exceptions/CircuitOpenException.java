@@ -0,0 +1,25 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.exceptions;
+
+/**
+ * Thrown instead of connecting to a device while earlier connection attempts
+ * to the device, or to devices in the same network, keep failing. The request
+ * can be retried later.
+ * <p>
+ * This exception is thrown often during outages and is not thrown because of
+ * a programming error, so no stack trace is filled in.
+ */
+public class CircuitOpenException extends RetryableException {
+
+    private static final long serialVersionUID = 6322094563510262573L;
+
+    public CircuitOpenException(final String message) {
+        super(message, null, false, false);
+    }
+}
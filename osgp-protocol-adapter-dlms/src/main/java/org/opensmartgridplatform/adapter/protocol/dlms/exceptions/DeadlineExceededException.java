@@ -0,0 +1,29 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.exceptions;
+
+/**
+ * Thrown when work for a request is about to start after the deadline of the
+ * request has passed. The request is dropped, not retried: nobody is waiting
+ * for its response anymore.
+ */
+public class DeadlineExceededException extends RuntimeException {
+
+    private static final long serialVersionUID = 6307829131620254405L;
+
+    private final String stage;
+
+    public DeadlineExceededException(final String stage, final long expirationTime) {
+        super(String.format("Deadline %d passed before %s", expirationTime, stage), null, false, false);
+        this.stage = stage;
+    }
+
+    public String getStage() {
+        return this.stage;
+    }
+}
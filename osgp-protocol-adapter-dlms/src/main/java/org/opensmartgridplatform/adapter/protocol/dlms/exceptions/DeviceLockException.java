@@ -0,0 +1,25 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.exceptions;
+
+/**
+ * Thrown when a device is still busy with another request after waiting for
+ * it, so the request can be retried later.
+ */
+public class DeviceLockException extends RetryableException {
+
+    private static final long serialVersionUID = -1873604318243457052L;
+
+    public DeviceLockException(final String message) {
+        super(message);
+    }
+
+    public DeviceLockException(final String message, final Throwable cause) {
+        super(message, cause);
+    }
+}
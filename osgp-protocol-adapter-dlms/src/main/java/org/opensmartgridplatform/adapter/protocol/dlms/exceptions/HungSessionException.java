@@ -0,0 +1,26 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.exceptions;
+
+/**
+ * Thrown when a request fails because its session with the device was closed
+ * by the watchdog for taking too long. The device may respond normally later,
+ * so the request can be retried.
+ */
+public class HungSessionException extends RetryableException {
+
+    private static final long serialVersionUID = 3128745716530671385L;
+
+    public HungSessionException(final String message, final Throwable cause) {
+        super(message, cause);
+    }
+
+    public HungSessionException(final String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,154 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.infra.db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+/**
+ * Data source that keeps track of the connections taken from the pool, and of
+ * the time spent waiting for them.
+ * <p>
+ * The connection pool is small compared to the number of threads
+ * communicating with devices, so a connection should never be held while
+ * waiting for a device. The number of connections in use, and the time
+ * threads wait for a connection, show whether that holds.
+ */
+@ManagedResource(objectName = "org.opensmartgridplatform.adapter.protocol.dlms:name=DlmsDataSource", description = "Use of the database connection pool")
+public class MeteredDataSource extends DelegatingDataSource {
+
+    private final AtomicInteger activeConnections = new AtomicInteger();
+    private final AtomicInteger maxActiveConnections = new AtomicInteger();
+    private final AtomicInteger waitingThreads = new AtomicInteger();
+    private final AtomicLong acquiredConnections = new AtomicLong();
+    private final AtomicLong failedAcquisitions = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    public MeteredDataSource(final DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return this.acquire(() -> super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(final String username, final String password) throws SQLException {
+        return this.acquire(() -> super.getConnection(username, password));
+    }
+
+    private Connection acquire(final Callable<Connection> pool) throws SQLException {
+        final long start = System.nanoTime();
+        this.waitingThreads.incrementAndGet();
+        final Connection connection;
+        try {
+            connection = pool.call();
+        } catch (final SQLException | RuntimeException e) {
+            this.failedAcquisitions.incrementAndGet();
+            throw e;
+        } catch (final Exception e) {
+            this.failedAcquisitions.incrementAndGet();
+            throw new SQLException(e);
+        } finally {
+            this.waitingThreads.decrementAndGet();
+            final long waitNanos = System.nanoTime() - start;
+            this.totalWaitNanos.addAndGet(waitNanos);
+            this.maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+        }
+
+        this.acquiredConnections.incrementAndGet();
+        this.maxActiveConnections.accumulateAndGet(this.activeConnections.incrementAndGet(), Math::max);
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, new ReleaseCountingHandler(connection));
+    }
+
+    /**
+     * Counts a connection as released when it is closed the first time.
+     */
+    private final class ReleaseCountingHandler implements InvocationHandler {
+        private final Connection target;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private ReleaseCountingHandler(final Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+            if ("close".equals(method.getName()) && method.getParameterCount() == 0
+                    && this.released.compareAndSet(false, true)) {
+                MeteredDataSource.this.activeConnections.decrementAndGet();
+            }
+            try {
+                return method.invoke(this.target, args);
+            } catch (final InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    @ManagedAttribute(description = "Number of connections taken from the pool and not yet returned")
+    public int getActiveConnections() {
+        return this.activeConnections.get();
+    }
+
+    @ManagedAttribute(description = "Highest number of connections in use at the same time")
+    public int getMaxActiveConnections() {
+        return this.maxActiveConnections.get();
+    }
+
+    @ManagedAttribute(description = "Number of threads waiting for a connection from the pool")
+    public int getWaitingThreads() {
+        return this.waitingThreads.get();
+    }
+
+    @ManagedAttribute(description = "Number of connections taken from the pool")
+    public long getAcquiredConnections() {
+        return this.acquiredConnections.get();
+    }
+
+    @ManagedAttribute(description = "Number of times no connection could be taken from the pool")
+    public long getFailedAcquisitions() {
+        return this.failedAcquisitions.get();
+    }
+
+    @ManagedAttribute(description = "Average time in milliseconds waited for a connection from the pool")
+    public double getAverageWaitTimeMillis() {
+        final long attempts = this.acquiredConnections.get() + this.failedAcquisitions.get();
+        return attempts == 0 ? 0 : (double) this.totalWaitNanos.get() / attempts / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @ManagedAttribute(description = "Longest time in milliseconds waited for a connection from the pool")
+    public long getMaxWaitTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(this.maxWaitNanos.get());
+    }
+
+    @ManagedOperation(description = "Resets the highest number of connections in use and the longest wait time")
+    public void resetMaxima() {
+        this.maxActiveConnections.set(this.activeConnections.get());
+        this.maxWaitNanos.set(0);
+    }
+}
@@ -0,0 +1,180 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+/**
+ * Encodes large response messages compactly, as Java serialization
+ * compressed with deflate.
+ * <p>
+ * When enabled, responses are sent as a {@code BytesMessage} marked with the
+ * {@link #PAYLOAD_ENCODING} property, so the receiver can decode them with
+ * {@link #decode(byte[], String)}. Responses with a serialized size below the
+ * threshold have the serialized response as body, so they are not serialized
+ * a second time for an {@code ObjectMessage}. Larger responses have the
+ * compressed serialized response as body.
+ */
+@ManagedResource(objectName = "org.opensmartgridplatform.adapter.protocol.dlms:name=CompactPayloadCodec", description = "Compression of large response messages")
+public class CompactPayloadCodec {
+
+    /**
+     * Name of the message property that tells how the body of the message is
+     * encoded.
+     */
+    public static final String PAYLOAD_ENCODING = "PayloadEncoding";
+
+    /**
+     * Value of {@link #PAYLOAD_ENCODING} for Java serialization compressed
+     * with deflate.
+     */
+    public static final String JAVA_SERIALIZATION_DEFLATE = "java-serialization+deflate";
+
+    /**
+     * Value of {@link #PAYLOAD_ENCODING} for plain Java serialization.
+     */
+    public static final String JAVA_SERIALIZATION = "java-serialization";
+
+    /**
+     * Encoded payload with the {@link #PAYLOAD_ENCODING} it is encoded with.
+     */
+    public static final class EncodedPayload {
+        private final byte[] bytes;
+        private final String encoding;
+
+        private EncodedPayload(final byte[] bytes, final String encoding) {
+            this.bytes = bytes;
+            this.encoding = encoding;
+        }
+
+        public byte[] getBytes() {
+            return this.bytes;
+        }
+
+        public String getEncoding() {
+            return this.encoding;
+        }
+    }
+
+    private final int threshold;
+
+    private final AtomicLong compressedMessages = new AtomicLong();
+    private final AtomicLong serializedBytes = new AtomicLong();
+    private final AtomicLong compressedBytes = new AtomicLong();
+
+    /**
+     * @param threshold
+     *            serialized size in bytes from which payloads are compressed,
+     *            0 to never encode payloads.
+     */
+    public CompactPayloadCodec(final int threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * Serializes the payload once, and compresses it if the serialized size is
+     * at least the threshold.
+     *
+     * @return the encoded payload, or {@code null} if the codec is disabled
+     *         and the payload should be sent as an {@code ObjectMessage}.
+     */
+    public EncodedPayload encodeForSending(final Serializable payload) throws IOException {
+        if (this.threshold <= 0) {
+            return null;
+        }
+        final byte[] serialized = serialize(payload);
+        if (serialized.length < this.threshold) {
+            return new EncodedPayload(serialized, JAVA_SERIALIZATION);
+        }
+        final byte[] compressed = compress(serialized);
+        this.compressedMessages.incrementAndGet();
+        this.serializedBytes.addAndGet(serialized.length);
+        this.compressedBytes.addAndGet(compressed.length);
+        return new EncodedPayload(compressed, JAVA_SERIALIZATION_DEFLATE);
+    }
+
+    /**
+     * Encodes the payload regardless of its size.
+     */
+    public static byte[] encode(final Serializable payload) throws IOException {
+        return compress(serialize(payload));
+    }
+
+    /**
+     * Decodes a payload encoded with {@link #JAVA_SERIALIZATION_DEFLATE}.
+     */
+    public static Serializable decode(final byte[] encoded) throws IOException, ClassNotFoundException {
+        return decode(encoded, JAVA_SERIALIZATION_DEFLATE);
+    }
+
+    /**
+     * Decodes a payload encoded with the given {@link #PAYLOAD_ENCODING}.
+     */
+    public static Serializable decode(final byte[] encoded, final String encoding)
+            throws IOException, ClassNotFoundException {
+        final InputStream bytes = new ByteArrayInputStream(encoded);
+        final InputStream decoded;
+        if (JAVA_SERIALIZATION.equals(encoding)) {
+            decoded = bytes;
+        } else if (JAVA_SERIALIZATION_DEFLATE.equals(encoding)) {
+            decoded = new InflaterInputStream(bytes);
+        } else {
+            throw new IOException("Unsupported payload encoding: " + encoding);
+        }
+        try (final ObjectInputStream in = new ObjectInputStream(decoded)) {
+            return (Serializable) in.readObject();
+        }
+    }
+
+    private static byte[] serialize(final Serializable payload) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (final ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(payload);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] compress(final byte[] serialized) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(serialized.length / 4);
+        final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (final DeflaterOutputStream out = new DeflaterOutputStream(bytes, deflater)) {
+            out.write(serialized);
+        } finally {
+            deflater.end();
+        }
+        return bytes.toByteArray();
+    }
+
+    @ManagedAttribute(description = "Number of response messages sent compressed")
+    public long getCompressedMessages() {
+        return this.compressedMessages.get();
+    }
+
+    @ManagedAttribute(description = "Serialized size in bytes of the response messages sent compressed")
+    public long getSerializedBytes() {
+        return this.serializedBytes.get();
+    }
+
+    @ManagedAttribute(description = "Compressed size in bytes of the response messages sent compressed")
+    public long getCompressedBytes() {
+        return this.compressedBytes.get();
+    }
+}
@@ -0,0 +1,134 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging;
+
+import org.openmuc.jdlms.RawMessageData;
+import org.openmuc.jdlms.RawMessageData.MessageSource;
+import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.DlmsConnectionMetrics.Phase;
+
+/**
+ * Measures the phases of a single connection with a device, based on the
+ * moments APDUs are captured by the {@link DlmsMessageListener} of the
+ * connection.
+ * <p>
+ * While connecting, the time until the first APDU is sent is the TCP connect,
+ * and the time from there until the connection is established is the
+ * handshake. After that, the time between sending an APDU and receiving the
+ * next one is an APDU round trip.
+ */
+public class ConnectionPhaseRecorder {
+
+    private final DlmsConnectionMetrics metrics;
+    private final String securityLevel;
+
+    private volatile String messageType;
+
+    private volatile boolean connecting;
+    private volatile long connectStartedAt;
+    private volatile long firstRequestSentAt;
+
+    private volatile boolean awaitingResponse;
+    private volatile long requestSentAt;
+
+    private volatile boolean releasing;
+
+    ConnectionPhaseRecorder(final DlmsConnectionMetrics metrics, final String messageType,
+            final String securityLevel) {
+        this.metrics = metrics;
+        this.messageType = messageType;
+        this.securityLevel = securityLevel;
+    }
+
+    public void setMessageType(final String messageType) {
+        this.messageType = messageType;
+    }
+
+    public String getMessageType() {
+        return this.messageType;
+    }
+
+    public String getSecurityLevel() {
+        return this.securityLevel;
+    }
+
+    public void connectStarted() {
+        this.connectStartedAt = System.currentTimeMillis();
+        this.firstRequestSentAt = 0;
+        this.awaitingResponse = false;
+        this.releasing = false;
+        this.connecting = true;
+    }
+
+    public void connectFinished(final boolean success) {
+        if (!this.connecting) {
+            return;
+        }
+        this.connecting = false;
+        this.awaitingResponse = false;
+
+        final long now = System.currentTimeMillis();
+        if (this.firstRequestSentAt == 0) {
+            this.record(Phase.TCP_CONNECT, success, now - this.connectStartedAt);
+        } else {
+            this.record(Phase.TCP_CONNECT, true, this.firstRequestSentAt - this.connectStartedAt);
+            this.record(Phase.HANDSHAKE, success, now - this.firstRequestSentAt);
+        }
+    }
+
+    public void messageCaptured(final RawMessageData rawMessageData) {
+        final long now = System.currentTimeMillis();
+        final boolean sent = MessageSource.CLIENT == rawMessageData.getMessageSource();
+
+        final byte[] message = rawMessageData.getMessage();
+        if (message != null) {
+            this.metrics.recordApdu(this.messageType, this.securityLevel, sent, message.length);
+        }
+
+        if (this.connecting || this.releasing) {
+            if (sent && this.connecting && this.firstRequestSentAt == 0) {
+                this.firstRequestSentAt = now;
+            }
+            return;
+        }
+
+        if (sent) {
+            if (this.awaitingResponse) {
+                // The previous request did not get a response.
+                this.record(Phase.APDU, false, now - this.requestSentAt);
+            }
+            this.requestSentAt = now;
+            this.awaitingResponse = true;
+        } else if (this.awaitingResponse) {
+            this.awaitingResponse = false;
+            this.record(Phase.APDU, true, now - this.requestSentAt);
+        }
+    }
+
+    /**
+     * @return the moment the release started, to be passed to
+     *         {@link #releaseFinished(long, boolean)}.
+     */
+    public long releaseStarted() {
+        final long now = System.currentTimeMillis();
+        if (this.awaitingResponse) {
+            this.awaitingResponse = false;
+            this.record(Phase.APDU, false, now - this.requestSentAt);
+        }
+        this.releasing = true;
+        return now;
+    }
+
+    public void releaseFinished(final long releaseStartedAt, final boolean success) {
+        this.releasing = false;
+        this.record(Phase.RELEASE, success, System.currentTimeMillis() - releaseStartedAt);
+    }
+
+    private void record(final Phase phase, final boolean success, final long durationMillis) {
+        this.metrics.record(phase, this.messageType, this.securityLevel, success, durationMillis);
+    }
+}
@@ -0,0 +1,179 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.factories.DlmsConnectionPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+/**
+ * Executes requests for the same device back-to-back on one association with
+ * the device.
+ * <p>
+ * When a request arrives for a device while another thread is executing
+ * requests for that device, it is handed to that thread instead of waiting for
+ * the lock on the device. The thread executes the pending requests for the
+ * device one after the other, while the {@link DlmsConnectionPool} holds the
+ * connection with the device open in between. Each request is processed as
+ * usual, and gets its own response.
+ * <p>
+ * Requests for the same device only arrive concurrently when they are
+ * consumed by different JMS consumers, or handed off to device I/O threads.
+ * When core sets {@code JMSXGroupID} to the device identification, the broker
+ * delivers all requests for a device to the same consumer, which makes
+ * coalescing most effective when requests are handed off.
+ * <p>
+ * The number of requests a thread executes for a device in one go is limited,
+ * so requests for a busy device do not pile up behind it. Requests arriving
+ * after the limit is reached are executed by their own thread, which waits for
+ * the lock on the device as usual.
+ */
+@ManagedResource(objectName = "org.opensmartgridplatform.adapter.protocol.dlms:name=DeviceRequestCoalescer", description = "Requests executed back-to-back per device")
+public class DeviceRequestCoalescer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DeviceRequestCoalescer.class);
+
+    private final boolean enabled;
+    private final int maxRequestsPerDevice;
+    private final DlmsConnectionPool dlmsConnectionPool;
+
+    /**
+     * Requests waiting per device for the thread that is executing requests
+     * for the device. Guarded by synchronizing on the map.
+     */
+    private final Map<String, PendingRequests> pendingRequests = new HashMap<>();
+
+    private final AtomicLong coalescedRequests = new AtomicLong();
+    private final AtomicLong requestsOverLimit = new AtomicLong();
+
+    /**
+     * @param enabled
+     *            whether requests for the same device are coalesced.
+     * @param maxRequestsPerDevice
+     *            maximum number of requests a thread executes for a device in
+     *            one go, including its own request, 0 for no limit.
+     * @param dlmsConnectionPool
+     *            the pool that holds the connection with the device open in
+     *            between requests.
+     */
+    public DeviceRequestCoalescer(final boolean enabled, final int maxRequestsPerDevice,
+            final DlmsConnectionPool dlmsConnectionPool) {
+        this.enabled = enabled;
+        this.maxRequestsPerDevice = maxRequestsPerDevice;
+        this.dlmsConnectionPool = dlmsConnectionPool;
+    }
+
+    /**
+     * Executes the request for the device on the current thread, or hands it
+     * to the thread that is already executing requests for the device if that
+     * thread has not reached the maximum number of requests for the device.
+     *
+     * @return a future that is done when the request has been executed.
+     */
+    public Future<Void> execute(final String deviceIdentification, final Runnable request) {
+        final FutureTask<Void> task = new FutureTask<>(request, null);
+        if (!this.enabled || deviceIdentification == null) {
+            task.run();
+            return task;
+        }
+
+        final boolean executingForDevice;
+        synchronized (this.pendingRequests) {
+            final PendingRequests pending = this.pendingRequests.get(deviceIdentification);
+            if (pending == null) {
+                this.pendingRequests.put(deviceIdentification, new PendingRequests());
+                executingForDevice = true;
+            } else if (this.maxRequestsPerDevice <= 0 || pending.accepted < this.maxRequestsPerDevice) {
+                LOGGER.debug("Coalescing request for device {} with requests in progress", deviceIdentification);
+                pending.requests.add(task);
+                pending.accepted++;
+                this.coalescedRequests.incrementAndGet();
+                return task;
+            } else {
+                LOGGER.debug("Not coalescing request for device {}, {} requests are executed back-to-back already",
+                        deviceIdentification, pending.accepted);
+                this.requestsOverLimit.incrementAndGet();
+                executingForDevice = false;
+            }
+        }
+        if (!executingForDevice) {
+            task.run();
+            return task;
+        }
+
+        this.dlmsConnectionPool.hold(deviceIdentification);
+        try {
+            FutureTask<Void> next = task;
+            while (next != null) {
+                next.run();
+                next = this.nextRequest(deviceIdentification);
+            }
+        } finally {
+            this.dlmsConnectionPool.endHold(deviceIdentification);
+        }
+        return task;
+    }
+
+    private FutureTask<Void> nextRequest(final String deviceIdentification) {
+        synchronized (this.pendingRequests) {
+            final FutureTask<Void> next = this.pendingRequests.get(deviceIdentification).requests.poll();
+            if (next == null) {
+                this.pendingRequests.remove(deviceIdentification);
+            }
+            return next;
+        }
+    }
+
+    @ManagedAttribute(description = "Number of requests executed after another request for the same device")
+    public long getCoalescedRequests() {
+        return this.coalescedRequests.get();
+    }
+
+    @ManagedAttribute(description = "Number of requests not coalesced, because the maximum number of requests "
+            + "for the device was reached")
+    public long getRequestsOverLimit() {
+        return this.requestsOverLimit.get();
+    }
+
+    @ManagedAttribute(description = "Number of requests waiting for the thread executing requests for the device")
+    public int getPendingRequests() {
+        synchronized (this.pendingRequests) {
+            int pending = 0;
+            for (final PendingRequests requests : this.pendingRequests.values()) {
+                pending += requests.requests.size();
+            }
+            return pending;
+        }
+    }
+
+    @ManagedAttribute(description = "Number of devices for which requests are being executed")
+    public int getActiveDevices() {
+        synchronized (this.pendingRequests) {
+            return this.pendingRequests.size();
+        }
+    }
+
+    /**
+     * The requests waiting for the thread executing requests for a device, and
+     * the number of requests that thread has taken after its own.
+     */
+    private static class PendingRequests {
+        private final Deque<FutureTask<Void>> requests = new ArrayDeque<>();
+        private int accepted;
+    }
+}
@@ -7,17 +7,23 @@
  */
 package org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging;
 
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
 import javax.jms.JMSException;
 import javax.jms.Message;
 import javax.jms.MessageListener;
 import javax.jms.ObjectMessage;
 
+import org.opensmartgridplatform.adapter.protocol.dlms.application.threads.DeviceCommunicationExecutor;
+import org.opensmartgridplatform.adapter.protocol.dlms.application.threads.FairRequestScheduler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 
+import org.opensmartgridplatform.shared.infra.jms.Constants;
 import org.opensmartgridplatform.shared.infra.jms.MessageProcessor;
 import org.opensmartgridplatform.shared.infra.jms.MessageProcessorMap;
 
@@ -30,8 +36,99 @@ public class DeviceRequestMessageListener implements MessageListener {
     @Qualifier("protocolDlmsDeviceRequestMessageProcessorMap")
     private MessageProcessorMap dlmsRequestMessageProcessorMap;
 
+    @Autowired
+    private DeviceCommunicationExecutor deviceCommunicationExecutor;
+
+    @Autowired
+    private FairRequestScheduler fairRequestScheduler;
+
+    @Autowired
+    private DeviceRequestCoalescer deviceRequestCoalescer;
+
+    @Autowired
+    private RequestLanes requestLanes;
+
+    /**
+     * Processes the message, or hands it off to a device I/O thread when the
+     * {@link DeviceCommunicationExecutor} is enabled. A message that is handed
+     * off is acknowledged after processing, so it is delivered again if the
+     * application stops before it is processed.
+     * <p>
+     * Messages for a device that already has requests in progress are
+     * processed back-to-back with those requests by the
+     * {@link DeviceRequestCoalescer}. This waits until the message has been
+     * processed, on the JMS consumer thread so the message is not
+     * acknowledged before, or on the device I/O thread so the request keeps
+     * its permit.
+     * <p>
+     * When handing off, the {@link FairRequestScheduler} can be enabled to
+     * take turns between the requests of different organisations.
+     */
     @Override
     public void onMessage(final Message message) {
+        this.requestLanes.recordReceived(message);
+        final String deviceIdentification = this.getStringProperty(message, Constants.DEVICE_IDENTIFICATION);
+        if (!this.deviceCommunicationExecutor.isEnabled()) {
+            this.awaitProcessed(this.deviceRequestCoalescer.execute(deviceIdentification,
+                    () -> this.processMessage(message)));
+            return;
+        }
+        /*
+         * A request handed to the thread already processing requests for the
+         * device keeps its device I/O thread, and the permit that comes with
+         * it, until it has been processed. This way the permits limit the
+         * number of requests in progress, including the coalesced ones.
+         */
+        final Runnable request = () -> this.awaitProcessed(this.deviceRequestCoalescer.execute(deviceIdentification,
+                () -> {
+                    try {
+                        this.processMessage(message);
+                    } finally {
+                        this.acknowledge(message);
+                    }
+                }));
+        try {
+            if (this.fairRequestScheduler.isEnabled()) {
+                this.fairRequestScheduler.submit(this.getStringProperty(message, Constants.ORGANISATION_IDENTIFICATION),
+                        request);
+            } else {
+                this.deviceCommunicationExecutor.execute(request);
+            }
+        } catch (final InterruptedException e) {
+            /*
+             * The message is not acknowledged, so the broker delivers it again
+             * once the session of this consumer is closed, for instance when
+             * the listener container stops. The session is not recovered here,
+             * as that would also redeliver the unacknowledged messages of the
+             * session that are still being processed on device I/O threads.
+             */
+            LOGGER.warn("Interrupted while waiting to process message, it is not acknowledged and will be delivered "
+                    + "again when the session of the consumer is closed", e);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private String getStringProperty(final Message message, final String name) {
+        try {
+            return message.getStringProperty(name);
+        } catch (final JMSException ex) {
+            LOGGER.warn("Unable to get property {} from message", name, ex);
+            return null;
+        }
+    }
+
+    private void awaitProcessed(final Future<Void> processed) {
+        try {
+            processed.get();
+        } catch (final ExecutionException ex) {
+            LOGGER.error("Exception processing message: {} ", ex.getCause().getMessage(), ex.getCause());
+        } catch (final InterruptedException ex) {
+            LOGGER.warn("Interrupted while waiting for message to be processed", ex);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void processMessage(final Message message) {
         try {
             LOGGER.info("Received message of type: {}", message.getJMSType());
 
@@ -45,4 +142,12 @@ public class DeviceRequestMessageListener implements MessageListener {
             LOGGER.error("Exception: {} ", ex.getMessage(), ex);
         }
     }
+
+    private void acknowledge(final Message message) {
+        try {
+            message.acknowledge();
+        } catch (final JMSException ex) {
+            LOGGER.error("Exception acknowledging message: {} ", ex.getMessage(), ex);
+        }
+    }
 }
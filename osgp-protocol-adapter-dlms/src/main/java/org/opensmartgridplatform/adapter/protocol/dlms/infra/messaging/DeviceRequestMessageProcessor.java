@@ -16,6 +16,9 @@ import javax.jms.ObjectMessage;
 import org.opensmartgridplatform.adapter.protocol.dlms.application.services.DomainHelperService;
 import org.opensmartgridplatform.adapter.protocol.dlms.domain.entities.DlmsDevice;
 import org.opensmartgridplatform.adapter.protocol.dlms.domain.factories.DlmsConnectionHolder;
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.valueobjects.RequestDeadline;
+import org.opensmartgridplatform.adapter.protocol.dlms.exceptions.DeadlineExceededException;
+import org.opensmartgridplatform.adapter.protocol.dlms.exceptions.HungSessionException;
 import org.opensmartgridplatform.shared.exceptionhandling.OsgpException;
 import org.opensmartgridplatform.shared.infra.jms.MessageMetadata;
 import org.opensmartgridplatform.shared.infra.jms.MessageProcessor;
@@ -38,6 +41,12 @@ public abstract class DeviceRequestMessageProcessor extends DlmsConnectionMessag
 
     private static final Logger LOGGER = LoggerFactory.getLogger(DeviceRequestMessageProcessor.class);
 
+    /**
+     * Name of the boolean request message property with which the receiver of
+     * the responses announces that it accepts a response in several parts.
+     */
+    public static final String ACCEPTS_PARTIAL_RESPONSES = "AcceptsPartialResponses";
+
     @Autowired
     protected DeviceResponseMessageSender responseMessageSender;
 
@@ -48,6 +57,12 @@ public abstract class DeviceRequestMessageProcessor extends DlmsConnectionMessag
     @Autowired
     protected DomainHelperService domainHelperService;
 
+    @Autowired
+    private ExpiredRequestMetrics expiredRequestMetrics;
+
+    @Autowired
+    private InFlightRequests inFlightRequests;
+
     protected final MessageType messageType;
 
     /**
@@ -78,9 +93,13 @@ public abstract class DeviceRequestMessageProcessor extends DlmsConnectionMessag
         MessageMetadata messageMetadata = null;
         DlmsConnectionHolder conn = null;
         DlmsDevice device = null;
+        InFlightRequests.Execution execution = InFlightRequests.Execution.NONE;
+        PartialResponseSender partialResponseSender = null;
 
         try {
             messageMetadata = MessageMetadata.fromMessage(message);
+            final RequestDeadline deadline = this.getDeadline(message);
+            deadline.check("device lookup");
 
             /**
              * The happy flow for addMeter requires that the dlmsDevice does not exist.
@@ -95,30 +114,117 @@ public abstract class DeviceRequestMessageProcessor extends DlmsConnectionMessag
             LOGGER.info("{} called for device: {} for organisation: {}", message.getJMSType(),
                     messageMetadata.getDeviceIdentification(), messageMetadata.getOrganisationIdentification());
 
+            if (this.supportsPartialResponses() && this.getBooleanPropertyValue(message, ACCEPTS_PARTIAL_RESPONSES)) {
+                partialResponseSender = this.createPartialResponseSender(messageMetadata);
+            } else {
+                // Requests answered in parts are not shared, as a request
+                // sharing the execution would only get the final part.
+                execution = this.inFlightRequests.start(this.messageType, messageMetadata.getDeviceIdentification(),
+                        message.getObject());
+            }
+
             Serializable response;
-            if (this.usesDeviceConnection()) {
-                conn = this.createConnectionForDevice(device, messageMetadata);
-                response = this.handleMessage(conn, device, message.getObject());
+            if (execution.isDuplicate() && execution.awaitResult(deadline)) {
+                response = execution.getResponse();
+            } else if (this.usesDeviceConnection()) {
+                conn = this.createConnectionForDevice(device, messageMetadata, deadline);
+                response = this.handleMessage(conn, device, message.getObject(), partialResponseSender);
+                this.flightRecordings.dumpOnFailedResponse(conn.getDlmsMessageListener(), messageMetadata,
+                        response);
             } else {
                 response = this.handleMessage(device, message.getObject());
             }
+            execution.complete(response);
 
             // Send response
-            this.sendResponseMessage(messageMetadata, ResponseMessageResultType.OK, null, this.responseMessageSender,
-                    response);
+            if (this.hasSentChunks(partialResponseSender)) {
+                this.sendFinalResponseMessage(messageMetadata, partialResponseSender.getNumberOfChunksSent() + 1,
+                        this.responseMessageSender, response);
+            } else {
+                this.sendResponseMessage(messageMetadata, ResponseMessageResultType.OK, null,
+                        this.responseMessageSender, response);
+            }
         } catch (final JMSException exception) {
             this.logJmsException(LOGGER, exception, messageMetadata);
-        } catch (final Exception exception) {
+        } catch (final DeadlineExceededException exception) {
+            if (conn != null) {
+                conn.discardOnClose();
+            }
+            if (this.hasSentChunks(partialResponseSender)) {
+                // The receiver waits for the final part of the response.
+                LOGGER.warn("Deadline of {} request for device {} passed after {} parts of the response were sent",
+                        this.messageType, messageMetadata.getDeviceIdentification(),
+                        partialResponseSender.getNumberOfChunksSent());
+                this.sendFinalResponseMessage(messageMetadata, partialResponseSender.getNumberOfChunksSent() + 1,
+                        ResponseMessageResultType.NOT_OK, exception, this.responseMessageSender, null);
+            } else {
+                this.dropExpiredRequest(messageMetadata, exception);
+            }
+        } catch (final Exception e) {
+            final Exception exception = this.hungSessionExceptionIfAborted(conn, e);
             // Return original request + exception
             LOGGER.error("Unexpected exception during {}", this.messageType.name(), exception);
+            if (conn != null) {
+                conn.discardOnClose();
+                this.flightRecordings.dumpOnFailure(conn.getDlmsMessageListener(), messageMetadata, exception);
+            }
+            execution.fail(exception);
 
-            this.sendResponseMessage(messageMetadata, ResponseMessageResultType.NOT_OK, exception,
-                    this.responseMessageSender, message.getObject());
+            if (this.hasSentChunks(partialResponseSender)) {
+                this.sendFinalResponseMessage(messageMetadata, partialResponseSender.getNumberOfChunksSent() + 1,
+                        ResponseMessageResultType.NOT_OK, exception, this.responseMessageSender, message.getObject());
+            } else {
+                this.sendResponseMessage(messageMetadata, ResponseMessageResultType.NOT_OK, exception,
+                        this.responseMessageSender, message.getObject());
+            }
         } finally {
+            execution.finish();
             this.doConnectionPostProcessing(device, conn);
         }
     }
 
+    /**
+     * A request whose session was closed by the watchdog fails with whatever
+     * exception closing the connection caused; report it as a retryable
+     * {@link HungSessionException} instead.
+     */
+    private Exception hungSessionExceptionIfAborted(final DlmsConnectionHolder conn, final Exception exception) {
+        if (conn == null || !conn.isAborted() || exception instanceof HungSessionException) {
+            return exception;
+        }
+        return new HungSessionException(
+                String.format("Session with the device was closed for taking too long during %s", this.messageType),
+                exception);
+    }
+
+    private boolean hasSentChunks(final PartialResponseSender partialResponseSender) {
+        return partialResponseSender != null && partialResponseSender.getNumberOfChunksSent() > 0;
+    }
+
+    private PartialResponseSender createPartialResponseSender(final MessageMetadata messageMetadata) {
+        return new PartialResponseSender((chunkNumber, chunk) -> this.sendPartialResponseMessage(messageMetadata,
+                chunkNumber, this.responseMessageSender, chunk));
+    }
+
+    /**
+     * @return the deadline of the request, after which the message would have
+     *         expired on the queue.
+     */
+    protected RequestDeadline getDeadline(final ObjectMessage message) throws JMSException {
+        return RequestDeadline.of(message.getJMSExpiration());
+    }
+
+    /**
+     * Drops a request without sending a response, because nobody is waiting
+     * for it anymore.
+     */
+    protected void dropExpiredRequest(final MessageMetadata messageMetadata,
+            final DeadlineExceededException exception) {
+        LOGGER.warn("Dropping {} request for device {}: {}", this.messageType,
+                messageMetadata.getDeviceIdentification(), exception.getMessage());
+        this.expiredRequestMetrics.recordDropped(this.messageType.name(), exception.getStage());
+    }
+
     protected boolean getBooleanPropertyValue(final ObjectMessage message, final String propertyName)
             throws JMSException {
         return message.propertyExists(propertyName) && message.getBooleanProperty(propertyName);
@@ -145,6 +251,34 @@ public abstract class DeviceRequestMessageProcessor extends DlmsConnectionMessag
                 "handleMessage(DlmsConnection, DlmsDevice, Serializable) should be overriden by a subclass, or usesDeviceConnection should return false.");
     }
 
+    /**
+     * Variant of
+     * {@link #handleMessage(DlmsConnectionHolder, DlmsDevice, Serializable)}
+     * for processors that {@link #supportsPartialResponses()}, which may send
+     * parts of the response with the given sender before returning the final
+     * part. By default it calls the variant without sender.
+     *
+     * @param partialResponseSender
+     *            sender for the parts of the response, or {@code null} if the
+     *            receiver does not accept partial responses.
+     */
+    protected Serializable handleMessage(final DlmsConnectionHolder conn, final DlmsDevice device,
+            final Serializable requestObject, final PartialResponseSender partialResponseSender)
+            throws OsgpException {
+        return this.handleMessage(conn, device, requestObject);
+    }
+
+    /**
+     * Used to determine if the handleMessage may send the response in several
+     * parts, when the receiver announces it accepts partial responses with
+     * {@link #ACCEPTS_PARTIAL_RESPONSES}. Default value is false.
+     *
+     * @return Send partial responses when accepted.
+     */
+    protected boolean supportsPartialResponses() {
+        return false;
+    }
+
     protected Serializable handleMessage(final DlmsDevice device, final Serializable requestObject)
             throws OsgpException {
         throw new UnsupportedOperationException(
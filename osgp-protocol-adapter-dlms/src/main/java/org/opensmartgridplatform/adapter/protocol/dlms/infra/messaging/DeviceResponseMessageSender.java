@@ -7,9 +7,11 @@
  */
 package org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging;
 
+import java.io.IOException;
+
+import javax.jms.BytesMessage;
 import javax.jms.JMSException;
 import javax.jms.Message;
-import javax.jms.ObjectMessage;
 import javax.jms.Session;
 
 import org.apache.commons.lang3.StringUtils;
@@ -27,43 +29,90 @@ import org.opensmartgridplatform.shared.infra.jms.ResponseMessageSender;
 
 public class DeviceResponseMessageSender implements ResponseMessageSender {
 
+    /**
+     * Name of the message property with the sequence number, starting at 1,
+     * of a part of a response that is sent in several parts.
+     */
+    public static final String CHUNK_NUMBER = "ChunkNumber";
+
+    /**
+     * Name of the boolean message property on each part of a response that is
+     * sent in several parts, {@code true} only on the final part. The final
+     * part is sent to the responses queue and completes the request, the
+     * other parts are sent to the partial responses queue.
+     */
+    public static final String FINAL_CHUNK = "FinalChunk";
+
     private static final class ProtocolResponseMessageCreator implements MessageCreator {
 
         private final ProtocolResponseMessage responseMessage;
+        private final CompactPayloadCodec compactPayloadCodec;
+        private final Integer chunkNumber;
+        private final boolean finalChunk;
 
-        public ProtocolResponseMessageCreator(final ProtocolResponseMessage responseMessage) {
+        public ProtocolResponseMessageCreator(final ProtocolResponseMessage responseMessage,
+                final CompactPayloadCodec compactPayloadCodec, final Integer chunkNumber, final boolean finalChunk) {
             this.responseMessage = responseMessage;
+            this.compactPayloadCodec = compactPayloadCodec;
+            this.chunkNumber = chunkNumber;
+            this.finalChunk = finalChunk;
         }
 
         @Override
         public Message createMessage(final Session session) throws JMSException {
-            final ObjectMessage objectMessage = session.createObjectMessage(this.responseMessage);
-            objectMessage.setJMSCorrelationID(this.responseMessage.getCorrelationUid());
-            objectMessage.setStringProperty(Constants.DOMAIN, this.responseMessage.getDomain());
-            objectMessage.setStringProperty(Constants.DOMAIN_VERSION, this.responseMessage.getDomainVersion());
-            objectMessage.setJMSType(this.responseMessage.getMessageType());
-            objectMessage.setJMSPriority(this.responseMessage.getMessagePriority());
-            objectMessage.setStringProperty(Constants.ORGANISATION_IDENTIFICATION,
+            final Message message = this.createBody(session);
+            message.setJMSCorrelationID(this.responseMessage.getCorrelationUid());
+            message.setStringProperty(Constants.DOMAIN, this.responseMessage.getDomain());
+            message.setStringProperty(Constants.DOMAIN_VERSION, this.responseMessage.getDomainVersion());
+            message.setJMSType(this.responseMessage.getMessageType());
+            message.setJMSPriority(this.responseMessage.getMessagePriority());
+            message.setStringProperty(Constants.ORGANISATION_IDENTIFICATION,
                     this.responseMessage.getOrganisationIdentification());
-            objectMessage.setStringProperty(Constants.DEVICE_IDENTIFICATION,
+            message.setStringProperty(Constants.DEVICE_IDENTIFICATION,
                     this.responseMessage.getDeviceIdentification());
-            objectMessage.setStringProperty(Constants.RESULT, this.responseMessage.getResult().toString());
+            message.setStringProperty(Constants.RESULT, this.responseMessage.getResult().toString());
             if (this.responseMessage.getOsgpException() != null) {
-                objectMessage.setStringProperty(Constants.DESCRIPTION,
+                message.setStringProperty(Constants.DESCRIPTION,
                         this.responseMessage.getOsgpException().getMessage());
             }
-            objectMessage.setBooleanProperty(Constants.IS_SCHEDULED, this.responseMessage.isScheduled());
-            objectMessage.setIntProperty(Constants.RETRY_COUNT, this.responseMessage.getRetryCount());
-            objectMessage.setBooleanProperty(Constants.BYPASS_RETRY, this.responseMessage.bypassRetry());
+            message.setBooleanProperty(Constants.IS_SCHEDULED, this.responseMessage.isScheduled());
+            message.setIntProperty(Constants.RETRY_COUNT, this.responseMessage.getRetryCount());
+            message.setBooleanProperty(Constants.BYPASS_RETRY, this.responseMessage.bypassRetry());
 
             if (this.responseMessage.getRetryHeader().shouldRetry()) {
-                objectMessage.setIntProperty(Constants.MAX_RETRIES,
+                message.setIntProperty(Constants.MAX_RETRIES,
                         this.responseMessage.getRetryHeader().getMaxRetries());
-                objectMessage.setLongProperty(Constants.SCHEDULE_TIME,
+                message.setLongProperty(Constants.SCHEDULE_TIME,
                         this.responseMessage.getRetryHeader().getScheduledRetryTime().getTime());
             }
+            if (this.chunkNumber != null) {
+                message.setIntProperty(CHUNK_NUMBER, this.chunkNumber);
+                message.setBooleanProperty(FINAL_CHUNK, this.finalChunk);
+            }
 
-            return objectMessage;
+            return message;
+        }
+
+        /**
+         * Creates a message with the response as body, serialized only once
+         * and compressed if the response is large, when the
+         * {@link CompactPayloadCodec} is enabled.
+         */
+        private Message createBody(final Session session) throws JMSException {
+            final CompactPayloadCodec.EncodedPayload encoded;
+            try {
+                encoded = this.compactPayloadCodec.encodeForSending(this.responseMessage);
+            } catch (final IOException e) {
+                LOGGER.warn("Unable to encode response message, sending it as object message", e);
+                return session.createObjectMessage(this.responseMessage);
+            }
+            if (encoded == null) {
+                return session.createObjectMessage(this.responseMessage);
+            }
+            final BytesMessage bytesMessage = session.createBytesMessage();
+            bytesMessage.writeBytes(encoded.getBytes());
+            bytesMessage.setStringProperty(CompactPayloadCodec.PAYLOAD_ENCODING, encoded.getEncoding());
+            return bytesMessage;
         }
     }
 
@@ -73,6 +122,13 @@ public class DeviceResponseMessageSender implements ResponseMessageSender {
     @Qualifier("dlmsResponsesJmsTemplate")
     private JmsTemplate dlmsResponsesJmsTemplate;
 
+    @Autowired
+    @Qualifier("dlmsPartialResponsesJmsTemplate")
+    private JmsTemplate dlmsPartialResponsesJmsTemplate;
+
+    @Autowired
+    private CompactPayloadCodec compactPayloadCodec;
+
     @Override
     public void send(final ResponseMessage responseMessage) {
         if (!(responseMessage instanceof ProtocolResponseMessage)) {
@@ -86,7 +142,41 @@ public class DeviceResponseMessageSender implements ResponseMessageSender {
             return;
         }
 
-        this.sendMessage(msg);
+        this.sendMessage(this.dlmsResponsesJmsTemplate, msg, null, false);
+    }
+
+    /**
+     * Sends a part of a response that is sent in several parts, other than the
+     * final part, to the partial responses queue, marked with
+     * {@link #CHUNK_NUMBER} and {@link #FINAL_CHUNK}. The final part should be
+     * sent with {@link #sendFinal(ProtocolResponseMessage, int)}.
+     *
+     * @param chunkNumber
+     *            sequence number of the part, starting at 1.
+     */
+    public void sendPartial(final ProtocolResponseMessage responseMessage, final int chunkNumber) {
+        if (!this.checkMessage(responseMessage)) {
+            return;
+        }
+
+        this.sendMessage(this.dlmsPartialResponsesJmsTemplate, responseMessage, chunkNumber, false);
+    }
+
+    /**
+     * Sends the final part of a response that is sent in several parts to the
+     * responses queue, marked with {@link #CHUNK_NUMBER} and
+     * {@link #FINAL_CHUNK}, which completes the request.
+     *
+     * @param chunkNumber
+     *            sequence number of the final part, one more than the number
+     *            of parts sent before.
+     */
+    public void sendFinal(final ProtocolResponseMessage responseMessage, final int chunkNumber) {
+        if (!this.checkMessage(responseMessage)) {
+            return;
+        }
+
+        this.sendMessage(this.dlmsResponsesJmsTemplate, responseMessage, chunkNumber, true);
     }
 
     private boolean checkMessage(final ProtocolResponseMessage msg) {
@@ -118,7 +208,9 @@ public class DeviceResponseMessageSender implements ResponseMessageSender {
         return true;
     }
 
-    private void sendMessage(final ProtocolResponseMessage responseMessage) {
-        this.dlmsResponsesJmsTemplate.send(new ProtocolResponseMessageCreator(responseMessage));
+    private void sendMessage(final JmsTemplate jmsTemplate, final ProtocolResponseMessage responseMessage,
+            final Integer chunkNumber, final boolean finalChunk) {
+        jmsTemplate.send(new ProtocolResponseMessageCreator(responseMessage, this.compactPayloadCodec, chunkNumber,
+                finalChunk));
     }
 }
@@ -16,6 +16,8 @@ import org.opensmartgridplatform.adapter.protocol.dlms.domain.entities.DlmsDevic
 import org.opensmartgridplatform.adapter.protocol.dlms.domain.entities.SecurityKeyType;
 import org.opensmartgridplatform.adapter.protocol.dlms.domain.factories.DlmsConnectionFactory;
 import org.opensmartgridplatform.adapter.protocol.dlms.domain.factories.DlmsConnectionHolder;
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.valueobjects.RequestDeadline;
+import org.opensmartgridplatform.adapter.protocol.dlms.exceptions.ConnectionException;
 import org.opensmartgridplatform.adapter.protocol.dlms.exceptions.OsgpExceptionConverter;
 import org.opensmartgridplatform.adapter.protocol.dlms.exceptions.ProtocolAdapterException;
 import org.opensmartgridplatform.adapter.protocol.dlms.exceptions.RetryableException;
@@ -53,12 +55,32 @@ public abstract class DlmsConnectionMessageProcessor {
     @Autowired
     private RetryHeaderFactory retryHeaderFactory;
 
+    @Autowired
+    private DlmsConnectionMetrics dlmsConnectionMetrics;
+
+    @Autowired
+    protected FlightRecordings flightRecordings;
+
     protected DlmsConnectionHolder createConnectionForDevice(final DlmsDevice device,
             final MessageMetadata messageMetadata) throws OsgpException {
+        return this.createConnectionForDevice(device, messageMetadata, RequestDeadline.NONE);
+    }
+
+    protected DlmsConnectionHolder createConnectionForDevice(final DlmsDevice device,
+            final MessageMetadata messageMetadata, final RequestDeadline deadline) throws OsgpException {
 
         final InvocationCountingDlmsMessageListener dlmsMessageListener = this
                 .createMessageListenerForDeviceConnection(device, messageMetadata);
-        return this.dlmsConnectionFactory.getConnection(device, dlmsMessageListener);
+        final DlmsConnectionHolder conn;
+        try {
+            conn = this.dlmsConnectionFactory.getConnection(device, dlmsMessageListener, deadline,
+                    messageMetadata.getMessageType());
+        } catch (final ConnectionException e) {
+            this.flightRecordings.dumpOnFailure(dlmsMessageListener, messageMetadata, e);
+            throw e;
+        }
+        conn.getDlmsMessageListener().setMessageMetadata(messageMetadata);
+        return conn;
     }
 
     protected InvocationCountingDlmsMessageListener createMessageListenerForDeviceConnection(final DlmsDevice device,
@@ -74,7 +96,24 @@ public abstract class DlmsConnectionMessageProcessor {
         } else {
             dlmsMessageListener = null;
         }
-        return dlmsMessageListener;
+
+        final ConnectionPhaseRecorder connectionPhaseRecorder = this.dlmsConnectionMetrics
+                .createRecorder(messageMetadata.getMessageType(), device);
+        final FlightRecorder flightRecorder = this.flightRecordings.createRecorder(device);
+        if (connectionPhaseRecorder == null && flightRecorder == null) {
+            return dlmsMessageListener;
+        }
+        /*
+         * Phases are measured and messages are recorded with the APDUs
+         * captured by the listener, so a listener is needed even for devices
+         * that do not need one otherwise.
+         */
+        final InvocationCountingDlmsMessageListener measuringListener = dlmsMessageListener == null
+                ? new InvocationCountingDlmsMessageListener()
+                : dlmsMessageListener;
+        measuringListener.setConnectionPhaseRecorder(connectionPhaseRecorder);
+        measuringListener.setFlightRecorder(flightRecorder);
+        return measuringListener;
     }
 
     protected void doConnectionPostProcessing(final DlmsDevice device, final DlmsConnectionHolder conn) {
@@ -118,9 +157,9 @@ public abstract class DlmsConnectionMessageProcessor {
 
         final InvocationCountingDlmsMessageListener dlmsMessageListener = (InvocationCountingDlmsMessageListener) conn
                 .getDlmsMessageListener();
-        final int numberOfSentMessages = dlmsMessageListener.getNumberOfSentMessages();
-        this.securityKeyService.incrementInvocationCounter(device.getDeviceIdentification(),
-                SecurityKeyType.E_METER_ENCRYPTION, numberOfSentMessages);
+        final int numberOfSentMessages = dlmsMessageListener.getAndResetNumberOfSentMessages();
+        this.securityKeyService.incrementInvocationCounter(device, SecurityKeyType.E_METER_ENCRYPTION,
+                numberOfSentMessages);
     }
 
     /**
@@ -167,12 +206,66 @@ public abstract class DlmsConnectionMessageProcessor {
             retryHeader = this.retryHeaderFactory.createEmtpyRetryHeader();
         }
 
-        final ProtocolResponseMessage responseMessage = new ProtocolResponseMessage.Builder()
+        final ProtocolResponseMessage responseMessage = this.createResponseMessage(messageMetadata, result,
+                osgpException, retryHeader, responseObject);
+
+        responseMessageSender.send(responseMessage);
+    }
+
+    /**
+     * Sends one part of the response to a request whose response is sent in
+     * several parts. The final part should be sent with
+     * {@link #sendFinalResponseMessage(MessageMetadata, int, DeviceResponseMessageSender, Serializable)}
+     * to complete the request.
+     */
+    protected void sendPartialResponseMessage(final MessageMetadata messageMetadata, final int chunkNumber,
+            final DeviceResponseMessageSender responseMessageSender, final Serializable responseObject) {
+
+        final ProtocolResponseMessage responseMessage = this.createResponseMessage(messageMetadata,
+                ResponseMessageResultType.OK, null, this.retryHeaderFactory.createEmtpyRetryHeader(),
+                responseObject);
+
+        responseMessageSender.sendPartial(responseMessage, chunkNumber);
+    }
+
+    /**
+     * Sends the final part of the response to a request whose response is sent
+     * in several parts, which completes the request.
+     */
+    protected void sendFinalResponseMessage(final MessageMetadata messageMetadata, final int chunkNumber,
+            final DeviceResponseMessageSender responseMessageSender, final Serializable responseObject) {
+        this.sendFinalResponseMessage(messageMetadata, chunkNumber, ResponseMessageResultType.OK, null,
+                responseMessageSender, responseObject);
+    }
+
+    /**
+     * Sends the final part of the response to a request whose response is sent
+     * in several parts, with the given result. A request that fails after
+     * parts of its response were sent is not retried, as the parts sent
+     * before would be sent again.
+     */
+    protected void sendFinalResponseMessage(final MessageMetadata messageMetadata, final int chunkNumber,
+            final ResponseMessageResultType result, final Exception exception,
+            final DeviceResponseMessageSender responseMessageSender, final Serializable responseObject) {
+
+        OsgpException osgpException = null;
+        if (exception != null) {
+            osgpException = this.osgpExceptionConverter.ensureOsgpOrTechnicalException(exception);
+        }
+
+        final ProtocolResponseMessage responseMessage = this.createResponseMessage(messageMetadata, result,
+                osgpException, this.retryHeaderFactory.createEmtpyRetryHeader(), responseObject);
+
+        responseMessageSender.sendFinal(responseMessage, chunkNumber);
+    }
+
+    private ProtocolResponseMessage createResponseMessage(final MessageMetadata messageMetadata,
+            final ResponseMessageResultType result, final OsgpException osgpException, final RetryHeader retryHeader,
+            final Serializable responseObject) {
+        return new ProtocolResponseMessage.Builder()
                 .deviceMessageMetadata(new DeviceMessageMetadata(messageMetadata)).domain(messageMetadata.getDomain())
                 .domainVersion(messageMetadata.getDomainVersion()).result(result).osgpException(osgpException)
                 .dataObject(responseObject).retryCount(messageMetadata.getRetryCount()).retryHeader(retryHeader)
                 .scheduled(messageMetadata.isScheduled()).build();
-
-        responseMessageSender.send(responseMessage);
     }
 }
@@ -0,0 +1,179 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.entities.DlmsDevice;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+/**
+ * Latency histograms for the phases of communication with a device, and byte
+ * counts of the APDUs exchanged, exposed over JMX.
+ * <p>
+ * Measurements are tagged with the message type, the security level (the name
+ * of the connector used) and the outcome. Nothing is recorded, and no
+ * {@link ConnectionPhaseRecorder} is created, when metrics are disabled.
+ */
+@ManagedResource(objectName = "org.opensmartgridplatform.adapter.protocol.dlms:name=DlmsConnectionMetrics", description = "Latency per phase of DLMS device communication")
+public class DlmsConnectionMetrics {
+
+    public enum Phase {
+        SESSION_PROVIDER,
+        TCP_CONNECT,
+        HANDSHAKE,
+        APDU,
+        RELEASE
+    }
+
+    private static final String UNKNOWN = "-";
+
+    /**
+     * Upper bounds in milliseconds of the histogram buckets, the last bucket
+     * holds everything above the last bound.
+     */
+    private static final long[] BUCKET_BOUNDS = { 10, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000, 60000 };
+
+    private static final class Histogram {
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_BOUNDS.length + 1);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong sum = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        private void record(final long value) {
+            int bucket = 0;
+            while (bucket < BUCKET_BOUNDS.length && value > BUCKET_BOUNDS[bucket]) {
+                bucket++;
+            }
+            this.buckets.incrementAndGet(bucket);
+            this.count.incrementAndGet();
+            this.sum.addAndGet(value);
+            this.max.accumulateAndGet(value, Math::max);
+        }
+
+        @Override
+        public String toString() {
+            final long n = this.count.get();
+            final StringBuilder sb = new StringBuilder();
+            sb.append("count=").append(n).append(", mean=").append(n == 0 ? 0 : this.sum.get() / n).append(", max=")
+                    .append(this.max.get());
+            for (int i = 0; i < BUCKET_BOUNDS.length; i++) {
+                sb.append(", le").append(BUCKET_BOUNDS[i]).append('=').append(this.buckets.get(i));
+            }
+            sb.append(", inf=").append(this.buckets.get(BUCKET_BOUNDS.length));
+            return sb.toString();
+        }
+    }
+
+    private static final class ByteCount {
+        private final AtomicLong apdus = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        private void record(final int length) {
+            this.apdus.incrementAndGet();
+            this.bytes.addAndGet(length);
+            this.max.accumulateAndGet(length, Math::max);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("apdus=%d, bytes=%d, max=%d", this.apdus.get(), this.bytes.get(), this.max.get());
+        }
+    }
+
+    private final boolean enabled;
+
+    private final Map<String, Histogram> latencies = new ConcurrentHashMap<>();
+    private final Map<String, ByteCount> byteCounts = new ConcurrentHashMap<>();
+
+    public DlmsConnectionMetrics(final boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @ManagedAttribute(description = "Whether DLMS communication metrics are recorded")
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /**
+     * @return the name of the connector that is used to communicate with the
+     *         device, which reflects its security level.
+     */
+    public static String securityLevel(final DlmsDevice device) {
+        if (device.isHls5Active()) {
+            return "hls5Connector";
+        } else if (device.isLls1Active()) {
+            return "lls1Connector";
+        }
+        return "lls0Connector";
+    }
+
+    /**
+     * @return a recorder for the phases of a connection, or {@code null} if
+     *         metrics are disabled.
+     */
+    public ConnectionPhaseRecorder createRecorder(final String messageType, final DlmsDevice device) {
+        if (!this.enabled) {
+            return null;
+        }
+        return new ConnectionPhaseRecorder(this, messageType, securityLevel(device));
+    }
+
+    public void record(final Phase phase, final String messageType, final String securityLevel,
+            final boolean success, final long durationMillis) {
+        if (!this.enabled) {
+            return;
+        }
+        final String key = String.format("phase=%s, messageType=%s, securityLevel=%s, outcome=%s", phase,
+                messageType == null ? UNKNOWN : messageType, securityLevel, success ? "success" : "failure");
+        this.latencies.computeIfAbsent(key, k -> new Histogram()).record(durationMillis);
+    }
+
+    public void recordApdu(final String messageType, final String securityLevel, final boolean sent,
+            final int length) {
+        if (!this.enabled) {
+            return;
+        }
+        final String key = String.format("messageType=%s, securityLevel=%s, direction=%s",
+                messageType == null ? UNKNOWN : messageType, securityLevel, sent ? "sent" : "received");
+        this.byteCounts.computeIfAbsent(key, k -> new ByteCount()).record(length);
+    }
+
+    @ManagedAttribute(description = "Latency histograms in milliseconds per phase, message type, security level and outcome")
+    public String[] getPhaseLatencies() {
+        return describe(this.latencies);
+    }
+
+    @ManagedAttribute(description = "Number and size of APDUs per message type, security level and direction")
+    public String[] getApduBytes() {
+        return describe(this.byteCounts);
+    }
+
+    @ManagedOperation(description = "Clears all recorded metrics")
+    public void reset() {
+        this.latencies.clear();
+        this.byteCounts.clear();
+    }
+
+    private static String[] describe(final Map<String, ?> measurements) {
+        final List<String> result = new ArrayList<>();
+        for (final Map.Entry<String, ?> entry : new TreeMap<>(measurements).entrySet()) {
+            result.add(entry.getKey() + ": " + entry.getValue());
+        }
+        return result.toArray(new String[result.size()]);
+    }
+}
@@ -7,18 +7,31 @@
  */
 package org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging;
 
+import java.util.function.Supplier;
+
 import org.apache.commons.lang3.StringUtils;
 
 import org.opensmartgridplatform.dlms.DlmsPushNotification;
 
+/**
+ * Log item of a message exchanged with a device.
+ * <p>
+ * The encoded and decoded texts of the message are rendered when they are
+ * first asked for, so that rendering happens on the thread sending the log
+ * item instead of on the thread communicating with the device.
+ */
 public class DlmsLogItemRequestMessage {
 
-    private static final int MAX_MESSAGE_LENGTH = 8000;
+    static final int MAX_MESSAGE_LENGTH = 8000;
 
     private boolean incoming;
 
+    private byte[] encodedBytes;
+
     private String encodedMessage;
 
+    private Supplier<String> decodedMessageSupplier;
+
     private String decodedMessage;
 
     private String deviceIdentification;
@@ -31,22 +44,28 @@ public class DlmsLogItemRequestMessage {
 
     public DlmsLogItemRequestMessage(final String deviceIdentification, final String organisationIdentification,
             final boolean incoming, final byte[] encodedMessage, final String decodedMessage) {
+        this(deviceIdentification, organisationIdentification, incoming, encodedMessage, () -> decodedMessage);
+    }
+
+    /**
+     * @param encodedMessage
+     *            the message bytes, which should not be changed afterwards.
+     * @param decodedMessage
+     *            renders the decoded message when it is needed.
+     */
+    public DlmsLogItemRequestMessage(final String deviceIdentification, final String organisationIdentification,
+            final boolean incoming, final byte[] encodedMessage, final Supplier<String> decodedMessage) {
         this.deviceIdentification = deviceIdentification;
         this.organisationIdentification = organisationIdentification;
         this.incoming = incoming;
         this.valid = true;
         if (encodedMessage == null) {
             this.payloadMessageSerializedSize = 0;
-            this.encodedMessage = null;
         } else {
             this.payloadMessageSerializedSize = encodedMessage.length;
-            this.encodedMessage = StringUtils.substring(bytesToCArray(encodedMessage), 0, MAX_MESSAGE_LENGTH);
-        }
-        if (decodedMessage == null) {
-            this.decodedMessage = null;
-        } else {
-            this.decodedMessage = StringUtils.substring(decodedMessage, 0, MAX_MESSAGE_LENGTH);
         }
+        this.encodedBytes = encodedMessage;
+        this.decodedMessageSupplier = decodedMessage;
     }
 
     public DlmsLogItemRequestMessage(final String deviceIdentification, final boolean incoming, final boolean valid,
@@ -56,10 +75,8 @@ public class DlmsLogItemRequestMessage {
         this.incoming = incoming;
         this.valid = valid;
         this.payloadMessageSerializedSize = payloadMessageSerializedSize;
-
-        // Truncate the log-items to max length.
-        this.encodedMessage = StringUtils.substring(bytesToCArray(message.toByteArray()), 0, MAX_MESSAGE_LENGTH);
-        this.decodedMessage = StringUtils.substring(message.toString(), 0, MAX_MESSAGE_LENGTH);
+        this.encodedBytes = message.toByteArray();
+        this.decodedMessageSupplier = message::toString;
     }
 
     public Boolean isIncoming() {
@@ -67,10 +84,18 @@ public class DlmsLogItemRequestMessage {
     }
 
     public String getEncodedMessage() {
+        if (this.encodedMessage == null && this.encodedBytes != null) {
+            // Truncate the log-items to max length.
+            this.encodedMessage = StringUtils.substring(bytesToCArray(this.encodedBytes), 0, MAX_MESSAGE_LENGTH);
+        }
         return this.encodedMessage;
     }
 
     public String getDecodedMessage() {
+        if (this.decodedMessage == null && this.decodedMessageSupplier != null) {
+            this.decodedMessage = StringUtils.substring(this.decodedMessageSupplier.get(), 0, MAX_MESSAGE_LENGTH);
+            this.decodedMessageSupplier = null;
+        }
         return this.decodedMessage;
     }
 
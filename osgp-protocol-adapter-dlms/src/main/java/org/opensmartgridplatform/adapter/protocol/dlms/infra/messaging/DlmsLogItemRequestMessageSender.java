@@ -7,6 +7,17 @@
  */
 package org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.jms.JMSException;
 import javax.jms.Message;
 import javax.jms.ObjectMessage;
@@ -17,9 +28,24 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jms.core.JmsTemplate;
 import org.springframework.jms.core.MessageCreator;
+import org.springframework.jms.core.ProducerCallback;
+import org.springframework.jms.support.JmsUtils;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 
 import org.opensmartgridplatform.shared.infra.jms.Constants;
 
+/**
+ * Sends log items of the messages exchanged with devices to the logging
+ * queue.
+ * <p>
+ * Log items are queued and sent in batches by a background thread, so that
+ * logging does not slow down the threads communicating with devices. When
+ * more log items are waiting than the capacity allows, new log items are
+ * dropped and counted instead.
+ */
+@ManagedResource(objectName = "org.opensmartgridplatform.adapter.protocol.dlms:name=DlmsLogItemRequestMessageSender", description = "Sending of device communication log items")
 public class DlmsLogItemRequestMessageSender {
 
     private static final class DlmsLogItemRequestMessageCreator implements MessageCreator {
@@ -58,10 +84,135 @@ public class DlmsLogItemRequestMessageSender {
     @Autowired
     private JmsTemplate dlmsLogItemRequestsJmsTemplate;
 
+    private final int capacity;
+    private final int batchSize;
+    private final long idleIntervalNanos;
+
+    private final Queue<DlmsLogItemRequestMessage> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    private volatile boolean running;
+    private Thread senderThread;
+
+    /**
+     * @param capacity
+     *            maximum number of log items waiting to be sent; log items
+     *            offered when this is reached are dropped.
+     * @param batchSize
+     *            maximum number of log items sent in one JMS session.
+     * @param idleInterval
+     *            milliseconds to wait for new log items when none are
+     *            waiting.
+     */
+    public DlmsLogItemRequestMessageSender(final int capacity, final int batchSize, final long idleInterval) {
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.idleIntervalNanos = TimeUnit.MILLISECONDS.toNanos(idleInterval);
+    }
+
+    @PostConstruct
+    public void start() {
+        this.running = true;
+        this.senderThread = new CustomizableThreadFactory("dlms-log-items-").newThread(this::sendQueuedLogItems);
+        this.senderThread.setDaemon(true);
+        this.senderThread.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        this.running = false;
+        if (this.senderThread != null) {
+            LockSupport.unpark(this.senderThread);
+            this.senderThread.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+
+    /**
+     * Queues the log item to be sent in the background. This never blocks: if
+     * too many log items are waiting to be sent, the log item is dropped.
+     */
     public void send(final DlmsLogItemRequestMessage dlmsLogItemRequestMessage) {
+        if (this.queued.incrementAndGet() > this.capacity) {
+            this.queued.decrementAndGet();
+            if (this.dropped.incrementAndGet() % 1000 == 1) {
+                LOGGER.warn("Dropping DlmsLogItemRequestMessages, {} dropped so far", this.dropped.get());
+            }
+            return;
+        }
+        this.queue.offer(dlmsLogItemRequestMessage);
+        if (this.queued.get() >= this.batchSize) {
+            LockSupport.unpark(this.senderThread);
+        }
+    }
 
-        LOGGER.debug("Sending DlmsLogItemRequestMessage");
+    private void sendQueuedLogItems() {
+        final List<DlmsLogItemRequestMessage> batch = new ArrayList<>(this.batchSize);
+        while (this.running || !this.queue.isEmpty()) {
+            DlmsLogItemRequestMessage logItem;
+            while (batch.size() < this.batchSize && (logItem = this.queue.poll()) != null) {
+                batch.add(logItem);
+            }
+            if (batch.isEmpty()) {
+                LockSupport.parkNanos(this, this.idleIntervalNanos);
+                continue;
+            }
+            this.queued.addAndGet(-batch.size());
+            try {
+                this.sendBatch(batch);
+                this.sent.addAndGet(batch.size());
+            } catch (final RuntimeException e) {
+                LOGGER.error("Unable to send {} DlmsLogItemRequestMessages", batch.size(), e);
+                this.failed.addAndGet(batch.size());
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Sends the log items as separate messages, as the receiving side expects,
+     * but with one session and producer and, if transacted, one commit.
+     */
+    private void sendBatch(final List<DlmsLogItemRequestMessage> batch) {
+        LOGGER.debug("Sending {} DlmsLogItemRequestMessages", batch.size());
+
+        final JmsTemplate jmsTemplate = this.dlmsLogItemRequestsJmsTemplate;
+        jmsTemplate.execute((ProducerCallback<Void>) (session, producer) -> {
+            for (final DlmsLogItemRequestMessage logItem : batch) {
+                final Message message = new DlmsLogItemRequestMessageCreator(logItem).createMessage(session);
+                if (jmsTemplate.isExplicitQosEnabled()) {
+                    producer.send(message, jmsTemplate.getDeliveryMode(), jmsTemplate.getPriority(),
+                            jmsTemplate.getTimeToLive());
+                } else {
+                    producer.send(message);
+                }
+            }
+            if (session.getTransacted()) {
+                JmsUtils.commitIfNecessary(session);
+            }
+            return null;
+        });
+    }
+
+    @ManagedAttribute(description = "Number of log items waiting to be sent")
+    public int getQueuedLogItems() {
+        return this.queued.get();
+    }
+
+    @ManagedAttribute(description = "Number of log items sent")
+    public long getSentLogItems() {
+        return this.sent.get();
+    }
+
+    @ManagedAttribute(description = "Number of log items dropped because too many were waiting to be sent")
+    public long getDroppedLogItems() {
+        return this.dropped.get();
+    }
 
-        this.dlmsLogItemRequestsJmsTemplate.send(new DlmsLogItemRequestMessageCreator(dlmsLogItemRequestMessage));
+    @ManagedAttribute(description = "Number of log items that could not be sent")
+    public long getFailedLogItems() {
+        return this.failed.get();
     }
 }
@@ -9,4 +9,30 @@ public interface DlmsMessageListener extends RawMessageListener {
     void setMessageMetadata(MessageMetadata messageMetadata);
 
     void setDescription(String description);
+
+    /**
+     * @return the description of the operation currently performed, or
+     *         {@code null} if not known.
+     */
+    default String getDescription() {
+        return null;
+    }
+
+    /**
+     * @return the recorder measuring the phases of the connection this
+     *         listener is registered with, or {@code null} if no metrics are
+     *         recorded.
+     */
+    default ConnectionPhaseRecorder getConnectionPhaseRecorder() {
+        return null;
+    }
+
+    /**
+     * @return the recorder keeping the last messages exchanged over the
+     *         connection this listener is registered with, or {@code null} if
+     *         no messages are recorded.
+     */
+    default FlightRecorder getFlightRecorder() {
+        return null;
+    }
 }
\ No newline at end of file
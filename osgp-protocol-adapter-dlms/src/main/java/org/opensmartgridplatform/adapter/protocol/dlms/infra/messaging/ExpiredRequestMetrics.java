@@ -0,0 +1,52 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+/**
+ * Counts requests that were dropped because their deadline passed, per
+ * message type and the stage at which they were dropped.
+ */
+@ManagedResource(objectName = "org.opensmartgridplatform.adapter.protocol.dlms:name=ExpiredRequestMetrics", description = "Requests dropped because their deadline passed")
+public class ExpiredRequestMetrics {
+
+    private final AtomicLong droppedRequests = new AtomicLong();
+    private final Map<String, AtomicLong> droppedPerStage = new ConcurrentHashMap<>();
+
+    public void recordDropped(final String messageType, final String stage) {
+        this.droppedRequests.incrementAndGet();
+        this.droppedPerStage.computeIfAbsent(String.format("messageType=%s, stage=%s", messageType, stage),
+                key -> new AtomicLong()).incrementAndGet();
+    }
+
+    @ManagedAttribute(description = "Number of requests dropped because their deadline passed")
+    public long getDroppedRequests() {
+        return this.droppedRequests.get();
+    }
+
+    @ManagedAttribute(description = "Number of dropped requests per message type and stage")
+    public String[] getDroppedRequestsPerStage() {
+        final Map<String, AtomicLong> sorted = new TreeMap<>(this.droppedPerStage);
+        return sorted.entrySet().stream().map(entry -> entry.getKey() + ": " + entry.getValue().get())
+                .toArray(String[]::new);
+    }
+
+    @ManagedOperation(description = "Resets the counters")
+    public void reset() {
+        this.droppedRequests.set(0);
+        this.droppedPerStage.clear();
+    }
+}
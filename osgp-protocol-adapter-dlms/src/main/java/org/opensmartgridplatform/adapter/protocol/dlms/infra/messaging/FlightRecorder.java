@@ -0,0 +1,140 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.openmuc.jdlms.RawMessageData.Apdu;
+
+/**
+ * Ring buffer with the last messages exchanged over one connection with a
+ * device, to be logged when a request fails.
+ * <p>
+ * Recording copies the message bytes into buffers that are reused once the
+ * ring is full, so after the first round no memory is allocated for messages
+ * that fit in the buffer of their slot. Rendering the messages as text is
+ * left until the recording is logged.
+ */
+public class FlightRecorder {
+
+    private static final int MIN_FRAME_BUFFER_SIZE = 256;
+
+    /**
+     * Copy of a recorded message, taken when the recording is logged.
+     */
+    public static final class Frame {
+        private final long timestamp;
+        private final boolean incoming;
+        private final byte[] message;
+        private final Apdu apdu;
+
+        private Frame(final long timestamp, final boolean incoming, final byte[] message, final Apdu apdu) {
+            this.timestamp = timestamp;
+            this.incoming = incoming;
+            this.message = message;
+            this.apdu = apdu;
+        }
+
+        public long getTimestamp() {
+            return this.timestamp;
+        }
+
+        public boolean isIncoming() {
+            return this.incoming;
+        }
+
+        /**
+         * @return the message bytes, or {@code null} if no bytes were
+         *         captured.
+         */
+        public byte[] getMessage() {
+            return this.message;
+        }
+
+        /**
+         * @return the APDU as captured, or {@code null} if none was captured.
+         */
+        public Apdu getApdu() {
+            return this.apdu;
+        }
+    }
+
+    private final byte[][] messages;
+    private final int[] lengths;
+    private final long[] timestamps;
+    private final boolean[] incoming;
+    private final Apdu[] apdus;
+
+    private long recorded;
+
+    /**
+     * @param capacity
+     *            number of messages kept, the oldest message is overwritten
+     *            when more messages are recorded.
+     */
+    public FlightRecorder(final int capacity) {
+        this.messages = new byte[capacity][];
+        this.lengths = new int[capacity];
+        this.timestamps = new long[capacity];
+        this.incoming = new boolean[capacity];
+        this.apdus = new Apdu[capacity];
+    }
+
+    /**
+     * Records a message exchanged with the device.
+     *
+     * @param incoming
+     *            whether the message was sent by the device.
+     * @param message
+     *            the message bytes, which are copied; may be {@code null}.
+     * @param apdu
+     *            the captured APDU, kept to render it if the recording is
+     *            logged; may be {@code null}.
+     */
+    public synchronized void record(final boolean incoming, final byte[] message, final Apdu apdu) {
+        final int slot = (int) (this.recorded++ % this.messages.length);
+        this.timestamps[slot] = System.currentTimeMillis();
+        this.incoming[slot] = incoming;
+        this.apdus[slot] = apdu;
+        if (message == null) {
+            this.lengths[slot] = -1;
+            return;
+        }
+        if (this.messages[slot] == null || this.messages[slot].length < message.length) {
+            this.messages[slot] = new byte[Math.max(message.length, MIN_FRAME_BUFFER_SIZE)];
+        }
+        System.arraycopy(message, 0, this.messages[slot], 0, message.length);
+        this.lengths[slot] = message.length;
+    }
+
+    /**
+     * @return the total number of messages recorded, including the ones that
+     *         have been overwritten.
+     */
+    public synchronized long getRecorded() {
+        return this.recorded;
+    }
+
+    /**
+     * @return copies of the recorded messages that are kept, oldest first.
+     */
+    public synchronized List<Frame> snapshot() {
+        final int capacity = this.messages.length;
+        final int count = (int) Math.min(this.recorded, capacity);
+        final List<Frame> frames = new ArrayList<>(count);
+        for (long i = this.recorded - count; i < this.recorded; i++) {
+            final int slot = (int) (i % capacity);
+            final byte[] message = this.lengths[slot] < 0 ? null
+                    : Arrays.copyOf(this.messages[slot], this.lengths[slot]);
+            frames.add(new Frame(this.timestamps[slot], this.incoming[slot], message, this.apdus[slot]));
+        }
+        return frames;
+    }
+}
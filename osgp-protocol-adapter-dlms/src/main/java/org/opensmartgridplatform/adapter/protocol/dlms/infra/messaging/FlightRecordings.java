@@ -0,0 +1,170 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.bind.DatatypeConverter;
+
+import org.joda.time.DateTime;
+import org.openmuc.jdlms.AccessResultCode;
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.entities.DlmsDevice;
+import org.opensmartgridplatform.adapter.protocol.dlms.exceptions.ConnectionException;
+import org.opensmartgridplatform.adapter.protocol.dlms.exceptions.ProtocolAdapterException;
+import org.opensmartgridplatform.shared.infra.jms.MessageMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+/**
+ * Keeps a {@link FlightRecorder} with the last messages exchanged on each
+ * connection, and sends its contents as a single log item only when a request
+ * fails.
+ * <p>
+ * This gives the device communication leading up to a failure without
+ * having to switch a device to debug mode, which logs every message. Devices
+ * in debug mode get no flight recorder, as all their messages are logged
+ * already.
+ */
+@ManagedResource(objectName = "org.opensmartgridplatform.adapter.protocol.dlms:name=FlightRecordings", description = "Logging of the last messages exchanged with a device when a request fails")
+public class FlightRecordings {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FlightRecordings.class);
+
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    @Autowired
+    private DlmsLogItemRequestMessageSender dlmsLogItemRequestMessageSender;
+
+    private final int capacity;
+
+    private final AtomicLong recorders = new AtomicLong();
+    private final AtomicLong dumps = new AtomicLong();
+
+    /**
+     * @param capacity
+     *            number of messages kept per connection, 0 to not record
+     *            messages.
+     */
+    public FlightRecordings(final int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return a new flight recorder for a connection with the device, or
+     *         {@code null} if no messages should be recorded.
+     */
+    public FlightRecorder createRecorder(final DlmsDevice device) {
+        if (this.capacity <= 0 || device.isInDebugMode()) {
+            return null;
+        }
+        this.recorders.incrementAndGet();
+        return new FlightRecorder(this.capacity);
+    }
+
+    /**
+     * Logs the recorded messages if the request failed with an exception that
+     * may be explained by the communication with the device.
+     */
+    public void dumpOnFailure(final DlmsMessageListener listener, final MessageMetadata messageMetadata,
+            final Exception exception) {
+        if (isDeviceCommunicationFailure(exception)) {
+            this.dump(listener, messageMetadata, exception.getClass().getSimpleName() + ": " + exception.getMessage());
+        }
+    }
+
+    /**
+     * Logs the recorded messages if the response of the request is an access
+     * result other than {@link AccessResultCode#SUCCESS}.
+     */
+    public void dumpOnFailedResponse(final DlmsMessageListener listener, final MessageMetadata messageMetadata,
+            final Object response) {
+        if (response instanceof AccessResultCode && AccessResultCode.SUCCESS != response) {
+            this.dump(listener, messageMetadata, "AccessResultCode: " + response);
+        }
+    }
+
+    private static boolean isDeviceCommunicationFailure(final Throwable exception) {
+        for (Throwable t = exception; t != null; t = t.getCause()) {
+            if (t instanceof ProtocolAdapterException || t instanceof ConnectionException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void dump(final DlmsMessageListener listener, final MessageMetadata messageMetadata,
+            final String reason) {
+        final FlightRecorder flightRecorder = listener == null ? null : listener.getFlightRecorder();
+        if (flightRecorder == null || messageMetadata == null) {
+            return;
+        }
+        final long recorded = flightRecorder.getRecorded();
+        final List<FlightRecorder.Frame> frames = flightRecorder.snapshot();
+        this.dumps.incrementAndGet();
+        LOGGER.info("Logging the last {} of {} messages exchanged with {} for {} ({}): {}", frames.size(), recorded,
+                messageMetadata.getDeviceIdentification(), messageMetadata.getMessageType(),
+                messageMetadata.getCorrelationUid(), reason);
+
+        final String description = String.format("%s (%s) - flight recording of the last %d of %d messages: %s",
+                messageMetadata.getMessageType(), messageMetadata.getCorrelationUid(), frames.size(), recorded,
+                reason);
+        this.dlmsLogItemRequestMessageSender.send(new DlmsLogItemRequestMessage(
+                messageMetadata.getDeviceIdentification(), messageMetadata.getOrganisationIdentification(), true,
+                null, () -> render(description, frames)));
+    }
+
+    /**
+     * Renders the frames, oldest first. If not all frames fit in a log item,
+     * the oldest frames are left out.
+     */
+    static String render(final String description, final List<FlightRecorder.Frame> frames) {
+        final Deque<String> renderedFrames = new ArrayDeque<>();
+        int length = description.length();
+        for (int i = frames.size() - 1; i >= 0 && length < DlmsLogItemRequestMessage.MAX_MESSAGE_LENGTH; i--) {
+            final String renderedFrame = render(frames.get(i));
+            renderedFrames.addFirst(renderedFrame);
+            length += renderedFrame.length();
+        }
+
+        final StringBuilder sb = new StringBuilder(length);
+        sb.append(description);
+        for (final String renderedFrame : renderedFrames) {
+            sb.append(renderedFrame);
+        }
+        return sb.toString();
+    }
+
+    private static String render(final FlightRecorder.Frame frame) {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(LINE_SEPARATOR).append(LINE_SEPARATOR).append(new DateTime(frame.getTimestamp())).append(' ')
+                .append(frame.isIncoming() ? "incoming" : "outgoing");
+        if (frame.getMessage() != null) {
+            sb.append(' ').append(DatatypeConverter.printHexBinary(frame.getMessage()));
+        }
+        if (frame.getApdu() != null) {
+            sb.append(LINE_SEPARATOR).append(frame.getApdu().toString().trim());
+        }
+        return sb.toString();
+    }
+
+    @ManagedAttribute(description = "Number of flight recorders created for connections")
+    public long getRecorders() {
+        return this.recorders.get();
+    }
+
+    @ManagedAttribute(description = "Number of flight recordings logged for failed requests")
+    public long getDumps() {
+        return this.dumps.get();
+    }
+}
@@ -0,0 +1,253 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import org.apache.commons.codec.binary.Hex;
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.valueobjects.RequestDeadline;
+import org.opensmartgridplatform.adapter.protocol.dlms.exceptions.DeadlineExceededException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import org.opensmartgridplatform.shared.infra.jms.MessageType;
+
+/**
+ * Keeps track of the requests that are in progress, so identical requests can
+ * share the result of a single execution instead of each communicating with
+ * the device.
+ * <p>
+ * Requests are identical when they are for the same device, have the same
+ * message type and their request objects serialize to the same bytes. Only
+ * requests with one of the configured message types are deduplicated, which
+ * should only be message types that do not change anything on the device.
+ */
+@ManagedResource(objectName = "org.opensmartgridplatform.adapter.protocol.dlms:name=InFlightRequests", description = "Identical requests sharing one execution")
+public class InFlightRequests {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(InFlightRequests.class);
+
+    private final Set<String> messageTypes;
+    private final ConcurrentHashMap<String, CompletableFuture<Result>> executions = new ConcurrentHashMap<>();
+
+    private final AtomicLong deduplicatedRequests = new AtomicLong();
+
+    /**
+     * @param messageTypes
+     *            names of the message types of requests that are
+     *            deduplicated.
+     * @throws IllegalArgumentException
+     *             if a name is not the name of a message type.
+     */
+    public InFlightRequests(final Collection<String> messageTypes) {
+        this.messageTypes = messageTypes.stream().map(String::trim).filter(name -> !name.isEmpty())
+                .map(name -> MessageType.valueOf(name).name()).collect(Collectors.toCollection(TreeSet::new));
+    }
+
+    /**
+     * Starts the execution of a request, or joins the execution of an
+     * identical request that is in progress.
+     *
+     * @return the execution, which has to be finished by the caller.
+     */
+    public Execution start(final MessageType messageType, final String deviceIdentification,
+            final Serializable requestObject) {
+        if (!this.messageTypes.contains(messageType.name())) {
+            return Execution.NONE;
+        }
+        final String fingerprint = fingerprint(messageType, deviceIdentification, requestObject);
+        if (fingerprint == null) {
+            return Execution.NONE;
+        }
+        final CompletableFuture<Result> result = new CompletableFuture<>();
+        final CompletableFuture<Result> inProgress = this.executions.putIfAbsent(fingerprint, result);
+        if (inProgress != null) {
+            LOGGER.info("Joining {} request for device {} with identical request in progress", messageType,
+                    deviceIdentification);
+            this.deduplicatedRequests.incrementAndGet();
+            return new Execution(this, fingerprint, inProgress, false);
+        }
+        return new Execution(this, fingerprint, result, true);
+    }
+
+    /**
+     * @return a hash of the message type, device identification and serialized
+     *         request object, or {@code null} if the request object cannot be
+     *         serialized.
+     */
+    static String fingerprint(final MessageType messageType, final String deviceIdentification,
+            final Serializable requestObject) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update((messageType.name() + '|' + deviceIdentification + '|').getBytes(StandardCharsets.UTF_8));
+            try (final ObjectOutputStream out = new ObjectOutputStream(
+                    new DigestOutputStream(NullOutputStream.INSTANCE, digest))) {
+                out.writeObject(requestObject);
+            }
+            return Hex.encodeHexString(digest.digest());
+        } catch (final IOException | NoSuchAlgorithmException e) {
+            LOGGER.warn("Unable to fingerprint {} request for device {}, not deduplicating it", messageType,
+                    deviceIdentification, e);
+            return null;
+        }
+    }
+
+    @ManagedAttribute(description = "Message types of requests that are deduplicated")
+    public String[] getMessageTypes() {
+        return this.messageTypes.toArray(new String[this.messageTypes.size()]);
+    }
+
+    @ManagedAttribute(description = "Number of requests that shared the execution of an identical request")
+    public long getDeduplicatedRequests() {
+        return this.deduplicatedRequests.get();
+    }
+
+    @ManagedAttribute(description = "Number of deduplicated requests in progress")
+    public int getExecutionsInProgress() {
+        return this.executions.size();
+    }
+
+    /**
+     * The execution of a request, as started by the request that executes it
+     * or as joined by an identical request that waits for its result.
+     */
+    public static class Execution {
+
+        static final Execution NONE = new Execution(null, null, null, true);
+
+        private final InFlightRequests inFlightRequests;
+        private final String fingerprint;
+        private final CompletableFuture<Result> result;
+        private final boolean executing;
+
+        private Execution(final InFlightRequests inFlightRequests, final String fingerprint,
+                final CompletableFuture<Result> result, final boolean executing) {
+            this.inFlightRequests = inFlightRequests;
+            this.fingerprint = fingerprint;
+            this.result = result;
+            this.executing = executing;
+        }
+
+        /**
+         * @return {@code true} if the request joined the execution of an
+         *         identical request, {@code false} if it executes itself.
+         */
+        public boolean isDuplicate() {
+            return !this.executing;
+        }
+
+        /**
+         * Waits for the identical request to finish.
+         *
+         * @return {@code true} if the identical request has a result to share,
+         *         {@code false} if it finished without result and this request
+         *         has to be executed itself.
+         * @throws DeadlineExceededException
+         *             if the deadline of this request passed while waiting.
+         */
+        public boolean awaitResult(final RequestDeadline deadline) throws InterruptedException {
+            try {
+                final Result shared = this.result.get(deadline.getRemainingTime(), TimeUnit.MILLISECONDS);
+                return shared != Result.NONE;
+            } catch (final ExecutionException e) {
+                return false;
+            } catch (final TimeoutException e) {
+                deadline.check("waiting for identical request");
+                return false;
+            }
+        }
+
+        /**
+         * @return the response of the identical request.
+         * @throws Exception
+         *             the exception of the identical request, if it failed.
+         */
+        public Serializable getResponse() throws Exception {
+            final Result shared = this.result.getNow(Result.NONE);
+            if (shared.exception != null) {
+                throw shared.exception;
+            }
+            return shared.response;
+        }
+
+        /**
+         * Shares the response with the identical requests that joined.
+         */
+        public void complete(final Serializable response) {
+            if (this.executing && this.result != null) {
+                this.result.complete(new Result(response, null));
+            }
+        }
+
+        /**
+         * Shares the exception with the identical requests that joined, so
+         * they fail with the same exception.
+         */
+        public void fail(final Exception exception) {
+            if (this.executing && this.result != null) {
+                this.result.complete(new Result(null, exception));
+            }
+        }
+
+        /**
+         * Ends the execution. Identical requests that joined and did not get a
+         * result execute themselves.
+         */
+        public void finish() {
+            if (this.executing && this.result != null) {
+                this.inFlightRequests.executions.remove(this.fingerprint, this.result);
+                this.result.complete(Result.NONE);
+            }
+        }
+    }
+
+    private static class Result {
+        private static final Result NONE = new Result(null, null);
+
+        private final Serializable response;
+        private final Exception exception;
+
+        Result(final Serializable response, final Exception exception) {
+            this.response = response;
+            this.exception = exception;
+        }
+    }
+
+    private static class NullOutputStream extends OutputStream {
+        private static final NullOutputStream INSTANCE = new NullOutputStream();
+
+        @Override
+        public void write(final int b) {
+            // Only the digest is needed.
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) {
+            // Only the digest is needed.
+        }
+    }
+}
@@ -10,6 +10,8 @@ package org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.openmuc.jdlms.RawMessageData;
+import org.openmuc.jdlms.RawMessageData.Apdu;
+import org.openmuc.jdlms.RawMessageData.CosemPdu;
 import org.openmuc.jdlms.RawMessageData.MessageSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -22,25 +24,121 @@ public class InvocationCountingDlmsMessageListener implements DlmsMessageListene
 
     private AtomicInteger numberOfSentMessages = new AtomicInteger(0);
 
+    private ConnectionPhaseRecorder connectionPhaseRecorder;
+
+    private FlightRecorder flightRecorder;
+
+    private volatile String description;
+
     @Override
     public void messageCaptured(final RawMessageData rawMessageData) {
 
         if (MessageSource.CLIENT == rawMessageData.getMessageSource()) {
             this.numberOfSentMessages.incrementAndGet();
         }
+        if (this.connectionPhaseRecorder != null) {
+            this.connectionPhaseRecorder.messageCaptured(rawMessageData);
+        }
+        if (this.flightRecorder != null) {
+            this.flightRecorder.record(MessageSource.SERVER == rawMessageData.getMessageSource(),
+                    determineEncodedMessage(rawMessageData), rawMessageData.getApdu());
+        }
+    }
+
+    /**
+     * @return the bytes of the captured message, or {@code null} if there are
+     *         none. The bytes are not copied.
+     */
+    protected static byte[] determineEncodedMessage(final RawMessageData rawMessageData) {
+        final byte[] message = rawMessageData.getMessage();
+        if (message != null) {
+            return message;
+        }
+        return determineEncodedMessage(rawMessageData.getApdu());
+    }
+
+    private static byte[] determineEncodedMessage(final Apdu apdu) {
+        if (apdu == null) {
+            /*
+             * Not returning an empty array, because that would look like an empty message, while there is no message to
+             * be returned at all here.
+             */
+            return null;
+        }
+
+        final byte[] acsePdu = apdu.getAcsePdu();
+        if (acsePdu != null) {
+            return acsePdu;
+        }
+
+        return determineEncodedMessage(apdu.getCosemPdu());
+    }
+
+    private static byte[] determineEncodedMessage(final CosemPdu cosemPdu) {
+        if (cosemPdu == null) {
+            /*
+             * Not returning an empty array, because that would look like an empty message, while there is no message to
+             * be returned at all here.
+             */
+            return null;
+        }
+
+        final byte[] cipheredCosemPdu = cosemPdu.getCipheredCosemPdu();
+        if (cipheredCosemPdu != null) {
+            return cipheredCosemPdu;
+        }
+
+        return cosemPdu.getPlainCosemPdu();
     }
 
     @Override
     public void setMessageMetadata(final MessageMetadata messageMetadata) {
         LOGGER.debug("InvocationCountingDlmsMessageListener will be counting for {}", messageMetadata);
+        if (this.connectionPhaseRecorder != null && messageMetadata != null) {
+            this.connectionPhaseRecorder.setMessageType(messageMetadata.getMessageType());
+        }
     }
 
     @Override
     public void setDescription(final String description) {
         LOGGER.debug("InvocationCountingDlmsMessageListener will be listening for \"{}\"", description);
+        this.description = description;
+    }
+
+    @Override
+    public String getDescription() {
+        return this.description;
+    }
+
+    @Override
+    public ConnectionPhaseRecorder getConnectionPhaseRecorder() {
+        return this.connectionPhaseRecorder;
+    }
+
+    public void setConnectionPhaseRecorder(final ConnectionPhaseRecorder connectionPhaseRecorder) {
+        this.connectionPhaseRecorder = connectionPhaseRecorder;
+    }
+
+    @Override
+    public FlightRecorder getFlightRecorder() {
+        return this.flightRecorder;
+    }
+
+    public void setFlightRecorder(final FlightRecorder flightRecorder) {
+        this.flightRecorder = flightRecorder;
     }
 
     public int getNumberOfSentMessages() {
         return this.numberOfSentMessages.get();
     }
+
+    /**
+     * Returns the number of sent messages counted so far and starts counting
+     * from zero again. This allows a listener that stays registered with a
+     * pooled connection to report only the messages sent since the previous
+     * call.
+     */
+    public int getAndResetNumberOfSentMessages() {
+        return this.numberOfSentMessages.getAndSet(0);
+    }
 }
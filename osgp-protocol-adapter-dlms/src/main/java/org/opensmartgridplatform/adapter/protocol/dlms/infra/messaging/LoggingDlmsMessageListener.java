@@ -9,11 +9,11 @@ package org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging;
 
 import java.util.Arrays;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 import org.apache.commons.lang3.StringUtils;
 import org.openmuc.jdlms.RawMessageData;
 import org.openmuc.jdlms.RawMessageData.Apdu;
-import org.openmuc.jdlms.RawMessageData.CosemPdu;
 import org.openmuc.jdlms.RawMessageData.MessageSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -24,6 +24,8 @@ public class LoggingDlmsMessageListener extends InvocationCountingDlmsMessageLis
 
     private static final Logger LOGGER = LoggerFactory.getLogger(LoggingDlmsMessageListener.class);
 
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
     private final String deviceIdentification;
     private final DlmsLogItemRequestMessageSender dlmsLogItemRequestMessageSender;
 
@@ -47,63 +49,30 @@ public class LoggingDlmsMessageListener extends InvocationCountingDlmsMessageLis
 
         final boolean incoming = MessageSource.SERVER == rawMessageData.getMessageSource();
 
-        byte[] encodedMessage = this.determineEncodedMessage(rawMessageData);
+        byte[] encodedMessage = determineEncodedMessage(rawMessageData);
         if (encodedMessage != null) {
             encodedMessage = Arrays.copyOf(encodedMessage, encodedMessage.length);
         }
 
-        String decodedMessage = "";
-        if (rawMessageData.getApdu() != null) {
-            decodedMessage = rawMessageData.getApdu().toString().trim();
-        }
-
-        this.logMessage(incoming, encodedMessage, decodedMessage, sequenceNumber);
-    }
-
-    private byte[] determineEncodedMessage(final RawMessageData rawMessageData) {
-        final byte[] message = rawMessageData.getMessage();
-        if (message != null) {
-            return message;
-        }
-        return this.determineEncodedMessage(rawMessageData.getApdu());
-    }
-
-    private byte[] determineEncodedMessage(final Apdu apdu) {
+        // The APDU is rendered as text on the thread sending the log item.
+        final Apdu apdu = rawMessageData.getApdu();
+        final Supplier<String> decodedMessage;
         if (apdu == null) {
-            /*
-             * Not returning an empty array, because that would look like an empty message, while there is no message to
-             * be returned at all here.
-             */
-            return null;
-        }
-
-        final byte[] acsePdu = apdu.getAcsePdu();
-        if (acsePdu != null) {
-            return acsePdu;
-        }
-
-        return this.determineEncodedMessage(apdu.getCosemPdu());
-    }
-
-    private byte[] determineEncodedMessage(final CosemPdu cosemPdu) {
-        if (cosemPdu == null) {
-            /*
-             * Not returning an empty array, because that would look like an empty message, while there is no message to
-             * be returned at all here.
-             */
-            return null;
-        }
-
-        final byte[] cipheredCosemPdu = cosemPdu.getCipheredCosemPdu();
-        if (cipheredCosemPdu != null) {
-            return cipheredCosemPdu;
+            decodedMessage = () -> "";
+        } else {
+            decodedMessage = () -> apdu.toString().trim();
         }
 
-        return cosemPdu.getPlainCosemPdu();
+        this.logMessage(incoming, encodedMessage, decodedMessage, sequenceNumber);
     }
 
     public void logMessage(final boolean incoming, final byte[] encodedMessage, final String decodedMessage,
             final int sequenceNumber) {
+        this.logMessage(incoming, encodedMessage, () -> decodedMessage, sequenceNumber);
+    }
+
+    private void logMessage(final boolean incoming, final byte[] encodedMessage,
+            final Supplier<String> decodedMessage, final int sequenceNumber) {
 
         final String communicationDirection;
         if (incoming) {
@@ -114,25 +83,29 @@ public class LoggingDlmsMessageListener extends InvocationCountingDlmsMessageLis
         final String organisationIdentification;
         if (this.hasMessageMetadata()) {
             organisationIdentification = this.messageMetadata.getOrganisationIdentification();
-            LOGGER.info("Logging {} device communication for {} in the context of {}.", communicationDirection,
+            LOGGER.debug("Logging {} device communication for {} in the context of {}.", communicationDirection,
                     this.deviceIdentification, this.messageMetadata);
         } else {
             organisationIdentification = null;
-            LOGGER.info("Logging {} device communication for {} without platform message context available.",
+            LOGGER.debug("Logging {} device communication for {} without platform message context available.",
                     communicationDirection, this.deviceIdentification);
         }
 
-        final String decodedMessageWithDescription;
+        // The description depends on the current state of this listener, so
+        // it is determined now; the formatting is left to the sender.
+        final String description;
+        final String separator;
         if (this.hasDescription()) {
-            decodedMessageWithDescription = String.format("%s%n%n%s", this.getDescription(sequenceNumber),
-                    decodedMessage);
+            description = this.getDescription(sequenceNumber);
+            separator = LINE_SEPARATOR + LINE_SEPARATOR;
         } else {
-            decodedMessageWithDescription = String.format("[%d]%n%s", sequenceNumber, decodedMessage);
+            description = "[" + sequenceNumber + "]";
+            separator = LINE_SEPARATOR;
         }
 
         final DlmsLogItemRequestMessage dlmsLogItemRequestMessage = new DlmsLogItemRequestMessage(
                 this.deviceIdentification, organisationIdentification, incoming, encodedMessage,
-                decodedMessageWithDescription);
+                () -> description + separator + decodedMessage.get());
 
         this.dlmsLogItemRequestMessageSender.send(dlmsLogItemRequestMessage);
     }
@@ -143,6 +116,7 @@ public class LoggingDlmsMessageListener extends InvocationCountingDlmsMessageLis
 
     @Override
     public void setMessageMetadata(final MessageMetadata messageMetadata) {
+        super.setMessageMetadata(messageMetadata);
         this.messageMetadata = messageMetadata;
     }
 
@@ -166,6 +140,11 @@ public class LoggingDlmsMessageListener extends InvocationCountingDlmsMessageLis
         return sb.toString();
     }
 
+    @Override
+    public String getDescription() {
+        return this.description;
+    }
+
     @Override
     public void setDescription(final String description) {
         if (StringUtils.isBlank(description)) {
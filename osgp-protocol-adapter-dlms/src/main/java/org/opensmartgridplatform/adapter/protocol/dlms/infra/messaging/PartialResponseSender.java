@@ -0,0 +1,50 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging;
+
+import java.io.Serializable;
+
+/**
+ * Sends the parts of the response to a single request whose receiver has
+ * announced it accepts partial responses, numbering them from 1. The response
+ * returned by the processor is sent as the final part after the parts sent
+ * with this sender.
+ * <p>
+ * Parts are split the same way when a failed request is retried, so a
+ * receiver can recognize parts it already has by their chunk number.
+ */
+public class PartialResponseSender {
+
+    /**
+     * Sends a single part of a response.
+     */
+    @FunctionalInterface
+    public interface ChunkSender {
+        void send(int chunkNumber, Serializable chunk);
+    }
+
+    private final ChunkSender chunkSender;
+
+    private int numberOfChunksSent;
+
+    public PartialResponseSender(final ChunkSender chunkSender) {
+        this.chunkSender = chunkSender;
+    }
+
+    /**
+     * Sends the next part of the response, which is not the final part.
+     */
+    public void send(final Serializable chunk) {
+        this.numberOfChunksSent++;
+        this.chunkSender.send(this.numberOfChunksSent, chunk);
+    }
+
+    public int getNumberOfChunksSent() {
+        return this.numberOfChunksSent;
+    }
+}
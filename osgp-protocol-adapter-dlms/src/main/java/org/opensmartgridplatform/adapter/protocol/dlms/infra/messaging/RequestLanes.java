@@ -0,0 +1,205 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import org.opensmartgridplatform.shared.infra.jms.Constants;
+import org.opensmartgridplatform.shared.infra.jms.MessageType;
+
+/**
+ * Divides the requests on the request queue over lanes, so long running
+ * requests and scheduled requests cannot take all consumers and block quick
+ * on-demand requests.
+ * <p>
+ * Every lane has a queue and a listener container of its own. Messages with a
+ * long running message type (the key of the request message processors) go to
+ * the long running lane, other scheduled messages to the scheduled lane, and
+ * all other messages to the default lane. The messages are divided over the
+ * lane queues by the broker, not by consumers with message selectors on a
+ * single queue: the request queue has to be configured as a composite queue
+ * that only forwards messages, with a filtered destination for every lane.
+ * {@link #getFilteredDestinations()} shows the queues and selectors to
+ * configure.
+ * <p>
+ * When lanes are not enabled, all requests go to the default lane, which then
+ * receives every message from the request queue.
+ */
+@ManagedResource(objectName = "org.opensmartgridplatform.adapter.protocol.dlms:name=RequestLanes", description = "Lanes of the request queue and the time requests waited on the queue")
+public class RequestLanes {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RequestLanes.class);
+
+    public enum Lane {
+        DEFAULT,
+        LONG_RUNNING,
+        SCHEDULED
+    }
+
+    private final boolean enabled;
+    private final Set<String> longRunningMessageTypes;
+    private final Map<Lane, String> queues;
+
+    private final Map<Lane, QueueWait> queueWaits = new EnumMap<>(Lane.class);
+
+    /**
+     * @param enabled
+     *            whether requests are divided over lanes.
+     * @param longRunningMessageTypes
+     *            names of the message types of requests in the long running
+     *            lane.
+     * @param queues
+     *            names of the queues of the lanes.
+     * @throws IllegalArgumentException
+     *             if a name is not the name of a message type, or the queue of
+     *             a lane is missing.
+     */
+    public RequestLanes(final boolean enabled, final Collection<String> longRunningMessageTypes,
+            final Map<Lane, String> queues) {
+        this.enabled = enabled;
+        this.longRunningMessageTypes = longRunningMessageTypes.stream().map(String::trim)
+                .filter(name -> !name.isEmpty()).map(name -> MessageType.valueOf(name).name())
+                .collect(Collectors.toCollection(TreeSet::new));
+        this.queues = new EnumMap<>(Lane.class);
+        for (final Lane lane : Lane.values()) {
+            final String queue = queues.get(lane);
+            if (queue == null || queue.trim().isEmpty()) {
+                throw new IllegalArgumentException("No queue configured for request lane " + lane);
+            }
+            this.queues.put(lane, queue.trim());
+            this.queueWaits.put(lane, new QueueWait());
+        }
+        if (enabled) {
+            for (final String filteredDestination : this.getFilteredDestinations()) {
+                LOGGER.info("Request lanes enabled, the broker has to forward requests to {}", filteredDestination);
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /**
+     * @return the name of the queue the listener container of the lane
+     *         receives the messages of the lane from.
+     */
+    public String getQueue(final Lane lane) {
+        return this.queues.get(lane);
+    }
+
+    /**
+     * @return the selector of the filtered destination on the broker that
+     *         forwards the messages of the lane to its queue.
+     */
+    public String getSelector(final Lane lane) {
+        final String longRunning = this.longRunningMessageTypes.isEmpty() ? "FALSE"
+                : this.longRunningMessageTypes.stream().collect(Collectors.joining("', '", "JMSType IN ('", "')"));
+        final String scheduled = Constants.IS_SCHEDULED + " = TRUE";
+        switch (lane) {
+        case LONG_RUNNING:
+            return longRunning;
+        case SCHEDULED:
+            return String.format("NOT (%s) AND %s", longRunning, scheduled);
+        default:
+            return String.format("NOT (%s) AND (%s IS NULL OR NOT (%s))", longRunning, Constants.IS_SCHEDULED,
+                    scheduled);
+        }
+    }
+
+    public Lane getLane(final String messageType, final boolean scheduled) {
+        if (!this.enabled) {
+            return Lane.DEFAULT;
+        }
+        if (this.longRunningMessageTypes.contains(messageType)) {
+            return Lane.LONG_RUNNING;
+        }
+        return scheduled ? Lane.SCHEDULED : Lane.DEFAULT;
+    }
+
+    /**
+     * Records the time the message waited on the queue before it was received,
+     * for the lane of the message.
+     */
+    public void recordReceived(final Message message) {
+        try {
+            final boolean scheduled = message.propertyExists(Constants.IS_SCHEDULED)
+                    && message.getBooleanProperty(Constants.IS_SCHEDULED);
+            final Lane lane = this.getLane(message.getJMSType(), scheduled);
+            if (message.getJMSTimestamp() > 0) {
+                this.queueWaits.get(lane).record(System.currentTimeMillis() - message.getJMSTimestamp());
+            }
+        } catch (final JMSException e) {
+            LOGGER.warn("Unable to record queue wait time of message", e);
+        }
+    }
+
+    @ManagedAttribute(description = "Message types of the requests in the long running lane")
+    public String[] getLongRunningMessageTypes() {
+        return this.longRunningMessageTypes.toArray(new String[this.longRunningMessageTypes.size()]);
+    }
+
+    @ManagedAttribute(description = "Queues and selectors of the filtered destinations of the request queue on the broker")
+    public String[] getFilteredDestinations() {
+        return this.queues.entrySet().stream()
+                .map(entry -> String.format("%s: %s", entry.getValue(), this.getSelector(entry.getKey())))
+                .toArray(String[]::new);
+    }
+
+    @ManagedAttribute(description = "Number of requests received, and average and maximum time in ms they waited on the queue, per lane")
+    public String[] getQueueWait() {
+        return this.queueWaits.entrySet().stream()
+                .map(entry -> String.format("%s: %s", entry.getKey(), entry.getValue())).toArray(String[]::new);
+    }
+
+    @ManagedOperation(description = "Resets the queue wait times")
+    public void reset() {
+        this.queueWaits.values().forEach(QueueWait::reset);
+    }
+
+    private static class QueueWait {
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong total = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        void record(final long waitTime) {
+            final long wait = Math.max(0, waitTime);
+            this.count.incrementAndGet();
+            this.total.addAndGet(wait);
+            this.max.accumulateAndGet(wait, Math::max);
+        }
+
+        void reset() {
+            this.count.set(0);
+            this.total.set(0);
+            this.max.set(0);
+        }
+
+        @Override
+        public String toString() {
+            final long received = this.count.get();
+            return String.format("%d requests, average %d ms, max %d ms", received,
+                    received == 0 ? 0 : this.total.get() / received, this.max.get());
+        }
+    }
+}
@@ -8,15 +8,20 @@
 package org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.processors;
 
 import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicReference;
 
+import org.joda.time.Period;
 import org.opensmartgridplatform.adapter.protocol.dlms.application.services.MonitoringService;
 import org.opensmartgridplatform.adapter.protocol.dlms.domain.entities.DlmsDevice;
 import org.opensmartgridplatform.adapter.protocol.dlms.domain.factories.DlmsConnectionHolder;
 import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.DeviceRequestMessageProcessor;
+import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.PartialResponseSender;
 import org.opensmartgridplatform.dto.valueobjects.smartmetering.ProfileGenericDataRequestDto;
+import org.opensmartgridplatform.dto.valueobjects.smartmetering.ProfileGenericDataResponseDto;
 import org.opensmartgridplatform.shared.exceptionhandling.OsgpException;
 import org.opensmartgridplatform.shared.infra.jms.MessageType;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 /**
@@ -28,6 +33,9 @@ public class ProfileGenericDataRequestMessageProcessor extends DeviceRequestMess
     @Autowired
     private MonitoringService monitoringService;
 
+    @Value("${command.profilegenericdata.chunk.interval.minutes}")
+    private int chunkIntervalMinutes;
+
     public ProfileGenericDataRequestMessageProcessor() {
         super(MessageType.GET_PROFILE_GENERIC_DATA);
     }
@@ -42,4 +50,43 @@ public class ProfileGenericDataRequestMessageProcessor extends DeviceRequestMess
 
         return this.monitoringService.requestProfileGenericData(conn, device, periodicMeterReadsQuery);
     }
+
+    @Override
+    protected boolean supportsPartialResponses() {
+        return this.chunkIntervalMinutes > 0;
+    }
+
+    /**
+     * Reads large buffers in chunks when the receiver accepts partial
+     * responses and the device supports selective access. Every chunk but the
+     * last is sent as a partial response as soon as it is read; the last chunk
+     * is returned as the final part of the response, which completes the
+     * request.
+     */
+    @Override
+    protected Serializable handleMessage(final DlmsConnectionHolder conn, final DlmsDevice device,
+            final Serializable requestObject, final PartialResponseSender partialResponseSender)
+            throws OsgpException {
+
+        if (partialResponseSender == null || !device.isSelectiveAccessSupported()) {
+            return this.handleMessage(conn, device, requestObject);
+        }
+
+        this.assertRequestObjectType(ProfileGenericDataRequestDto.class, requestObject);
+
+        final ProfileGenericDataRequestDto profileGenericDataRequest = (ProfileGenericDataRequestDto) requestObject;
+
+        // Hold back each chunk until the next one is read, so the last one can
+        // be returned as the final part.
+        final AtomicReference<ProfileGenericDataResponseDto> previousChunk = new AtomicReference<>();
+        this.monitoringService.requestProfileGenericDataInChunks(conn, device, profileGenericDataRequest,
+                Period.minutes(this.chunkIntervalMinutes), chunk -> {
+                    final ProfileGenericDataResponseDto partial = previousChunk.getAndSet(chunk);
+                    if (partial != null) {
+                        partialResponseSender.send(partial);
+                    }
+                });
+
+        return previousChunk.get();
+    }
 }
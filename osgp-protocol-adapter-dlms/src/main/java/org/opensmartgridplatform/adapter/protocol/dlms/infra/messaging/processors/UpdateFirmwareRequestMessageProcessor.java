@@ -16,6 +16,8 @@ import org.opensmartgridplatform.adapter.protocol.dlms.application.services.Conf
 import org.opensmartgridplatform.adapter.protocol.dlms.application.services.FirmwareService;
 import org.opensmartgridplatform.adapter.protocol.dlms.domain.entities.DlmsDevice;
 import org.opensmartgridplatform.adapter.protocol.dlms.domain.factories.DlmsConnectionHolder;
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.valueobjects.RequestDeadline;
+import org.opensmartgridplatform.adapter.protocol.dlms.exceptions.DeadlineExceededException;
 import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.DeviceRequestMessageProcessor;
 import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.requests.to.core.OsgpRequestMessageSender;
 import org.opensmartgridplatform.shared.exceptionhandling.OsgpException;
@@ -63,7 +65,8 @@ public class UpdateFirmwareRequestMessageProcessor extends DeviceRequestMessageP
                 LOGGER.info("[{}] - Firmware file [{}] available. Updating firmware on device [{}]",
                         messageMetadata.getCorrelationUid(), firmwareIdentification,
                         messageMetadata.getDeviceIdentification());
-                this.processUpdateFirmwareRequest(messageMetadata, firmwareIdentification);
+                this.processUpdateFirmwareRequest(messageMetadata, firmwareIdentification,
+                        this.getDeadline(message));
             } else {
                 LOGGER.info("[{}] - Firmware file [{}] not available. Sending GetFirmwareFile request to core.",
                         messageMetadata.getCorrelationUid(), firmwareIdentification);
@@ -86,7 +89,7 @@ public class UpdateFirmwareRequestMessageProcessor extends DeviceRequestMessageP
     }
 
     private void processUpdateFirmwareRequest(final MessageMetadata messageMetadata,
-            final String firmwareIdentification) {
+            final String firmwareIdentification, final RequestDeadline deadline) {
 
         DlmsConnectionHolder conn = null;
         DlmsDevice device = null;
@@ -94,17 +97,26 @@ public class UpdateFirmwareRequestMessageProcessor extends DeviceRequestMessageP
         try {
             Serializable response;
 
+            deadline.check("device lookup");
             device = this.domainHelperService.findDlmsDevice(messageMetadata);
-            conn = this.createConnectionForDevice(device, messageMetadata);
+            conn = this.createConnectionForDevice(device, messageMetadata, deadline);
 
             response = this.handleMessage(conn, device, firmwareIdentification);
 
             // Send response
             this.sendResponseMessage(messageMetadata, ResponseMessageResultType.OK, null, this.responseMessageSender,
                     response);
+        } catch (final DeadlineExceededException exception) {
+            if (conn != null) {
+                conn.discardOnClose();
+            }
+            this.dropExpiredRequest(messageMetadata, exception);
         } catch (final Exception exception) {
             // Return original request + exception
             LOGGER.error("Unexpected exception during {}", this.messageType.name(), exception);
+            if (conn != null) {
+                conn.discardOnClose();
+            }
 
             this.sendResponseMessage(messageMetadata, ResponseMessageResultType.NOT_OK, exception,
                     this.responseMessageSender, firmwareIdentification);
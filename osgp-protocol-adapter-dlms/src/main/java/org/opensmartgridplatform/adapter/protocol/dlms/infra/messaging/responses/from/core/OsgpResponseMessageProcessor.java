@@ -102,6 +102,9 @@ public abstract class OsgpResponseMessageProcessor extends DlmsConnectionMessage
         } catch (final Exception exception) {
             // Return original request + exception
             LOGGER.error("Unexpected exception during {}", this.messageType.name(), exception);
+            if (conn != null) {
+                conn.discardOnClose();
+            }
 
             this.sendResponseMessage(messageMetadata, ResponseMessageResultType.NOT_OK, exception,
                     this.responseMessageSender, message.getObject());
@@ -9,9 +9,12 @@ package org.opensmartgridplatform.adapter.protocol.dlms.infra.networking;
 
 import java.net.InetSocketAddress;
 import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.jboss.netty.channel.MessageEvent;
+import org.opensmartgridplatform.adapter.protocol.dlms.application.services.DomainHelperService;
+import org.opensmartgridplatform.adapter.protocol.dlms.application.threads.DeviceCommunicationExecutor;
 import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.requests.to.core.OsgpRequestMessageSender;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -33,6 +36,12 @@ public class DlmsChannelHandlerServer extends DlmsChannelHandler {
     @Autowired
     private OsgpRequestMessageSender osgpRequestMessageSender;
 
+    @Autowired
+    private DomainHelperService domainHelperService;
+
+    @Autowired
+    private DeviceCommunicationExecutor deviceCommunicationExecutor;
+
     @Override
     public void messageReceived(final ChannelHandlerContext ctx, final MessageEvent e) throws Exception {
 
@@ -45,6 +54,29 @@ public class DlmsChannelHandlerServer extends DlmsChannelHandler {
         this.processPushedMessage(message, correlationId, deviceIdentification, ipAddress);
     }
 
+    /**
+     * Stores the IP address on a background thread, as looking up the device
+     * may read it from the database, which should not hold up the Netty I/O
+     * thread.
+     */
+    private void storePushedIpAddress(final String deviceIdentification, final String ipAddress) {
+        if (ipAddress == null) {
+            return;
+        }
+        try {
+            this.deviceCommunicationExecutor.getBackgroundExecutor().execute(() -> {
+                try {
+                    this.domainHelperService.storePushedIpAddress(deviceIdentification, ipAddress);
+                } catch (final RuntimeException ex) {
+                    LOGGER.warn("Unable to store IP address {} pushed by device {}", ipAddress, deviceIdentification,
+                            ex);
+                }
+            });
+        } catch (final RejectedExecutionException ex) {
+            LOGGER.warn("Not storing IP address {} pushed by device {}", ipAddress, deviceIdentification, ex);
+        }
+    }
+
     private void processPushedMessage(final DlmsPushNotification message, final String correlationId,
             final String deviceIdentification, final String ipAddress) {
         if (PUSH_SMS_TRIGGER.equals(message.getTriggerType())) {
@@ -61,6 +93,7 @@ public class DlmsChannelHandlerServer extends DlmsChannelHandler {
     private void processPushedAlarm(final DlmsPushNotification message, final String correlationId,
             final String deviceIdentification, final String ipAddress) {
         this.logMessage(message);
+        this.storePushedIpAddress(deviceIdentification, ipAddress);
 
         final PushNotificationAlarmDto pushNotificationAlarm = new PushNotificationAlarmDto(deviceIdentification,
                 message.getAlarms(), message.toByteArray());
@@ -75,6 +108,7 @@ public class DlmsChannelHandlerServer extends DlmsChannelHandler {
     private void processPushedSms(final DlmsPushNotification message, final String correlationId,
             final String deviceIdentification, final String ipAddress) {
         this.logMessage(message);
+        this.storePushedIpAddress(deviceIdentification, ipAddress);
 
         final PushNotificationSmsDto pushNotificationSms = new PushNotificationSmsDto(deviceIdentification, ipAddress);
 
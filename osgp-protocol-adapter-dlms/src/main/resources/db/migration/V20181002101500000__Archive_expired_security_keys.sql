@@ -0,0 +1,50 @@
+DO $$
+BEGIN
+
+IF NOT EXISTS (
+    SELECT 1
+    FROM   pg_catalog.pg_class c
+    JOIN   pg_catalog.pg_namespace n ON n.oid = c.relnamespace
+    WHERE  c.relname = 'security_key_current_idx'
+    AND    n.nspname = current_schema
+    ) THEN
+    CREATE INDEX security_key_current_idx ON security_key (dlms_device_id, security_key_type) WHERE valid_to IS NULL;
+END IF;
+
+IF NOT EXISTS (
+    SELECT 1 FROM information_schema.tables
+    WHERE table_schema=current_schema
+    AND table_name = 'security_key_archive'
+) THEN
+    CREATE TABLE security_key_archive (
+        id bigint NOT NULL,
+        creation_time timestamp without time zone NOT NULL,
+        modification_time timestamp without time zone NOT NULL,
+        version bigint,
+        dlms_device_id bigint,
+        security_key_type character varying(255) NOT NULL,
+        valid_from timestamp without time zone,
+        valid_to timestamp without time zone NOT NULL,
+        security_key character varying(255) NOT NULL,
+        invocation_counter integer,
+        archived_time timestamp without time zone NOT NULL,
+        CONSTRAINT security_key_archive_pkey PRIMARY KEY (id)
+    );
+
+    ALTER TABLE public.security_key_archive OWNER TO osp_admin;
+
+    CREATE INDEX security_key_archive_dlms_device_id_idx ON security_key_archive (dlms_device_id);
+
+    COMMENT ON TABLE security_key_archive IS 'Security keys that are no longer valid, moved out of security_key so they are not read with the device.';
+    COMMENT ON COLUMN security_key_archive.id IS 'Primary key of the key in security_key before it was archived.';
+    COMMENT ON COLUMN security_key_archive.dlms_device_id IS 'Primary key of the DLMS device this key belonged with.';
+    COMMENT ON COLUMN security_key_archive.security_key_type IS 'Type of key [E_METER_MASTER, E_METER_AUTHENTICATION, E_METER_ENCRYPTION, G_METER_MASTER, G_METER_ENCRYPTION, PASSWORD].';
+    COMMENT ON COLUMN security_key_archive.valid_from IS 'The time before which this key was not valid.';
+    COMMENT ON COLUMN security_key_archive.valid_to IS 'The time after which this key was not valid.';
+    COMMENT ON COLUMN security_key_archive.security_key IS 'Encrypted value of this security key.';
+    COMMENT ON COLUMN security_key_archive.invocation_counter IS 'The last value of the invocation counter for DLMS communication using this key.';
+    COMMENT ON COLUMN security_key_archive.archived_time IS 'Timestamp indicating when this key was moved to the archive.';
+END IF;
+
+END;
+$$
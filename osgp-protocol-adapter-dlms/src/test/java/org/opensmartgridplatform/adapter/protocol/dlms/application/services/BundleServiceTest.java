@@ -11,6 +11,14 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -20,12 +28,17 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
+import org.mockito.Mock;
 import org.mockito.Spy;
 import org.mockito.runners.MockitoJUnitRunner;
 import org.opensmartgridplatform.adapter.protocol.dlms.domain.commands.stub.AbstractCommandExecutorStub;
 import org.opensmartgridplatform.adapter.protocol.dlms.domain.commands.stub.CommandExecutorMapStub;
 import org.opensmartgridplatform.adapter.protocol.dlms.domain.entities.DlmsDevice;
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.factories.DlmsConnectionHolder;
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.factories.ReconnectPolicy;
 import org.opensmartgridplatform.adapter.protocol.dlms.exceptions.ConnectionException;
+import org.opensmartgridplatform.adapter.protocol.dlms.exceptions.DeadlineExceededException;
+import org.opensmartgridplatform.adapter.protocol.dlms.exceptions.HungSessionException;
 import org.opensmartgridplatform.adapter.protocol.dlms.exceptions.ProtocolAdapterException;
 
 import org.opensmartgridplatform.dto.valueobjects.smartmetering.ActionDto;
@@ -49,6 +62,12 @@ public class BundleServiceTest {
     @Spy
     private CommandExecutorMapStub bundleCommandExecutorMap = new CommandExecutorMapStub();
 
+    @Spy
+    private ReconnectPolicy reconnectPolicy = new ReconnectPolicy(2, 0.1, 10);
+
+    @Mock
+    private SecurityKeyService securityKeyService;
+
     final String defaultMessage = "Unable to handle request";
     final List<FaultResponseParameterDto> parameters = new ArrayList<>();
     final ComponentType defaultComponent = ComponentType.PROTOCOL_DLMS;
@@ -119,6 +138,97 @@ public class BundleServiceTest {
 
     }
 
+    @Test
+    public void testReconnectAndResumeAfterConnectionException() throws Exception {
+        final List<ActionDto> actionDtoList = this.makeActions();
+        final BundleMessagesRequestDto dto = new BundleMessagesRequestDto(actionDtoList);
+        final DlmsConnectionHolder conn = mock(DlmsConnectionHolder.class);
+
+        this.getStub(FindEventsRequestDto.class)
+                .failWithRuntimeException(new ConnectionException("Connection Exception thrown!"));
+        doAnswer(invocation -> {
+            this.getStub(FindEventsRequestDto.class).failWithRuntimeException(null);
+            return null;
+        }).when(conn).reconnect();
+
+        final BundleMessagesRequestDto result = this.bundleService.callExecutors(conn, new DlmsDevice(), dto);
+
+        verify(conn).closeForReconnect();
+        verify(conn).reconnect();
+        this.assertResult(result);
+        assertEquals(1, this.reconnectPolicy.getSuccessfulReconnects());
+    }
+
+    @Test
+    public void testConnectionExceptionAfterMaximumNumberOfReconnects() throws Exception {
+        final List<ActionDto> actionDtoList = this.makeActions();
+        final BundleMessagesRequestDto dto = new BundleMessagesRequestDto(actionDtoList);
+        final DlmsConnectionHolder conn = mock(DlmsConnectionHolder.class);
+
+        this.getStub(FindEventsRequestDto.class)
+                .failWithRuntimeException(new ConnectionException("Connection Exception thrown!"));
+
+        try {
+            this.bundleService.callExecutors(conn, new DlmsDevice(), dto);
+            Assert.fail("A ConnectionException should be thrown");
+        } catch (final ConnectionException connectionException) {
+            verify(conn, times(2)).reconnect();
+            Assert.assertEquals(8, dto.getAllResponses().size());
+        }
+    }
+
+    @Test
+    public void hungSessionDuringReconnectIsNotRetried() throws Exception {
+        final List<ActionDto> actionDtoList = this.makeActions();
+        final BundleMessagesRequestDto dto = new BundleMessagesRequestDto(actionDtoList);
+        final DlmsConnectionHolder conn = mock(DlmsConnectionHolder.class);
+
+        this.getStub(FindEventsRequestDto.class)
+                .failWithRuntimeException(new ConnectionException("Connection Exception thrown!"));
+        doThrow(new HungSessionException("Session was closed for taking too long")).when(conn).reconnect();
+
+        try {
+            this.bundleService.callExecutors(conn, new DlmsDevice(), dto);
+            Assert.fail("A HungSessionException should be thrown");
+        } catch (final HungSessionException hungSessionException) {
+            verify(conn, times(1)).reconnect();
+        }
+    }
+
+    @Test
+    public void deadlinePassedDuringBundleAddsFaultResponsesForActionsNotExecuted() {
+        final List<ActionDto> actionDtoList = this.makeActions();
+        final BundleMessagesRequestDto dto = new BundleMessagesRequestDto(actionDtoList);
+        final DlmsConnectionHolder conn = mock(DlmsConnectionHolder.class);
+        doNothing().doNothing().doThrow(new DeadlineExceededException("bundle action", 0)).when(conn)
+                .checkDeadline(anyString());
+
+        final BundleMessagesRequestDto result = this.bundleService.callExecutors(conn, new DlmsDevice(), dto);
+
+        this.assertResult(result);
+        for (int i = 0; i < actionDtoList.size(); i++) {
+            final boolean faultResponse = actionDtoList.get(i).getResponse() instanceof FaultResponseDto;
+            assertEquals("fault response for action " + i, i >= 2, faultResponse);
+        }
+        assertEquals("Deadline exceeded, action not executed",
+                ((FaultResponseDto) actionDtoList.get(2).getResponse()).getMessage());
+    }
+
+    @Test
+    public void deadlinePassedBeforeFirstActionDropsBundle() {
+        final List<ActionDto> actionDtoList = this.makeActions();
+        final BundleMessagesRequestDto dto = new BundleMessagesRequestDto(actionDtoList);
+        final DlmsConnectionHolder conn = mock(DlmsConnectionHolder.class);
+        doThrow(new DeadlineExceededException("bundle action", 0)).when(conn).checkDeadline(anyString());
+
+        try {
+            this.bundleService.callExecutors(conn, new DlmsDevice(), dto);
+            Assert.fail("A DeadlineExceededException should be thrown");
+        } catch (final DeadlineExceededException deadlineExceededException) {
+            assertTrue(dto.getAllResponses().isEmpty());
+        }
+    }
+
     @Test
     public void exceptionDetailsWithDefaultComponentInFaultResponse() throws Exception {
 
@@ -0,0 +1,97 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.application.services;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.entities.SecurityKeyType;
+
+public class DecryptedKeyCacheTest {
+
+    private static final String DEVICE_IDENTIFICATION = "TEST1024000000001";
+    private static final byte[] KEY = new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16 };
+
+    @Test
+    public void returnsCopyOfKeyWithSameVersion() {
+        final DecryptedKeyCache cache = new DecryptedKeyCache(60000, 10);
+        cache.store(DEVICE_IDENTIFICATION, SecurityKeyType.E_METER_ENCRYPTION, 1L, KEY);
+
+        final byte[] cachedKey = cache.retrieve(DEVICE_IDENTIFICATION, SecurityKeyType.E_METER_ENCRYPTION, 1L);
+        assertArrayEquals(KEY, cachedKey);
+
+        cachedKey[0] = 0;
+        assertArrayEquals(KEY, cache.retrieve(DEVICE_IDENTIFICATION, SecurityKeyType.E_METER_ENCRYPTION, 1L));
+    }
+
+    @Test
+    public void doesNotReturnKeyOfOtherVersion() {
+        final DecryptedKeyCache cache = new DecryptedKeyCache(60000, 10);
+        cache.store(DEVICE_IDENTIFICATION, SecurityKeyType.E_METER_ENCRYPTION, 1L, KEY);
+
+        assertNull(cache.retrieve(DEVICE_IDENTIFICATION, SecurityKeyType.E_METER_ENCRYPTION, 2L));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void invalidateRemovesAllKeysOfDevice() {
+        final DecryptedKeyCache cache = new DecryptedKeyCache(60000, 10);
+        cache.store(DEVICE_IDENTIFICATION, SecurityKeyType.E_METER_ENCRYPTION, 1L, KEY);
+        cache.store(DEVICE_IDENTIFICATION, SecurityKeyType.E_METER_AUTHENTICATION, 2L, KEY);
+
+        cache.invalidate(DEVICE_IDENTIFICATION);
+
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void expiredKeyIsNotReturned() {
+        final DecryptedKeyCache cache = new DecryptedKeyCache(0, 10);
+        cache.store(DEVICE_IDENTIFICATION, SecurityKeyType.E_METER_ENCRYPTION, 1L, KEY);
+
+        assertNull(cache.retrieve(DEVICE_IDENTIFICATION, SecurityKeyType.E_METER_ENCRYPTION, 1L));
+    }
+
+    @Test
+    public void cacheDoesNotGrowBeyondMaximumSize() {
+        final DecryptedKeyCache cache = new DecryptedKeyCache(60000, 1);
+        cache.store(DEVICE_IDENTIFICATION, SecurityKeyType.E_METER_ENCRYPTION, 1L, KEY);
+        cache.store("TEST1024000000002", SecurityKeyType.E_METER_ENCRYPTION, 2L, KEY);
+
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void keyEvictedWhileBeingRetrievedIsNotReturnedErased() throws InterruptedException {
+        final DecryptedKeyCache cache = new DecryptedKeyCache(60000, 10);
+        final AtomicBoolean stopped = new AtomicBoolean();
+        final Thread evicting = new Thread(() -> {
+            while (!stopped.get()) {
+                cache.store(DEVICE_IDENTIFICATION, SecurityKeyType.E_METER_ENCRYPTION, 1L, KEY);
+                cache.invalidate(DEVICE_IDENTIFICATION);
+            }
+        });
+        evicting.start();
+        try {
+            for (int i = 0; i < 100000; i++) {
+                final byte[] cachedKey = cache.retrieve(DEVICE_IDENTIFICATION, SecurityKeyType.E_METER_ENCRYPTION,
+                        1L);
+                assertTrue(cachedKey == null || Arrays.equals(KEY, cachedKey));
+            }
+        } finally {
+            stopped.set(true);
+            evicting.join();
+        }
+    }
+}
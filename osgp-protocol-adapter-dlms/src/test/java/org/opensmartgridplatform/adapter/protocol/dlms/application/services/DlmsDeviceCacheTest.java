@@ -0,0 +1,147 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.application.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.junit.Test;
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.entities.DlmsDevice;
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.valueobjects.DlmsDeviceVersion;
+
+public class DlmsDeviceCacheTest {
+
+    private static final String DEVICE_IDENTIFICATION = "TEST1024000000001";
+
+    private final AtomicInteger queries = new AtomicInteger();
+
+    private final Function<String, DlmsDevice> repository = deviceIdentification -> {
+        this.queries.incrementAndGet();
+        final DlmsDevice device = new DlmsDevice(deviceIdentification);
+        device.setHls5Active(true);
+        return device;
+    };
+
+    private DlmsDeviceVersion version = new DlmsDeviceVersion(null, 0L, 0L);
+
+    private final Function<String, DlmsDeviceVersion> versions = deviceIdentification -> this.version;
+
+    @Test
+    public void lookupsForOneMessageReadTheDeviceOnce() {
+        final DlmsDeviceCache cache = new DlmsDeviceCache(60000, 10);
+
+        // Finding the device, two keys to connect, and the invocation counter.
+        for (int i = 0; i < 4; i++) {
+            assertEquals(DEVICE_IDENTIFICATION, cache
+                    .findByDeviceIdentification(DEVICE_IDENTIFICATION, this.repository, this.versions)
+                    .getDeviceIdentification());
+        }
+
+        assertEquals(1, this.queries.get());
+        assertEquals(3, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void everyLookupGetsItsOwnCopy() {
+        final DlmsDeviceCache cache = new DlmsDeviceCache(60000, 10);
+        final DlmsDevice first = cache.findByDeviceIdentification(DEVICE_IDENTIFICATION, this.repository,
+                this.versions);
+        first.setHls5Active(false);
+        first.setIpAddress("127.0.0.1");
+
+        final DlmsDevice second = cache.findByDeviceIdentification(DEVICE_IDENTIFICATION, this.repository,
+                this.versions);
+
+        assertNotSame(first, second);
+        assertTrue(second.isHls5Active());
+        assertNull(second.getIpAddress());
+    }
+
+    @Test
+    public void invalidateMakesNextLookupQueryTheDatabase() {
+        final DlmsDeviceCache cache = new DlmsDeviceCache(60000, 10);
+        cache.findByDeviceIdentification(DEVICE_IDENTIFICATION, this.repository, this.versions);
+
+        cache.invalidate(DEVICE_IDENTIFICATION);
+        cache.findByDeviceIdentification(DEVICE_IDENTIFICATION, this.repository, this.versions);
+
+        assertEquals(2, this.queries.get());
+    }
+
+    @Test
+    public void deviceSavedByAnotherInstanceIsReadAgain() {
+        final DlmsDeviceCache cache = new DlmsDeviceCache(60000, 10);
+        cache.findByDeviceIdentification(DEVICE_IDENTIFICATION, this.repository, this.versions);
+
+        // A key of the device is replaced by another instance.
+        this.version = new DlmsDeviceVersion(null, 1L, 0L);
+        cache.findByDeviceIdentification(DEVICE_IDENTIFICATION, this.repository, this.versions);
+
+        assertEquals(2, this.queries.get());
+        assertEquals(1, cache.getOutdated());
+        assertEquals(0, cache.getHits());
+    }
+
+    @Test
+    public void deviceReadBeforeInvalidationIsNotCached() {
+        final DlmsDeviceCache cache = new DlmsDeviceCache(60000, 10);
+        cache.findByDeviceIdentification(DEVICE_IDENTIFICATION, deviceIdentification -> {
+            final DlmsDevice device = this.repository.apply(deviceIdentification);
+            // The device is saved elsewhere while it is being read.
+            cache.invalidate(deviceIdentification);
+            return device;
+        }, this.versions);
+
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void unknownDeviceIsNotCached() {
+        final DlmsDeviceCache cache = new DlmsDeviceCache(60000, 10);
+
+        assertNull(
+                cache.findByDeviceIdentification(DEVICE_IDENTIFICATION, deviceIdentification -> null, this.versions));
+
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void expiredDeviceIsReadAgain() {
+        final DlmsDeviceCache cache = new DlmsDeviceCache(0, 10);
+        cache.findByDeviceIdentification(DEVICE_IDENTIFICATION, this.repository, this.versions);
+        cache.findByDeviceIdentification(DEVICE_IDENTIFICATION, this.repository, this.versions);
+
+        assertEquals(2, this.queries.get());
+    }
+
+    @Test
+    public void maxSizeIsRespected() {
+        final DlmsDeviceCache cache = new DlmsDeviceCache(60000, 2);
+        for (int i = 0; i < 5; i++) {
+            cache.findByDeviceIdentification(DEVICE_IDENTIFICATION + i, this.repository, this.versions);
+        }
+
+        assertEquals(2, cache.getSize());
+    }
+
+    @Test
+    public void maxSizeZeroDisablesCache() {
+        final DlmsDeviceCache cache = new DlmsDeviceCache(60000, 0);
+        cache.findByDeviceIdentification(DEVICE_IDENTIFICATION, this.repository, this.versions);
+        cache.findByDeviceIdentification(DEVICE_IDENTIFICATION, this.repository, this.versions);
+
+        assertEquals(2, this.queries.get());
+        assertEquals(0, cache.getSize());
+    }
+}
@@ -0,0 +1,142 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.application.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.entities.DlmsDevice;
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.repositories.DlmsDeviceRepository;
+import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.DlmsConnectionMetrics;
+import org.opensmartgridplatform.adapter.protocol.dlms.simulator.trigger.SessionProviderSimulator;
+import org.opensmartgridplatform.adapter.protocol.dlms.simulator.trigger.SimulatorTriggerClient;
+import org.opensmartgridplatform.adapter.protocol.jasper.sessionproviders.SessionProviderEnum;
+import org.opensmartgridplatform.adapter.protocol.jasper.sessionproviders.SessionProviderMap;
+import org.opensmartgridplatform.adapter.protocol.jasper.sessionproviders.SessionProviderService;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class DomainHelperServiceTest {
+
+    private static final String DEVICE_IDENTIFICATION = "TEST1024000000001";
+    private static final String IP_ADDRESS = "10.0.0.1";
+    private static final String PUSHED_IP_ADDRESS = "10.0.0.2";
+
+    @Mock
+    private DlmsDeviceRepository dlmsDeviceRepository;
+
+    @Spy
+    private DlmsDeviceCache dlmsDeviceCache = new DlmsDeviceCache(0, 0);
+
+    @Spy
+    private SessionIpAddressCache sessionIpAddressCache = new SessionIpAddressCache(60000, 10);
+
+    @Mock
+    private SimulatorTriggerClient simulatorTriggerClient;
+
+    @Mock
+    private DlmsConnectionMetrics dlmsConnectionMetrics;
+
+    @InjectMocks
+    private DomainHelperService domainHelperService;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        when(this.dlmsDeviceRepository.findByDeviceIdentification(DEVICE_IDENTIFICATION))
+                .thenAnswer(invocation -> this.createDevice());
+
+        final SessionProviderMap sessionProviderMap = new SessionProviderMap();
+        final SessionProviderSimulator sessionProviderSimulator = new SessionProviderSimulator();
+        ReflectionTestUtils.setField(sessionProviderSimulator, "sessionProviderMap", sessionProviderMap);
+        ReflectionTestUtils.setField(sessionProviderSimulator, "ipAddress", IP_ADDRESS);
+        ReflectionTestUtils.setField(sessionProviderSimulator, "domainHelperService", this.domainHelperService);
+        ReflectionTestUtils.setField(sessionProviderSimulator, "simulatorTriggerClient", this.simulatorTriggerClient);
+        sessionProviderSimulator.init();
+
+        final SessionProviderService sessionProviderService = new SessionProviderService();
+        ReflectionTestUtils.setField(sessionProviderService, "sessionProviderMap", sessionProviderMap);
+        ReflectionTestUtils.setField(this.domainHelperService, "sessionProviderService", sessionProviderService);
+    }
+
+    private DlmsDevice createDevice() {
+        final DlmsDevice device = new DlmsDevice(DEVICE_IDENTIFICATION);
+        device.setCommunicationProvider(SessionProviderEnum.SIMULATOR.name());
+        // The simulator session provider uses the device identification as
+        // ICCID.
+        device.setIccId(DEVICE_IDENTIFICATION);
+        return device;
+    }
+
+    @Test
+    public void secondLookupUsesCachedIpAddress() throws Exception {
+        final DlmsDevice first = this.domainHelperService.findDlmsDevice(DEVICE_IDENTIFICATION, null);
+        final DlmsDevice second = this.domainHelperService.findDlmsDevice(DEVICE_IDENTIFICATION, null);
+
+        assertEquals(IP_ADDRESS, first.getIpAddress());
+        assertEquals(IP_ADDRESS, second.getIpAddress());
+        verify(this.simulatorTriggerClient, times(1)).sendTrigger(any(DlmsDevice.class));
+        assertEquals(1, this.sessionIpAddressCache.getHits());
+        assertEquals(1, this.sessionIpAddressCache.getMisses());
+    }
+
+    @Test
+    public void lookupAfterConnectionFailureAsksSessionProvider() throws Exception {
+        final DlmsDevice device = this.domainHelperService.findDlmsDevice(DEVICE_IDENTIFICATION, null);
+
+        this.domainHelperService.invalidateSessionIpAddress(device);
+        this.domainHelperService.findDlmsDevice(DEVICE_IDENTIFICATION, null);
+
+        verify(this.simulatorTriggerClient, times(2)).sendTrigger(any(DlmsDevice.class));
+        assertEquals(2, this.sessionIpAddressCache.getMisses());
+    }
+
+    @Test
+    public void lookupAfterPushNotificationUsesPushedIpAddress() throws Exception {
+        this.domainHelperService.storePushedIpAddress(DEVICE_IDENTIFICATION, PUSHED_IP_ADDRESS);
+
+        final DlmsDevice device = this.domainHelperService.findDlmsDevice(DEVICE_IDENTIFICATION, null);
+
+        assertEquals(PUSHED_IP_ADDRESS, device.getIpAddress());
+        verify(this.simulatorTriggerClient, never()).sendTrigger(any(DlmsDevice.class));
+    }
+
+    @Test
+    public void reconnectAsksSessionProvider() throws Exception {
+        final DlmsDevice device = this.domainHelperService.findDlmsDevice(DEVICE_IDENTIFICATION, null);
+
+        assertEquals(IP_ADDRESS, this.domainHelperService.getDeviceIpAddressFromSessionProvider(device));
+
+        verify(this.simulatorTriggerClient, times(2)).sendTrigger(any(DlmsDevice.class));
+    }
+
+    @Test
+    public void staticIpAddressIsNotCached() throws Exception {
+        when(this.dlmsDeviceRepository.findByDeviceIdentification(DEVICE_IDENTIFICATION)).thenAnswer(invocation -> {
+            final DlmsDevice device = this.createDevice();
+            device.setIpAddressIsStatic(true);
+            return device;
+        });
+
+        this.domainHelperService.storePushedIpAddress(DEVICE_IDENTIFICATION, PUSHED_IP_ADDRESS);
+        final DlmsDevice device = this.domainHelperService.findDlmsDevice(DEVICE_IDENTIFICATION, IP_ADDRESS);
+
+        assertEquals(IP_ADDRESS, device.getIpAddress());
+        assertEquals(0, this.sessionIpAddressCache.getSize());
+        verify(this.simulatorTriggerClient, never()).sendTrigger(any(DlmsDevice.class));
+    }
+}
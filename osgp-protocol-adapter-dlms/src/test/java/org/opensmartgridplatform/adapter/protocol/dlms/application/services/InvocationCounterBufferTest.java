@@ -0,0 +1,74 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.application.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.repositories.DlmsSecurityKeyRepository;
+
+@RunWith(MockitoJUnitRunner.class)
+public class InvocationCounterBufferTest {
+
+    private static final Long SECURITY_KEY_ID = 42L;
+
+    @Mock
+    private DlmsSecurityKeyRepository securityKeyRepository;
+
+    @Test
+    public void incrementsAreWrittenImmediatelyWithoutFlushInterval() {
+        final InvocationCounterBuffer buffer = new InvocationCounterBuffer(this.securityKeyRepository, 0, 100);
+
+        buffer.increment(SECURITY_KEY_ID, 3);
+
+        verify(this.securityKeyRepository).incrementInvocationCounter(SECURITY_KEY_ID, 3);
+    }
+
+    @Test
+    public void bufferedIncrementsAreCoalescedUntilFlush() {
+        final InvocationCounterBuffer buffer = new InvocationCounterBuffer(this.securityKeyRepository, 1000, 100);
+
+        buffer.increment(SECURITY_KEY_ID, 3);
+        buffer.increment(SECURITY_KEY_ID, 4);
+        verify(this.securityKeyRepository, never()).incrementInvocationCounter(anyLong(), anyInt());
+
+        buffer.flush();
+        verify(this.securityKeyRepository).incrementInvocationCounter(SECURITY_KEY_ID, 7);
+    }
+
+    @Test
+    public void bufferedIncrementsAreWrittenWhenReachingSafetyMargin() {
+        final InvocationCounterBuffer buffer = new InvocationCounterBuffer(this.securityKeyRepository, 1000, 10);
+
+        buffer.increment(SECURITY_KEY_ID, 6);
+        buffer.increment(SECURITY_KEY_ID, 6);
+
+        verify(this.securityKeyRepository).incrementInvocationCounter(SECURITY_KEY_ID, 12);
+    }
+
+    @Test
+    public void invocationCounterIncludesPendingIncrementsAndSafetyMarginAfterStartup() {
+        final InvocationCounterBuffer buffer = new InvocationCounterBuffer(this.securityKeyRepository, 1000, 100);
+        when(this.securityKeyRepository.findInvocationCounterById(SECURITY_KEY_ID)).thenReturn(150);
+
+        assertEquals(150, buffer.getInvocationCounter(SECURITY_KEY_ID));
+        verify(this.securityKeyRepository).incrementInvocationCounter(SECURITY_KEY_ID, 100);
+
+        buffer.increment(SECURITY_KEY_ID, 5);
+        assertEquals(155, buffer.getInvocationCounter(SECURITY_KEY_ID));
+        verify(this.securityKeyRepository).incrementInvocationCounter(anyLong(), anyInt());
+    }
+}
@@ -0,0 +1,73 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.application.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Date;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.repositories.DlmsSecurityKeyRepository;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SecurityKeyArchiverTest {
+
+    private static final int BATCH_SIZE = 10;
+
+    @Mock
+    private DlmsSecurityKeyRepository securityKeyRepository;
+
+    @Test
+    public void archivesBatchesUntilABatchIsNotFull() {
+        when(this.securityKeyRepository.archiveKeysExpiredBefore(any(Date.class), eq(BATCH_SIZE))).thenReturn(10, 10,
+                3);
+        final SecurityKeyArchiver archiver = new SecurityKeyArchiver(this.securityKeyRepository, 0, 1000,
+                BATCH_SIZE);
+
+        assertEquals(23, archiver.archiveExpiredKeys());
+
+        verify(this.securityKeyRepository, times(3)).archiveKeysExpiredBefore(any(Date.class), eq(BATCH_SIZE));
+        assertEquals(23, archiver.getArchivedKeys());
+    }
+
+    @Test
+    public void onlyKeysExpiredLongerThanRetentionAreArchived() {
+        final long retention = 60000;
+        final SecurityKeyArchiver archiver = new SecurityKeyArchiver(this.securityKeyRepository, 0, retention,
+                BATCH_SIZE);
+
+        final long before = System.currentTimeMillis();
+        archiver.archiveExpiredKeys();
+        final long after = System.currentTimeMillis();
+
+        final ArgumentCaptor<Date> expiredBefore = ArgumentCaptor.forClass(Date.class);
+        verify(this.securityKeyRepository).archiveKeysExpiredBefore(expiredBefore.capture(), eq(BATCH_SIZE));
+        assertTrue(expiredBefore.getValue().getTime() >= before - retention);
+        assertTrue(expiredBefore.getValue().getTime() <= after - retention);
+    }
+
+    @Test
+    public void errorStopsTheRunWithoutThrowing() {
+        when(this.securityKeyRepository.archiveKeysExpiredBefore(any(Date.class), eq(BATCH_SIZE))).thenReturn(10)
+                .thenThrow(new IllegalStateException("Database unavailable"));
+        final SecurityKeyArchiver archiver = new SecurityKeyArchiver(this.securityKeyRepository, 0, 1000,
+                BATCH_SIZE);
+
+        assertEquals(10, archiver.archiveExpiredKeys());
+    }
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.application.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class SessionIpAddressCacheTest {
+
+    private static final String ICC_ID = "TEST1024000000001";
+    private static final String IP_ADDRESS = "10.0.0.1";
+    private static final String NEW_IP_ADDRESS = "10.0.0.2";
+
+    @Test
+    public void storedIpAddressIsRetrieved() {
+        final SessionIpAddressCache cache = new SessionIpAddressCache(60000, 10);
+        cache.store(ICC_ID, IP_ADDRESS);
+
+        assertEquals(IP_ADDRESS, cache.retrieve(ICC_ID));
+        assertEquals(1, cache.getHits());
+        assertEquals(0, cache.getMisses());
+    }
+
+    @Test
+    public void unknownIccIdIsAMiss() {
+        final SessionIpAddressCache cache = new SessionIpAddressCache(60000, 10);
+
+        assertNull(cache.retrieve(ICC_ID));
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void expiredIpAddressIsNotRetrieved() {
+        final SessionIpAddressCache cache = new SessionIpAddressCache(0, 10);
+        cache.store(ICC_ID, IP_ADDRESS);
+
+        assertNull(cache.retrieve(ICC_ID));
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void invalidateRemovesFailedIpAddress() {
+        final SessionIpAddressCache cache = new SessionIpAddressCache(60000, 10);
+        cache.store(ICC_ID, IP_ADDRESS);
+
+        cache.invalidate(ICC_ID, IP_ADDRESS);
+
+        assertNull(cache.retrieve(ICC_ID));
+        assertEquals(1, cache.getInvalidations());
+    }
+
+    @Test
+    public void invalidateKeepsNewerIpAddress() {
+        final SessionIpAddressCache cache = new SessionIpAddressCache(60000, 10);
+        cache.store(ICC_ID, IP_ADDRESS);
+        // The device pushed a notification from a new session.
+        cache.store(ICC_ID, NEW_IP_ADDRESS);
+
+        cache.invalidate(ICC_ID, IP_ADDRESS);
+
+        assertEquals(NEW_IP_ADDRESS, cache.retrieve(ICC_ID));
+        assertEquals(0, cache.getInvalidations());
+    }
+
+    @Test
+    public void maxSizeIsRespected() {
+        final SessionIpAddressCache cache = new SessionIpAddressCache(60000, 2);
+        for (int i = 0; i < 5; i++) {
+            cache.store(ICC_ID + i, IP_ADDRESS);
+        }
+
+        assertEquals(2, cache.getSize());
+    }
+
+    @Test
+    public void maxSizeZeroDisablesCache() {
+        final SessionIpAddressCache cache = new SessionIpAddressCache(60000, 0);
+        cache.store(ICC_ID, IP_ADDRESS);
+
+        assertNull(cache.retrieve(ICC_ID));
+        assertEquals(0, cache.getSize());
+    }
+}
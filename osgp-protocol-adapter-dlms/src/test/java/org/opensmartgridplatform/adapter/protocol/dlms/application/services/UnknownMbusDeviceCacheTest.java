@@ -0,0 +1,114 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.application.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+import org.junit.Test;
+
+public class UnknownMbusDeviceCacheTest {
+
+    private static final Long MBUS_IDENTIFICATION_NUMBER = 12056731L;
+    private static final String MBUS_MANUFACTURER_IDENTIFICATION = "LGB";
+    private static final String DEVICE_IDENTIFICATION = "G00XX561204926013";
+
+    private final AtomicInteger queries = new AtomicInteger();
+
+    private final BiFunction<Long, String, String> unknown = (number, manufacturer) -> {
+        this.queries.incrementAndGet();
+        return null;
+    };
+
+    private final BiFunction<Long, String, String> known = (number, manufacturer) -> {
+        this.queries.incrementAndGet();
+        return DEVICE_IDENTIFICATION;
+    };
+
+    @Test
+    public void unknownDeviceIsQueriedOnce() {
+        final UnknownMbusDeviceCache cache = new UnknownMbusDeviceCache(60000, 10);
+
+        assertNull(cache.findDeviceIdentification(MBUS_IDENTIFICATION_NUMBER, MBUS_MANUFACTURER_IDENTIFICATION,
+                this.unknown));
+        assertNull(cache.findDeviceIdentification(MBUS_IDENTIFICATION_NUMBER, MBUS_MANUFACTURER_IDENTIFICATION,
+                this.unknown));
+
+        assertEquals(1, this.queries.get());
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void knownDeviceIsNotCached() {
+        final UnknownMbusDeviceCache cache = new UnknownMbusDeviceCache(60000, 10);
+
+        assertEquals(DEVICE_IDENTIFICATION, cache.findDeviceIdentification(MBUS_IDENTIFICATION_NUMBER,
+                MBUS_MANUFACTURER_IDENTIFICATION, this.known));
+        assertEquals(DEVICE_IDENTIFICATION, cache.findDeviceIdentification(MBUS_IDENTIFICATION_NUMBER,
+                MBUS_MANUFACTURER_IDENTIFICATION, this.known));
+
+        assertEquals(2, this.queries.get());
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void addedDeviceIsFoundAfterInvalidation() {
+        final UnknownMbusDeviceCache cache = new UnknownMbusDeviceCache(60000, 10);
+        cache.findDeviceIdentification(MBUS_IDENTIFICATION_NUMBER, MBUS_MANUFACTURER_IDENTIFICATION, this.unknown);
+
+        cache.invalidate(MBUS_IDENTIFICATION_NUMBER, MBUS_MANUFACTURER_IDENTIFICATION);
+
+        assertEquals(DEVICE_IDENTIFICATION, cache.findDeviceIdentification(MBUS_IDENTIFICATION_NUMBER,
+                MBUS_MANUFACTURER_IDENTIFICATION, this.known));
+    }
+
+    @Test
+    public void deviceAddedDuringLookupIsNotCachedAsUnknown() {
+        final UnknownMbusDeviceCache cache = new UnknownMbusDeviceCache(60000, 10);
+
+        cache.findDeviceIdentification(MBUS_IDENTIFICATION_NUMBER, MBUS_MANUFACTURER_IDENTIFICATION,
+                (number, manufacturer) -> {
+                    cache.invalidate(number, manufacturer);
+                    return null;
+                });
+
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void otherManufacturerIsQueriedSeparately() {
+        final UnknownMbusDeviceCache cache = new UnknownMbusDeviceCache(60000, 10);
+        cache.findDeviceIdentification(MBUS_IDENTIFICATION_NUMBER, MBUS_MANUFACTURER_IDENTIFICATION, this.unknown);
+
+        assertEquals(DEVICE_IDENTIFICATION,
+                cache.findDeviceIdentification(MBUS_IDENTIFICATION_NUMBER, "KAM", this.known));
+    }
+
+    @Test
+    public void expiredUnknownDeviceIsQueriedAgain() {
+        final UnknownMbusDeviceCache cache = new UnknownMbusDeviceCache(0, 10);
+        cache.findDeviceIdentification(MBUS_IDENTIFICATION_NUMBER, MBUS_MANUFACTURER_IDENTIFICATION, this.unknown);
+        cache.findDeviceIdentification(MBUS_IDENTIFICATION_NUMBER, MBUS_MANUFACTURER_IDENTIFICATION, this.unknown);
+
+        assertEquals(2, this.queries.get());
+    }
+
+    @Test
+    public void maxSizeIsRespected() {
+        final UnknownMbusDeviceCache cache = new UnknownMbusDeviceCache(60000, 2);
+        for (long i = 0; i < 5; i++) {
+            cache.findDeviceIdentification(MBUS_IDENTIFICATION_NUMBER + i, MBUS_MANUFACTURER_IDENTIFICATION,
+                    this.unknown);
+        }
+
+        assertEquals(2, cache.getSize());
+    }
+}
@@ -0,0 +1,150 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.application.threads;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class DeviceCommunicationExecutorTest {
+
+    private DeviceCommunicationExecutor executor;
+
+    @After
+    public void shutdown() {
+        if (this.executor != null) {
+            this.executor.shutdown();
+        }
+    }
+
+    @Test
+    public void requestsInProgressAreLimited() throws InterruptedException {
+        this.executor = new DeviceCommunicationExecutor(true, 2, 0, 24, 0, 1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch finished = new CountDownLatch(3);
+        final AtomicInteger maxActive = new AtomicInteger();
+
+        for (int i = 0; i < 2; i++) {
+            this.executor.execute(() -> {
+                maxActive.accumulateAndGet(this.executor.getActiveRequests(), Math::max);
+                this.await(release);
+                finished.countDown();
+            });
+        }
+
+        final Thread third = new Thread(() -> {
+            try {
+                this.executor.execute(finished::countDown);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        third.start();
+        while (this.executor.getWaitingRequests() == 0) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, this.executor.getActiveRequests());
+
+        release.countDown();
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        third.join();
+        assertEquals(2, maxActive.get());
+    }
+
+    @Test
+    public void requestsOfFairSchedulerAreCountedAsInProgress() throws InterruptedException {
+        this.executor = new DeviceCommunicationExecutor(true, 2, 0, 24, 0, 1);
+        final FairRequestScheduler scheduler = new FairRequestScheduler(true, Collections.emptyMap(), 1, 0, 10, 2,
+                this.executor.getRequestExecutor());
+        final CountDownLatch started = new CountDownLatch(2);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch finished = new CountDownLatch(2);
+
+        for (int i = 0; i < 2; i++) {
+            scheduler.submit("org" + i, () -> {
+                started.countDown();
+                this.await(release);
+                finished.countDown();
+            });
+        }
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertEquals(2, this.executor.getActiveRequests());
+
+        release.countDown();
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        while (this.executor.getActiveRequests() > 0) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void connectionAttemptsPerCellAreLimited() {
+        this.executor = new DeviceCommunicationExecutor(false, 1, 1, 24, 0, 1);
+
+        assertTrue(this.executor.acquireCellPermit("10.1.2.3"));
+        assertFalse(this.executor.acquireCellPermit("10.1.2.4"));
+        assertTrue(this.executor.acquireCellPermit("10.1.3.3"));
+        assertEquals(1, this.executor.getCellPermitTimeouts());
+
+        this.executor.releaseCellPermit("10.1.2.3");
+        assertTrue(this.executor.acquireCellPermit("10.1.2.4"));
+    }
+
+    @Test
+    public void interruptWhileWaitingForCellIsNotCountedAsTimeout() {
+        this.executor = new DeviceCommunicationExecutor(false, 1, 1, 24, 60000, 1);
+        assertTrue(this.executor.acquireCellPermit("10.1.2.3"));
+
+        Thread.currentThread().interrupt();
+        try {
+            assertFalse(this.executor.acquireCellPermit("10.1.2.4"));
+            assertTrue(Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+        }
+        assertEquals(0, this.executor.getCellPermitTimeouts());
+        assertEquals(1, this.executor.getNumberOfBusyCells());
+    }
+
+    @Test
+    public void permitsAreOnlyKeptForBusyCells() {
+        this.executor = new DeviceCommunicationExecutor(false, 1, 1, 24, 0, 1);
+
+        assertTrue(this.executor.acquireCellPermit("10.1.2.3"));
+        assertFalse(this.executor.acquireCellPermit("10.1.2.4"));
+        assertEquals(1, this.executor.getNumberOfBusyCells());
+
+        this.executor.releaseCellPermit("10.1.2.3");
+        assertEquals(0, this.executor.getNumberOfBusyCells());
+    }
+
+    @Test
+    public void connectionAttemptsAreNotLimitedWithoutMaximumPerCell() {
+        this.executor = new DeviceCommunicationExecutor(false, 1, 0, 24, 0, 1);
+
+        assertTrue(this.executor.acquireCellPermit("10.1.2.3"));
+        assertTrue(this.executor.acquireCellPermit("10.1.2.4"));
+        assertEquals(0, this.executor.getBusyCells().length);
+    }
+
+    private void await(final CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
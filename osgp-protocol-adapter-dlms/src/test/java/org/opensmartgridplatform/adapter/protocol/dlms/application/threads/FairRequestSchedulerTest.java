@@ -0,0 +1,78 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.application.threads;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class FairRequestSchedulerTest {
+
+    private final List<Runnable> workers = new ArrayList<>();
+    private final List<String> processed = new ArrayList<>();
+
+    @Test
+    public void organisationsTakeTurnsByWeight() throws InterruptedException {
+        final FairRequestScheduler scheduler = new FairRequestScheduler(true,
+                Collections.singletonMap("interactive", 2), 1, 0, 100, 1, this.workers::add);
+
+        for (int i = 0; i < 4; i++) {
+            this.submit(scheduler, "bulk");
+        }
+        this.submit(scheduler, "interactive");
+        this.submit(scheduler, "interactive");
+        this.submit(scheduler, "other");
+
+        assertArrayEquals(new String[] { "bulk: 4 waiting, 0 in progress", "interactive: 2 waiting, 0 in progress",
+                "other: 1 waiting, 0 in progress" }, scheduler.getBacklog());
+
+        this.runWorkers();
+
+        assertEquals(Arrays.asList("bulk", "interactive", "interactive", "other", "bulk", "bulk", "bulk"),
+                this.processed);
+        assertEquals(0, scheduler.getBacklog().length);
+    }
+
+    @Test
+    public void organisationAtMaximumInProgressIsSkipped() throws InterruptedException {
+        final FairRequestScheduler scheduler = new FairRequestScheduler(true, Collections.emptyMap(), 1, 1, 100, 2,
+                this.workers::add);
+
+        scheduler.submit("bulk", () -> {
+            try {
+                this.submit(scheduler, "bulk");
+                this.submit(scheduler, "interactive");
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            // The second worker skips the bulk request, because the first
+            // bulk request is still in progress.
+            this.workers.get(1).run();
+        });
+        this.workers.get(0).run();
+
+        assertEquals(Arrays.asList("interactive", "bulk"), this.processed);
+        assertEquals(0, scheduler.getBufferedRequests());
+    }
+
+    private void submit(final FairRequestScheduler scheduler, final String organisation) throws InterruptedException {
+        scheduler.submit(organisation, () -> this.processed.add(organisation));
+    }
+
+    private void runWorkers() {
+        while (!this.workers.isEmpty()) {
+            this.workers.remove(0).run();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.domain.entities;
+
+import java.util.Date;
+
+import org.apache.commons.lang3.SerializationUtils;
+
+/**
+ * Microbenchmark of the cost of the security key history of a device, which
+ * was read with the device on every request before expired keys were left
+ * out. Compares a device with 1, 50 and 500 expired keys to a device with
+ * only its current keys, in time per valid key lookup and in the size of the
+ * device as cached.
+ * <p>
+ * Reading the expired keys from the database was the larger part of the cost,
+ * which depends on the database and is not measured here.
+ * <p>
+ * Not run as part of the build; run the main method to get the figures.
+ */
+public class SecurityKeyHistoryBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 100_000;
+    private static final int MEASURED_ITERATIONS = 1_000_000;
+
+    private static final SecurityKeyType[] KEY_TYPES = { SecurityKeyType.E_METER_MASTER,
+            SecurityKeyType.E_METER_AUTHENTICATION, SecurityKeyType.E_METER_ENCRYPTION };
+
+    public static void main(final String[] args) {
+        run("Current keys only", 0);
+        run("1 expired key", 1);
+        run("50 expired keys", 50);
+        run("500 expired keys", 500);
+    }
+
+    private static void run(final String name, final int expiredKeys) {
+        final DlmsDevice device = createDevice(expiredKeys);
+
+        int found = 0;
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            found += lookUpKeys(device);
+        }
+        final long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            found += lookUpKeys(device);
+        }
+        final long duration = System.nanoTime() - start;
+        final int size = SerializationUtils.serialize(device).length;
+
+        System.out.println(String.format("%-18s %8.1f ns per connection (%d keys), %7d bytes per device (%d)", name,
+                (double) duration / MEASURED_ITERATIONS, KEY_TYPES.length, size, found));
+    }
+
+    /**
+     * Looks up the valid keys needed to connect, like an HLS5 connection does.
+     */
+    private static int lookUpKeys(final DlmsDevice device) {
+        int found = 0;
+        for (final SecurityKeyType keyType : KEY_TYPES) {
+            if (device.getValidSecurityKey(keyType) != null) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    private static DlmsDevice createDevice(final int expiredKeys) {
+        final DlmsDevice device = new DlmsDevice("TEST1024000000001");
+        device.setHls5Active(true);
+        final long now = System.currentTimeMillis();
+        for (int i = 0; i < expiredKeys; i++) {
+            final Date validFrom = new Date(now - (expiredKeys - i + 1) * 86_400_000L);
+            final Date validTo = new Date(validFrom.getTime() + 86_400_000L);
+            device.addSecurityKey(new SecurityKey(device, KEY_TYPES[i % KEY_TYPES.length],
+                    "00112233445566778899aabbccddeeff00112233445566778899aabbccddeeff", validFrom, validTo));
+        }
+        for (final SecurityKeyType keyType : KEY_TYPES) {
+            device.addSecurityKey(new SecurityKey(device, keyType,
+                    "ffeeddccbbaa99887766554433221100ffeeddccbbaa99887766554433221100", new Date(now - 1000), null));
+        }
+        return device;
+    }
+}
@@ -0,0 +1,86 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.domain.factories;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+import org.opensmartgridplatform.adapter.protocol.dlms.exceptions.ConcurrencyLimitException;
+
+public class AdaptiveConcurrencyLimiterTest {
+
+    private static final String DEVICE_IDENTIFICATION = "TEST1024000000001";
+
+    @Test
+    public void requestIsRejectedWhenLimitIsReached() {
+        final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(true, 1, 1, 10, 0.5, 1000, 0);
+
+        final AdaptiveConcurrencyLimiter.Permit permit = limiter.acquire(DEVICE_IDENTIFICATION);
+        this.assertRejected(limiter);
+
+        permit.release();
+        permit.release();
+        limiter.acquire(DEVICE_IDENTIFICATION);
+        assertEquals(1, limiter.getInUse());
+        assertEquals(1, limiter.getRejections());
+    }
+
+    @Test
+    public void limitGrowsWithFastConnections() {
+        final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(true, 2, 1, 3, 0.5, 1000, 0);
+
+        final AdaptiveConcurrencyLimiter.Permit first = limiter.acquire(DEVICE_IDENTIFICATION);
+        limiter.acquire("TEST1024000000002").recordSuccess(100);
+        first.recordSuccess(100);
+        assertEquals(2, limiter.getLimit());
+        first.recordSuccess(100);
+        assertEquals(3, limiter.getLimit());
+
+        // Slow connections do not raise the limit, and it never exceeds the
+        // maximum.
+        first.recordSuccess(5000);
+        for (int i = 0; i < 10; i++) {
+            first.recordSuccess(100);
+        }
+        assertEquals(3, limiter.getLimit());
+    }
+
+    @Test
+    public void limitBacksOffOnFailures() {
+        final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(true, 16, 2, 20, 0.5, 1000, 0);
+        final AdaptiveConcurrencyLimiter.Permit permit = limiter.acquire(DEVICE_IDENTIFICATION);
+
+        permit.recordFailure();
+        permit.recordFailure();
+        assertEquals(4, limiter.getLimit());
+
+        permit.recordFailure();
+        permit.recordFailure();
+        assertEquals(2, limiter.getLimit());
+        assertEquals(4, limiter.getFailures());
+    }
+
+    @Test
+    public void disabledLimiterDoesNotHandOutPermits() {
+        final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(false, 1, 1, 1, 0.5, 1000, 0);
+
+        assertNull(limiter.acquire(DEVICE_IDENTIFICATION));
+        assertNull(limiter.acquire(DEVICE_IDENTIFICATION));
+    }
+
+    private void assertRejected(final AdaptiveConcurrencyLimiter limiter) {
+        try {
+            limiter.acquire(DEVICE_IDENTIFICATION);
+            fail("Expected a ConcurrencyLimitException");
+        } catch (final ConcurrencyLimitException e) {
+            // Expected
+        }
+    }
+}
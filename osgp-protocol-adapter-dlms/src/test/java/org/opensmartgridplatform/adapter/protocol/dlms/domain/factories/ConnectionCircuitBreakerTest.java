@@ -0,0 +1,139 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.domain.factories;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.opensmartgridplatform.adapter.protocol.dlms.exceptions.CircuitOpenException;
+
+public class ConnectionCircuitBreakerTest {
+
+    private static final String DEVICE_IDENTIFICATION = "TEST1024000000001";
+    private static final String IP_ADDRESS = "10.1.2.3";
+
+    @Test
+    public void circuitOpensAfterConsecutiveFailures() {
+        final ConnectionCircuitBreaker breaker = new ConnectionCircuitBreaker(true, 2, 100, 60000, 24, 10, 60000);
+
+        breaker.recordFailure(DEVICE_IDENTIFICATION, IP_ADDRESS);
+        breaker.checkConnectionAllowed(DEVICE_IDENTIFICATION, IP_ADDRESS);
+        breaker.recordFailure(DEVICE_IDENTIFICATION, IP_ADDRESS);
+
+        this.assertRejected(breaker, DEVICE_IDENTIFICATION, IP_ADDRESS);
+        assertEquals(1, breaker.getRejectedConnections());
+
+        // Other devices in the same cell can still connect.
+        breaker.checkConnectionAllowed("TEST1024000000002", "10.1.2.4");
+    }
+
+    @Test
+    public void successResetsFailures() {
+        final ConnectionCircuitBreaker breaker = new ConnectionCircuitBreaker(true, 2, 100, 60000, 24, 10, 60000);
+
+        breaker.recordFailure(DEVICE_IDENTIFICATION, IP_ADDRESS);
+        breaker.recordSuccess(DEVICE_IDENTIFICATION, IP_ADDRESS);
+        breaker.recordFailure(DEVICE_IDENTIFICATION, IP_ADDRESS);
+
+        breaker.checkConnectionAllowed(DEVICE_IDENTIFICATION, IP_ADDRESS);
+    }
+
+    @Test
+    public void failuresInCellOpenCircuitForAllDevicesInCell() {
+        final ConnectionCircuitBreaker breaker = new ConnectionCircuitBreaker(true, 100, 2, 60000, 24, 10, 60000);
+
+        breaker.recordFailure("TEST1024000000002", "10.1.2.4");
+        breaker.recordFailure("TEST1024000000003", "10.1.2.5");
+
+        this.assertRejected(breaker, DEVICE_IDENTIFICATION, IP_ADDRESS);
+        breaker.checkConnectionAllowed(DEVICE_IDENTIFICATION, "10.1.3.3");
+    }
+
+    @Test
+    public void singleProbeIsLetThroughAfterOpenDuration() {
+        final ConnectionCircuitBreaker breaker = new ConnectionCircuitBreaker(true, 1, 100, 0, 24, 10, 60000);
+
+        breaker.recordFailure(DEVICE_IDENTIFICATION, IP_ADDRESS);
+
+        breaker.checkConnectionAllowed(DEVICE_IDENTIFICATION, IP_ADDRESS);
+        breaker.recordSuccess(DEVICE_IDENTIFICATION, IP_ADDRESS);
+        assertEquals(0, breaker.getCircuits().length);
+    }
+
+    @Test
+    public void probeRejectedByCellDoesNotPostponeProbeOfDevice() throws InterruptedException {
+        final ConnectionCircuitBreaker breaker = new ConnectionCircuitBreaker(true, 1, 2, 100, 24, 10, 60000);
+
+        breaker.recordFailure(DEVICE_IDENTIFICATION, IP_ADDRESS);
+        Thread.sleep(150);
+        breaker.recordFailure("TEST1024000000002", "10.1.2.4");
+
+        this.assertRejected(breaker, DEVICE_IDENTIFICATION, IP_ADDRESS);
+        assertTrue(Arrays.asList(breaker.getCircuits())
+                .contains("device " + DEVICE_IDENTIFICATION + ": state=OPEN, consecutiveFailures=1"));
+    }
+
+    @Test
+    public void onlyFailuresToReachTheDeviceAreTransportFailures() {
+        assertTrue(ConnectionCircuitBreaker.isTransportFailure(new ConnectException("Connection refused")));
+        assertTrue(ConnectionCircuitBreaker
+                .isTransportFailure(new IOException("Unable to connect", new SocketTimeoutException())));
+        assertFalse(ConnectionCircuitBreaker.isTransportFailure(new IOException("Authentication failed")));
+    }
+
+    @Test
+    public void disabledCircuitBreakerAllowsEverything() {
+        final ConnectionCircuitBreaker breaker = new ConnectionCircuitBreaker(false, 1, 1, 60000, 24, 10, 60000);
+
+        breaker.recordFailure(DEVICE_IDENTIFICATION, IP_ADDRESS);
+
+        breaker.checkConnectionAllowed(DEVICE_IDENTIFICATION, IP_ADDRESS);
+    }
+
+    @Test
+    public void failuresAreForgottenAfterExpiry() {
+        final ConnectionCircuitBreaker breaker = new ConnectionCircuitBreaker(true, 1, 100, 60000, 24, 10, 0);
+
+        breaker.recordFailure(DEVICE_IDENTIFICATION, IP_ADDRESS);
+        breaker.evictExpiredCircuits();
+
+        assertEquals(0, breaker.getCircuits().length);
+        breaker.checkConnectionAllowed(DEVICE_IDENTIFICATION, IP_ADDRESS);
+    }
+
+    @Test
+    public void numberOfCircuitsIsLimited() {
+        final ConnectionCircuitBreaker breaker = new ConnectionCircuitBreaker(true, 1, 100, 60000, 24, 2, 60000);
+
+        breaker.recordFailure(DEVICE_IDENTIFICATION, IP_ADDRESS);
+        breaker.recordFailure("TEST1024000000002", "10.1.3.3");
+
+        // The circuits of the first device and its cell are kept.
+        assertEquals(2, breaker.getCircuits().length);
+        this.assertRejected(breaker, DEVICE_IDENTIFICATION, IP_ADDRESS);
+        breaker.checkConnectionAllowed("TEST1024000000002", "10.1.3.3");
+    }
+
+    private void assertRejected(final ConnectionCircuitBreaker breaker, final String deviceIdentification,
+            final String ipAddress) {
+        try {
+            breaker.checkConnectionAllowed(deviceIdentification, ipAddress);
+            fail("Expected a CircuitOpenException");
+        } catch (final CircuitOpenException e) {
+            // Expected
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.domain.factories;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.factories.DeviceLockTable.DeviceLock;
+import org.opensmartgridplatform.adapter.protocol.dlms.exceptions.DeviceLockException;
+
+public class DeviceLockTableTest {
+
+    private static final String DEVICE_IDENTIFICATION = "TEST1024000000001";
+    private static final String OTHER_DEVICE_IDENTIFICATION = "TEST1024000000002";
+
+    private DeviceLockTable deviceLockTable;
+
+    @Before
+    public void setup() {
+        this.deviceLockTable = new DeviceLockTable(10, 10);
+    }
+
+    @Test
+    public void locksForDifferentDevicesDoNotBlockEachOther() {
+        final DeviceLock lock = this.deviceLockTable.acquire(DEVICE_IDENTIFICATION);
+        final DeviceLock otherLock = this.deviceLockTable.acquire(OTHER_DEVICE_IDENTIFICATION);
+
+        assertEquals(2, this.deviceLockTable.getLockedDevices());
+        assertEquals(0, this.deviceLockTable.getContendedAcquisitions());
+
+        lock.release();
+        otherLock.release();
+        assertEquals(0, this.deviceLockTable.getLockedDevices());
+    }
+
+    @Test
+    public void busyDeviceTimesOutWithRetryableException() {
+        final DeviceLock lock = this.deviceLockTable.acquire(DEVICE_IDENTIFICATION);
+
+        try {
+            this.deviceLockTable.acquire(DEVICE_IDENTIFICATION);
+            fail("Expected a DeviceLockException for a busy device");
+        } catch (final DeviceLockException e) {
+            assertEquals(1, this.deviceLockTable.getContendedAcquisitions());
+            assertEquals(1, this.deviceLockTable.getTimeouts());
+            assertEquals(1, this.deviceLockTable.getDeviceContention().length);
+        }
+
+        lock.release();
+        assertEquals(0, this.deviceLockTable.getLockedDevices());
+    }
+
+    @Test
+    public void releasingTwiceDoesNotReleaseLockOfNextHolder() {
+        final DeviceLock lock = this.deviceLockTable.acquire(DEVICE_IDENTIFICATION);
+        lock.release();
+        final DeviceLock nextLock = this.deviceLockTable.acquire(DEVICE_IDENTIFICATION);
+
+        lock.release();
+
+        try {
+            this.deviceLockTable.acquire(DEVICE_IDENTIFICATION);
+            fail("Expected the device to be locked by the next holder");
+        } catch (final DeviceLockException e) {
+            nextLock.release();
+        }
+        assertEquals(0, this.deviceLockTable.getLockedDevices());
+    }
+}
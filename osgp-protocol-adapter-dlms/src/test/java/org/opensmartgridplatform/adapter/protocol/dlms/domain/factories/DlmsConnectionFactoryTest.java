@@ -0,0 +1,236 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.domain.factories;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Provider;
+import javax.sql.DataSource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.stubbing.Answer;
+import org.openmuc.jdlms.AttributeAddress;
+import org.openmuc.jdlms.DlmsConnection;
+import org.openmuc.jdlms.ObisCode;
+import org.openmuc.jdlms.TcpConnectionBuilder;
+import org.opensmartgridplatform.adapter.protocol.dlms.application.services.DecryptedKeyCache;
+import org.opensmartgridplatform.adapter.protocol.dlms.application.services.DlmsDeviceCache;
+import org.opensmartgridplatform.adapter.protocol.dlms.application.services.DomainHelperService;
+import org.opensmartgridplatform.adapter.protocol.dlms.application.services.InvocationCounterBuffer;
+import org.opensmartgridplatform.adapter.protocol.dlms.application.services.SecurityKeyService;
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.entities.DlmsDevice;
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.entities.SecurityKey;
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.entities.SecurityKeyType;
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.repositories.DlmsDeviceRepository;
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.repositories.DlmsSecurityKeyRepository;
+import org.opensmartgridplatform.adapter.protocol.dlms.infra.db.MeteredDataSource;
+import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.InvocationCountingDlmsMessageListener;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import org.opensmartgridplatform.shared.security.EncryptionService;
+
+/**
+ * Sets up connections with the device, its keys and invocation counter read
+ * from repositories that use a connection from a {@link MeteredDataSource}
+ * for each call, like the Spring Data repositories outside a transaction.
+ */
+public class DlmsConnectionFactoryTest {
+
+    private static final String DEVICE_IDENTIFICATION = "TEST1024000000001";
+    private static final String IP_ADDRESS = "127.0.0.1";
+    private static final Long AUTHENTICATION_KEY_ID = 1L;
+    private static final Long ENCRYPTION_KEY_ID = 2L;
+    private static final String ENCRYPTED_KEY = "00112233445566778899aabbccddeeff";
+    private static final int SENT_MESSAGES = 3;
+    private static final AttributeAddress CLOCK_TIME = new AttributeAddress(8, new ObisCode("0.0.1.0.0.255"), 2);
+
+    private MeteredDataSource dataSource;
+    private TransactionTemplate transactionTemplate;
+    private DlmsSecurityKeyRepository securityKeyRepository;
+    private DomainHelperService domainHelperService;
+    private SecurityKeyService securityKeyService;
+    private DlmsConnectionFactory connectionFactory;
+
+    private final CountDownLatch getStarted = new CountDownLatch(1);
+    private final CountDownLatch getReleased = new CountDownLatch(1);
+    private final ExecutorService commandExecutor = Executors.newSingleThreadExecutor();
+
+    @Before
+    public void setUp() throws Exception {
+        final DataSource pool = mock(DataSource.class);
+        when(pool.getConnection()).thenAnswer(invocation -> mock(Connection.class));
+        this.dataSource = new MeteredDataSource(pool);
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(this.dataSource));
+
+        final DlmsDeviceRepository deviceRepository = mock(DlmsDeviceRepository.class);
+        when(deviceRepository.findByDeviceIdentification(DEVICE_IDENTIFICATION))
+                .thenAnswer(this.inTransaction(this.createDevice()));
+        this.securityKeyRepository = mock(DlmsSecurityKeyRepository.class);
+        when(this.securityKeyRepository.findInvocationCounterById(anyLong())).thenAnswer(this.inTransaction(10));
+        when(this.securityKeyRepository.incrementInvocationCounter(ENCRYPTION_KEY_ID, SENT_MESSAGES))
+                .thenAnswer(this.inTransaction(1));
+        final EncryptionService encryptionService = mock(EncryptionService.class);
+        when(encryptionService.decrypt(any(byte[].class))).thenReturn(new byte[16]);
+
+        final DlmsDeviceCache dlmsDeviceCache = new DlmsDeviceCache(60000, 10);
+        this.domainHelperService = new DomainHelperService();
+        ReflectionTestUtils.setField(this.domainHelperService, "dlmsDeviceRepository", deviceRepository);
+        ReflectionTestUtils.setField(this.domainHelperService, "dlmsDeviceCache", dlmsDeviceCache);
+
+        this.securityKeyService = new SecurityKeyService();
+        ReflectionTestUtils.setField(this.securityKeyService, "dlmsDeviceRepository", deviceRepository);
+        ReflectionTestUtils.setField(this.securityKeyService, "dlmsDeviceCache", dlmsDeviceCache);
+        ReflectionTestUtils.setField(this.securityKeyService, "encryptionService", encryptionService);
+        ReflectionTestUtils.setField(this.securityKeyService, "decryptedKeyCache", new DecryptedKeyCache(60000, 10));
+        ReflectionTestUtils.setField(this.securityKeyService, "invocationCounterBuffer",
+                new InvocationCounterBuffer(this.securityKeyRepository, 0, 100));
+
+        final DlmsConnection dlmsConnection = mock(DlmsConnection.class);
+        when(dlmsConnection.get(any(AttributeAddress.class))).thenAnswer(invocation -> {
+            this.getStarted.countDown();
+            this.getReleased.await();
+            return null;
+        });
+        final Hls5Connector connector = new DeviceStubbingHls5Connector(dlmsConnection);
+        ReflectionTestUtils.setField(connector, "securityKeyService", this.securityKeyService);
+        ReflectionTestUtils.setField(connector, "responseTimeoutEstimator",
+                new ResponseTimeoutEstimator(false, 0, 0, Collections.emptyList()));
+
+        this.connectionFactory = new DlmsConnectionFactory();
+        ReflectionTestUtils.setField(this.connectionFactory, "hls5ConnectorProvider",
+                (Provider<DlmsConnector>) () -> connector);
+        ReflectionTestUtils.setField(this.connectionFactory, "domainHelperService", this.domainHelperService);
+        ReflectionTestUtils.setField(this.connectionFactory, "dlmsConnectionPool",
+                new DlmsConnectionPool(false, 0, 0, false));
+        ReflectionTestUtils.setField(this.connectionFactory, "deviceLockTable", new DeviceLockTable(1000, 10));
+        ReflectionTestUtils.setField(this.connectionFactory, "adaptiveConcurrencyLimiter",
+                new AdaptiveConcurrencyLimiter(false, 1, 1, 1, 0.5, 1000, 1000));
+        ReflectionTestUtils.setField(this.connectionFactory, "hungSessionWatchdog",
+                new HungSessionWatchdog(false, Collections.emptyMap(), 0, 0));
+        ReflectionTestUtils.setField(this.connectionFactory, "dlmsDeviceCache", dlmsDeviceCache);
+    }
+
+    @After
+    public void tearDown() {
+        this.getReleased.countDown();
+        this.commandExecutor.shutdownNow();
+    }
+
+    @Test
+    public void noDatabaseConnectionIsHeldWhileWaitingForTheDevice() throws Exception {
+        final Future<?> request = this.commandExecutor.submit(() -> {
+            this.communicate();
+            return null;
+        });
+
+        final int activeConnectionsDuringGet = this.activeConnectionsWhileGetBlocks();
+        request.get(5, TimeUnit.SECONDS);
+
+        assertEquals(0, activeConnectionsDuringGet);
+        assertEquals(0, this.dataSource.getActiveConnections());
+        assertEquals(1, this.dataSource.getMaxActiveConnections());
+        // Reading the device, reading the invocation counter and updating it.
+        assertEquals(3, this.dataSource.getAcquiredConnections());
+        verify(this.securityKeyRepository).incrementInvocationCounter(ENCRYPTION_KEY_ID, SENT_MESSAGES);
+    }
+
+    @Test
+    public void databaseConnectionIsHeldWhileWaitingForTheDeviceWithinATransaction() throws Exception {
+        final Future<?> request = this.commandExecutor.submit(() -> this.transactionTemplate.execute(status -> {
+            try {
+                this.communicate();
+            } catch (final Exception e) {
+                throw new IllegalStateException(e);
+            }
+            return null;
+        }));
+
+        final int activeConnectionsDuringGet = this.activeConnectionsWhileGetBlocks();
+        request.get(5, TimeUnit.SECONDS);
+
+        assertEquals(1, activeConnectionsDuringGet);
+        assertEquals(0, this.dataSource.getActiveConnections());
+        assertEquals(1, this.dataSource.getAcquiredConnections());
+    }
+
+    private void communicate() throws Exception {
+        final DlmsDevice device = this.domainHelperService.findDlmsDevice(DEVICE_IDENTIFICATION, IP_ADDRESS);
+        final DlmsConnectionHolder conn = this.connectionFactory.getConnection(device,
+                new InvocationCountingDlmsMessageListener());
+        conn.getConnection().get(CLOCK_TIME);
+        conn.close();
+        this.securityKeyService.incrementInvocationCounter(device, SecurityKeyType.E_METER_ENCRYPTION,
+                SENT_MESSAGES);
+    }
+
+    private int activeConnectionsWhileGetBlocks() throws InterruptedException {
+        assertTrue("GET was not started", this.getStarted.await(5, TimeUnit.SECONDS));
+        final int activeConnections = this.dataSource.getActiveConnections();
+        this.getReleased.countDown();
+        return activeConnections;
+    }
+
+    private <T> Answer<T> inTransaction(final T result) {
+        return invocation -> this.transactionTemplate.execute(status -> result);
+    }
+
+    private DlmsDevice createDevice() {
+        final DlmsDevice device = new DlmsDevice(DEVICE_IDENTIFICATION);
+        device.setHls5Active(true);
+        device.setIpAddressIsStatic(true);
+        this.addSecurityKey(device, SecurityKeyType.E_METER_AUTHENTICATION, AUTHENTICATION_KEY_ID);
+        this.addSecurityKey(device, SecurityKeyType.E_METER_ENCRYPTION, ENCRYPTION_KEY_ID);
+        return device;
+    }
+
+    private void addSecurityKey(final DlmsDevice device, final SecurityKeyType securityKeyType, final Long id) {
+        final SecurityKey securityKey = new SecurityKey(device, securityKeyType, ENCRYPTED_KEY,
+                new Date(System.currentTimeMillis() - 60000), null);
+        ReflectionTestUtils.setField(securityKey, "id", id);
+        device.addSecurityKey(securityKey);
+    }
+
+    /**
+     * Connector that hands out the given connection instead of connecting to
+     * the device, after setting up security like it does for a device.
+     */
+    private static final class DeviceStubbingHls5Connector extends Hls5Connector {
+        private final DlmsConnection connection;
+
+        private DeviceStubbingHls5Connector(final DlmsConnection connection) {
+            super(null, 1000, 1, 1);
+            this.connection = connection;
+        }
+
+        @Override
+        protected DlmsConnection buildConnection(final DlmsDevice device,
+                final TcpConnectionBuilder tcpConnectionBuilder) throws IOException {
+            return this.connection;
+        }
+    }
+}
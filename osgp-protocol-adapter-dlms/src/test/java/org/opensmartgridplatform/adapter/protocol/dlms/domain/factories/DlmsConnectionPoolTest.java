@@ -0,0 +1,182 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.domain.factories;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openmuc.jdlms.AttributeAddress;
+import org.openmuc.jdlms.DlmsConnection;
+import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.DlmsMessageListener;
+import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.InvocationCountingDlmsMessageListener;
+
+public class DlmsConnectionPoolTest {
+
+    private static final String DEVICE_IDENTIFICATION = "TEST1024000000001";
+    private static final String MESSAGE_TYPE = "GET_ACTUAL_METER_READS";
+
+    private DlmsConnector connector;
+    private DlmsConnection connection;
+    private DlmsMessageListener listener;
+    private RebindableDlmsMessageListener connectionListener;
+
+    @Before
+    public void setup() {
+        this.connector = mock(DlmsConnector.class);
+        this.connection = mock(DlmsConnection.class);
+        this.listener = new InvocationCountingDlmsMessageListener();
+        this.connectionListener = new RebindableDlmsMessageListener(this.listener);
+    }
+
+    @Test
+    public void releasedConnectionIsReusedForTheSameDevice() throws IOException {
+        final DlmsConnectionPool pool = new DlmsConnectionPool(true, 10, 60000, false);
+
+        pool.created(DEVICE_IDENTIFICATION);
+        pool.release(DEVICE_IDENTIFICATION, this.connector, this.connection, this.connectionListener, false);
+        final DlmsConnectionPool.PooledDlmsConnection pooled = pool.borrow(DEVICE_IDENTIFICATION, this.connector,
+                this.listener, MESSAGE_TYPE);
+
+        assertSame(this.connection, pooled.getConnection());
+        assertSame(this.listener, pooled.getDlmsMessageListener().getTarget());
+        assertEquals(0, pool.getNumberOfIdleConnections());
+        assertEquals(1, pool.getNumberOfBorrowedConnections());
+        verify(this.connection, never()).close();
+    }
+
+    @Test
+    public void disabledPoolClosesReleasedConnection() throws IOException {
+        final DlmsConnectionPool pool = new DlmsConnectionPool(false, 10, 60000, false);
+
+        pool.release(DEVICE_IDENTIFICATION, this.connector, this.connection, this.connectionListener, false);
+
+        assertNull(pool.borrow(DEVICE_IDENTIFICATION, this.connector, this.listener, MESSAGE_TYPE));
+        verify(this.connection).close();
+    }
+
+    @Test
+    public void connectionInvalidatedWhileBorrowedIsClosedOnRelease() throws IOException {
+        final DlmsConnectionPool pool = new DlmsConnectionPool(true, 10, 60000, false);
+
+        pool.created(DEVICE_IDENTIFICATION);
+        pool.invalidate(DEVICE_IDENTIFICATION);
+        pool.release(DEVICE_IDENTIFICATION, this.connector, this.connection, this.connectionListener, false);
+
+        assertNull(pool.borrow(DEVICE_IDENTIFICATION, this.connector, this.listener, MESSAGE_TYPE));
+        verify(this.connection).close();
+    }
+
+    @Test
+    public void expiredConnectionIsNotReused() throws IOException {
+        final DlmsConnectionPool pool = new DlmsConnectionPool(true, 10, 0, false);
+
+        pool.release(DEVICE_IDENTIFICATION, this.connector, this.connection, this.connectionListener, false);
+
+        assertNull(pool.borrow(DEVICE_IDENTIFICATION, this.connector, this.listener, MESSAGE_TYPE));
+        verify(this.connection).close();
+    }
+
+    @Test
+    public void connectionFromOtherConnectorIsNotReused() throws IOException {
+        final DlmsConnectionPool pool = new DlmsConnectionPool(true, 10, 60000, false);
+
+        pool.release(DEVICE_IDENTIFICATION, this.connector, this.connection, this.connectionListener, false);
+
+        assertNull(pool.borrow(DEVICE_IDENTIFICATION, mock(DlmsConnector.class), this.listener,
+                MESSAGE_TYPE));
+        verify(this.connection).close();
+    }
+
+    @Test
+    public void connectionIsClosedWhenPoolIsFull() throws IOException {
+        final DlmsConnectionPool pool = new DlmsConnectionPool(true, 1, 60000, false);
+        final DlmsConnection otherConnection = mock(DlmsConnection.class);
+
+        pool.release(DEVICE_IDENTIFICATION, this.connector, this.connection, this.connectionListener, false);
+        pool.release("TEST1024000000002", this.connector, otherConnection, this.connectionListener, false);
+
+        assertEquals(1, pool.getNumberOfIdleConnections());
+        verify(this.connection, never()).close();
+        verify(otherConnection).close();
+    }
+
+    @Test
+    public void connectionFailingHealthCheckIsNotReused() throws IOException {
+        final DlmsConnectionPool pool = new DlmsConnectionPool(true, 10, 60000, true);
+        when(this.connection.get(any(AttributeAddress.class))).thenThrow(new IOException("Connection reset"));
+
+        pool.release(DEVICE_IDENTIFICATION, this.connector, this.connection, this.connectionListener, false);
+
+        assertNull(pool.borrow(DEVICE_IDENTIFICATION, this.connector, this.listener, MESSAGE_TYPE));
+        verify(this.connection).close();
+    }
+
+    @Test
+    public void heldConnectionIsKeptOpenWhenPoolIsDisabled() throws IOException {
+        final DlmsConnectionPool pool = new DlmsConnectionPool(false, 10, 60000, false);
+
+        pool.hold(DEVICE_IDENTIFICATION);
+        pool.release(DEVICE_IDENTIFICATION, this.connector, this.connection, this.connectionListener, false);
+
+        assertSame(this.connection,
+                pool.borrow(DEVICE_IDENTIFICATION, this.connector, this.listener, MESSAGE_TYPE).getConnection());
+        pool.release(DEVICE_IDENTIFICATION, this.connector, this.connection, this.connectionListener, false);
+        verify(this.connection, never()).close();
+
+        pool.endHold(DEVICE_IDENTIFICATION);
+
+        assertEquals(0, pool.getNumberOfIdleConnections());
+        verify(this.connection).close();
+    }
+
+    @Test
+    public void borrowedConnectionPassesMessagesToListenerOfBorrower() {
+        final DlmsConnectionPool pool = new DlmsConnectionPool(true, 10, 60000, false);
+        final DlmsMessageListener borrowerListener = new InvocationCountingDlmsMessageListener();
+
+        pool.release(DEVICE_IDENTIFICATION, this.connector, this.connection, this.connectionListener, false);
+        final DlmsConnectionPool.PooledDlmsConnection pooled = pool.borrow(DEVICE_IDENTIFICATION, this.connector,
+                borrowerListener, MESSAGE_TYPE);
+
+        assertSame(this.connectionListener, pooled.getDlmsMessageListener());
+        assertSame(borrowerListener, pooled.getDlmsMessageListener().getTarget());
+    }
+
+    @Test
+    public void borrowedConnectionsCountAgainstMaxOpen() throws IOException {
+        final DlmsConnectionPool pool = new DlmsConnectionPool(true, 1, 60000, false);
+
+        pool.created(DEVICE_IDENTIFICATION);
+        pool.created("TEST1024000000002");
+        pool.release(DEVICE_IDENTIFICATION, this.connector, this.connection, this.connectionListener, false);
+
+        assertEquals(0, pool.getNumberOfIdleConnections());
+        verify(this.connection).close();
+    }
+
+    @Test
+    public void connectionWithAdaptiveTimeoutIsNotReusedForOtherMessageTypes() throws IOException {
+        final DlmsConnectionPool pool = new DlmsConnectionPool(true, 10, 60000, false);
+        when(this.connector.hasAdaptiveResponseTimeout("GET_PROFILE_GENERIC_DATA")).thenReturn(false);
+
+        pool.release(DEVICE_IDENTIFICATION, this.connector, this.connection, this.connectionListener, true);
+
+        assertNull(pool.borrow(DEVICE_IDENTIFICATION, this.connector, this.listener, "GET_PROFILE_GENERIC_DATA"));
+        verify(this.connection).close();
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.domain.factories;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.entities.DlmsDevice;
+import org.opensmartgridplatform.adapter.protocol.dlms.exceptions.HungSessionException;
+
+public class HungSessionWatchdogTest {
+
+    private static final String DEVICE_IDENTIFICATION = "TEST1024000000001";
+
+    private final HungSessionWatchdog watchdog = new HungSessionWatchdog(true,
+            Collections.singletonMap("GET_PROFILE_GENERIC_DATA", 3600000L), 1, 0);
+
+    private DlmsConnectionHolder holder;
+
+    @Before
+    public void setup() {
+        final DlmsDevice device = mock(DlmsDevice.class);
+        when(device.getDeviceIdentification()).thenReturn(DEVICE_IDENTIFICATION);
+        this.holder = new DlmsConnectionHolder(null, device, null, null);
+        this.holder.setWatchedSession(this.watchdog.register(this.holder, DEVICE_IDENTIFICATION));
+    }
+
+    @Test
+    public void sessionOverBudgetIsAborted() throws InterruptedException {
+        this.holder.setMessageType("GET_ACTUAL_METER_READS");
+        Thread.sleep(10);
+
+        this.watchdog.checkSessions();
+
+        assertTrue(this.holder.isAborted());
+        assertEquals(1, this.watchdog.getAbortedSessions());
+        try {
+            this.holder.checkDeadline("next operation");
+            fail("Expected a HungSessionException");
+        } catch (final HungSessionException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void sessionWithinBudgetIsLeftAlone() throws Exception {
+        this.holder.setMessageType("GET_PROFILE_GENERIC_DATA");
+        Thread.sleep(10);
+
+        this.watchdog.checkSessions();
+
+        assertFalse(this.holder.isAborted());
+        assertEquals(1, this.watchdog.getActiveSessions());
+
+        this.holder.close();
+        assertEquals(0, this.watchdog.getActiveSessions());
+    }
+
+    @Test
+    public void threadIsInterruptedIfAbortingDoesNotEndTheSession() throws InterruptedException {
+        Thread.sleep(10);
+
+        this.watchdog.checkSessions();
+        this.watchdog.checkSessions();
+
+        assertTrue(Thread.interrupted());
+        assertEquals(1, this.watchdog.getInterruptedThreads());
+    }
+
+    @Test
+    public void interruptIsClearedWhenTheSessionIsClosed() throws Exception {
+        Thread.sleep(10);
+
+        this.watchdog.checkSessions();
+        this.watchdog.checkSessions();
+        this.holder.close();
+
+        assertFalse(Thread.currentThread().isInterrupted());
+        assertEquals(1, this.watchdog.getInterruptedThreads());
+    }
+
+    @Test
+    public void sessionsOfADeviceCanBeAbortedByRequest() {
+        assertEquals(1, this.watchdog.abortSessions(DEVICE_IDENTIFICATION));
+        assertTrue(this.holder.isAborted());
+    }
+}
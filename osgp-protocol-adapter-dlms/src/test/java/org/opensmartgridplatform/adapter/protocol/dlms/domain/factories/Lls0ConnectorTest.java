@@ -0,0 +1,107 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.domain.factories;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openmuc.jdlms.DlmsConnection;
+import org.openmuc.jdlms.TcpConnectionBuilder;
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.entities.DlmsDevice;
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.valueobjects.RequestDeadline;
+import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.ConnectionPhaseRecorder;
+import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.DlmsMessageListener;
+import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.FlightRecorder;
+import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.InvocationCountingDlmsMessageListener;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class Lls0ConnectorTest {
+
+    private static final String MESSAGE_TYPE = "GET_ACTUAL_METER_READS";
+
+    private ListenerCapturingLls0Connector connector;
+    private DlmsDevice device;
+
+    @Before
+    public void setUp() {
+        this.connector = new ListenerCapturingLls0Connector();
+        ReflectionTestUtils.setField(this.connector, "responseTimeoutEstimator",
+                new ResponseTimeoutEstimator(false, 0, 0, Collections.emptyList()));
+        this.device = new DlmsDevice("TEST1024000000001");
+        this.device.setIpAddress("127.0.0.1");
+    }
+
+    @Test
+    public void phasesOfConnectionWithDeviceNotInDebugModeAreMeasured() throws Exception {
+        final InvocationCountingDlmsMessageListener listener = new InvocationCountingDlmsMessageListener();
+        listener.setConnectionPhaseRecorder(mock(ConnectionPhaseRecorder.class));
+
+        this.connector.connect(this.device, listener, RequestDeadline.NONE, MESSAGE_TYPE);
+
+        assertSame(listener, this.connector.rawMessageListener);
+    }
+
+    @Test
+    public void flightOfConnectionWithDeviceNotInDebugModeIsRecorded() throws Exception {
+        final InvocationCountingDlmsMessageListener listener = new InvocationCountingDlmsMessageListener();
+        listener.setFlightRecorder(new FlightRecorder(10));
+
+        this.connector.connect(this.device, listener, RequestDeadline.NONE, MESSAGE_TYPE);
+
+        assertSame(listener, this.connector.rawMessageListener);
+    }
+
+    @Test
+    public void pooledConnectionWithDeviceNotInDebugModeGetsRebindableListener() throws Exception {
+        // A request without a listener of its own still needs one on a pooled
+        // connection, for the requests that borrow the connection later.
+        final RebindableDlmsMessageListener listener = new RebindableDlmsMessageListener(null);
+
+        this.connector.connect(this.device, listener, RequestDeadline.NONE, MESSAGE_TYPE);
+
+        assertSame(listener, this.connector.rawMessageListener);
+    }
+
+    @Test
+    public void connectionWithoutListenerGetsNoRawMessageListener() throws Exception {
+        this.connector.connect(this.device, null, RequestDeadline.NONE, MESSAGE_TYPE);
+
+        assertNull(this.connector.rawMessageListener);
+    }
+
+    /**
+     * Connector that records the listener registered with the connection,
+     * instead of connecting to the device.
+     */
+    private static final class ListenerCapturingLls0Connector extends Lls0Connector {
+        private DlmsMessageListener rawMessageListener;
+
+        private ListenerCapturingLls0Connector() {
+            super(1000, 1);
+        }
+
+        @Override
+        protected void setRawMessageListener(final DlmsDevice device, final TcpConnectionBuilder tcpConnectionBuilder,
+                final DlmsMessageListener dlmsMessageListener) {
+            this.rawMessageListener = dlmsMessageListener;
+            super.setRawMessageListener(device, tcpConnectionBuilder, dlmsMessageListener);
+        }
+
+        @Override
+        protected DlmsConnection buildConnection(final DlmsDevice device,
+                final TcpConnectionBuilder tcpConnectionBuilder) throws IOException {
+            return mock(DlmsConnection.class);
+        }
+    }
+}
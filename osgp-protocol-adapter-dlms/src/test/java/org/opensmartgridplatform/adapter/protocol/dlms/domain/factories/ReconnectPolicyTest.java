@@ -0,0 +1,40 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.domain.factories;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ReconnectPolicyTest {
+
+    @Test
+    public void reconnectsAreLimitedPerRequest() {
+        final ReconnectPolicy policy = new ReconnectPolicy(2, 0.1, 10);
+
+        assertTrue(policy.tryReconnect(1));
+        assertTrue(policy.tryReconnect(2));
+        assertFalse(policy.tryReconnect(3));
+    }
+
+    @Test
+    public void reconnectsAreLimitedByRetryBudget() {
+        final ReconnectPolicy policy = new ReconnectPolicy(5, 0.5, 1);
+
+        assertTrue(policy.tryReconnect(1));
+        assertFalse(policy.tryReconnect(1));
+        assertEquals(1, policy.getBudgetExhausted());
+
+        policy.recordRequest();
+        assertFalse(policy.tryReconnect(1));
+        policy.recordRequest();
+        assertTrue(policy.tryReconnect(1));
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.domain.factories;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collection;
+import java.util.Collections;
+
+import org.junit.Test;
+import org.openmuc.jdlms.RawMessageData;
+import org.openmuc.jdlms.RawMessageData.MessageSource;
+import org.openmuc.jdlms.RawMessageListener;
+
+public class ResponseTimeoutEstimatorTest {
+
+    private static final String DEVICE_IDENTIFICATION = "TEST1024000000001";
+    private static final String MESSAGE_TYPE = "GET_ACTUAL_METER_READS";
+    private static final String EXCLUDED_MESSAGE_TYPE = "GET_PROFILE_GENERIC_DATA";
+    private static final Collection<String> EXCLUDED_MESSAGE_TYPES = Collections.singleton(EXCLUDED_MESSAGE_TYPE);
+    private static final int MAXIMUM_TIMEOUT = 300000;
+
+    @Test
+    public void maximumTimeoutIsUsedWithoutObservedResponseTimes() {
+        final ResponseTimeoutEstimator estimator = new ResponseTimeoutEstimator(true, 1000, 10, EXCLUDED_MESSAGE_TYPES);
+
+        assertEquals(MAXIMUM_TIMEOUT,
+                estimator.getResponseTimeout(DEVICE_IDENTIFICATION, MESSAGE_TYPE, MAXIMUM_TIMEOUT));
+    }
+
+    @Test
+    public void timeoutFollowsObservedResponseTimes() {
+        final ResponseTimeoutEstimator estimator = new ResponseTimeoutEstimator(true, 1000, 10, EXCLUDED_MESSAGE_TYPES);
+
+        estimator.recordResponseTime(DEVICE_IDENTIFICATION, 2000);
+
+        // 2000 + 4 * 1000
+        assertEquals(6000, estimator.getResponseTimeout(DEVICE_IDENTIFICATION, MESSAGE_TYPE, MAXIMUM_TIMEOUT));
+    }
+
+    @Test
+    public void timeoutIsBetweenMinimumAndMaximum() {
+        final ResponseTimeoutEstimator estimator = new ResponseTimeoutEstimator(true, 10000, 10,
+                EXCLUDED_MESSAGE_TYPES);
+
+        estimator.recordResponseTime(DEVICE_IDENTIFICATION, 100);
+        assertEquals(10000, estimator.getResponseTimeout(DEVICE_IDENTIFICATION, MESSAGE_TYPE, MAXIMUM_TIMEOUT));
+
+        estimator.recordResponseTime("TEST1024000000002", 1000000);
+        assertEquals(MAXIMUM_TIMEOUT, estimator.getResponseTimeout("TEST1024000000002", MESSAGE_TYPE,
+                MAXIMUM_TIMEOUT));
+    }
+
+    @Test
+    public void failuresBackOffUntilNextResponse() {
+        final ResponseTimeoutEstimator estimator = new ResponseTimeoutEstimator(true, 1000, 10, EXCLUDED_MESSAGE_TYPES);
+        estimator.recordResponseTime(DEVICE_IDENTIFICATION, 2000);
+
+        estimator.recordFailure(DEVICE_IDENTIFICATION);
+        estimator.recordFailure(DEVICE_IDENTIFICATION);
+        estimator.recordFailure(DEVICE_IDENTIFICATION);
+        assertEquals(24000, estimator.getResponseTimeout(DEVICE_IDENTIFICATION, MESSAGE_TYPE, MAXIMUM_TIMEOUT));
+
+        estimator.recordResponseTime(DEVICE_IDENTIFICATION, 2000);
+        // srtt stays 2000, rttvar becomes 3/4 * 1000
+        assertEquals(5000, estimator.getResponseTimeout(DEVICE_IDENTIFICATION, MESSAGE_TYPE, MAXIMUM_TIMEOUT));
+    }
+
+    @Test
+    public void disabledEstimatorUsesMaximumTimeout() {
+        final ResponseTimeoutEstimator estimator = new ResponseTimeoutEstimator(false, 1000, 10,
+                EXCLUDED_MESSAGE_TYPES);
+
+        estimator.recordResponseTime(DEVICE_IDENTIFICATION, 2000);
+
+        assertEquals(MAXIMUM_TIMEOUT,
+                estimator.getResponseTimeout(DEVICE_IDENTIFICATION, MESSAGE_TYPE, MAXIMUM_TIMEOUT));
+    }
+
+    @Test
+    public void excludedMessageTypeUsesMaximumTimeout() {
+        final ResponseTimeoutEstimator estimator = new ResponseTimeoutEstimator(true, 1000, 10, EXCLUDED_MESSAGE_TYPES);
+
+        estimator.recordResponseTime(DEVICE_IDENTIFICATION, 2000);
+
+        assertEquals(MAXIMUM_TIMEOUT,
+                estimator.getResponseTimeout(DEVICE_IDENTIFICATION, EXCLUDED_MESSAGE_TYPE, MAXIMUM_TIMEOUT));
+        assertEquals(MAXIMUM_TIMEOUT, estimator.getResponseTimeout(DEVICE_IDENTIFICATION, null, MAXIMUM_TIMEOUT));
+    }
+
+    @Test
+    public void measuredRoundTripIsRecorded() {
+        final ResponseTimeoutEstimator estimator = new ResponseTimeoutEstimator(true, 1000, 10, EXCLUDED_MESSAGE_TYPES);
+        final RawMessageListener listener = mock(RawMessageListener.class);
+        final RawMessageData request = mock(RawMessageData.class);
+        when(request.getMessageSource()).thenReturn(MessageSource.CLIENT);
+        final RawMessageData response = mock(RawMessageData.class);
+        when(response.getMessageSource()).thenReturn(MessageSource.SERVER);
+
+        final RawMessageListener measuringListener = estimator.measure(DEVICE_IDENTIFICATION, listener);
+        measuringListener.messageCaptured(request);
+        measuringListener.messageCaptured(response);
+
+        assertEquals(1, estimator.getTrackedDevices());
+        verify(listener).messageCaptured(request);
+        verify(listener).messageCaptured(response);
+    }
+
+    @Test
+    public void disabledEstimatorDoesNotMeasure() {
+        final ResponseTimeoutEstimator estimator = new ResponseTimeoutEstimator(false, 1000, 10,
+                EXCLUDED_MESSAGE_TYPES);
+        final RawMessageListener listener = mock(RawMessageListener.class);
+
+        assertEquals(listener, estimator.measure(DEVICE_IDENTIFICATION, listener));
+    }
+}
@@ -0,0 +1,53 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.domain.valueobjects;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+import org.opensmartgridplatform.adapter.protocol.dlms.exceptions.DeadlineExceededException;
+
+public class RequestDeadlineTest {
+
+    @Test
+    public void messageWithoutExpirationHasNoDeadline() {
+        final RequestDeadline deadline = RequestDeadline.of(0);
+
+        assertSame(RequestDeadline.NONE, deadline);
+        assertFalse(deadline.isExpired());
+        assertEquals(300000, deadline.capTimeout(300000));
+        deadline.check("connect");
+    }
+
+    @Test
+    public void timeoutIsCappedToRemainingTime() {
+        final RequestDeadline deadline = RequestDeadline.of(System.currentTimeMillis() + 10000);
+
+        assertFalse(deadline.isExpired());
+        assertTrue(deadline.capTimeout(300000) <= 10000);
+        assertEquals(5000, deadline.capTimeout(5000));
+    }
+
+    @Test
+    public void checkFailsAfterDeadline() {
+        final RequestDeadline deadline = RequestDeadline.of(System.currentTimeMillis() - 1);
+
+        assertTrue(deadline.isExpired());
+        assertEquals(1, deadline.capTimeout(300000));
+        try {
+            deadline.check("connect");
+            fail("Expected a DeadlineExceededException");
+        } catch (final DeadlineExceededException e) {
+            assertEquals("connect", e.getStage());
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.infra.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+public class MeteredDataSourceTest {
+
+    private DataSource pool;
+    private Connection connection;
+    private MeteredDataSource dataSource;
+    private TransactionTemplate transactionTemplate;
+
+    @Before
+    public void setUp() throws SQLException {
+        this.pool = mock(DataSource.class);
+        this.connection = mock(Connection.class);
+        when(this.pool.getConnection()).thenReturn(this.connection);
+        this.dataSource = new MeteredDataSource(this.pool);
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(this.dataSource));
+    }
+
+    @Test
+    public void connectionIsActiveUntilClosed() throws SQLException {
+        final Connection first = this.dataSource.getConnection();
+        final Connection second = this.dataSource.getConnection();
+        assertEquals(2, this.dataSource.getActiveConnections());
+
+        first.close();
+        first.close();
+        assertEquals(1, this.dataSource.getActiveConnections());
+
+        second.close();
+        assertEquals(0, this.dataSource.getActiveConnections());
+        assertEquals(2, this.dataSource.getMaxActiveConnections());
+        assertEquals(2, this.dataSource.getAcquiredConnections());
+        verify(this.connection, times(3)).close();
+    }
+
+    @Test
+    public void failureToGetConnectionIsCounted() throws SQLException {
+        when(this.pool.getConnection()).thenThrow(new SQLException("Connection is not available"));
+
+        try {
+            this.dataSource.getConnection();
+            fail("Expected an SQLException");
+        } catch (final SQLException e) {
+            assertEquals(1, this.dataSource.getFailedAcquisitions());
+            assertEquals(0, this.dataSource.getActiveConnections());
+            assertEquals(0, this.dataSource.getWaitingThreads());
+        }
+    }
+
+    @Test
+    public void connectionIsHeldDuringSlowGetInsideTransaction() {
+        final AtomicInteger connectionsDuringGet = new AtomicInteger(-1);
+
+        this.transactionTemplate.execute(status -> {
+            this.simulateSlowGet(connectionsDuringGet);
+            return null;
+        });
+
+        assertEquals(1, connectionsDuringGet.get());
+        assertEquals(0, this.dataSource.getActiveConnections());
+    }
+
+    private void simulateSlowGet(final AtomicInteger connectionsDuringGet) {
+        try {
+            Thread.sleep(50);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        connectionsDuringGet.set(this.dataSource.getActiveConnections());
+    }
+}
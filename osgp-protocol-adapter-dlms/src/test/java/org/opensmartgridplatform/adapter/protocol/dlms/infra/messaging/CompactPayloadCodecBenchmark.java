@@ -0,0 +1,112 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.opensmartgridplatform.dto.valueobjects.smartmetering.AmrProfileStatusCodeDto;
+import org.opensmartgridplatform.dto.valueobjects.smartmetering.AmrProfileStatusCodeFlagDto;
+import org.opensmartgridplatform.dto.valueobjects.smartmetering.DlmsMeterValueDto;
+import org.opensmartgridplatform.dto.valueobjects.smartmetering.DlmsUnitTypeDto;
+import org.opensmartgridplatform.dto.valueobjects.smartmetering.PeriodTypeDto;
+import org.opensmartgridplatform.dto.valueobjects.smartmetering.PeriodicMeterReadsResponseDto;
+import org.opensmartgridplatform.dto.valueobjects.smartmetering.PeriodicMeterReadsResponseItemDto;
+
+/**
+ * Microbenchmark of the encode and decode cost and the wire size of
+ * {@link CompactPayloadCodec}, compared to plain Java serialization, for
+ * representative response payloads.
+ * <p>
+ * Not run as part of the build; run the main method to get the figures.
+ */
+public class CompactPayloadCodecBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 200;
+    private static final int MEASURED_ITERATIONS = 1000;
+
+    public static void main(final String[] args) throws Exception {
+        run("Interval reads, 1 day", intervalReads(96));
+        run("Interval reads, 3 months", intervalReads(96 * 92));
+        run("All attribute values", allAttributeValues(2000));
+    }
+
+    private static void run(final String name, final Serializable payload) throws Exception {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            CompactPayloadCodec.decode(CompactPayloadCodec.encode(payload));
+            serialize(payload);
+        }
+
+        long serializeTime = 0;
+        long encodeTime = 0;
+        long decodeTime = 0;
+        int serializedSize = 0;
+        int encodedSize = 0;
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            long start = System.nanoTime();
+            serializedSize = serialize(payload).length;
+            serializeTime += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            final byte[] encoded = CompactPayloadCodec.encode(payload);
+            encodeTime += System.nanoTime() - start;
+            encodedSize = encoded.length;
+
+            start = System.nanoTime();
+            CompactPayloadCodec.decode(encoded);
+            decodeTime += System.nanoTime() - start;
+        }
+
+        System.out.println(String.format(
+                "%-26s serialized %8d bytes in %6d us, encoded %7d bytes (%3d%%) in %6d us, decoded in %6d us", name,
+                serializedSize, micros(serializeTime), encodedSize, encodedSize * 100 / serializedSize,
+                micros(encodeTime), micros(decodeTime)));
+    }
+
+    private static long micros(final long totalNanos) {
+        return TimeUnit.NANOSECONDS.toMicros(totalNanos / MEASURED_ITERATIONS);
+    }
+
+    private static byte[] serialize(final Serializable payload) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (final ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(payload);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static PeriodicMeterReadsResponseDto intervalReads(final int numberOfReads) {
+        final List<PeriodicMeterReadsResponseItemDto> reads = new ArrayList<>();
+        final long start = System.currentTimeMillis() - numberOfReads * 900_000L;
+        for (int i = 0; i < numberOfReads; i++) {
+            reads.add(new PeriodicMeterReadsResponseItemDto(new Date(start + i * 900_000L),
+                    new DlmsMeterValueDto(BigDecimal.valueOf(12345.678 + i * 0.25), DlmsUnitTypeDto.KWH),
+                    new DlmsMeterValueDto(BigDecimal.valueOf(234.5 + i * 0.01), DlmsUnitTypeDto.KWH),
+                    new AmrProfileStatusCodeDto(new HashSet<AmrProfileStatusCodeFlagDto>())));
+        }
+        return new PeriodicMeterReadsResponseDto(PeriodTypeDto.INTERVAL, reads);
+    }
+
+    private static String allAttributeValues(final int numberOfObjects) {
+        final StringBuilder output = new StringBuilder();
+        for (int i = 0; i < numberOfObjects; i++) {
+            output.append("{ classId=").append(3 + i % 5).append(", logicalName=0.0.").append(i % 97)
+                    .append(".0.0.255, attributes=[ { id=2, value=DataObject: Choice: DOUBLE_LONG_UNSIGNED, value: ")
+                    .append(i * 31).append(" }, { id=3, value=DataObject: Choice: STRUCTURE, size: 2 } ] }\n");
+        }
+        return output.toString();
+    }
+}
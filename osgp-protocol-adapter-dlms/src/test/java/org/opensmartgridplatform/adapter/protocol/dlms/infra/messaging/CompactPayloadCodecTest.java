@@ -0,0 +1,51 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+public class CompactPayloadCodecTest {
+
+    @Test
+    public void smallPayloadIsSerializedButNotCompressed() throws Exception {
+        final CompactPayloadCodec codec = new CompactPayloadCodec(1024);
+
+        final CompactPayloadCodec.EncodedPayload encoded = codec.encodeForSending("small");
+
+        assertEquals(CompactPayloadCodec.JAVA_SERIALIZATION, encoded.getEncoding());
+        assertEquals("small", CompactPayloadCodec.decode(encoded.getBytes(), encoded.getEncoding()));
+        assertEquals(0, codec.getCompressedMessages());
+    }
+
+    @Test
+    public void largePayloadIsEncodedAndDecoded() throws Exception {
+        final CompactPayloadCodec codec = new CompactPayloadCodec(1024);
+        final ArrayList<String> payload = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            payload.add("1-0:1.8.1.255 value " + i);
+        }
+
+        final CompactPayloadCodec.EncodedPayload encoded = codec.encodeForSending(payload);
+
+        assertEquals(CompactPayloadCodec.JAVA_SERIALIZATION_DEFLATE, encoded.getEncoding());
+        assertEquals(payload, CompactPayloadCodec.decode(encoded.getBytes(), encoded.getEncoding()));
+        assertEquals(1, codec.getCompressedMessages());
+        assertTrue(codec.getCompressedBytes() < codec.getSerializedBytes());
+    }
+
+    @Test
+    public void disabledCodecNeverEncodes() throws Exception {
+        assertNull(new CompactPayloadCodec(0).encodeForSending(new String(new char[10000])));
+    }
+}
@@ -0,0 +1,123 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.factories.DlmsConnectionPool;
+
+public class DeviceRequestCoalescerTest {
+
+    private static final String DEVICE_IDENTIFICATION = "TEST1024000000001";
+
+    private final DlmsConnectionPool pool = mock(DlmsConnectionPool.class);
+
+    @Test
+    public void requestArrivingDuringRequestIsExecutedByTheSameThread() throws Exception {
+        final DeviceRequestCoalescer coalescer = new DeviceRequestCoalescer(true, 0, this.pool);
+        final CountDownLatch firstStarted = new CountDownLatch(1);
+        final CountDownLatch secondQueued = new CountDownLatch(1);
+        final List<Thread> executingThreads = new ArrayList<>();
+
+        final Thread first = new Thread(() -> coalescer.execute(DEVICE_IDENTIFICATION, () -> {
+            executingThreads.add(Thread.currentThread());
+            firstStarted.countDown();
+            await(secondQueued);
+        }));
+        first.start();
+        await(firstStarted);
+
+        final Future<Void> second = coalescer.execute(DEVICE_IDENTIFICATION,
+                () -> executingThreads.add(Thread.currentThread()));
+        secondQueued.countDown();
+        second.get(5, TimeUnit.SECONDS);
+        first.join(5000);
+
+        assertEquals(2, executingThreads.size());
+        assertEquals(first, executingThreads.get(1));
+        assertEquals(1, coalescer.getCoalescedRequests());
+        assertEquals(0, coalescer.getActiveDevices());
+        verify(this.pool).hold(DEVICE_IDENTIFICATION);
+        verify(this.pool).endHold(DEVICE_IDENTIFICATION);
+    }
+
+    @Test
+    public void requestsOverTheLimitPerDeviceAreExecutedByTheirOwnThread() throws Exception {
+        final DeviceRequestCoalescer coalescer = new DeviceRequestCoalescer(true, 1, this.pool);
+        final CountDownLatch firstStarted = new CountDownLatch(1);
+        final CountDownLatch firstReleased = new CountDownLatch(1);
+        final List<Thread> executingThreads = new ArrayList<>();
+
+        final Thread first = new Thread(() -> coalescer.execute(DEVICE_IDENTIFICATION, () -> {
+            firstStarted.countDown();
+            await(firstReleased);
+        }));
+        first.start();
+        await(firstStarted);
+
+        final Future<Void> coalesced = coalescer.execute(DEVICE_IDENTIFICATION, () -> {
+        });
+        final Future<Void> overLimit = coalescer.execute(DEVICE_IDENTIFICATION,
+                () -> executingThreads.add(Thread.currentThread()));
+
+        assertTrue(overLimit.isDone());
+        assertEquals(Thread.currentThread(), executingThreads.get(0));
+        assertEquals(1, coalescer.getPendingRequests());
+        assertEquals(1, coalescer.getRequestsOverLimit());
+
+        firstReleased.countDown();
+        coalesced.get(5, TimeUnit.SECONDS);
+        first.join(5000);
+        assertEquals(0, coalescer.getPendingRequests());
+        assertEquals(0, coalescer.getActiveDevices());
+    }
+
+    @Test
+    public void failingRequestReleasesTheDevice() throws Exception {
+        final DeviceRequestCoalescer coalescer = new DeviceRequestCoalescer(true, 0, this.pool);
+
+        final Future<Void> failed = coalescer.execute(DEVICE_IDENTIFICATION, () -> {
+            throw new IllegalStateException("Request failed");
+        });
+        final Future<Void> next = coalescer.execute(DEVICE_IDENTIFICATION, () -> {
+        });
+
+        assertTrue(failed.isDone());
+        assertTrue(next.isDone());
+        assertEquals(0, coalescer.getActiveDevices());
+    }
+
+    @Test
+    public void disabledCoalescerDoesNotHoldConnections() throws Exception {
+        final DeviceRequestCoalescer coalescer = new DeviceRequestCoalescer(false, 0, this.pool);
+
+        assertTrue(coalescer.execute(DEVICE_IDENTIFICATION, () -> {
+        }).isDone());
+
+        verify(this.pool, never()).hold(DEVICE_IDENTIFICATION);
+    }
+
+    private static void await(final CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.junit.Test;
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.entities.DlmsDevice;
+import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.DlmsConnectionMetrics.Phase;
+
+public class DlmsConnectionMetricsTest {
+
+    @Test
+    public void nothingIsRecordedWhenDisabled() {
+        final DlmsConnectionMetrics metrics = new DlmsConnectionMetrics(false);
+
+        metrics.record(Phase.APDU, "GET_ACTUAL_METER_READS", "hls5Connector", true, 100);
+        metrics.recordApdu("GET_ACTUAL_METER_READS", "hls5Connector", true, 42);
+
+        assertNull(metrics.createRecorder("GET_ACTUAL_METER_READS", mock(DlmsDevice.class)));
+        assertEquals(0, metrics.getPhaseLatencies().length);
+        assertEquals(0, metrics.getApduBytes().length);
+    }
+
+    @Test
+    public void latenciesAreRecordedPerPhaseMessageTypeSecurityLevelAndOutcome() {
+        final DlmsConnectionMetrics metrics = new DlmsConnectionMetrics(true);
+
+        metrics.record(Phase.APDU, "GET_ACTUAL_METER_READS", "hls5Connector", true, 100);
+        metrics.record(Phase.APDU, "GET_ACTUAL_METER_READS", "hls5Connector", true, 300);
+        metrics.record(Phase.APDU, "GET_ACTUAL_METER_READS", "hls5Connector", false, 300);
+
+        final String[] latencies = metrics.getPhaseLatencies();
+        assertEquals(2, latencies.length);
+        assertTrue(latencies[1].startsWith(
+                "phase=APDU, messageType=GET_ACTUAL_METER_READS, securityLevel=hls5Connector, outcome=success: "
+                        + "count=2, mean=200, max=300"));
+    }
+
+    @Test
+    public void failedConnectWithoutRequestIsRecordedAsTcpConnect() {
+        final DlmsConnectionMetrics metrics = new DlmsConnectionMetrics(true);
+        final DlmsDevice device = mock(DlmsDevice.class);
+        when(device.isLls1Active()).thenReturn(true);
+
+        final ConnectionPhaseRecorder recorder = metrics.createRecorder("SET_ALARM_NOTIFICATIONS", device);
+        recorder.connectStarted();
+        recorder.connectFinished(false);
+
+        final String[] latencies = metrics.getPhaseLatencies();
+        assertEquals(1, latencies.length);
+        assertTrue(latencies[0].startsWith(
+                "phase=TCP_CONNECT, messageType=SET_ALARM_NOTIFICATIONS, securityLevel=lls1Connector, outcome=failure"));
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.core.ProducerCallback;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class DlmsLogItemRequestMessageSenderTest {
+
+    private final JmsTemplate jmsTemplate = mock(JmsTemplate.class);
+
+    private DlmsLogItemRequestMessageSender sender;
+
+    @Before
+    public void setup() {
+        this.sender = new DlmsLogItemRequestMessageSender(150, 100, 10);
+        ReflectionTestUtils.setField(this.sender, "dlmsLogItemRequestsJmsTemplate", this.jmsTemplate);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        this.sender.stop();
+    }
+
+    @Test
+    public void logItemsAreDroppedWhenTheQueueIsFull() {
+        for (int i = 0; i < 160; i++) {
+            this.sender.send(this.logItem());
+        }
+
+        assertEquals(150, this.sender.getQueuedLogItems());
+        assertEquals(10, this.sender.getDroppedLogItems());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void queuedLogItemsAreSentInBatches() throws InterruptedException {
+        for (int i = 0; i < 150; i++) {
+            this.sender.send(this.logItem());
+        }
+
+        this.sender.start();
+        this.sender.stop();
+
+        assertEquals(150, this.sender.getSentLogItems());
+        assertEquals(0, this.sender.getQueuedLogItems());
+        verify(this.jmsTemplate, times(2)).execute(any(ProducerCallback.class));
+    }
+
+    private DlmsLogItemRequestMessage logItem() {
+        return new DlmsLogItemRequestMessage("TEST1024000000001", "test-org", true, new byte[] { 1, 2, 3 },
+                "decoded");
+    }
+}
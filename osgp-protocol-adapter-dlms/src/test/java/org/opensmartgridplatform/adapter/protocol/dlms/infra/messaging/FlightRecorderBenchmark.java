@@ -0,0 +1,50 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging;
+
+import java.util.Random;
+
+/**
+ * Microbenchmark of the cost of recording a message with a
+ * {@link FlightRecorder}, which is paid for every message exchanged with a
+ * device, including on successful requests.
+ * <p>
+ * Not run as part of the build; run the main method to get the figures.
+ */
+public class FlightRecorderBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 1_000_000;
+    private static final int MEASURED_ITERATIONS = 10_000_000;
+
+    public static void main(final String[] args) {
+        run("Small APDUs (32 bytes)", 32);
+        run("Typical APDUs (256 bytes)", 256);
+        run("Large APDUs (1200 bytes)", 1200);
+    }
+
+    private static void run(final String name, final int messageSize) {
+        final byte[][] messages = new byte[16][messageSize];
+        final Random random = new Random(messageSize);
+        for (final byte[] message : messages) {
+            random.nextBytes(message);
+        }
+        final FlightRecorder recorder = new FlightRecorder(16);
+
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            recorder.record((i & 1) == 0, messages[i & 15], null);
+        }
+        final long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            recorder.record((i & 1) == 0, messages[i & 15], null);
+        }
+        final long duration = System.nanoTime() - start;
+
+        System.out.println(String.format("%-26s %6.1f ns per recorded message", name,
+                (double) duration / MEASURED_ITERATIONS));
+    }
+}
@@ -0,0 +1,64 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+public class FlightRecorderTest {
+
+    @Test
+    public void onlyTheLastMessagesAreKeptOldestFirst() {
+        final FlightRecorder recorder = new FlightRecorder(3);
+        for (byte i = 1; i <= 5; i++) {
+            recorder.record(i % 2 == 0, new byte[] { i, i }, null);
+        }
+
+        final List<FlightRecorder.Frame> frames = recorder.snapshot();
+
+        assertEquals(5, recorder.getRecorded());
+        assertEquals(3, frames.size());
+        assertArrayEquals(new byte[] { 3, 3 }, frames.get(0).getMessage());
+        assertTrue(frames.get(1).isIncoming());
+        assertArrayEquals(new byte[] { 5, 5 }, frames.get(2).getMessage());
+        assertFalse(frames.get(2).isIncoming());
+    }
+
+    @Test
+    public void recordedMessagesAreCopied() {
+        final FlightRecorder recorder = new FlightRecorder(2);
+        final byte[] message = { 1, 2, 3 };
+
+        recorder.record(false, message, null);
+        message[0] = 9;
+        // A shorter message reuses the buffer of the overwritten slot.
+        recorder.record(true, new byte[] { 4 }, null);
+        recorder.record(true, new byte[] { 5 }, null);
+
+        final List<FlightRecorder.Frame> frames = recorder.snapshot();
+        assertArrayEquals(new byte[] { 4 }, frames.get(0).getMessage());
+        assertArrayEquals(new byte[] { 5 }, frames.get(1).getMessage());
+    }
+
+    @Test
+    public void messageWithoutBytesIsRecorded() {
+        final FlightRecorder recorder = new FlightRecorder(2);
+
+        recorder.record(true, null, null);
+
+        assertEquals(1, recorder.snapshot().size());
+        assertNull(recorder.snapshot().get(0).getMessage());
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.valueobjects.RequestDeadline;
+import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.InFlightRequests.Execution;
+
+import org.opensmartgridplatform.shared.infra.jms.MessageType;
+
+public class InFlightRequestsTest {
+
+    private static final String DEVICE_IDENTIFICATION = "TEST1024000000001";
+
+    private final InFlightRequests inFlightRequests = new InFlightRequests(
+            Arrays.asList(MessageType.REQUEST_ACTUAL_METER_DATA.name()));
+
+    @Test
+    public void identicalRequestSharesTheResponse() throws Exception {
+        final Execution first = this.start(new ArrayList<>(Arrays.asList("E", "A")));
+        final Execution second = this.start(new ArrayList<>(Arrays.asList("E", "A")));
+
+        assertFalse(first.isDuplicate());
+        assertTrue(second.isDuplicate());
+
+        first.complete("response");
+        first.finish();
+
+        assertTrue(second.awaitResult(RequestDeadline.NONE));
+        assertEquals("response", second.getResponse());
+        assertEquals(1, this.inFlightRequests.getDeduplicatedRequests());
+        assertEquals(0, this.inFlightRequests.getExecutionsInProgress());
+    }
+
+    @Test
+    public void identicalRequestFailsWithTheSameException() throws Exception {
+        final Execution first = this.start("request");
+        final Execution second = this.start("request");
+        final IllegalStateException exception = new IllegalStateException("Device not responding");
+
+        first.fail(exception);
+        first.finish();
+
+        assertTrue(second.awaitResult(RequestDeadline.NONE));
+        try {
+            second.getResponse();
+            fail("Expected the exception of the first request");
+        } catch (final IllegalStateException e) {
+            assertSame(exception, e);
+        }
+    }
+
+    @Test
+    public void identicalRequestExecutesItselfWithoutResult() throws Exception {
+        final Execution first = this.start("request");
+        final Execution second = this.start("request");
+
+        first.finish();
+
+        assertFalse(second.awaitResult(RequestDeadline.NONE));
+        assertFalse(this.start("request").isDuplicate());
+    }
+
+    @Test
+    public void differentRequestsAreNotDeduplicated() {
+        this.start("request");
+
+        assertFalse(this.start("other request").isDuplicate());
+        assertFalse(this.inFlightRequests
+                .start(MessageType.REQUEST_ACTUAL_METER_DATA, "TEST1024000000002", "request").isDuplicate());
+    }
+
+    @Test
+    public void requestsOfOtherMessageTypesAreNotDeduplicated() {
+        this.inFlightRequests.start(MessageType.SET_ALARM_NOTIFICATIONS, DEVICE_IDENTIFICATION, "request");
+
+        assertFalse(this.inFlightRequests.start(MessageType.SET_ALARM_NOTIFICATIONS, DEVICE_IDENTIFICATION,
+                "request").isDuplicate());
+        assertEquals(0, this.inFlightRequests.getExecutionsInProgress());
+    }
+
+    private Execution start(final Serializable request) {
+        return this.inFlightRequests.start(MessageType.REQUEST_ACTUAL_METER_DATA, DEVICE_IDENTIFICATION, request);
+    }
+}
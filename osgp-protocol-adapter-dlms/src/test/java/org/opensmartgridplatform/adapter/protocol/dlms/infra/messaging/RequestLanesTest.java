@@ -0,0 +1,94 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+
+import org.junit.Test;
+import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.RequestLanes.Lane;
+
+import org.opensmartgridplatform.shared.infra.jms.Constants;
+
+public class RequestLanesTest {
+
+    private static final Map<Lane, String> QUEUES = new EnumMap<>(Lane.class);
+
+    static {
+        QUEUES.put(Lane.DEFAULT, "requests.default");
+        QUEUES.put(Lane.LONG_RUNNING, "requests.long-running");
+        QUEUES.put(Lane.SCHEDULED, "requests.scheduled");
+    }
+
+    private final RequestLanes lanes = new RequestLanes(true,
+            Arrays.asList("UPDATE_FIRMWARE", " GET_ALL_ATTRIBUTE_VALUES"), QUEUES);
+
+    @Test
+    public void requestsAreAssignedToLanes() {
+        assertEquals(Lane.LONG_RUNNING, this.lanes.getLane("UPDATE_FIRMWARE", false));
+        assertEquals(Lane.LONG_RUNNING, this.lanes.getLane("GET_ALL_ATTRIBUTE_VALUES", true));
+        assertEquals(Lane.SCHEDULED, this.lanes.getLane("REQUEST_PERIODIC_METER_DATA", true));
+        assertEquals(Lane.DEFAULT, this.lanes.getLane("REQUEST_PERIODIC_METER_DATA", false));
+    }
+
+    @Test
+    public void selectorsSelectMessageTypesAndScheduledRequests() {
+        assertEquals("JMSType IN ('GET_ALL_ATTRIBUTE_VALUES', 'UPDATE_FIRMWARE')",
+                this.lanes.getSelector(Lane.LONG_RUNNING));
+        assertTrue(this.lanes.getSelector(Lane.SCHEDULED).endsWith(Constants.IS_SCHEDULED + " = TRUE"));
+        assertTrue(this.lanes.getSelector(Lane.DEFAULT).contains(Constants.IS_SCHEDULED + " IS NULL"));
+    }
+
+    @Test
+    public void filteredDestinationsForwardToLaneQueues() {
+        final String[] filteredDestinations = this.lanes.getFilteredDestinations();
+
+        assertEquals(3, filteredDestinations.length);
+        assertEquals("requests.long-running: JMSType IN ('GET_ALL_ATTRIBUTE_VALUES', 'UPDATE_FIRMWARE')",
+                filteredDestinations[Lane.LONG_RUNNING.ordinal()]);
+        assertEquals("requests.scheduled", this.lanes.getQueue(Lane.SCHEDULED));
+    }
+
+    @Test
+    public void allRequestsAreInDefaultLaneWhenLanesAreDisabled() {
+        final RequestLanes disabled = new RequestLanes(false, Arrays.asList("UPDATE_FIRMWARE"), QUEUES);
+
+        assertEquals(Lane.DEFAULT, disabled.getLane("UPDATE_FIRMWARE", true));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownMessageTypeIsRejected() {
+        new RequestLanes(true, Arrays.asList("UPDATE_FIRMWARES"), QUEUES);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingQueueIsRejected() {
+        new RequestLanes(true, Arrays.asList("UPDATE_FIRMWARE"), new EnumMap<>(Lane.class));
+    }
+
+    @Test
+    public void queueWaitIsRecordedPerLane() throws JMSException {
+        final Message message = mock(Message.class);
+        when(message.getJMSType()).thenReturn("UPDATE_FIRMWARE");
+        when(message.getJMSTimestamp()).thenReturn(System.currentTimeMillis() - 1000);
+
+        this.lanes.recordReceived(message);
+
+        assertTrue(this.lanes.getQueueWait()[Lane.LONG_RUNNING.ordinal()].startsWith("LONG_RUNNING: 1 requests"));
+        assertTrue(this.lanes.getQueueWait()[Lane.DEFAULT.ordinal()].startsWith("DEFAULT: 0 requests"));
+    }
+}
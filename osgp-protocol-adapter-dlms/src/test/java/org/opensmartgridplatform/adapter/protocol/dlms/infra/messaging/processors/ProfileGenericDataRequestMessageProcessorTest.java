@@ -0,0 +1,233 @@
+/**
+ * Copyright 2018 Smart Society Services B.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ */
+package org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.processors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+import javax.jms.ObjectMessage;
+
+import org.joda.time.Period;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.opensmartgridplatform.adapter.protocol.dlms.application.services.DomainHelperService;
+import org.opensmartgridplatform.adapter.protocol.dlms.application.services.MonitoringService;
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.entities.DlmsDevice;
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.factories.DlmsConnectionFactory;
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.factories.DlmsConnectionHolder;
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.valueobjects.RequestDeadline;
+import org.opensmartgridplatform.adapter.protocol.dlms.exceptions.DeadlineExceededException;
+import org.opensmartgridplatform.adapter.protocol.dlms.exceptions.OsgpExceptionConverter;
+import org.opensmartgridplatform.adapter.protocol.dlms.exceptions.ProtocolAdapterException;
+import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.DeviceRequestMessageProcessor;
+import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.DeviceResponseMessageSender;
+import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.DlmsConnectionMetrics;
+import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.DlmsMessageListener;
+import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.ExpiredRequestMetrics;
+import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.FlightRecordings;
+import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.PartialResponseSender;
+import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.RetryHeaderFactory;
+import org.opensmartgridplatform.dto.valueobjects.smartmetering.ProfileGenericDataRequestDto;
+import org.opensmartgridplatform.dto.valueobjects.smartmetering.ProfileGenericDataResponseDto;
+import org.opensmartgridplatform.shared.exceptionhandling.OsgpException;
+import org.opensmartgridplatform.shared.infra.jms.MessageMetadata;
+import org.opensmartgridplatform.shared.infra.jms.ObjectMessageBuilder;
+import org.opensmartgridplatform.shared.infra.jms.ProtocolResponseMessage;
+import org.opensmartgridplatform.shared.infra.jms.ResponseMessageResultType;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class ProfileGenericDataRequestMessageProcessorTest {
+
+    @Mock
+    private MonitoringService monitoringService;
+
+    @Mock
+    private DlmsConnectionHolder conn;
+
+    @Mock
+    private DlmsDevice device;
+
+    @Mock
+    private ProfileGenericDataRequestDto request;
+
+    @Mock
+    private DeviceResponseMessageSender responseMessageSender;
+
+    @Mock
+    private OsgpExceptionConverter osgpExceptionConverter;
+
+    @Mock
+    private RetryHeaderFactory retryHeaderFactory;
+
+    @Mock
+    private DlmsConnectionMetrics dlmsConnectionMetrics;
+
+    @Mock
+    private FlightRecordings flightRecordings;
+
+    @Mock
+    private ExpiredRequestMetrics expiredRequestMetrics;
+
+    @Mock
+    private DomainHelperService domainHelperService;
+
+    @Mock
+    private DlmsConnectionFactory dlmsConnectionFactory;
+
+    @Mock
+    private DlmsMessageListener messageListener;
+
+    @InjectMocks
+    private ProfileGenericDataRequestMessageProcessor processor;
+
+    private final List<Integer> sentChunkNumbers = new ArrayList<>();
+    private final List<Serializable> sentChunks = new ArrayList<>();
+    private PartialResponseSender partialResponseSender;
+
+    @Before
+    public void setup() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        ReflectionTestUtils.setField(this.processor, "chunkIntervalMinutes", 1440);
+        when(this.device.isSelectiveAccessSupported()).thenReturn(true);
+        this.partialResponseSender = new PartialResponseSender((chunkNumber, chunk) -> {
+            this.sentChunkNumbers.add(chunkNumber);
+            this.sentChunks.add(chunk);
+        });
+    }
+
+    @Test
+    public void allChunksButTheLastAreSentAsPartialResponses() throws OsgpException {
+        final ProfileGenericDataResponseDto first = mock(ProfileGenericDataResponseDto.class);
+        final ProfileGenericDataResponseDto second = mock(ProfileGenericDataResponseDto.class);
+        final ProfileGenericDataResponseDto last = mock(ProfileGenericDataResponseDto.class);
+        this.whenChunksAreRead(first, second, last);
+
+        final Object response = this.processor.handleMessage(this.conn, this.device, this.request,
+                this.partialResponseSender);
+
+        assertSame(last, response);
+        assertEquals(Arrays.asList(1, 2), this.sentChunkNumbers);
+        assertEquals(Arrays.asList(first, second), this.sentChunks);
+        assertEquals(2, this.partialResponseSender.getNumberOfChunksSent());
+    }
+
+    @Test
+    public void bufferIsReadAtOnceWithoutSelectiveAccess() throws OsgpException {
+        final ProfileGenericDataResponseDto all = mock(ProfileGenericDataResponseDto.class);
+        when(this.device.isSelectiveAccessSupported()).thenReturn(false);
+        when(this.monitoringService.requestProfileGenericData(this.conn, this.device, this.request)).thenReturn(all);
+
+        final Object response = this.processor.handleMessage(this.conn, this.device, this.request,
+                this.partialResponseSender);
+
+        assertSame(all, response);
+        assertTrue(this.sentChunks.isEmpty());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void bufferIsReadAtOnceWhenPartialResponsesAreNotAccepted() throws OsgpException {
+        final ProfileGenericDataResponseDto all = mock(ProfileGenericDataResponseDto.class);
+        when(this.monitoringService.requestProfileGenericData(this.conn, this.device, this.request)).thenReturn(all);
+
+        final Object response = this.processor.handleMessage(this.conn, this.device, this.request,
+                (PartialResponseSender) null);
+
+        assertSame(all, response);
+        verify(this.monitoringService, never()).requestProfileGenericDataInChunks(any(DlmsConnectionHolder.class),
+                any(DlmsDevice.class), any(ProfileGenericDataRequestDto.class), any(Period.class),
+                any(Consumer.class));
+    }
+
+    @Test
+    public void deadlinePassingAfterChunksWereSentEndsWithFinalChunk() throws Exception {
+        this.whenChunksAreReadAndThen(new DeadlineExceededException("profile generic data chunk", 0L),
+                mock(ProfileGenericDataResponseDto.class), mock(ProfileGenericDataResponseDto.class));
+
+        this.processor.processMessage(this.messageAcceptingPartialResponses());
+
+        verify(this.responseMessageSender).sendPartial(any(ProtocolResponseMessage.class), eq(1));
+        this.verifyFinalChunkNotOk(2);
+        verify(this.expiredRequestMetrics, never()).recordDropped(anyString(), anyString());
+    }
+
+    @Test
+    public void failureAfterChunksWereSentEndsWithFinalChunk() throws Exception {
+        this.whenChunksAreReadAndThen(new ProtocolAdapterException("Reading chunk failed"),
+                mock(ProfileGenericDataResponseDto.class), mock(ProfileGenericDataResponseDto.class),
+                mock(ProfileGenericDataResponseDto.class));
+
+        this.processor.processMessage(this.messageAcceptingPartialResponses());
+
+        this.verifyFinalChunkNotOk(3);
+        verify(this.responseMessageSender, never()).send(any(ProtocolResponseMessage.class));
+    }
+
+    private ObjectMessage messageAcceptingPartialResponses() throws Exception {
+        when(this.domainHelperService.findDlmsDevice(any(MessageMetadata.class))).thenReturn(this.device);
+        when(this.dlmsConnectionFactory.getConnection(eq(this.device), any(DlmsMessageListener.class),
+                any(RequestDeadline.class), anyString())).thenReturn(this.conn);
+        when(this.conn.getDlmsMessageListener()).thenReturn(this.messageListener);
+
+        final ObjectMessage message = new ObjectMessageBuilder().withObject(this.request).build();
+        message.setBooleanProperty(DeviceRequestMessageProcessor.ACCEPTS_PARTIAL_RESPONSES, true);
+        return message;
+    }
+
+    private void verifyFinalChunkNotOk(final int chunkNumber) {
+        final ArgumentCaptor<ProtocolResponseMessage> finalChunk = ArgumentCaptor
+                .forClass(ProtocolResponseMessage.class);
+        verify(this.responseMessageSender).sendFinal(finalChunk.capture(), eq(chunkNumber));
+        assertEquals(ResponseMessageResultType.NOT_OK, finalChunk.getValue().getResult());
+    }
+
+    private void whenChunksAreRead(final ProfileGenericDataResponseDto... chunks) throws OsgpException {
+        this.whenChunksAreReadAndThen(null, chunks);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void whenChunksAreReadAndThen(final Exception failure, final ProfileGenericDataResponseDto... chunks)
+            throws OsgpException {
+        doAnswer(new Answer<Integer>() {
+            @Override
+            public Integer answer(final InvocationOnMock invocation) throws Exception {
+                final Consumer<ProfileGenericDataResponseDto> consumer = (Consumer<ProfileGenericDataResponseDto>) invocation
+                        .getArguments()[4];
+                for (final ProfileGenericDataResponseDto chunk : chunks) {
+                    consumer.accept(chunk);
+                }
+                if (failure != null) {
+                    throw failure;
+                }
+                return chunks.length;
+            }
+        }).when(this.monitoringService).requestProfileGenericDataInChunks(eq(this.conn), eq(this.device),
+                eq(this.request), eq(Period.minutes(1440)), any(Consumer.class));
+    }
+}
@@ -8,11 +8,16 @@
 package org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.processors;
 
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isNull;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.Collections;
+
 import javax.jms.JMSException;
 import javax.jms.ObjectMessage;
 
@@ -21,16 +26,22 @@ import org.junit.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 import org.opensmartgridplatform.adapter.protocol.dlms.application.services.ConfigurationService;
 import org.opensmartgridplatform.adapter.protocol.dlms.application.services.DomainHelperService;
 import org.opensmartgridplatform.adapter.protocol.dlms.application.services.FirmwareService;
 import org.opensmartgridplatform.adapter.protocol.dlms.domain.entities.DlmsDevice;
 import org.opensmartgridplatform.adapter.protocol.dlms.domain.factories.DlmsConnectionFactory;
 import org.opensmartgridplatform.adapter.protocol.dlms.domain.factories.DlmsConnectionHolder;
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.valueobjects.RequestDeadline;
 import org.opensmartgridplatform.adapter.protocol.dlms.exceptions.OsgpExceptionConverter;
 import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.DeviceResponseMessageSender;
+import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.DlmsConnectionMetrics;
 import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.DlmsLogItemRequestMessageSender;
 import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.DlmsMessageListener;
+import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.ExpiredRequestMetrics;
+import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.FlightRecordings;
+import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.InFlightRequests;
 import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.RetryHeaderFactory;
 import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.requests.to.core.OsgpRequestMessageSender;
 
@@ -53,6 +64,18 @@ public class UpdateFirmwareRequestMessageProcessorTest {
     @Mock
     private RetryHeaderFactory retryHeaderFactory;
 
+    @Mock
+    private DlmsConnectionMetrics dlmsConnectionMetrics;
+
+    @Mock
+    private FlightRecordings flightRecordings;
+
+    @Mock
+    private ExpiredRequestMetrics expiredRequestMetrics;
+
+    @Spy
+    private InFlightRequests inFlightRequests = new InFlightRequests(Collections.<String> emptyList());
+
     @Mock
     private ConfigurationService configurationService;
 
@@ -85,7 +108,8 @@ public class UpdateFirmwareRequestMessageProcessorTest {
         MockitoAnnotations.initMocks(this);
 
         when(this.domainHelperService.findDlmsDevice(any(MessageMetadata.class))).thenReturn(this.dlmsDeviceMock);
-        when(this.dlmsConnectionFactory.getConnection(this.dlmsDeviceMock, null))
+        when(this.dlmsConnectionFactory.getConnection(eq(this.dlmsDeviceMock), (DlmsMessageListener) isNull(),
+                eq(RequestDeadline.NONE), anyString()))
                 .thenReturn(this.dlmsConnectionHolderMock);
         when(this.dlmsConnectionHolderMock.getDlmsMessageListener()).thenReturn(this.messageListenerMock);
     }
@@ -10,6 +10,9 @@ package org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.response
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isNull;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -30,10 +33,13 @@ import org.opensmartgridplatform.adapter.protocol.dlms.application.services.Firm
 import org.opensmartgridplatform.adapter.protocol.dlms.domain.entities.DlmsDevice;
 import org.opensmartgridplatform.adapter.protocol.dlms.domain.factories.DlmsConnectionFactory;
 import org.opensmartgridplatform.adapter.protocol.dlms.domain.factories.DlmsConnectionHolder;
+import org.opensmartgridplatform.adapter.protocol.dlms.domain.valueobjects.RequestDeadline;
 import org.opensmartgridplatform.adapter.protocol.dlms.exceptions.OsgpExceptionConverter;
 import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.DeviceResponseMessageSender;
+import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.DlmsConnectionMetrics;
 import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.DlmsLogItemRequestMessageSender;
 import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.DlmsMessageListener;
+import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.FlightRecordings;
 import org.opensmartgridplatform.adapter.protocol.dlms.infra.messaging.RetryHeaderFactory;
 import org.opensmartgridplatform.dto.valueobjects.FirmwareFileDto;
 import org.opensmartgridplatform.dto.valueobjects.smartmetering.UpdateFirmwareResponseDto;
@@ -67,6 +73,12 @@ public class GetFirmwareFileResponseMessageProcessorTest {
     @Mock
     private RetryHeaderFactory retryHeaderFactory;
 
+    @Mock
+    private DlmsConnectionMetrics dlmsConnectionMetrics;
+
+    @Mock
+    private FlightRecordings flightRecordings;
+
     @Mock
     private FirmwareService firmwareService;
 
@@ -99,7 +111,8 @@ public class GetFirmwareFileResponseMessageProcessorTest {
                 .forClass(ResponseMessage.class);
 
         when(this.domainHelperService.findDlmsDevice(any(MessageMetadata.class))).thenReturn(this.dlmsDeviceMock);
-        when(this.dlmsConnectionFactory.getConnection(this.dlmsDeviceMock, null))
+        when(this.dlmsConnectionFactory.getConnection(eq(this.dlmsDeviceMock), (DlmsMessageListener) isNull(),
+                eq(RequestDeadline.NONE), anyString()))
                 .thenReturn(this.dlmsConnectionHolderMock);
         when(this.dlmsConnectionHolderMock.getDlmsMessageListener()).thenReturn(this.dlmsMessageListenerMock);
         when(this.dlmsDeviceMock.isInDebugMode()).thenReturn(false);